@@ -0,0 +1,65 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of <tt>benchmarks.jar</tt>.
+ * 
+ * <p>
+ * Accepts the regular JMH command line options, but defaults to running all
+ * Estatio benchmarks with the {@link GCProfiler gc profiler} (so that
+ * allocation rates are reported alongside the timings) and to writing the
+ * results as JSON to <tt>target/jmh-result.json</tt>, which can be compared
+ * against those of a baseline run on the same machine (see the README).
+ */
+public final class EstatioBenchmarks {
+
+    static final String DEFAULT_INCLUDE = "org\\.estatio\\..*Benchmark.*";
+    static final String DEFAULT_RESULT = "target/jmh-result.json";
+
+    private EstatioBenchmarks() {
+    }
+
+    public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        final ChainedOptionsBuilder builder = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class);
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            builder.include(DEFAULT_INCLUDE);
+        }
+        if (!commandLineOptions.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLineOptions.getResult().hasValue()) {
+            builder.result(DEFAULT_RESULT);
+        }
+        new Runner(builder.build()).run();
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.estatio.dom.invoice.Invoice;
+
+/**
+ * {@link EstatioDomainObject#compareTo(EstatioDomainObject)}, which is used
+ * for every insert into the sorted sets of the domain entities, both for a
+ * single comparison and for sorting a list of invoices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EstatioDomainObjectBenchmark {
+
+    private static final int NUMBER_OF_INVOICES = 1000;
+
+    private Invoice invoice1;
+    private Invoice invoice2;
+
+    private List<Invoice> invoices;
+
+    @Setup
+    public void setUp() {
+        invoice1 = newInvoice("OXF-000123");
+        invoice2 = newInvoice("OXF-000124");
+
+        invoices = Lists.newArrayList();
+        for (int i = 0; i < NUMBER_OF_INVOICES; i++) {
+            invoices.add(newInvoice(String.format("OXF-%06d", i)));
+        }
+        // fixed seed, so that every run sorts the same sequence
+        Collections.shuffle(invoices, new Random(NUMBER_OF_INVOICES));
+    }
+
+    @Benchmark
+    public int compareTo() {
+        return invoice1.compareTo(invoice2);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Invoice> sort() {
+        final List<Invoice> sorted = Lists.newArrayList(invoices);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static Invoice newInvoice(final String invoiceNumber) {
+        final Invoice invoice = new Invoice();
+        invoice.setInvoiceNumber(invoiceNumber);
+        return invoice;
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+import javax.jdo.annotations.PersistenceCapable;
+
+import com.google.common.collect.Maps;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.reflections.Reflections;
+
+/**
+ * Start up of the persistence layer: creating the persistence manager
+ * factory and first using every entity (as the registration of entities
+ * does on application start up), with the development settings of
+ * <tt>persistor_datanucleus.properties</tt> and with the production ones of
+ * <tt>persistor_datanucleus.properties.PRODUCTION</tt>.
+ * 
+ * <p>
+ * Against an in-memory database, so the difference on a real database, with
+ * a round trip for every metadata lookup, is larger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PersistenceStartupBenchmark {
+
+    private static final String CONNECTION_URL = "jdbc:hsqldb:mem:startup";
+
+    @Param({ "development", "production" })
+    public String settings;
+
+    private Set<Class<?>> entityTypes;
+
+    @Setup(Level.Trial)
+    public void createSchema() {
+        entityTypes = new Reflections("org.estatio").getTypesAnnotatedWith(PersistenceCapable.class);
+        final PersistenceManagerFactory persistenceManagerFactory = JDOHelper.getPersistenceManagerFactory(developmentProperties());
+        try {
+            useAllEntities(persistenceManagerFactory);
+        } finally {
+            persistenceManagerFactory.close();
+        }
+    }
+
+    @Benchmark
+    public int startUp() {
+        final Map<String, String> properties = "production".equals(settings)
+                ? productionProperties()
+                : developmentProperties();
+        final PersistenceManagerFactory persistenceManagerFactory = JDOHelper.getPersistenceManagerFactory(properties);
+        try {
+            return useAllEntities(persistenceManagerFactory);
+        } finally {
+            persistenceManagerFactory.close();
+        }
+    }
+
+    private int useAllEntities(final PersistenceManagerFactory persistenceManagerFactory) {
+        final PersistenceManager persistenceManager = persistenceManagerFactory.getPersistenceManager();
+        try {
+            int used = 0;
+            for (Class<?> entityType : entityTypes) {
+                final Query query = persistenceManager.newQuery(entityType);
+                query.setRange(0, 1);
+                query.execute();
+                query.closeAll();
+                used++;
+            }
+            return used;
+        } finally {
+            persistenceManager.close();
+        }
+    }
+
+    // //////////////////////////////////////
+
+    private static Map<String, String> commonProperties() {
+        final Map<String, String> properties = Maps.newHashMap();
+        properties.put("javax.jdo.PersistenceManagerFactoryClass", "org.datanucleus.api.jdo.JDOPersistenceManagerFactory");
+        properties.put("javax.jdo.option.ConnectionDriverName", "org.hsqldb.jdbcDriver");
+        properties.put("javax.jdo.option.ConnectionURL", CONNECTION_URL);
+        properties.put("javax.jdo.option.ConnectionUserName", "sa");
+        properties.put("javax.jdo.option.ConnectionPassword", "");
+        properties.put("datanucleus.defaultInheritanceStrategy", "TABLE_PER_CLASS");
+        properties.put("datanucleus.identifier.case", "PreserveCase");
+        return properties;
+    }
+
+    private static Map<String, String> developmentProperties() {
+        final Map<String, String> properties = commonProperties();
+        properties.put("datanucleus.autoCreateSchema", "true");
+        properties.put("datanucleus.validateSchema", "true");
+        return properties;
+    }
+
+    private static Map<String, String> productionProperties() {
+        final Map<String, String> properties = commonProperties();
+        properties.put("datanucleus.autoCreateSchema", "false");
+        properties.put("datanucleus.validateSchema", "false");
+        properties.put("datanucleus.validateTables", "false");
+        properties.put("datanucleus.validateColumns", "false");
+        properties.put("datanucleus.validateConstraints", "false");
+        properties.put("datanucleus.rdbms.CheckExistTablesOrViews", "false");
+        properties.put("datanucleus.rdbms.initializeColumnInfo", "NONE");
+        properties.put("datanucleus.metadata.validate", "false");
+        return properties;
+    }
+
+}
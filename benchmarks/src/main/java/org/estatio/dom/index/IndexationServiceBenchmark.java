@@ -0,0 +1,111 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.index;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Maps;
+
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.estatio.dom.lease.LeaseTermForIndexableRent;
+
+/**
+ * {@link IndexationService#indexate(Indexable)} of an indexable rent against
+ * an index with two rebased bases, with the index values held in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IndexationServiceBenchmark {
+
+    private IndexationService indexationService;
+
+    private LeaseTermForIndexableRent indexable;
+
+    @Setup
+    public void setUp() {
+        final InMemoryIndexValues indexValues = new InMemoryIndexValues();
+
+        final Index index = new Index();
+        index.injectIndexValues(indexValues);
+
+        final IndexBase ib2000 = new IndexBase();
+        ib2000.setStartDate(new LocalDate(2000, 1, 1));
+
+        final IndexBase ib2010 = new IndexBase();
+        ib2010.setPrevious(ib2000);
+        ib2010.setFactor(BigDecimal.valueOf(1.234));
+        ib2010.setStartDate(new LocalDate(2010, 1, 1));
+
+        indexValues.add(ib2000, new LocalDate(2008, 1, 1), BigDecimal.valueOf(122.2));
+        indexValues.add(ib2010, new LocalDate(2012, 1, 1), BigDecimal.valueOf(111.1));
+
+        indexable = new LeaseTermForIndexableRent();
+        indexable.setIndex(index);
+        indexable.setBaseIndexStartDate(new LocalDate(2008, 1, 1));
+        indexable.setNextIndexStartDate(new LocalDate(2012, 1, 1));
+        indexable.setBaseValue(BigDecimal.valueOf(250000));
+        indexable.setLevellingPercentage(BigDecimal.valueOf(75));
+
+        indexationService = new IndexationService();
+    }
+
+    @Benchmark
+    public BigDecimal indexate() {
+        indexationService.indexate(indexable);
+        return indexable.getIndexedValue();
+    }
+
+    // //////////////////////////////////////
+
+    static class InMemoryIndexValues extends IndexValues {
+
+        private final Map<LocalDate, IndexValue> valuesByStartDate = Maps.newHashMap();
+
+        void add(final IndexBase indexBase, final LocalDate startDate, final BigDecimal value) {
+            final IndexValue indexValue = new IndexValue();
+            indexValue.setIndexBase(indexBase);
+            indexValue.setStartDate(startDate);
+            indexValue.setValue(value);
+            valuesByStartDate.put(startDate, indexValue);
+        }
+
+        @Override
+        public IndexValue findIndexValueByIndexAndStartDate(final Index index, final LocalDate startDate) {
+            return valuesByStartDate.get(startDate);
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.invoice.viewmodel;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.io.BaseEncoding;
+
+import org.jdom2.Element;
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.estatio.app.ViewModelMemento;
+import org.estatio.dom.utils.Jdom2Util;
+
+/**
+ * Writing and reading back the memento of an
+ * {@link InvoiceSummaryForPropertyDueDate}, as done for every row rendered
+ * and every link followed, with {@link ViewModelMemento} against the base64
+ * encoded XML documents it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ViewModelMementoBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private InvoiceSummaryForPropertyDueDate viewModel;
+
+    @Setup
+    public void setUp() {
+        viewModel = new InvoiceSummaryForPropertyDueDate();
+        viewModel.setReference("OXF");
+        viewModel.setDueDate(new LocalDate(2013, 4, 1));
+        viewModel.setNetAmount(new BigDecimal("123456.00"));
+        viewModel.setVatAmount(new BigDecimal("25925.76"));
+        viewModel.setGrossAmount(new BigDecimal("149381.76"));
+        viewModel.setTotal(123);
+    }
+
+    @Benchmark
+    public InvoiceSummaryForPropertyDueDate binary() {
+        final InvoiceSummaryForPropertyDueDate copy = new InvoiceSummaryForPropertyDueDate();
+        copy.viewModelInit(viewModel.viewModelMemento());
+        return copy;
+    }
+
+    /**
+     * Written as before {@link ViewModelMemento}, read back through the
+     * legacy path of {@link InvoiceSummaryForPropertyDueDate#viewModelInit(String)}.
+     */
+    @Benchmark
+    public InvoiceSummaryForPropertyDueDate xml() {
+        final Element el = new Element("memento");
+        Jdom2Util.addChild(el, "reference", viewModel.getReference());
+        Jdom2Util.addChild(el, "dueDate", viewModel.getDueDate());
+        Jdom2Util.addChild(el, "netAmount", viewModel.getNetAmount());
+        Jdom2Util.addChild(el, "vatAmount", viewModel.getVatAmount());
+        Jdom2Util.addChild(el, "grossAmount", viewModel.getGrossAmount());
+        Jdom2Util.addChild(el, "total", "" + viewModel.getTotal());
+        final String memento = BaseEncoding.base64Url().encode(Jdom2Util.toString(el).getBytes(UTF_8));
+
+        final InvoiceSummaryForPropertyDueDate copy = new InvoiceSummaryForPropertyDueDate();
+        copy.viewModelInit(memento);
+        return copy;
+    }
+
+}
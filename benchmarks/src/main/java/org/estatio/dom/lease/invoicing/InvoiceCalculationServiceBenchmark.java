@@ -0,0 +1,127 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.invoicing;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.estatio.dom.lease.InvoicingFrequency;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseItem;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.lease.invoicing.InvoiceCalculationService.CalculationResult;
+
+/**
+ * {@link InvoiceCalculationService#calculateWithFrequency(LeaseTerm, LocalDate, LocalDate, LocalDate, InvoicingFrequency)}
+ * of a ten year term, held in memory.
+ * 
+ * <p>
+ * Lives in the package of the service to be able to call the package-private
+ * calculation directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class InvoiceCalculationServiceBenchmark {
+
+    private static final LocalDate START_DATE = new LocalDate(2010, 7, 15);
+    private static final LocalDate END_DATE = START_DATE.plusYears(10).minusDays(1);
+
+    @Param({ "MONTHLY_IN_ADVANCE", "QUARTERLY_IN_ADVANCE", "QUARTERLY_IN_ARREARS", "YEARLY_IN_ADVANCE" })
+    public String invoicingFrequency;
+
+    private InvoicingFrequency frequency;
+
+    private InvoiceCalculationService invoiceCalculationService;
+
+    private LeaseTerm leaseTerm;
+
+    private final LocalDate dueDate = new LocalDate(2013, 10, 1);
+
+    @Setup
+    public void setUp() {
+        frequency = InvoicingFrequency.valueOf(invoicingFrequency);
+
+        final Lease lease = new Lease();
+        lease.setStartDate(START_DATE);
+        lease.setEndDate(END_DATE);
+
+        final LeaseItem leaseItem = new LeaseItem();
+        leaseItem.setStartDate(START_DATE);
+        leaseItem.setInvoicingFrequency(frequency);
+        lease.getItems().add(leaseItem);
+        leaseItem.setLease(lease);
+
+        final LeaseTermStub leaseTermStub = new LeaseTermStub(BigDecimal.valueOf(123456.78));
+        leaseTermStub.setStartDate(START_DATE);
+        leaseTermStub.setEndDate(END_DATE);
+        leaseItem.getTerms().add(leaseTermStub);
+        leaseTermStub.setLeaseItem(leaseItem);
+        leaseTerm = leaseTermStub;
+
+        invoiceCalculationService = new InvoiceCalculationService();
+    }
+
+    @Benchmark
+    public List<CalculationResult> calculateWithFrequency() {
+        return invoiceCalculationService.calculateWithFrequency(leaseTerm, START_DATE, END_DATE, dueDate, frequency);
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * A term with a fixed value that is never persisted.
+     */
+    static class LeaseTermStub extends LeaseTerm {
+
+        private final BigDecimal value;
+
+        LeaseTermStub(final BigDecimal value) {
+            this.value = value;
+        }
+
+        @Override
+        public BigDecimal getTrialValue() {
+            return value;
+        }
+
+        @Override
+        public BigDecimal getApprovedValue() {
+            return value;
+        }
+    }
+
+}
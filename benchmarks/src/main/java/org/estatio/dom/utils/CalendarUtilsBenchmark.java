@@ -0,0 +1,90 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.utils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.Interval;
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.estatio.dom.lease.InvoicingFrequency;
+
+/**
+ * {@link CalendarUtils} for the rrule of every {@link InvoicingFrequency}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CalendarUtilsBenchmark {
+
+    @Param({
+            "WEEKLY_IN_ADVANCE",
+            "WEEKLY_IN_ARREARS",
+            "MONTHLY_IN_ADVANCE",
+            "MONTHLY_IN_ARREARS",
+            "QUARTERLY_IN_ADVANCE",
+            "QUARTERLY_IN_ADVANCE_PLUS1M",
+            "QUARTERLY_IN_ARREARS",
+            "SEMI_YEARLY_IN_ADVANCE",
+            "SEMI_YEARLY_IN_ARREARS",
+            "YEARLY_IN_ADVANCE",
+            "YEARLY_IN_ARREARS" })
+    public String invoicingFrequency;
+
+    private String rrule;
+
+    /**
+     * A typical ten year lease.
+     */
+    private final LocalDate startDate = new LocalDate(2010, 7, 15);
+    private final LocalDate endDate = new LocalDate(2020, 7, 14);
+
+    private final LocalDate containingDate = new LocalDate(2013, 11, 21);
+
+    @Setup
+    public void setUp() {
+        rrule = InvoicingFrequency.valueOf(invoicingFrequency).getRrule();
+    }
+
+    @Benchmark
+    public List<Interval> intervalsInRange() {
+        return CalendarUtils.intervalsInRange(startDate, endDate, rrule);
+    }
+
+    @Benchmark
+    public Interval intervalContaining() {
+        return CalendarUtils.intervalContaining(containingDate, rrule);
+    }
+
+}
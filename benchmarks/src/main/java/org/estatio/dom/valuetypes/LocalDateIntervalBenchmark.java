@@ -0,0 +1,68 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.valuetypes;
+
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link LocalDateInterval#overlap(LocalDateInterval)} and
+ * {@link LocalDateInterval#days()}, for an open-ended and a closed interval.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LocalDateIntervalBenchmark {
+
+    private final LocalDateInterval quarter = 
+            LocalDateInterval.including(new LocalDate(2013, 4, 1), new LocalDate(2013, 6, 30));
+    private final LocalDateInterval term = 
+            LocalDateInterval.including(new LocalDate(2013, 5, 15), new LocalDate(2014, 5, 14));
+    private final LocalDateInterval openEndedTerm = 
+            LocalDateInterval.including(new LocalDate(2013, 5, 15), null);
+
+    @Benchmark
+    public LocalDateInterval overlap() {
+        return quarter.overlap(term);
+    }
+
+    @Benchmark
+    public LocalDateInterval overlapOpenEnded() {
+        return quarter.overlap(openEndedTerm);
+    }
+
+    @Benchmark
+    public int days() {
+        return term.days();
+    }
+
+}
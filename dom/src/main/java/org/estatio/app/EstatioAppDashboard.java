@@ -20,14 +20,19 @@ package org.estatio.app;
 
 import java.util.List;
 
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+
+import org.joda.time.LocalDate;
+
 import org.apache.isis.applib.annotation.Named;
 import org.apache.isis.applib.annotation.Render;
 import org.apache.isis.applib.annotation.Render.Type;
 
-import org.estatio.dom.event.Event;
-import org.estatio.dom.event.Events;
 import org.estatio.dom.lease.Lease;
-import org.estatio.dom.lease.Leases;
+import org.estatio.dom.lease.criticaldates.CriticalDate;
+import org.estatio.dom.lease.criticaldates.CriticalDateType;
+import org.estatio.dom.lease.criticaldates.CriticalDates;
 
 @Named("Dashboard")
 public class EstatioAppDashboard extends EstatioViewModel {
@@ -53,32 +58,44 @@ public class EstatioAppDashboard extends EstatioViewModel {
 
     // //////////////////////////////////////
 
+    /**
+     * How far ahead the dashboard looks; together with
+     * {@link CriticalDates#DEFAULT_PAGE_SIZE} this bounds the work done to
+     * render it, however large the portfolio.
+     */
+    static final int WINDOW_IN_MONTHS = 12;
+
     @Named("Leases about to expire")
     @Render(Type.EAGERLY)
     public List<Lease> getLeasesAboutToExpire() {
-        return leases.findAboutToExpireOnDate(getClockService().now());
+        return Lists.newArrayList(Lists.transform(
+                findUpcoming(CriticalDateType.LEASE_EXPIRY),
+                new Function<CriticalDate, Lease>() {
+                    @Override
+                    public Lease apply(final CriticalDate input) {
+                        return input.getLease();
+                    }
+                }));
     }
 
-    @Named("Upcoming events")
+    @Named("Upcoming critical dates")
     @Render(Type.EAGERLY)
-    public List<Event> getUpcomingEvents() {
-        return events.findEventsOnOrAfter(getClockService().now());
+    public List<CriticalDate> getUpcomingCriticalDates() {
+        return findUpcoming(null);
+    }
+
+    private List<CriticalDate> findUpcoming(final CriticalDateType type) {
+        final LocalDate now = getClockService().now();
+        return criticalDates.findByDateBetween(
+                now, now.plusMonths(WINDOW_IN_MONTHS), type, 0, CriticalDates.DEFAULT_PAGE_SIZE);
     }
 
     // //////////////////////////////////////
 
-    private Leases leases;
+    private CriticalDates criticalDates;
 
-    public final void injectLeases(final Leases leases) {
-        this.leases = leases;
+    public final void injectCriticalDates(final CriticalDates criticalDates) {
+        this.criticalDates = criticalDates;
     }
-    
 
-    private Events events;
-    
-    public final void injectEvents(final Events events) {
-        this.events = events;
-    }
-    
-    
 }
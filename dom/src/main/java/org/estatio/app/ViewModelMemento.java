@@ -0,0 +1,259 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.app;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+
+import com.google.common.io.BaseEncoding;
+
+import org.joda.time.LocalDate;
+
+/**
+ * Compact encoding of the state of a view model as its
+ * {@link org.apache.isis.applib.ViewModel#viewModelMemento() memento}, to
+ * replace the base64 encoded XML documents that were parsed for every row
+ * rendered and every link followed.
+ * 
+ * <p>
+ * The values are written by a {@link Writer} and read back by a
+ * {@link Reader} in the same order, so there is no schema and no names; each
+ * value is preceded by a one byte tag of its type (or of <tt>null</tt>) so
+ * that a memento that does not match the view model fails rather than being
+ * misread. The first byte is the {@link #VERSION} of the encoding, which
+ * also tells it apart from the legacy XML mementos (starting with
+ * <tt>&lt;</tt>) still held in bookmarks; see {@link #legacyXmlOf(String)}.
+ */
+public final class ViewModelMemento {
+
+    static final byte VERSION = 1;
+
+    private static final byte NULL = 'N';
+    private static final byte STRING = 'S';
+    private static final byte INT = 'I';
+    private static final byte LOCAL_DATE = 'D';
+    private static final byte BIG_DECIMAL = 'B';
+    private static final byte ENUM = 'E';
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final BaseEncoding BASE64_URL = BaseEncoding.base64Url().omitPadding();
+
+    private ViewModelMemento() {
+    }
+
+    public static Writer writer() {
+        return new Writer();
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             if not a memento of this (version of the) encoding.
+     */
+    public static Reader reader(final String memento) {
+        final byte[] bytes = decode(memento);
+        if (bytes.length == 0 || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Not a version " + VERSION + " view model memento: " + memento);
+        }
+        return new Reader(bytes);
+    }
+
+    /**
+     * The XML document of a memento written before this encoding was
+     * introduced, <tt>null</tt> if not such a memento.
+     */
+    public static String legacyXmlOf(final String memento) {
+        final byte[] bytes = decode(memento);
+        return bytes.length > 0 && bytes[0] == '<' ? new String(bytes, UTF_8) : null;
+    }
+
+    private static byte[] decode(final String memento) {
+        // legacy mementos were padded
+        final int end = memento.indexOf('=');
+        return BASE64_URL.decode(end < 0 ? memento : memento.substring(0, end));
+    }
+
+    // //////////////////////////////////////
+
+    public static class Writer {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+
+        private Writer() {
+            bytes.write(VERSION);
+        }
+
+        public Writer writeString(final String value) {
+            if (tag(value, STRING)) {
+                writeBytes(value.getBytes(UTF_8));
+            }
+            return this;
+        }
+
+        public Writer writeInt(final int value) {
+            bytes.write(INT);
+            writeVarInt(value);
+            return this;
+        }
+
+        public Writer writeLocalDate(final LocalDate value) {
+            if (tag(value, LOCAL_DATE)) {
+                writeVarInt(value.getYear());
+                bytes.write(value.getMonthOfYear());
+                bytes.write(value.getDayOfMonth());
+            }
+            return this;
+        }
+
+        public Writer writeBigDecimal(final BigDecimal value) {
+            if (tag(value, BIG_DECIMAL)) {
+                writeVarInt(value.scale());
+                writeBytes(value.unscaledValue().toByteArray());
+            }
+            return this;
+        }
+
+        public Writer writeEnum(final Enum<?> value) {
+            if (tag(value, ENUM)) {
+                writeBytes(value.name().getBytes(UTF_8));
+            }
+            return this;
+        }
+
+        private boolean tag(final Object value, final byte tag) {
+            bytes.write(value == null ? NULL : tag);
+            return value != null;
+        }
+
+        private void writeBytes(final byte[] value) {
+            writeVarInt(value.length);
+            bytes.write(value, 0, value.length);
+        }
+
+        /**
+         * Zig-zag encoded in groups of seven bits, so that small values,
+         * positive or negative, take a single byte.
+         */
+        private void writeVarInt(final int value) {
+            int zigZag = (value << 1) ^ (value >> 31);
+            while ((zigZag & ~0x7F) != 0) {
+                bytes.write((zigZag & 0x7F) | 0x80);
+                zigZag >>>= 7;
+            }
+            bytes.write(zigZag);
+        }
+
+        /**
+         * The memento, base64url encoded.
+         */
+        @Override
+        public String toString() {
+            return BASE64_URL.encode(bytes.toByteArray());
+        }
+    }
+
+    // //////////////////////////////////////
+
+    public static class Reader {
+
+        private final DataInputStream in;
+
+        private Reader(final byte[] bytes) {
+            this.in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+        }
+
+        public String readString() {
+            return tag(STRING) ? new String(readBytes(), UTF_8) : null;
+        }
+
+        public int readInt() {
+            if (!tag(INT)) {
+                throw new IllegalArgumentException("Unexpected null in view model memento");
+            }
+            return readVarInt();
+        }
+
+        public LocalDate readLocalDate() {
+            if (!tag(LOCAL_DATE)) {
+                return null;
+            }
+            final int year = readVarInt();
+            return new LocalDate(year, readByte(), readByte());
+        }
+
+        public BigDecimal readBigDecimal() {
+            if (!tag(BIG_DECIMAL)) {
+                return null;
+            }
+            final int scale = readVarInt();
+            return new BigDecimal(new BigInteger(readBytes()), scale);
+        }
+
+        public <E extends Enum<E>> E readEnum(final Class<E> enumType) {
+            return tag(ENUM) ? Enum.valueOf(enumType, new String(readBytes(), UTF_8)) : null;
+        }
+
+        private boolean tag(final byte expected) {
+            final byte tag = (byte) readByte();
+            if (tag == NULL) {
+                return false;
+            }
+            if (tag != expected) {
+                throw new IllegalArgumentException(
+                        "Expected '" + (char) expected + "' but found '" + (char) tag + "' in view model memento");
+            }
+            return true;
+        }
+
+        private byte[] readBytes() {
+            final byte[] value = new byte[readVarInt()];
+            try {
+                in.readFully(value);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Truncated view model memento", e);
+            }
+            return value;
+        }
+
+        private int readVarInt() {
+            int zigZag = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                final int b = readByte();
+                zigZag |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigZag >>> 1) ^ -(zigZag & 1);
+                }
+            }
+            throw new IllegalArgumentException("Malformed view model memento");
+        }
+
+        private int readByte() {
+            try {
+                return in.readUnsignedByte();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Truncated view model memento", e);
+            }
+        }
+    }
+
+}
@@ -19,12 +19,23 @@
 package org.estatio.dom;
 
 import java.util.List;
+import java.util.Map;
 
 import javax.jdo.Query;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 import org.apache.isis.applib.query.QueryDefault;
 import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
 
+import org.estatio.dom.lease.invoicing.InvoicingUnitOfWork;
+import org.estatio.dom.search.SearchIndexService;
+import org.estatio.dom.utils.ValueUtils;
+import org.estatio.services.metrics.EstatioMetrics;
+import org.estatio.services.metrics.Timer;
+import org.estatio.services.replica.ReplicaRoutingService;
+
 public abstract class EstatioDomainService<T> extends EstatioService<T> {
 
     private final Class<T> entityType;
@@ -59,19 +70,159 @@ public abstract class EstatioDomainService<T> extends EstatioService<T> {
     }
     
     protected T firstMatch(final String queryName, final Object... paramArgs) {
-        return firstMatch(newQueryDefault(queryName, paramArgs));
+        final Timer.Context timer = EstatioMetrics.time(queryMetricName(queryName));
+        try {
+            if (InvoicingUnitOfWork.current() != null) {
+                return ValueUtils.firstElseNull(allMatchesWithoutFlush(queryName, paramArgs));
+            }
+            return firstMatch(newQueryDefault(queryName, paramArgs));
+        } finally {
+            timer.stop();
+        }
     }
     
     protected T uniqueMatch(final String queryName, final Object... paramArgs) {
-        return uniqueMatch(newQueryDefault(queryName, paramArgs));
+        final Timer.Context timer = EstatioMetrics.time(queryMetricName(queryName));
+        try {
+            return uniqueMatch(newQueryDefault(queryName, paramArgs));
+        } finally {
+            timer.stop();
+        }
     }
     
+    /**
+     * The instance with the given reference (or title) from the
+     * {@link ReferenceDataRegistry}, falling back to the named query if it is
+     * not registered.
+     * 
+     * <p>
+     * Only to be used for reference data. Keys containing wildcards
+     * (<tt>*</tt> or <tt>?</tt>) always go to the query.
+     */
+    protected T firstMatchByKey(final String key, final String queryName, final Object... paramArgs) {
+        if (referenceDataRegistry == null || key == null || key.contains("*") || key.contains("?")) {
+            return firstMatch(queryName, paramArgs);
+        }
+        final T registered = referenceDataRegistry.find(getEntityType(), key);
+        if (registered != null) {
+            return registered;
+        }
+        final T match = firstMatch(queryName, paramArgs);
+        if (match != null && !referenceDataRegistry.isAmbiguous(getEntityType(), key)) {
+            // created (or renamed) since the registry was loaded
+            referenceDataRegistry.invalidate(getEntityType());
+        }
+        return match;
+    }
+
+    /**
+     * To be called when an instance of reference data has been created, so
+     * that the {@link ReferenceDataRegistry} is reloaded on its next lookup.
+     * The new instance is flushed first, as that reload does not flush.
+     */
+    protected void invalidateReferenceData() {
+        if (referenceDataRegistry != null) {
+            getContainer().flush();
+            referenceDataRegistry.invalidate(getEntityType());
+        }
+    }
+
+    /**
+     * The instances whose reference or name contains the phrase, from the
+     * {@link SearchIndexService}; <tt>null</tt> if it cannot answer (eg for a
+     * phrase shorter than three characters), for the caller to fall back to a
+     * query.
+     * 
+     * <p>
+     * The index is only updated as changes are flushed, so the pending ones
+     * are flushed first, as the container does before a query.
+     */
+    protected List<T> searchReferenceOrName(final String searchPhrase) {
+        if (searchIndexService == null) {
+            return null;
+        }
+        if (InvoicingUnitOfWork.current() == null) {
+            getContainer().flush();
+        }
+        return searchIndexService.search(getEntityType(), searchPhrase);
+    }
+
     protected List<T> allMatches(final String queryName, final Object... paramArgs) {
-        return allMatches(newQueryDefault(queryName, paramArgs));
+        final Timer.Context timer = EstatioMetrics.time(queryMetricName(queryName));
+        try {
+            if (InvoicingUnitOfWork.current() != null) {
+                return allMatchesWithoutFlush(queryName, paramArgs);
+            }
+            return allMatches(newQueryDefault(queryName, paramArgs));
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * The container flushes before every query, which would write the items
+     * of an {@link InvoicingUnitOfWork} one at a time; while one is active,
+     * the named query is run by the persistence manager instead, and so does
+     * not see the changes still pending.
+     */
+    @SuppressWarnings("unchecked")
+    private List<T> allMatchesWithoutFlush(final String queryName, final Object... paramArgs) {
+        final Map<String, Object> parameters = Maps.newHashMap();
+        for (int i = 0; i < paramArgs.length; i += 2) {
+            parameters.put((String) paramArgs[i], paramArgs[i + 1]);
+        }
+        final Query query = isisJdoSupport.getJdoPersistenceManager().newNamedQuery(getEntityType(), queryName);
+        try {
+            return Lists.newArrayList((List<T>) query.executeWithMap(parameters));
+        } finally {
+            query.closeAll();
+        }
     }
 
     protected List<T> allInstances() {
-        return allInstances(getEntityType());
+        final Timer.Context timer = EstatioMetrics.time(queryMetricName("allInstances"));
+        try {
+            return allInstances(getEntityType());
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * As {@link #allMatches(String, Object...)}, but run on the read-only
+     * replica if there is one that is not too far behind (see
+     * {@link ReplicaRoutingService}); only for safe actions, as the matches
+     * may be as stale as the replica.
+     */
+    protected List<T> allMatchesOnReplica(final String queryName, final Object... paramArgs) {
+        final List<T> matches = allMatchesOnReplicaElseNull(queryName, paramArgs);
+        return matches != null ? matches : allMatches(queryName, paramArgs);
+    }
+
+    /**
+     * As {@link #allInstances()}, but run on the read-only replica if there
+     * is one that is not too far behind.
+     */
+    protected List<T> allInstancesOnReplica() {
+        final List<T> matches = allMatchesOnReplicaElseNull(null);
+        return matches != null ? matches : allInstances();
+    }
+
+    private List<T> allMatchesOnReplicaElseNull(final String queryName, final Object... paramArgs) {
+        if (replicaRoutingService == null) {
+            return null;
+        }
+        final Timer.Context timer = EstatioMetrics.time(
+                queryMetricName(queryName != null ? queryName : "allInstances") + ".replica");
+        try {
+            return replicaRoutingService.allMatches(getEntityType(), queryName, paramArgs);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private String queryMetricName(final String queryName) {
+        return "query." + getEntityType().getSimpleName() + "." + queryName;
     }
 
     // //////////////////////////////////////
@@ -87,4 +238,19 @@ public abstract class EstatioDomainService<T> extends EstatioService<T> {
         this.isisJdoSupport = isisJdoSupport;
     }
 
+    private ReferenceDataRegistry referenceDataRegistry;
+    public final void injectReferenceDataRegistry(final ReferenceDataRegistry referenceDataRegistry) {
+        this.referenceDataRegistry = referenceDataRegistry;
+    }
+
+    private SearchIndexService searchIndexService;
+    public final void injectSearchIndexService(final SearchIndexService searchIndexService) {
+        this.searchIndexService = searchIndexService;
+    }
+
+    private ReplicaRoutingService replicaRoutingService;
+    public final void injectReplicaRoutingService(final ReplicaRoutingService replicaRoutingService) {
+        this.replicaRoutingService = replicaRoutingService;
+    }
+
 }
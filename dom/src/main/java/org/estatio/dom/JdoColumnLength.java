@@ -48,6 +48,8 @@ public final class JdoColumnLength {
 
     public static final int DURATION = 20;
 
+    public static final int RUN_ID = 50;
+
     public static final class Event {
         private Event() {
         }
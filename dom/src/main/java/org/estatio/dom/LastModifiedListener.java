@@ -0,0 +1,132 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.listener.DeleteLifecycleListener;
+import javax.jdo.listener.InstanceLifecycleEvent;
+import javax.jdo.listener.StoreLifecycleListener;
+
+import org.joda.time.DateTime;
+
+/**
+ * Sets the {@link WithLastModified#getLastModified() last modified} time of
+ * the entities stored, and of the wholes of the {@link WithLastModified.Part
+ * parts} stored or deleted.
+ * 
+ * <p>
+ * The wholes are not changed through the entity, as that would increment
+ * their version too, so that concurrent changes of different parts of the
+ * same whole (eg two terms of a lease) would conflict. Instead they are
+ * collected and updated with a single statement as the transaction commits;
+ * see {@link TouchedWholes}.
+ * 
+ * <p>
+ * Parts that are detached from their whole before being deleted (as
+ * {@link org.estatio.dom.invoice.InvoiceItem#remove()} does) must call
+ * {@link #touchWholesOf(Object)} themselves while still attached; by the time
+ * {@link #preDelete(InstanceLifecycleEvent)} fires there is no whole left to
+ * touch.
+ * 
+ * <p>
+ * Registered through the
+ * <tt>javax.jdo.listener.InstanceLifecycleListener.org.estatio.dom.LastModifiedListener</tt>
+ * property of the persistence manager factory.
+ */
+public class LastModifiedListener implements StoreLifecycleListener, DeleteLifecycleListener {
+
+    private static final LastModifiedListener INSTANCE = new LastModifiedListener();
+
+    /**
+     * As required by JDO to instantiate listeners that are registered by
+     * property.
+     */
+    public static LastModifiedListener getInstance() {
+        return INSTANCE;
+    }
+
+    private LastModifiedListener() {
+    }
+
+    // //////////////////////////////////////
+
+    @Override
+    public void preStore(final InstanceLifecycleEvent event) {
+        final Object pojo = event.getPersistentInstance();
+        if (pojo instanceof WithLastModified) {
+            // being stored anyway
+            touch((WithLastModified) pojo, DateTime.now());
+        }
+        touchWholesOf(pojo);
+    }
+
+    @Override
+    public void postStore(final InstanceLifecycleEvent event) {
+    }
+
+    // //////////////////////////////////////
+
+    @Override
+    public void preDelete(final InstanceLifecycleEvent event) {
+        touchWholesOf(event.getPersistentInstance());
+    }
+
+    @Override
+    public void postDelete(final InstanceLifecycleEvent event) {
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Touches the wholes (but not the part itself) of the supplied
+     * {@link WithLastModified.Part part}, as the current transaction commits;
+     * for use by code that detaches parts before removing them.
+     */
+    public static void touchWholesOf(final Object part) {
+        Object pojo = part;
+        while (pojo instanceof WithLastModified.Part) {
+            pojo = ((WithLastModified.Part) pojo).getWhole();
+            if (pojo instanceof WithLastModified) {
+                touchOnCommit((WithLastModified) pojo);
+            }
+        }
+    }
+
+    private static void touch(final WithLastModified entity, final DateTime now) {
+        final DateTime lastModified = entity.getLastModified();
+        if (lastModified == null || lastModified.isBefore(now)) {
+            entity.setLastModified(now);
+        }
+    }
+
+    private static void touchOnCommit(final WithLastModified whole) {
+        if (JDOHelper.isDeleted(whole) || JDOHelper.isNew(whole)) {
+            // new ones are touched when stored themselves
+            return;
+        }
+        final PersistenceManager persistenceManager = JDOHelper.getPersistenceManager(whole);
+        final Object objectId = JDOHelper.getObjectId(whole);
+        if (persistenceManager == null || objectId == null || !persistenceManager.currentTransaction().isActive()) {
+            return;
+        }
+        TouchedWholes.enlist(persistenceManager).add(objectId, whole.getClass());
+    }
+
+}
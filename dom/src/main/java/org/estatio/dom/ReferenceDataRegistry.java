@@ -0,0 +1,186 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.jdo.JDOObjectNotFoundException;
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+import org.estatio.services.metrics.EstatioMetrics;
+
+/**
+ * Process-wide registry of rarely changing reference data (agreement types,
+ * charges, countries and the like), so that looking these up by
+ * {@link WithReferenceGetter#getReference() reference} (or, lacking one, by
+ * {@link WithTitleGetter#getTitle() title}) does not need a query.
+ * 
+ * <p>
+ * All instances of a type are loaded once, the first time that type is
+ * looked up, into an immutable map holding the JDO object id for every key.
+ * Lookups resolve the object id against the persistence manager of the
+ * current session, so the objects returned are always attached to it, and
+ * are served from the L1 or L2 cache where possible.
+ * 
+ * <p>
+ * Keys shared by more than one instance are left out; lookups for them (and
+ * for any other key that is not registered) return <tt>null</tt>, and the
+ * caller falls back to a query (see
+ * {@link EstatioDomainService#firstMatchByKey(String, String, Object...)}).
+ * A type is reloaded once it is {@link #invalidate(Class) invalidated}, which
+ * happens when such a query finds an instance that is not registered, or
+ * when a registered instance no longer has the key it was registered under.
+ */
+@Hidden
+public class ReferenceDataRegistry {
+
+    private static class Snapshot {
+        private final Map<String, Object> objectIds;
+        private final Set<String> ambiguousKeys;
+
+        private Snapshot(final Map<String, Object> objectIds, final Set<String> ambiguousKeys) {
+            this.objectIds = ImmutableMap.copyOf(objectIds);
+            this.ambiguousKeys = ImmutableSet.copyOf(ambiguousKeys);
+        }
+    }
+
+    private final ConcurrentMap<Class<?>, Snapshot> snapshotsByType =
+            new ConcurrentHashMap<Class<?>, Snapshot>();
+
+    /**
+     * The instance of the type with the given key, <tt>null</tt> if not
+     * registered.
+     */
+    @Programmatic
+    public <T> T find(final Class<T> type, final String key) {
+        if (key == null) {
+            return null;
+        }
+        final Object objectId = snapshotFor(type).objectIds.get(key);
+        if (objectId == null) {
+            EstatioMetrics.count("referenceData." + type.getSimpleName() + ".misses");
+            return null;
+        }
+        final T object;
+        try {
+            object = type.cast(getPersistenceManager().getObjectById(objectId, false));
+            if (!key.equals(keyOf(object))) {
+                invalidate(type);
+                return null;
+            }
+        } catch (JDOObjectNotFoundException ex) {
+            invalidate(type);
+            return null;
+        }
+        EstatioMetrics.count("referenceData." + type.getSimpleName() + ".hits");
+        return object;
+    }
+
+    /**
+     * Whether more than one instance of the type has the given key, so that
+     * it cannot be {@link #find(Class, String) found} in the registry.
+     */
+    @Programmatic
+    public boolean isAmbiguous(final Class<?> type, final String key) {
+        return snapshotFor(type).ambiguousKeys.contains(key);
+    }
+
+    @Programmatic
+    public void invalidate(final Class<?> type) {
+        snapshotsByType.remove(type);
+    }
+
+    @Programmatic
+    public void invalidateAll() {
+        snapshotsByType.clear();
+    }
+
+    // //////////////////////////////////////
+
+    private Snapshot snapshotFor(final Class<?> type) {
+        final Snapshot snapshot = snapshotsByType.get(type);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        final Snapshot loaded = load(type);
+        final Snapshot previous = snapshotsByType.putIfAbsent(type, loaded);
+        return previous != null ? previous : loaded;
+    }
+
+    private Snapshot load(final Class<?> type) {
+        final PersistenceManager persistenceManager = getPersistenceManager();
+        final Query query = persistenceManager.newQuery(type);
+        try {
+            final Map<String, Object> objectIds = Maps.newHashMap();
+            final Set<String> ambiguousKeys = Sets.newHashSet();
+            for (Object object : (Collection<?>) query.execute()) {
+                final String key = keyOf(object);
+                if (key == null || ambiguousKeys.contains(key)) {
+                    continue;
+                }
+                if (objectIds.containsKey(key)) {
+                    objectIds.remove(key);
+                    ambiguousKeys.add(key);
+                    continue;
+                }
+                objectIds.put(key, persistenceManager.getObjectId(object));
+            }
+            return new Snapshot(objectIds, ambiguousKeys);
+        } finally {
+            query.closeAll();
+        }
+    }
+
+    static String keyOf(final Object object) {
+        if (object instanceof WithReferenceGetter) {
+            return ((WithReferenceGetter) object).getReference();
+        }
+        if (object instanceof WithTitleGetter) {
+            return ((WithTitleGetter) object).getTitle();
+        }
+        throw new IllegalArgumentException(object.getClass().getName() + " has neither a reference nor a title");
+    }
+
+    private PersistenceManager getPersistenceManager() {
+        return isisJdoSupport.getJdoPersistenceManager();
+    }
+
+    // //////////////////////////////////////
+
+    private IsisJdoSupport isisJdoSupport;
+
+    public final void injectIsisJdoSupport(final IsisJdoSupport isisJdoSupport) {
+        this.isisJdoSupport = isisJdoSupport;
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Transaction;
+import javax.jdo.datastore.JDOConnection;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+
+import org.joda.time.DateTime;
+
+import org.estatio.services.cache.ClusterCacheNode;
+
+/**
+ * The {@link WithLastModified wholes} of the parts changed in a single
+ * transaction, whose last modified time is updated as it commits: with one
+ * statement per type, directly in the database, so that their version is
+ * not incremented.
+ * 
+ * <p>
+ * The transaction is flushed first, so that the parts still pending are
+ * collected too. The wholes are then recorded as changed for the other
+ * nodes of the cluster (see {@link ClusterCacheNode}), and evicted from the
+ * L2 cache of this node once committed.
+ * 
+ * <p>
+ * Registered as the transaction's {@link Synchronization} for the duration
+ * of that transaction, delegating to the one that was registered before (if
+ * any) and restoring it afterwards.
+ */
+class TouchedWholes implements Synchronization {
+
+    /**
+     * Statements are limited to this many ids, as some databases limit the
+     * size of an <tt>IN</tt> list.
+     */
+    private static final int MAX_IDS = 500;
+
+    static TouchedWholes enlist(final PersistenceManager persistenceManager) {
+        final TouchedWholes current = (TouchedWholes) persistenceManager.getUserObject(TouchedWholes.class);
+        if (current != null) {
+            return current;
+        }
+        final Transaction transaction = persistenceManager.currentTransaction();
+        final TouchedWholes touched = new TouchedWholes(transaction, transaction.getSynchronization());
+        transaction.setSynchronization(touched);
+        persistenceManager.putUserObject(TouchedWholes.class, touched);
+        return touched;
+    }
+
+    private final Transaction transaction;
+    private final Synchronization previous;
+
+    private final Map<Object, Class<?>> objectIds = Maps.newLinkedHashMap();
+
+    private TouchedWholes(final Transaction transaction, final Synchronization previous) {
+        this.transaction = transaction;
+        this.previous = previous;
+    }
+
+    void add(final Object objectId, final Class<?> type) {
+        objectIds.put(objectId, type);
+    }
+
+    @Override
+    public void beforeCompletion() {
+        if (previous != null) {
+            previous.beforeCompletion();
+        }
+        final PersistenceManager persistenceManager = transaction.getPersistenceManager();
+        persistenceManager.flush();
+        if (objectIds.isEmpty()) {
+            return;
+        }
+        update(persistenceManager, new Timestamp(DateTime.now().getMillis()));
+        ClusterCacheNode.of(persistenceManager.getPersistenceManagerFactory()).recordChanged(persistenceManager, objectIds);
+    }
+
+    private void update(final PersistenceManager persistenceManager, final Timestamp now) {
+        final ListMultimap<String, Long> idsByTable = ArrayListMultimap.create();
+        for (Map.Entry<Object, Class<?>> entry : objectIds.entrySet()) {
+            idsByTable.put(tableOf(entry.getValue()), idOf(entry.getKey()));
+        }
+        final JDOConnection jdoConnection = persistenceManager.getDataStoreConnection();
+        try {
+            final Connection connection = (Connection) jdoConnection.getNativeConnection();
+            for (String table : idsByTable.keySet()) {
+                for (List<Long> ids : Iterables.partition(idsByTable.get(table), MAX_IDS)) {
+                    update(connection, table, ids, now);
+                }
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Could not update the last modified time of " + idsByTable, ex);
+        } finally {
+            jdoConnection.close();
+        }
+    }
+
+    private static void update(
+            final Connection connection,
+            final String table,
+            final List<Long> ids,
+            final Timestamp now) throws SQLException {
+        final StringBuilder sql = new StringBuilder()
+                .append("UPDATE \"").append(table).append("\" SET \"lastModified\" = ? ")
+                .append("WHERE (\"lastModified\" IS NULL OR \"lastModified\" < ?) ")
+                .append("AND \"id\" IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
+        final PreparedStatement statement = connection.prepareStatement(sql.toString());
+        try {
+            statement.setTimestamp(1, now);
+            statement.setTimestamp(2, now);
+            for (int i = 0; i < ids.size(); i++) {
+                statement.setLong(i + 3, ids.get(i));
+            }
+            statement.executeUpdate();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * The table of the class that introduces the last modified time; as all
+     * tables, named after their class.
+     */
+    static String tableOf(final Class<?> type) {
+        Class<?> cls = type;
+        while (WithLastModified.class.isAssignableFrom(cls.getSuperclass())) {
+            cls = cls.getSuperclass();
+        }
+        return cls.getSimpleName();
+    }
+
+    /**
+     * The (datastore) id of the object, from the JDO object id, which is of
+     * the form <tt>123[OID]org.estatio.dom.lease.Lease</tt>.
+     */
+    private static Long idOf(final Object objectId) {
+        return Long.valueOf(objectId.toString().split("\\[OID\\]")[0]);
+    }
+
+    @Override
+    public void afterCompletion(final int status) {
+        final PersistenceManager persistenceManager = transaction.getPersistenceManager();
+        persistenceManager.removeUserObject(TouchedWholes.class);
+        if (transaction.getSynchronization() == this) {
+            transaction.setSynchronization(previous);
+        }
+        if (previous != null) {
+            previous.afterCompletion(status);
+        }
+        if (status == Status.STATUS_COMMITTED && !objectIds.isEmpty()) {
+            // the cached wholes still have their last modified time from
+            // before the update
+            persistenceManager.getPersistenceManagerFactory().getDataStoreCache().evictAll(objectIds.keySet());
+        }
+    }
+
+}
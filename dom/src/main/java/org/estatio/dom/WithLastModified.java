@@ -0,0 +1,49 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom;
+
+import org.joda.time.DateTime;
+
+/**
+ * Entities that record when they (or any of their {@link Part parts}) were
+ * last changed, so that clients can ask for what changed since they last
+ * looked; maintained by the {@link LastModifiedListener}.
+ */
+public interface WithLastModified {
+
+    DateTime getLastModified();
+
+    void setLastModified(DateTime lastModified);
+
+    /**
+     * Entities that are shown as part of another, eg the items, terms and
+     * break options of a lease, so that changing them counts as a change of
+     * the whole (without incrementing its version, so that changes of
+     * different parts do not conflict).
+     */
+    public interface Part {
+
+        /**
+         * Either a {@link WithLastModified} or another {@link Part};
+         * <tt>null</tt> if not (yet) part of any.
+         */
+        Object getWhole();
+    }
+
+}
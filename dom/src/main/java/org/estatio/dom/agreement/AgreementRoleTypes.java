@@ -37,7 +37,7 @@ public class AgreementRoleTypes extends EstatioDomainService<AgreementRoleType>
 
     @NotContributed
     public AgreementRoleType findByTitle(final String title) {
-        return firstMatch("findByTitle", "title", title);
+        return firstMatchByKey(title, "findByTitle", "title", title);
     }
 
     @NotContributed
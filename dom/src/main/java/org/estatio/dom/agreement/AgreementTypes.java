@@ -35,7 +35,7 @@ public class AgreementTypes extends EstatioDomainService<AgreementType> {
 
     @ActionSemantics(Of.SAFE)
     public AgreementType find(final String title) {
-        return firstMatch("findByTitle", "title", title);
+        return firstMatchByKey(title, "findByTitle", "title", title);
     }
 
 }
@@ -47,6 +47,10 @@ public class FixedAssets extends EstatioDomainService<FixedAsset> {
 
     @Hidden
     public List<FixedAsset> autoComplete(final String searchPhrase) {
+        final List<FixedAsset> fixedAssets = searchReferenceOrName(searchPhrase);
+        if (fixedAssets != null) {
+            return fixedAssets;
+        }
         return findAssetsByReferenceOrName("*".concat(searchPhrase).concat("*"));
     }
 
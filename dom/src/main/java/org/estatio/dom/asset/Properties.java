@@ -102,6 +102,10 @@ public class Properties extends EstatioDomainService<Property> {
 
     @Hidden
     public List<Property> autoComplete(final String searchPhrase) {
+        final List<Property> properties = searchReferenceOrName(searchPhrase);
+        if (properties != null) {
+            return properties;
+        }
         return findProperties("*".concat(searchPhrase).concat("*"));
     }
 }
@@ -76,6 +76,10 @@ public abstract class Units<T extends Unit> extends EstatioDomainService<T> {
 
     @Hidden
     public List<T> autoComplete(final String searchPhrase) {
+        final List<T> units = searchReferenceOrName(searchPhrase);
+        if (units != null) {
+            return units;
+        }
         return findUnits("*".concat(searchPhrase).concat("*"));
     }
     
@@ -68,7 +68,8 @@ public class Charges extends EstatioDomainService<Charge> {
             final Tax tax, 
             final ChargeGroup chargeGroup) {
         Charge charge = findCharge(reference);
-        if (charge == null) {
+        final boolean created = charge == null;
+        if (created) {
             charge = newTransientInstance();
             charge.setReference(reference);
             persist(charge);
@@ -77,6 +78,9 @@ public class Charges extends EstatioDomainService<Charge> {
         charge.setDescription(description);
         charge.setTax(tax);
         charge.setGroup(chargeGroup);
+        if (created) {
+            invalidateReferenceData();
+        }
         return charge;
     }
 
@@ -85,7 +89,7 @@ public class Charges extends EstatioDomainService<Charge> {
     @Programmatic
     public Charge findCharge(final String reference) {
         String regex = StringUtils.wildcardToRegex(reference);
-        return firstMatch("findByReference", "reference", regex);
+        return firstMatchByKey(reference, "findByReference", "reference", regex);
     }
 
 }
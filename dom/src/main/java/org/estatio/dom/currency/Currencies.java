@@ -60,6 +60,7 @@ public class Currencies extends EstatioDomainService<Currency> {
         currency.setReference(reference);
         currency.setName(name);
         persist(currency);
+        invalidateReferenceData();
         return currency;
     }
 
@@ -67,7 +68,7 @@ public class Currencies extends EstatioDomainService<Currency> {
     public Currency findCurrency(
             final String reference) {
         String rexeg = StringUtils.wildcardToRegex(reference);
-        return firstMatch("findByReference", "reference", rexeg);
+        return firstMatchByKey(reference, "findByReference", "reference", rexeg);
     }
 
 
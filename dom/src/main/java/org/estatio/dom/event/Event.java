@@ -61,7 +61,7 @@ import org.estatio.dom.JdoColumnLength;
             value = "SELECT " +
                     "FROM org.estatio.dom.event.Event " +
                     "WHERE subject == :subject " +
-                    "   && subjectEventType == :subjectEventType"),
+                    "   && calendarName == :calendarName"),
     @javax.jdo.annotations.Query(
             name = "findOnOrAfter", language = "JDOQL",
             value = "SELECT " +
@@ -52,7 +52,7 @@ public class Events extends EstatioDomainService<Event> {
         return firstMatch(
                 "findBySubjectAndSubjectEventType", 
                 "subject", eventSubject,
-                "subjectEventType", subjectEventType);
+                "calendarName", subjectEventType);
     }
 
     @ActionSemantics(Of.NON_IDEMPOTENT)
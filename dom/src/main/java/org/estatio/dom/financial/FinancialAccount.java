@@ -24,6 +24,7 @@ import javax.jdo.annotations.IdentityType;
 import javax.jdo.annotations.InheritanceStrategy;
 import javax.jdo.annotations.VersionStrategy;
 
+import org.apache.isis.applib.annotation.AutoComplete;
 import org.apache.isis.applib.annotation.Hidden;
 import org.apache.isis.applib.annotation.RegEx;
 import org.apache.isis.applib.annotation.Title;
@@ -67,6 +68,7 @@ import org.estatio.dom.party.Party;
                         + "FROM org.estatio.dom.financial.FinancialAccount "
                         + "WHERE owner == :owner")
 })
+@AutoComplete(repository = FinancialAccounts.class, action = "autoComplete")
 public abstract class FinancialAccount 
         extends EstatioMutableObject<FinancialAccount> 
         implements WithNameGetter, WithReferenceUnique  {
@@ -60,6 +60,18 @@ public class FinancialAccounts extends EstatioDomainService<FinancialAccount> {
         String regex = StringUtils.wildcardToRegex(reference);
         return firstMatch("findByReference", "reference", regex);
     }
+
+    // //////////////////////////////////////
+
+    @Hidden
+    public List<FinancialAccount> autoComplete(final String searchPhrase) {
+        final List<FinancialAccount> financialAccounts = searchReferenceOrName(searchPhrase);
+        if (financialAccounts != null) {
+            return financialAccounts;
+        }
+        return allMatches("findByReference",
+                "reference", StringUtils.wildcardToCaseInsensitiveRegex("*".concat(searchPhrase).concat("*")));
+    }
     
     // //////////////////////////////////////
     
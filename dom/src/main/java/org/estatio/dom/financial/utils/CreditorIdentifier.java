@@ -0,0 +1,67 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.financial.utils;
+
+/**
+ * SEPA creditor identifiers (as issued to the creditors of direct debits),
+ * eg <tt>IT66ZZZA1B2C3D4E5F6G7H8</tt>: the country code, two check digits, a
+ * three character business code and the national identifier of the
+ * creditor. The check digits are calculated as those of an IBAN (see
+ * {@link IBANValidator}), but over the country code and national identifier
+ * only, the business code not being part of it.
+ */
+public final class CreditorIdentifier {
+
+    private CreditorIdentifier() {
+    }
+
+    private static final String DEFAULT_BUSINESS_CODE = "ZZZ";
+
+    private static final int LENGTH_MAX = 35;
+
+    /**
+     * The identifier of the creditor with the given national identifier (eg
+     * its fiscal code) in the given country, with the default business code.
+     */
+    public static String of(final String countryCode, final String nationalId) {
+        final String template = countryCode.toUpperCase() + "00" + alphanumeric(nationalId);
+        final String fixed = IBANValidator.fixChecksum(template);
+        return fixed.substring(0, 4) + DEFAULT_BUSINESS_CODE + fixed.substring(4);
+    }
+
+    public static boolean valid(final String creditorIdentifier) {
+        if (creditorIdentifier == null ||
+            creditorIdentifier.length() < 8 ||
+            creditorIdentifier.length() > LENGTH_MAX) {
+            return false;
+        }
+        return IBANValidator.checksum(creditorIdentifier.substring(0, 4) + creditorIdentifier.substring(7)) == 1;
+    }
+
+    private static String alphanumeric(final String str) {
+        final StringBuilder buf = new StringBuilder();
+        for (char c : str.toUpperCase().toCharArray()) {
+            if (c >= '0' && c <= '9' || c >= 'A' && c <= 'Z') {
+                buf.append(c);
+            }
+        }
+        return buf.toString();
+    }
+
+}
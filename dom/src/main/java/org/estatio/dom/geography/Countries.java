@@ -65,6 +65,7 @@ public class Countries extends EstatioDomainService<Country> {
         country.setAlpha2Code(alpha2Code);
         country.setName(name);
         persist(country);
+        invalidateReferenceData();
         return country;
     }
 
@@ -75,7 +76,7 @@ public class Countries extends EstatioDomainService<Country> {
         if (reference == null) {
             return null;
         }
-        return firstMatch("findByReference", "reference", StringUtils.wildcardToRegex(reference));
+        return firstMatchByKey(reference, "findByReference", "reference", StringUtils.wildcardToRegex(reference));
     }
 
 
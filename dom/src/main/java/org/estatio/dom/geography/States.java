@@ -68,12 +68,13 @@ public class States
         state.setName(name);
         state.setCountry(country);
         persist(state);
+        invalidateReferenceData();
         return state;
     }
 
     @Programmatic
     public State findState(final @Named("Reference") String reference) {
-        return firstMatch("findByReference", "reference", StringUtils.wildcardToRegex(reference));
+        return firstMatchByKey(reference, "findByReference", "reference", StringUtils.wildcardToRegex(reference));
     }
 
     @Programmatic
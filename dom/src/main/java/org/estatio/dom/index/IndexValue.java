@@ -53,7 +53,12 @@ import org.estatio.dom.WithStartDate;
                 value = "SELECT "
                         + "FROM org.estatio.dom.index.IndexValue "
                         + "WHERE indexBase.index == :index "
-                        + "   && startDate >= :startDate")
+                        + "   && startDate >= :startDate"),
+        @javax.jdo.annotations.Query(
+                name = "findByIndex", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.index.IndexValue "
+                        + "WHERE indexBase.index == :index")
 })
 @Immutable
 public class IndexValue 
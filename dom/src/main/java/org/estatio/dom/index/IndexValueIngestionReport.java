@@ -0,0 +1,130 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.index;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.joda.time.LocalDate;
+
+/**
+ * The outcome of {@link IndexValueIngestionService ingesting} index values:
+ * what was created or changed, the dates affected per index (for which
+ * indexed rents may have to be recalculated), and the rows rejected.
+ */
+public class IndexValueIngestionReport {
+
+    private int created;
+    private int updated;
+    private int unchanged;
+    private final List<IndexBase> createdBases = Lists.newArrayList();
+    private final SortedMap<String, SortedSet<LocalDate>> affectedDates = Maps.newTreeMap();
+    private final List<String> errors = Lists.newArrayList();
+
+    IndexValueIngestionReport() {
+    }
+
+    void created(final String indexReference, final LocalDate startDate) {
+        created++;
+        affected(indexReference, startDate);
+    }
+
+    void updated(final String indexReference, final LocalDate startDate) {
+        updated++;
+        affected(indexReference, startDate);
+    }
+
+    void unchanged() {
+        unchanged++;
+    }
+
+    void createdBase(final IndexBase indexBase) {
+        createdBases.add(indexBase);
+    }
+
+    void failed(final String row, final String reason) {
+        errors.add(row + ": " + reason);
+    }
+
+    private void affected(final String indexReference, final LocalDate startDate) {
+        SortedSet<LocalDate> dates = affectedDates.get(indexReference);
+        if (dates == null) {
+            dates = Sets.newTreeSet();
+            affectedDates.put(indexReference, dates);
+        }
+        dates.add(startDate);
+    }
+
+    // //////////////////////////////////////
+
+    public int getCreated() {
+        return created;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    int getChanged() {
+        return created + updated;
+    }
+
+    public List<IndexBase> getCreatedBases() {
+        return Collections.unmodifiableList(createdBases);
+    }
+
+    /**
+     * The start dates of the values created or changed, by index reference.
+     */
+    public Map<String, SortedSet<LocalDate>> getAffectedDates() {
+        return Collections.unmodifiableMap(affectedDates);
+    }
+
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append(String.format("%d index values created, %d updated, %d unchanged; %d index bases created",
+                created, updated, unchanged, createdBases.size()));
+        for (Map.Entry<String, SortedSet<LocalDate>> entry : affectedDates.entrySet()) {
+            final SortedSet<LocalDate> dates = entry.getValue();
+            buf.append(String.format("\n%s: %d dates from %s to %s",
+                    entry.getKey(), dates.size(), dates.first(), dates.last()));
+        }
+        for (String error : errors) {
+            buf.append("\n").append(error);
+        }
+        return buf.toString();
+    }
+
+}
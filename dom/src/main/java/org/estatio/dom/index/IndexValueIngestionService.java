@@ -0,0 +1,277 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.annotation.ActionSemantics;
+import org.apache.isis.applib.annotation.ActionSemantics.Of;
+import org.apache.isis.applib.annotation.MemberOrder;
+import org.apache.isis.applib.annotation.Named;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.value.Clob;
+
+import org.estatio.dom.EstatioDomainService;
+import org.estatio.services.metrics.EstatioMetrics;
+import org.estatio.services.metrics.Timer;
+
+/**
+ * Loads {@link IndexValue}s in bulk, eg the history of the indices of a new
+ * country, from {@link IndexValueRow rows} as published.
+ * 
+ * <p>
+ * Per index, the existing {@link IndexBase}s and values are read once, into
+ * maps by start date; the rows are then applied in date order, creating the
+ * values that do not exist yet and updating those that changed. When a row
+ * is of a base year that has no {@link IndexBase} yet (the publisher
+ * rebased), the base is created, with the factor of the row or else the one
+ * derived from the values of the base year. The changes are flushed every
+ * {@link #BATCH_SIZE} values, so that they are written in JDBC batches.
+ */
+public class IndexValueIngestionService extends EstatioDomainService<IndexValue> {
+
+    static final int BATCH_SIZE = 500;
+
+    private static final BigDecimal MONTHS = BigDecimal.valueOf(12);
+
+    public IndexValueIngestionService() {
+        super(IndexValueIngestionService.class, IndexValue.class);
+    }
+
+    // //////////////////////////////////////
+
+    @ActionSemantics(Of.IDEMPOTENT)
+    @MemberOrder(name = "Indices", sequence = "9")
+    public String importIndexValues(
+            final @Named("File (index, base year, month, value[, factor])") Clob file) {
+        try {
+            return ingest(new StringReader(file.getChars().toString())).toString();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Ingests the rows read from the reader, one per line; lines that cannot
+     * be parsed are reported as errors.
+     */
+    @Programmatic
+    public IndexValueIngestionReport ingest(final Reader reader) throws IOException {
+        final IndexValueIngestionReport report = new IndexValueIngestionReport();
+        final List<IndexValueRow> rows = Lists.newArrayList();
+        final BufferedReader lines = new BufferedReader(reader);
+        int lineNumber = 0;
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            lineNumber++;
+            try {
+                final IndexValueRow row = IndexValueRow.parse(line, lineNumber);
+                if (row != null) {
+                    rows.add(row);
+                }
+            } catch (IllegalArgumentException ex) {
+                report.failed("line " + lineNumber, ex.getMessage());
+            }
+        }
+        ingest(rows, report);
+        return report;
+    }
+
+    @Programmatic
+    public IndexValueIngestionReport ingest(final List<IndexValueRow> rows) {
+        final IndexValueIngestionReport report = new IndexValueIngestionReport();
+        ingest(rows, report);
+        return report;
+    }
+
+    private void ingest(final List<IndexValueRow> rows, final IndexValueIngestionReport report) {
+        final Timer.Context timer = EstatioMetrics.time("indexValues.ingest");
+        try {
+            final Map<String, List<IndexValueRow>> rowsByIndex = Maps.newLinkedHashMap();
+            for (IndexValueRow row : rows) {
+                List<IndexValueRow> indexRows = rowsByIndex.get(row.getIndexReference());
+                if (indexRows == null) {
+                    indexRows = Lists.newArrayList();
+                    rowsByIndex.put(row.getIndexReference(), indexRows);
+                }
+                indexRows.add(row);
+            }
+            for (Map.Entry<String, List<IndexValueRow>> entry : rowsByIndex.entrySet()) {
+                ingest(entry.getKey(), entry.getValue(), report);
+            }
+            getContainer().flush();
+            EstatioMetrics.count("indexValues.ingested", report.getChanged());
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private void ingest(
+            final String indexReference,
+            final List<IndexValueRow> rows,
+            final IndexValueIngestionReport report) {
+        final Index index = indices.findIndex(indexReference);
+        if (index == null) {
+            for (IndexValueRow row : rows) {
+                report.failed(row.toString(), "No index '" + indexReference + "'");
+            }
+            return;
+        }
+        final TreeMap<LocalDate, IndexBase> bases = Maps.newTreeMap();
+        for (IndexBase indexBase : index.getIndexBases()) {
+            bases.put(indexBase.getStartDate(), indexBase);
+        }
+        final Map<LocalDate, IndexValue> values = Maps.newHashMap();
+        for (IndexValue indexValue : indexValues.findIndexValuesByIndex(index)) {
+            values.put(indexValue.getStartDate(), indexValue);
+        }
+
+        final List<IndexValueRow> sortedRows = Lists.newArrayList(rows);
+        Collections.sort(sortedRows, IndexValueRow.BY_START_DATE);
+        for (IndexValueRow row : sortedRows) {
+            IndexBase indexBase = bases.get(row.getBaseStartDate());
+            if (indexBase == null) {
+                indexBase = newIndexBase(index, bases, values, row, report);
+                if (indexBase == null) {
+                    continue;
+                }
+            }
+            final LocalDate nextBaseStartDate = bases.higherKey(row.getBaseStartDate());
+            if (row.getStartDate().isBefore(row.getBaseStartDate())
+                    || nextBaseStartDate != null && !row.getStartDate().isBefore(nextBaseStartDate)) {
+                report.failed(row.toString(), "Not within the period of base " + row.getBaseYear());
+                continue;
+            }
+            upsert(indexBase, values, row, report);
+            if (report.getChanged() > 0 && report.getChanged() % BATCH_SIZE == 0) {
+                getContainer().flush();
+            }
+        }
+    }
+
+    private IndexBase newIndexBase(
+            final Index index,
+            final TreeMap<LocalDate, IndexBase> bases,
+            final Map<LocalDate, IndexValue> values,
+            final IndexValueRow row,
+            final IndexValueIngestionReport report) {
+        final LocalDate startDate = row.getBaseStartDate();
+        if (!bases.isEmpty() && bases.lastKey().isAfter(startDate)) {
+            report.failed(row.toString(), "Base " + row.getBaseYear() + " precedes the latest base of the index");
+            return null;
+        }
+        final IndexBase previous = bases.isEmpty() ? null : bases.lastEntry().getValue();
+        BigDecimal factor = row.getFactor();
+        if (factor == null && previous != null) {
+            final List<BigDecimal> baseYearValues = Lists.newArrayList();
+            for (int month = 1; month <= 12; month++) {
+                final IndexValue indexValue = values.get(new LocalDate(row.getBaseYear(), month, 1));
+                if (indexValue != null && indexValue.getIndexBase() == previous) {
+                    baseYearValues.add(indexValue.getValue());
+                }
+            }
+            factor = rebaseFactorOf(baseYearValues);
+            if (factor == null) {
+                report.failed(row.toString(),
+                        "No factor given for base " + row.getBaseYear() + ", nor all values of " + row.getBaseYear() + " known");
+                return null;
+            }
+        }
+        final IndexBase indexBase = indexBases.newIndexBase(index, previous, startDate, factor);
+        bases.put(startDate, indexBase);
+        report.createdBase(indexBase);
+        return indexBase;
+    }
+
+    private void upsert(
+            final IndexBase indexBase,
+            final Map<LocalDate, IndexValue> values,
+            final IndexValueRow row,
+            final IndexValueIngestionReport report) {
+        final IndexValue existing = values.get(row.getStartDate());
+        if (existing == null) {
+            final IndexValue indexValue = newTransientInstance();
+            indexValue.setIndexBase(indexBase);
+            indexValue.setStartDate(row.getStartDate());
+            indexValue.setValue(row.getValue());
+            persist(indexValue);
+            values.put(row.getStartDate(), indexValue);
+            report.created(row.getIndexReference(), row.getStartDate());
+        } else if (existing.getValue().compareTo(row.getValue()) != 0 || existing.getIndexBase() != indexBase) {
+            existing.setValue(row.getValue());
+            existing.modifyIndexBase(indexBase);
+            report.updated(row.getIndexReference(), row.getStartDate());
+        } else {
+            report.unchanged();
+        }
+    }
+
+    /**
+     * The rebase factor of a new base: the average of the twelve monthly
+     * values of its base year in the previous base (rounded to one decimal,
+     * as published), divided by 100; <tt>null</tt> if not all values are
+     * given.
+     */
+    static BigDecimal rebaseFactorOf(final List<BigDecimal> monthlyValues) {
+        if (monthlyValues.size() != 12) {
+            return null;
+        }
+        BigDecimal sum = BigDecimal.ZERO;
+        for (BigDecimal value : monthlyValues) {
+            sum = sum.add(value);
+        }
+        return sum.divide(MONTHS, 1, RoundingMode.HALF_UP).movePointLeft(2);
+    }
+
+    // //////////////////////////////////////
+
+    private Indices indices;
+
+    public final void injectIndices(final Indices indices) {
+        this.indices = indices;
+    }
+
+    private IndexBases indexBases;
+
+    public final void injectIndexBases(final IndexBases indexBases) {
+        this.indexBases = indexBases;
+    }
+
+    private IndexValues indexValues;
+
+    public final void injectIndexValues(final IndexValues indexValues) {
+        this.indexValues = indexValues;
+    }
+
+}
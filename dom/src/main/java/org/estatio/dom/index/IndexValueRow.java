@@ -0,0 +1,161 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.index;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.joda.time.IllegalFieldValueException;
+import org.joda.time.LocalDate;
+
+/**
+ * A value of an {@link Index} as published, to be
+ * {@link IndexValueIngestionService ingested}: the reference of the index,
+ * the base year the value is expressed in, the month and the value, and
+ * optionally the rebase factor of the base (if the publisher provides it).
+ * 
+ * <p>
+ * As a line, the fields are separated by commas or semicolons, eg
+ * <tt>ISTAT-FOI,2010,2013-08,107.3</tt>; the month may also be written as in
+ * SDMX (<tt>2013-M08</tt>) or as its first day (<tt>2013-08-01</tt>).
+ * 
+ * <p>
+ * A value of base year <tt>2010</tt> belongs to the {@link IndexBase} that
+ * starts on <tt>2011-01-01</tt>, whose rebase factor is the average of the
+ * values of 2010 in the previous base, divided by 100.
+ */
+public final class IndexValueRow {
+
+    private static final Pattern SEPARATOR = Pattern.compile("\\s*[,;]\\s*");
+    private static final Pattern MONTH = Pattern.compile("(\\d{4})-M?(\\d{1,2})(-01)?");
+
+    public static final Comparator<IndexValueRow> BY_START_DATE = new Comparator<IndexValueRow>() {
+        @Override
+        public int compare(final IndexValueRow row, final IndexValueRow other) {
+            return row.getStartDate().compareTo(other.getStartDate());
+        }
+    };
+
+    private final int lineNumber;
+    private final String indexReference;
+    private final int baseYear;
+    private final LocalDate startDate;
+    private final BigDecimal value;
+    private final BigDecimal factor;
+
+    public IndexValueRow(
+            final int lineNumber,
+            final String indexReference,
+            final int baseYear,
+            final LocalDate startDate,
+            final BigDecimal value,
+            final BigDecimal factor) {
+        this.lineNumber = lineNumber;
+        this.indexReference = indexReference;
+        this.baseYear = baseYear;
+        this.startDate = startDate;
+        this.value = value;
+        this.factor = factor;
+    }
+
+    /**
+     * The row of the given line; <tt>null</tt> for a blank line, a comment
+     * (starting with <tt>#</tt>) or the header (the first line, if its base
+     * year is not a number).
+     * 
+     * @throws IllegalArgumentException
+     *             if the line cannot be parsed
+     */
+    public static IndexValueRow parse(final String line, final int lineNumber) {
+        final String trimmed = line.trim();
+        if (trimmed.length() == 0 || trimmed.startsWith("#")) {
+            return null;
+        }
+        final String[] fields = SEPARATOR.split(trimmed);
+        if (fields.length < 4 || fields.length > 5) {
+            throw new IllegalArgumentException("Expected index, base year, month, value and optionally factor");
+        }
+        if (lineNumber == 1 && !fields[1].matches("\\d+")) {
+            return null;
+        }
+        final Matcher month = MONTH.matcher(fields[2]);
+        if (!month.matches()) {
+            throw new IllegalArgumentException("Invalid month '" + fields[2] + "'");
+        }
+        try {
+            return new IndexValueRow(
+                    lineNumber,
+                    fields[0],
+                    Integer.parseInt(fields[1]),
+                    new LocalDate(Integer.parseInt(month.group(1)), Integer.parseInt(month.group(2)), 1),
+                    new BigDecimal(fields[3]),
+                    fields.length == 5 && fields[4].length() > 0 ? new BigDecimal(fields[4]) : null);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid number in '" + trimmed + "'");
+        } catch (IllegalFieldValueException ex) {
+            throw new IllegalArgumentException("Invalid month '" + fields[2] + "'");
+        }
+    }
+
+    // //////////////////////////////////////
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public String getIndexReference() {
+        return indexReference;
+    }
+
+    public int getBaseYear() {
+        return baseYear;
+    }
+
+    /**
+     * The start date of the {@link IndexBase} of the {@link #getBaseYear()
+     * base year}.
+     */
+    public LocalDate getBaseStartDate() {
+        return new LocalDate(baseYear + 1, 1, 1);
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public BigDecimal getValue() {
+        return value;
+    }
+
+    /**
+     * The rebase factor of the {@link IndexBase} of the
+     * {@link #getBaseYear() base year}, if provided.
+     */
+    public BigDecimal getFactor() {
+        return factor;
+    }
+
+    @Override
+    public String toString() {
+        return "line " + lineNumber + " (" + indexReference + " " + startDate.toString("yyyy-MM") + ")";
+    }
+
+}
@@ -79,6 +79,11 @@ public class IndexValues
                 "startDate", startDate);
     }
 
+    @Programmatic
+    public List<IndexValue> findIndexValuesByIndex(final Index index) {
+        return allMatches("findByIndex", "index", index);
+    }
+
     // //////////////////////////////////////
 
     @Prototype
@@ -24,16 +24,23 @@ import java.math.RoundingMode;
 
 import org.apache.isis.applib.annotation.NotContributed;
 
+import org.estatio.services.metrics.EstatioMetrics;
+import org.estatio.services.metrics.Timer;
+
 public class IndexationService {
 
     public static final BigDecimal ONE_HUNDRED = new BigDecimal(100);
 
     @NotContributed
     public void indexate(final Indexable input) {
-
-        final IndexationResult indexationResult;
-        indexationResult = indexateToResult(input);
-        indexationResult.apply(input);
+        final Timer.Context timer = EstatioMetrics.time("indexation.indexate");
+        try {
+            final IndexationResult indexationResult;
+            indexationResult = indexateToResult(input);
+            indexationResult.apply(input);
+        } finally {
+            timer.stop();
+        }
     }
 
     private IndexationResult indexateToResult(final Indexable input) {
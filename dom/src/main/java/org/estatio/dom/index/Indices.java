@@ -43,6 +43,7 @@ public class Indices extends EstatioDomainService<Index> {
         index.setReference(reference);
         index.setName(name);
         persist(index);
+        invalidateReferenceData();
         return index;
     }
 
@@ -57,7 +58,7 @@ public class Indices extends EstatioDomainService<Index> {
 
     @Hidden
     public Index findIndex(final @Named("Reference") String reference) {
-        return firstMatch("findByReference", "reference", reference);
+        return firstMatchByKey(reference, "findByReference", "reference", reference);
     }
 
 }
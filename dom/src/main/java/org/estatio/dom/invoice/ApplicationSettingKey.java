@@ -25,7 +25,13 @@ import org.apache.isis.applib.services.settings.ApplicationSettingsServiceRW;
 import org.estatio.dom.ApplicationSettingCreator;
 
 public enum ApplicationSettingKey implements ApplicationSettingCreator {
-    foo(LocalDate.class, "Invoice's foo", new LocalDate(2013,4,1));
+    foo(LocalDate.class, "Invoice's foo", new LocalDate(2013,4,1)),
+    
+    /**
+     * The number of months after their invoice date before invoices are
+     * archived by the <tt>InvoiceArchiveService</tt>.
+     */
+    archiveHorizonInMonths(Integer.class, "Months before invoices are archived", 36);
     
     private final Object defaultValue;
     private final String description;
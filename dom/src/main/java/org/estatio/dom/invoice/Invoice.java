@@ -29,6 +29,7 @@ import javax.jdo.annotations.IdentityType;
 import javax.jdo.annotations.Persistent;
 import javax.jdo.annotations.VersionStrategy;
 
+import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 
 import org.apache.isis.applib.annotation.ActionSemantics;
@@ -41,18 +42,19 @@ import org.apache.isis.applib.annotation.NotPersisted;
 import org.apache.isis.applib.annotation.Optional;
 import org.apache.isis.applib.annotation.Programmatic;
 import org.apache.isis.applib.annotation.Prototype;
-import org.apache.isis.applib.annotation.PublishedAction;
 import org.apache.isis.applib.annotation.Render;
 import org.apache.isis.applib.annotation.Render.Type;
 import org.apache.isis.applib.annotation.Where;
 
 import org.estatio.dom.EstatioMutableObject;
 import org.estatio.dom.JdoColumnLength;
+import org.estatio.dom.LastModifiedListener;
+import org.estatio.dom.WithLastModified;
 import org.estatio.dom.asset.Property;
 import org.estatio.dom.currency.Currency;
-import org.estatio.dom.invoice.publishing.InvoiceEagerlyRenderedPayloadFactory;
 import org.estatio.dom.numerator.Numerator;
 import org.estatio.dom.party.Party;
+import org.estatio.services.outbox.OutboxService;
 
 @javax.jdo.annotations.PersistenceCapable(identityType = IdentityType.DATASTORE)
 @javax.jdo.annotations.DatastoreIdentity(
@@ -61,6 +63,22 @@ import org.estatio.dom.party.Party;
 @javax.jdo.annotations.Version(
         strategy = VersionStrategy.VERSION_NUMBER,
         column = "version")
+// changed in bulk while being calculated, so not worth caching
+@javax.jdo.annotations.Cacheable("false")
+@javax.jdo.annotations.Indices({
+        @javax.jdo.annotations.Index(
+                name = "Invoice_property_dueDate_status_IDX",
+                members = { "property", "dueDate", "status" }),
+        @javax.jdo.annotations.Index(
+                name = "Invoice_property_status_IDX",
+                members = { "property", "status" }),
+        @javax.jdo.annotations.Index(
+                name = "Invoice_runId_IDX",
+                members = { "runId" }),
+        @javax.jdo.annotations.Index(
+                name = "Invoice_lastModified_IDX",
+                members = { "lastModified" })
+})
 @javax.jdo.annotations.Queries({
         @javax.jdo.annotations.Query(
                 name = "findMatchingInvoices", language = "JDOQL",
@@ -77,34 +95,34 @@ import org.estatio.dom.party.Party;
                 value = "SELECT "
                         + "FROM org.estatio.dom.invoice.Invoice "
                         + "WHERE status == :status "
-                        + "&& source.occupancies.contains(o) "
-                        + "&& o.unit.property == :property "
-                        + "VARIABLES "
-                        + "org.estatio.dom.lease.Occupancy o; "
-                        + "org.estatio.dom.lease.Lease source"),
+                        + "&& property == :property"),
         @javax.jdo.annotations.Query(
                 name = "findByPropertyAndDueDateAndStatus", language = "JDOQL",
-                value = "SELECT FROM org.estatio.dom.invoice.Invoice " +
-                        "WHERE status == :status && " +
-                        "dueDate == :dueDate && " +
-                        "source.occupancies.contains(o) &&" +
-                        "o.unit.property == :property " +
-                        "VARIABLES org.estatio.dom.lease.Occupancy o; org.estatio.dom.lease.Lease source"),
+                value = "SELECT "
+                        + "FROM org.estatio.dom.invoice.Invoice "
+                        + "WHERE status == :status "
+                        + "&& dueDate == :dueDate "
+                        + "&& property == :property"),
         @javax.jdo.annotations.Query(
                 name = "findByPropertyAndDueDate", language = "JDOQL",
-                value = "SELECT FROM org.estatio.dom.invoice.Invoice " +
-                        "WHERE dueDate == :dueDate && " +
-                        "source.occupancies.contains(o) &&" +
-                        "o.unit.property == :property " +
-                        "VARIABLES org.estatio.dom.lease.Occupancy o; org.estatio.dom.lease.Lease source"),
+                value = "SELECT "
+                        + "FROM org.estatio.dom.invoice.Invoice "
+                        + "WHERE dueDate == :dueDate "
+                        + "&& property == :property"),
         @javax.jdo.annotations.Query(
                 name = "findByStatus", language = "JDOQL",
                 value = "SELECT "
                         + "FROM org.estatio.dom.invoice.Invoice "
-                        + "WHERE status == :status ")
+                        + "WHERE status == :status "),
+        @javax.jdo.annotations.Query(
+                name = "findModifiedSince", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.invoice.Invoice "
+                        + "WHERE lastModified > :since "
+                        + "ORDER BY lastModified")
 })
 @Bookmarkable
-public class Invoice extends EstatioMutableObject<Invoice> {
+public class Invoice extends EstatioMutableObject<Invoice> implements WithLastModified {
 
     public Invoice() {
         super("invoiceNumber");
@@ -248,6 +266,26 @@ public class Invoice extends EstatioMutableObject<Invoice> {
 
     // //////////////////////////////////////
 
+    private DateTime lastModified;
+
+    /**
+     * When this invoice, or any of its items, was last changed; maintained by
+     * the {@link LastModifiedListener}, directly in the database if only
+     * the items changed (so may be stale until reloaded).
+     */
+    @javax.jdo.annotations.Column(allowsNull = "true")
+    @Hidden(where = Where.ALL_TABLES)
+    @Disabled
+    public DateTime getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(final DateTime lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    // //////////////////////////////////////
+
     private Currency currency;
 
     // REVIEW: invoice generation is not populating this field.
@@ -446,20 +484,55 @@ public class Invoice extends EstatioMutableObject<Invoice> {
 
     // //////////////////////////////////////
 
+    private Property property;
+
     /**
-     * Derived from the {@link #getSource() invoice source}.
+     * The property of the {@link #getSource() invoice source}, copied when the
+     * invoice is created so that invoices can be found by property without
+     * joining their source's occupancies and units.
      */
+    @javax.jdo.annotations.Column(name = "propertyId", allowsNull = "true")
+    @Optional
+    @Disabled
     public Property getProperty() {
-        return getSource().getProperty();
+        return property;
+    }
+
+    public void setProperty(final Property property) {
+        this.property = property;
     }
 
     // //////////////////////////////////////
 
-    @PublishedAction(InvoiceEagerlyRenderedPayloadFactory.class)
+    private String runId;
+
+    /**
+     * The id of the calculation run that created this invoice, if any; see
+     * {@link org.estatio.dom.lease.invoicing.InvoiceItemsForLease#rollbackRun(String)}.
+     */
+    @javax.jdo.annotations.Column(allowsNull = "true", length = JdoColumnLength.RUN_ID)
+    @Optional
+    @Disabled
+    public String getRunId() {
+        return runId;
+    }
+
+    public void setRunId(final String runId) {
+        this.runId = runId;
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Recorded in the {@link OutboxService outbox}, to be rendered (see
+     * {@link org.estatio.dom.invoice.publishing.InvoiceOutboxRenderer}) and
+     * delivered once committed.
+     */
     @Bulk
     @ActionSemantics(Of.IDEMPOTENT)
     public Invoice submitToCoda() {
         collect();
+        outboxService.record("submitToCoda", this);
         return this;
     }
 
@@ -494,4 +567,10 @@ public class Invoice extends EstatioMutableObject<Invoice> {
     public final void injectInvoices(final Invoices invoices) {
         this.invoices = invoices;
     }
+
+    private OutboxService outboxService;
+
+    public final void injectOutboxService(final OutboxService outboxService) {
+        this.outboxService = outboxService;
+    }
 }
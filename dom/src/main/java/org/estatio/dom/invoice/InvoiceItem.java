@@ -45,8 +45,10 @@ import org.apache.isis.applib.annotation.Where;
 
 import org.estatio.dom.EstatioMutableObject;
 import org.estatio.dom.JdoColumnLength;
+import org.estatio.dom.LastModifiedListener;
 import org.estatio.dom.WithDescriptionGetter;
 import org.estatio.dom.WithInterval;
+import org.estatio.dom.WithLastModified;
 import org.estatio.dom.charge.Charge;
 import org.estatio.dom.charge.Charges;
 import org.estatio.dom.lease.LeaseConstants;
@@ -71,10 +73,11 @@ import org.estatio.dom.valuetypes.LocalDateInterval;
 @javax.jdo.annotations.Discriminator(
         strategy = DiscriminatorStrategy.CLASS_NAME, 
         column="discriminator")
+@javax.jdo.annotations.Cacheable("false")
 @Bookmarkable(BookmarkPolicy.AS_CHILD)
 public abstract class InvoiceItem 
         extends EstatioMutableObject<InvoiceItem> 
-        implements WithInterval<InvoiceItem>, WithDescriptionGetter {
+        implements WithInterval<InvoiceItem>, WithDescriptionGetter, WithLastModified.Part {
 
     public InvoiceItem() {
         super("invoice, startDate desc nullsLast, charge, description, sequence");
@@ -118,6 +121,17 @@ public abstract class InvoiceItem
 
     // //////////////////////////////////////
 
+    /**
+     * {@link WithLastModified.Part} implementation.
+     */
+    @Programmatic
+    @Override
+    public Object getWhole() {
+        return getInvoice();
+    }
+
+    // //////////////////////////////////////
+
     private Charge charge;
 
     @javax.jdo.annotations.Column(name = "chargeId", allowsNull="true")
@@ -329,6 +343,7 @@ public abstract class InvoiceItem
     @Programmatic
     public void remove() {
         // no safeguard, assuming being called with precaution
+        LastModifiedListener.touchWholesOf(this);
         setInvoice(null);
         getContainer().flush();
         getContainer().remove(this);
@@ -21,6 +21,7 @@ package org.estatio.dom.invoice;
 import java.math.BigInteger;
 import java.util.List;
 
+import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 
 import org.apache.isis.applib.annotation.ActionSemantics;
@@ -72,13 +73,13 @@ public class Invoices extends EstatioDomainService<Invoice> {
             final @Named("Due Date") @Optional LocalDate dueDate,
             final @Optional InvoiceStatus status) {
         if (status == null) {
-            return allMatches("findByPropertyAndDueDate",
+            return allMatchesOnReplica("findByPropertyAndDueDate",
                     "property", property, "dueDate", dueDate);
         } else if (dueDate == null) {
-            return allMatches("findByPropertyAndStatus",
+            return allMatchesOnReplica("findByPropertyAndStatus",
                     "property", property, "status", status);
         } else {
-            return allMatches("findByPropertyAndDueDateAndStatus",
+            return allMatchesOnReplica("findByPropertyAndDueDateAndStatus",
                     "property", property, "dueDate", dueDate, "status", status);
         }
     }
@@ -87,28 +88,40 @@ public class Invoices extends EstatioDomainService<Invoice> {
     @DescribedAs("New invoices, to be approved")
     @MemberOrder(sequence = "10")
     public List<Invoice> findInvoicesToBeApproved() {
-        return allMatches("findByStatus", "status", InvoiceStatus.NEW);
+        return allMatchesOnReplica("findByStatus", "status", InvoiceStatus.NEW);
     }
 
     @ActionSemantics(Of.SAFE)
     @DescribedAs("Approved invoices, to be collected")
     @MemberOrder(sequence = "11")
     public List<Invoice> findInvoicesToBeCollected() {
-        return allMatches("findByStatus", "status", InvoiceStatus.APPROVED);
+        return allMatchesOnReplica("findByStatus", "status", InvoiceStatus.APPROVED);
     }
 
     @ActionSemantics(Of.SAFE)
     @DescribedAs("Collected invoices, to be invoiced")
     @MemberOrder(sequence = "12")
     public List<Invoice> findInvoicesToBeInvoiced() {
-        return allMatches("findByStatus", "status", InvoiceStatus.COLLECTED);
+        return allMatchesOnReplica("findByStatus", "status", InvoiceStatus.COLLECTED);
     }
 
     @ActionSemantics(Of.SAFE)
     @DescribedAs("Already invoiced")
     @MemberOrder(sequence = "13")
     public List<Invoice> findInvoicesPreviouslyInvoiced() {
-        return allMatches("findByStatus", "status", InvoiceStatus.INVOICED);
+        return allMatchesOnReplica("findByStatus", "status", InvoiceStatus.INVOICED);
+    }
+
+    /**
+     * Invoices changed (including their items) after the given moment,
+     * oldest change first; on the primary, as is
+     * {@link org.estatio.dom.lease.Leases#findLeasesModifiedSince(DateTime)}.
+     */
+    @ActionSemantics(Of.SAFE)
+    @MemberOrder(sequence = "14")
+    public List<Invoice> findInvoicesModifiedSince(
+            final @Named("Modified since") DateTime since) {
+        return allMatches("findModifiedSince", "since", since);
     }
 
     // //////////////////////////////////////
@@ -0,0 +1,339 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.invoice.archive;
+
+import java.math.BigDecimal;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javax.jdo.annotations.IdGeneratorStrategy;
+import javax.jdo.annotations.IdentityType;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.annotation.Bookmarkable;
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Immutable;
+import org.apache.isis.applib.annotation.Optional;
+import org.apache.isis.applib.annotation.Render;
+import org.apache.isis.applib.annotation.Render.Type;
+import org.apache.isis.applib.annotation.Title;
+import org.apache.isis.applib.annotation.Where;
+
+import org.estatio.dom.EstatioImmutableObject;
+import org.estatio.dom.JdoColumnLength;
+import org.estatio.dom.asset.Property;
+import org.estatio.dom.currency.Currency;
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.PaymentMethod;
+import org.estatio.dom.party.Party;
+
+/**
+ * Read-only copy of an {@link Invoice} that has been moved out of the
+ * operational tables by the {@link InvoiceArchiveService}.
+ * 
+ * <p>
+ * The amounts are stored rather than derived from the
+ * {@link #getItems() items}, so that the archive can be listed without
+ * loading them.
+ */
+@javax.jdo.annotations.PersistenceCapable(identityType = IdentityType.DATASTORE)
+@javax.jdo.annotations.DatastoreIdentity(
+        strategy = IdGeneratorStrategy.NATIVE,
+        column = "id")
+@javax.jdo.annotations.Uniques({
+        @javax.jdo.annotations.Unique(
+                name = "ArchivedInvoice_originalId_UNQ", members = "originalId")
+})
+@javax.jdo.annotations.Indices({
+        @javax.jdo.annotations.Index(
+                name = "ArchivedInvoice_property_dueDate_IDX",
+                members = { "property", "dueDate" }),
+        @javax.jdo.annotations.Index(
+                name = "ArchivedInvoice_invoiceNumber_IDX",
+                members = { "invoiceNumber" })
+})
+@javax.jdo.annotations.Queries({
+        @javax.jdo.annotations.Query(
+                name = "findByOriginalId", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.invoice.archive.ArchivedInvoice "
+                        + "WHERE originalId == :originalId"),
+        @javax.jdo.annotations.Query(
+                name = "findByInvoiceNumber", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.invoice.archive.ArchivedInvoice "
+                        + "WHERE invoiceNumber.matches(:invoiceNumber)"),
+        @javax.jdo.annotations.Query(
+                name = "findByProperty", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.invoice.archive.ArchivedInvoice "
+                        + "WHERE property == :property "
+                        + "ORDER BY dueDate DESC"),
+        @javax.jdo.annotations.Query(
+                name = "findByPropertyAndDueDate", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.invoice.archive.ArchivedInvoice "
+                        + "WHERE property == :property "
+                        + "&& dueDate == :dueDate"),
+        @javax.jdo.annotations.Query(
+                name = "findByBuyer", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.invoice.archive.ArchivedInvoice "
+                        + "WHERE buyer == :buyer "
+                        + "ORDER BY dueDate DESC")
+})
+@Immutable
+@Bookmarkable
+public class ArchivedInvoice extends EstatioImmutableObject<ArchivedInvoice> {
+
+    public ArchivedInvoice() {
+        super("invoiceNumber, originalId");
+    }
+
+    // //////////////////////////////////////
+
+    private Long originalId;
+
+    /**
+     * The id of the {@link Invoice} this is a copy of; used to make archiving
+     * restartable.
+     */
+    @javax.jdo.annotations.Column(allowsNull = "false")
+    @Hidden
+    public Long getOriginalId() {
+        return originalId;
+    }
+
+    public void setOriginalId(final Long originalId) {
+        this.originalId = originalId;
+    }
+
+    // //////////////////////////////////////
+
+    private String invoiceNumber;
+
+    @javax.jdo.annotations.Column(allowsNull = "true", length = JdoColumnLength.Invoice.NUMBER)
+    @Title
+    public String getInvoiceNumber() {
+        return invoiceNumber;
+    }
+
+    public void setInvoiceNumber(final String invoiceNumber) {
+        this.invoiceNumber = invoiceNumber;
+    }
+
+    // //////////////////////////////////////
+
+    private String collectionNumber;
+
+    @javax.jdo.annotations.Column(allowsNull = "true", length = JdoColumnLength.Invoice.NUMBER)
+    @Optional
+    public String getCollectionNumber() {
+        return collectionNumber;
+    }
+
+    public void setCollectionNumber(final String collectionNumber) {
+        this.collectionNumber = collectionNumber;
+    }
+
+    // //////////////////////////////////////
+
+    private Party buyer;
+
+    @javax.jdo.annotations.Column(name = "buyerPartyId", allowsNull = "false")
+    public Party getBuyer() {
+        return buyer;
+    }
+
+    public void setBuyer(final Party buyer) {
+        this.buyer = buyer;
+    }
+
+    // //////////////////////////////////////
+
+    private Party seller;
+
+    @javax.jdo.annotations.Column(name = "sellerPartyId", allowsNull = "false")
+    public Party getSeller() {
+        return seller;
+    }
+
+    public void setSeller(final Party seller) {
+        this.seller = seller;
+    }
+
+    // //////////////////////////////////////
+
+    private Property property;
+
+    @javax.jdo.annotations.Column(name = "propertyId", allowsNull = "true")
+    @Optional
+    public Property getProperty() {
+        return property;
+    }
+
+    public void setProperty(final Property property) {
+        this.property = property;
+    }
+
+    // //////////////////////////////////////
+
+    private String sourceReference;
+
+    /**
+     * The reference of the <tt>InvoiceSource</tt> (eg the lease) of the
+     * original invoice.
+     */
+    @javax.jdo.annotations.Column(allowsNull = "true", length = JdoColumnLength.REFERENCE)
+    @Optional
+    public String getSourceReference() {
+        return sourceReference;
+    }
+
+    public void setSourceReference(final String sourceReference) {
+        this.sourceReference = sourceReference;
+    }
+
+    // //////////////////////////////////////
+
+    @javax.jdo.annotations.Persistent
+    private LocalDate invoiceDate;
+
+    @javax.jdo.annotations.Column(allowsNull = "true")
+    @Optional
+    public LocalDate getInvoiceDate() {
+        return invoiceDate;
+    }
+
+    public void setInvoiceDate(final LocalDate invoiceDate) {
+        this.invoiceDate = invoiceDate;
+    }
+
+    // //////////////////////////////////////
+
+    @javax.jdo.annotations.Persistent
+    private LocalDate dueDate;
+
+    @javax.jdo.annotations.Column(allowsNull = "false")
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+    public void setDueDate(final LocalDate dueDate) {
+        this.dueDate = dueDate;
+    }
+
+    // //////////////////////////////////////
+
+    private PaymentMethod paymentMethod;
+
+    @javax.jdo.annotations.Column(allowsNull = "false", length = JdoColumnLength.PAYMENT_METHOD_ENUM)
+    public PaymentMethod getPaymentMethod() {
+        return paymentMethod;
+    }
+
+    public void setPaymentMethod(final PaymentMethod paymentMethod) {
+        this.paymentMethod = paymentMethod;
+    }
+
+    // //////////////////////////////////////
+
+    private Currency currency;
+
+    @javax.jdo.annotations.Column(name = "currencyId", allowsNull = "true")
+    @Hidden(where = Where.ALL_TABLES)
+    @Optional
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(final Currency currency) {
+        this.currency = currency;
+    }
+
+    // //////////////////////////////////////
+
+    private BigDecimal netAmount;
+
+    @javax.jdo.annotations.Column(scale = 2, allowsNull = "false")
+    public BigDecimal getNetAmount() {
+        return netAmount;
+    }
+
+    public void setNetAmount(final BigDecimal netAmount) {
+        this.netAmount = netAmount;
+    }
+
+    // //////////////////////////////////////
+
+    private BigDecimal vatAmount;
+
+    @javax.jdo.annotations.Column(scale = 2, allowsNull = "false")
+    public BigDecimal getVatAmount() {
+        return vatAmount;
+    }
+
+    public void setVatAmount(final BigDecimal vatAmount) {
+        this.vatAmount = vatAmount;
+    }
+
+    // //////////////////////////////////////
+
+    private BigDecimal grossAmount;
+
+    @javax.jdo.annotations.Column(scale = 2, allowsNull = "false")
+    public BigDecimal getGrossAmount() {
+        return grossAmount;
+    }
+
+    public void setGrossAmount(final BigDecimal grossAmount) {
+        this.grossAmount = grossAmount;
+    }
+
+    // //////////////////////////////////////
+
+    @javax.jdo.annotations.Persistent
+    private LocalDate archiveDate;
+
+    @javax.jdo.annotations.Column(allowsNull = "false")
+    @Hidden(where = Where.ALL_TABLES)
+    public LocalDate getArchiveDate() {
+        return archiveDate;
+    }
+
+    public void setArchiveDate(final LocalDate archiveDate) {
+        this.archiveDate = archiveDate;
+    }
+
+    // //////////////////////////////////////
+
+    @javax.jdo.annotations.Persistent(mappedBy = "invoice")
+    private SortedSet<ArchivedInvoiceItem> items = new TreeSet<ArchivedInvoiceItem>();
+
+    @Render(Type.EAGERLY)
+    public SortedSet<ArchivedInvoiceItem> getItems() {
+        return items;
+    }
+
+    public void setItems(final SortedSet<ArchivedInvoiceItem> items) {
+        this.items = items;
+    }
+
+}
@@ -0,0 +1,252 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.invoice.archive;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import javax.jdo.annotations.IdGeneratorStrategy;
+import javax.jdo.annotations.IdentityType;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.annotation.BookmarkPolicy;
+import org.apache.isis.applib.annotation.Bookmarkable;
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Immutable;
+import org.apache.isis.applib.annotation.Optional;
+import org.apache.isis.applib.annotation.Title;
+import org.apache.isis.applib.annotation.Where;
+
+import org.estatio.dom.EstatioImmutableObject;
+import org.estatio.dom.JdoColumnLength;
+import org.estatio.dom.charge.Charge;
+import org.estatio.dom.invoice.InvoiceItem;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.tax.Tax;
+
+/**
+ * Read-only copy of an {@link InvoiceItem}, owned by an
+ * {@link ArchivedInvoice}.
+ */
+@javax.jdo.annotations.PersistenceCapable(identityType = IdentityType.DATASTORE)
+@javax.jdo.annotations.DatastoreIdentity(
+        strategy = IdGeneratorStrategy.NATIVE,
+        column = "id")
+@Immutable
+@Bookmarkable(BookmarkPolicy.AS_CHILD)
+public class ArchivedInvoiceItem extends EstatioImmutableObject<ArchivedInvoiceItem> {
+
+    public ArchivedInvoiceItem() {
+        super("invoice, startDate desc nullsLast, charge, description, sequence");
+    }
+
+    // //////////////////////////////////////
+
+    private ArchivedInvoice invoice;
+
+    @javax.jdo.annotations.Column(name = "archivedInvoiceId", allowsNull = "false")
+    @Hidden(where = Where.REFERENCES_PARENT)
+    @Title(sequence = "1", append = ":")
+    public ArchivedInvoice getInvoice() {
+        return invoice;
+    }
+
+    public void setInvoice(final ArchivedInvoice invoice) {
+        this.invoice = invoice;
+    }
+
+    // //////////////////////////////////////
+
+    private BigInteger sequence;
+
+    @javax.jdo.annotations.Column(allowsNull = "true")
+    @Hidden
+    public BigInteger getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(final BigInteger sequence) {
+        this.sequence = sequence;
+    }
+
+    // //////////////////////////////////////
+
+    private LeaseTerm leaseTerm;
+
+    /**
+     * The term the original item was calculated for, if any.
+     */
+    @javax.jdo.annotations.Column(name = "leaseTermId", allowsNull = "true")
+    @Optional
+    public LeaseTerm getLeaseTerm() {
+        return leaseTerm;
+    }
+
+    public void setLeaseTerm(final LeaseTerm leaseTerm) {
+        this.leaseTerm = leaseTerm;
+    }
+
+    // //////////////////////////////////////
+
+    private Charge charge;
+
+    @javax.jdo.annotations.Column(name = "chargeId", allowsNull = "true")
+    @Title(sequence = "2")
+    @Optional
+    public Charge getCharge() {
+        return charge;
+    }
+
+    public void setCharge(final Charge charge) {
+        this.charge = charge;
+    }
+
+    // //////////////////////////////////////
+
+    private String description;
+
+    @javax.jdo.annotations.Column(allowsNull = "true", length = JdoColumnLength.DESCRIPTION)
+    @Hidden(where = Where.PARENTED_TABLES)
+    @Optional
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(final String description) {
+        this.description = description;
+    }
+
+    // //////////////////////////////////////
+
+    private BigDecimal quantity;
+
+    @javax.jdo.annotations.Column(scale = 2, allowsNull = "true")
+    @Optional
+    public BigDecimal getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(final BigDecimal quantity) {
+        this.quantity = quantity;
+    }
+
+    // //////////////////////////////////////
+
+    private BigDecimal netAmount;
+
+    @javax.jdo.annotations.Column(scale = 2, allowsNull = "true")
+    @Optional
+    public BigDecimal getNetAmount() {
+        return netAmount;
+    }
+
+    public void setNetAmount(final BigDecimal netAmount) {
+        this.netAmount = netAmount;
+    }
+
+    // //////////////////////////////////////
+
+    private BigDecimal vatAmount;
+
+    @javax.jdo.annotations.Column(scale = 2, allowsNull = "true")
+    @Hidden(where = Where.PARENTED_TABLES)
+    @Optional
+    public BigDecimal getVatAmount() {
+        return vatAmount;
+    }
+
+    public void setVatAmount(final BigDecimal vatAmount) {
+        this.vatAmount = vatAmount;
+    }
+
+    // //////////////////////////////////////
+
+    private BigDecimal grossAmount;
+
+    @javax.jdo.annotations.Column(scale = 2, allowsNull = "true")
+    @Optional
+    public BigDecimal getGrossAmount() {
+        return grossAmount;
+    }
+
+    public void setGrossAmount(final BigDecimal grossAmount) {
+        this.grossAmount = grossAmount;
+    }
+
+    // //////////////////////////////////////
+
+    private Tax tax;
+
+    @javax.jdo.annotations.Column(name = "taxId", allowsNull = "true")
+    @Hidden(where = Where.PARENTED_TABLES)
+    @Optional
+    public Tax getTax() {
+        return tax;
+    }
+
+    public void setTax(final Tax tax) {
+        this.tax = tax;
+    }
+
+    // //////////////////////////////////////
+
+    @javax.jdo.annotations.Persistent
+    private LocalDate dueDate;
+
+    @javax.jdo.annotations.Column(allowsNull = "false")
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+    public void setDueDate(final LocalDate dueDate) {
+        this.dueDate = dueDate;
+    }
+
+    // //////////////////////////////////////
+
+    @javax.jdo.annotations.Persistent
+    private LocalDate startDate;
+
+    @javax.jdo.annotations.Column(allowsNull = "true")
+    @Optional
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(final LocalDate startDate) {
+        this.startDate = startDate;
+    }
+
+    // //////////////////////////////////////
+
+    @javax.jdo.annotations.Persistent
+    private LocalDate endDate;
+
+    @javax.jdo.annotations.Column(allowsNull = "true")
+    @Optional
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(final LocalDate endDate) {
+        this.endDate = endDate;
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.invoice.archive;
+
+import java.util.List;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.annotation.ActionSemantics;
+import org.apache.isis.applib.annotation.ActionSemantics.Of;
+import org.apache.isis.applib.annotation.DescribedAs;
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.MemberOrder;
+import org.apache.isis.applib.annotation.Named;
+import org.apache.isis.applib.annotation.NotContributed;
+import org.apache.isis.applib.annotation.Optional;
+import org.apache.isis.applib.annotation.Programmatic;
+
+import org.estatio.dom.EstatioDomainService;
+import org.estatio.dom.asset.Property;
+import org.estatio.dom.party.Party;
+import org.estatio.dom.utils.StringUtils;
+
+/**
+ * Read-only access to the {@link ArchivedInvoice}s, contributed to the
+ * <i>Invoices</i> menu.
+ */
+public class ArchivedInvoices extends EstatioDomainService<ArchivedInvoice> {
+
+    public ArchivedInvoices() {
+        super(ArchivedInvoices.class, ArchivedInvoice.class);
+    }
+
+    // //////////////////////////////////////
+
+    @ActionSemantics(Of.SAFE)
+    @MemberOrder(name = "Invoices", sequence = "20")
+    @NotContributed
+    public List<ArchivedInvoice> findArchivedInvoices(
+            final Property property,
+            final @Named("Due Date") @Optional LocalDate dueDate) {
+        if (dueDate == null) {
+            return allMatches("findByProperty", "property", property);
+        }
+        return allMatches("findByPropertyAndDueDate", "property", property, "dueDate", dueDate);
+    }
+
+    @ActionSemantics(Of.SAFE)
+    @MemberOrder(name = "Invoices", sequence = "21")
+    @NotContributed
+    public List<ArchivedInvoice> findArchivedInvoicesByNumber(
+            final @Named("Invoice number") @DescribedAs("May include wildcards '*' and '?'") String invoiceNumber) {
+        return allMatches("findByInvoiceNumber", "invoiceNumber", StringUtils.wildcardToRegex(invoiceNumber));
+    }
+
+    @ActionSemantics(Of.SAFE)
+    @Hidden
+    public List<ArchivedInvoice> findArchivedInvoicesByBuyer(final Party buyer) {
+        return allMatches("findByBuyer", "buyer", buyer);
+    }
+
+    // //////////////////////////////////////
+
+    @Programmatic
+    public ArchivedInvoice findByOriginalId(final Long originalId) {
+        return firstMatch("findByOriginalId", "originalId", originalId);
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.invoice.archive;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import javax.jdo.Query;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Table;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.joda.time.Period;
+
+import org.apache.isis.applib.annotation.ActionSemantics;
+import org.apache.isis.applib.annotation.ActionSemantics.Of;
+import org.apache.isis.applib.annotation.DescribedAs;
+import org.apache.isis.applib.annotation.MemberOrder;
+import org.apache.isis.applib.annotation.Named;
+import org.apache.isis.applib.annotation.Programmatic;
+
+import org.estatio.dom.EstatioDomainService;
+import org.estatio.dom.LastModifiedListener;
+import org.estatio.dom.WithReferenceGetter;
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.InvoiceItem;
+import org.estatio.dom.invoice.InvoiceSource;
+import org.estatio.dom.invoice.InvoiceStatus;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.lease.invoicing.InvoiceItemForLease;
+import org.estatio.dom.lease.invoicing.InvoicedValueSummaries;
+import org.estatio.dom.utils.JodaPeriodUtils;
+import org.estatio.services.settings.EstatioSettingsService;
+
+/**
+ * Moves {@link InvoiceStatus#INVOICED invoiced} {@link Invoice}s (and their
+ * items) that are older than a horizon into the {@link ArchivedInvoice} and
+ * {@link ArchivedInvoiceItem} tables.
+ * 
+ * <p>
+ * The invoiced amounts per lease term and period are kept in the
+ * {@link InvoicedValueSummaries invoiced value summaries}, so that the
+ * adjustments calculated for the archived periods remain correct.
+ * 
+ * <p>
+ * Each invocation archives a single chunk of invoices, in a single
+ * transaction: a chunk is either archived completely or not at all, so the
+ * action can simply be invoked again (for example by a scheduler) until there
+ * is nothing left to archive.
+ */
+public class InvoiceArchiveService extends EstatioDomainService<Invoice> {
+
+    public InvoiceArchiveService() {
+        super(InvoiceArchiveService.class, Invoice.class);
+    }
+
+    // //////////////////////////////////////
+
+    @ActionSemantics(Of.NON_IDEMPOTENT)
+    @MemberOrder(name = "Administration", sequence = "invoices.archive.1")
+    @DescribedAs("Archives a chunk of invoices; invoke again until nothing is left to archive")
+    public String archiveInvoices(
+            final @Named("Invoiced before") LocalDate horizon,
+            final @Named("Chunk size") Integer chunkSize) {
+        final DateTime start = DateTime.now();
+        final List<Invoice> invoices = findInvoicesToArchive(horizon, chunkSize);
+        archive(invoices);
+        final Period period = new Period(start, DateTime.now());
+        return String.format(
+                "Archived %d invoices invoiced before %s in %s%s",
+                invoices.size(),
+                horizon,
+                JodaPeriodUtils.asString(period),
+                invoices.size() < chunkSize ? "" : ", more to archive");
+    }
+
+    public LocalDate default0ArchiveInvoices() {
+        return getClockService().now().minusMonths(estatioSettingsService.fetchArchiveHorizonInMonths());
+    }
+
+    public Integer default1ArchiveInvoices() {
+        return DEFAULT_CHUNK_SIZE;
+    }
+
+    public String validateArchiveInvoices(final LocalDate horizon, final Integer chunkSize) {
+        if (chunkSize == null || chunkSize < 1) {
+            return "Chunk size must be at least 1";
+        }
+        if (horizon != null && !horizon.isBefore(getClockService().now())) {
+            return "Only invoices invoiced in the past can be archived";
+        }
+        return null;
+    }
+
+    static final int DEFAULT_CHUNK_SIZE = 500;
+
+    // //////////////////////////////////////
+
+    /**
+     * The oldest invoiced invoices with an invoice date before the horizon.
+     */
+    @SuppressWarnings("unchecked")
+    @Programmatic
+    public List<Invoice> findInvoicesToArchive(final LocalDate horizon, final int chunkSize) {
+        final Query query = newQuery(
+                "SELECT FROM org.estatio.dom.invoice.Invoice "
+                        + "WHERE status == :status "
+                        + "&& invoiceDate < :horizon "
+                        + "ORDER BY invoiceDate ASC");
+        query.setRange(0, chunkSize);
+        return Lists.newArrayList((List<Invoice>) query.executeWithMap(
+                ImmutableMap.of("status", InvoiceStatus.INVOICED, "horizon", horizon)));
+    }
+
+    /**
+     * Archives the invoices, removing them and their items.
+     * 
+     * <p>
+     * The items are detached from their invoices and lease terms first, with a
+     * single flush for all invoices rather than one for every item.
+     */
+    @Programmatic
+    public void archive(final List<Invoice> invoices) {
+        final LocalDate archiveDate = getClockService().now();
+        final Table<LeaseTerm, LocalDate, BigDecimal> invoicedValues = HashBasedTable.create();
+        final List<InvoiceItem> items = Lists.newArrayList();
+        for (Invoice invoice : invoices) {
+            if (invoice.getStatus() != InvoiceStatus.INVOICED) {
+                continue;
+            }
+            final ArchivedInvoice archivedInvoice = newArchivedInvoice(invoice, archiveDate);
+            for (InvoiceItem item : invoice.getItems()) {
+                newArchivedInvoiceItem(archivedInvoice, item);
+                addInvoicedValue(invoicedValues, item);
+                items.add(item);
+            }
+        }
+        for (InvoiceItem item : items) {
+            if (item instanceof InvoiceItemForLease) {
+                LastModifiedListener.touchWholesOf(((InvoiceItemForLease) item).getLeaseTerm());
+                ((InvoiceItemForLease) item).clearLeaseTerm();
+            }
+            item.setInvoice(null);
+        }
+        getContainer().flush();
+        for (InvoiceItem item : items) {
+            getContainer().remove(item);
+        }
+        for (Invoice invoice : invoices) {
+            if (invoice.getStatus() == InvoiceStatus.INVOICED) {
+                getContainer().remove(invoice);
+            }
+        }
+        for (Table.Cell<LeaseTerm, LocalDate, BigDecimal> cell : invoicedValues.cellSet()) {
+            invoicedValueSummaries.addInvoicedValue(cell.getRowKey(), cell.getColumnKey(), cell.getValue());
+        }
+    }
+
+    private static void addInvoicedValue(
+            final Table<LeaseTerm, LocalDate, BigDecimal> invoicedValues,
+            final InvoiceItem item) {
+        if (!(item instanceof InvoiceItemForLease)) {
+            return;
+        }
+        final LeaseTerm leaseTerm = ((InvoiceItemForLease) item).getLeaseTerm();
+        final LocalDate startDate = item.getStartDate();
+        if (leaseTerm == null || startDate == null || item.getNetAmount() == null) {
+            return;
+        }
+        final BigDecimal current = invoicedValues.get(leaseTerm, startDate);
+        invoicedValues.put(
+                leaseTerm,
+                startDate,
+                current == null ? item.getNetAmount() : current.add(item.getNetAmount()));
+    }
+
+    private ArchivedInvoice newArchivedInvoice(final Invoice invoice, final LocalDate archiveDate) {
+        final ArchivedInvoice archivedInvoice = newTransientInstance(ArchivedInvoice.class);
+        archivedInvoice.setOriginalId(Long.valueOf(invoice.getId()));
+        archivedInvoice.setInvoiceNumber(invoice.getInvoiceNumber());
+        archivedInvoice.setCollectionNumber(invoice.getCollectionNumber());
+        archivedInvoice.setBuyer(invoice.getBuyer());
+        archivedInvoice.setSeller(invoice.getSeller());
+        final InvoiceSource source = invoice.getSource();
+        if (source != null) {
+            archivedInvoice.setProperty(source.getProperty());
+            if (source instanceof WithReferenceGetter) {
+                archivedInvoice.setSourceReference(((WithReferenceGetter) source).getReference());
+            }
+        }
+        archivedInvoice.setInvoiceDate(invoice.getInvoiceDate());
+        archivedInvoice.setDueDate(invoice.getDueDate());
+        archivedInvoice.setPaymentMethod(invoice.getPaymentMethod());
+        archivedInvoice.setCurrency(invoice.getCurrency());
+        archivedInvoice.setNetAmount(invoice.getNetAmount());
+        archivedInvoice.setVatAmount(invoice.getVatAmount());
+        archivedInvoice.setGrossAmount(invoice.getGrossAmount());
+        archivedInvoice.setArchiveDate(archiveDate);
+        persist(archivedInvoice);
+        return archivedInvoice;
+    }
+
+    private ArchivedInvoiceItem newArchivedInvoiceItem(final ArchivedInvoice archivedInvoice, final InvoiceItem item) {
+        final ArchivedInvoiceItem archivedItem = newTransientInstance(ArchivedInvoiceItem.class);
+        archivedItem.setInvoice(archivedInvoice);
+        archivedItem.setSequence(item.getSequence());
+        if (item instanceof InvoiceItemForLease) {
+            archivedItem.setLeaseTerm(((InvoiceItemForLease) item).getLeaseTerm());
+        }
+        archivedItem.setCharge(item.getCharge());
+        archivedItem.setDescription(item.getDescription());
+        archivedItem.setQuantity(item.getQuantity());
+        archivedItem.setNetAmount(item.getNetAmount());
+        archivedItem.setVatAmount(item.getVatAmount());
+        archivedItem.setGrossAmount(item.getGrossAmount());
+        archivedItem.setTax(item.getTax());
+        archivedItem.setDueDate(item.getDueDate());
+        archivedItem.setStartDate(item.getStartDate());
+        archivedItem.setEndDate(item.getEndDate());
+        persist(archivedItem);
+        archivedInvoice.getItems().add(archivedItem);
+        return archivedItem;
+    }
+
+    // //////////////////////////////////////
+
+    private InvoicedValueSummaries invoicedValueSummaries;
+
+    public final void injectInvoicedValueSummaries(final InvoicedValueSummaries invoicedValueSummaries) {
+        this.invoicedValueSummaries = invoicedValueSummaries;
+    }
+
+    private EstatioSettingsService estatioSettingsService;
+
+    public final void injectEstatioSettingsService(final EstatioSettingsService estatioSettingsService) {
+        this.estatioSettingsService = estatioSettingsService;
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.invoice.publishing;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.InvoiceItem;
+import org.estatio.services.outbox.OutboxRenderer;
+
+/**
+ * Renders an {@link Invoice} and its {@link Invoice#getItems() items} as
+ * XML, for the events recorded in the outbox when the invoice is submitted.
+ */
+public class InvoiceOutboxRenderer implements OutboxRenderer {
+
+    private final XMLOutputFactory factory = XMLOutputFactory.newInstance();
+
+    @Override
+    public String render(final String eventType, final Object target) {
+        final Invoice invoice = (Invoice) target;
+        final StringWriter buf = new StringWriter();
+        try {
+            final XMLStreamWriter xml = factory.createXMLStreamWriter(buf);
+            xml.writeStartDocument();
+            xml.writeStartElement("invoice");
+            xml.writeAttribute("event", eventType);
+            element(xml, "invoiceNumber", invoice.getInvoiceNumber());
+            element(xml, "collectionNumber", invoice.getCollectionNumber());
+            element(xml, "invoiceDate", invoice.getInvoiceDate());
+            element(xml, "dueDate", invoice.getDueDate());
+            element(xml, "status", invoice.getStatus());
+            element(xml, "paymentMethod", invoice.getPaymentMethod());
+            element(xml, "currency", invoice.getCurrency() != null ? invoice.getCurrency().getReference() : null);
+            element(xml, "seller", invoice.getSeller().getReference());
+            element(xml, "buyer", invoice.getBuyer().getReference());
+            element(xml, "property", invoice.getProperty() != null ? invoice.getProperty().getReference() : null);
+            xml.writeStartElement("items");
+            BigDecimal netAmount = BigDecimal.ZERO;
+            BigDecimal vatAmount = BigDecimal.ZERO;
+            BigDecimal grossAmount = BigDecimal.ZERO;
+            for (InvoiceItem item : invoice.getItems()) {
+                xml.writeStartElement("item");
+                element(xml, "sequence", item.getSequence());
+                element(xml, "charge", item.getCharge() != null ? item.getCharge().getReference() : null);
+                element(xml, "description", item.getDescription());
+                element(xml, "startDate", item.getStartDate());
+                element(xml, "endDate", item.getEndDate());
+                element(xml, "dueDate", item.getDueDate());
+                element(xml, "quantity", item.getQuantity());
+                element(xml, "tax", item.getTax() != null ? item.getTax().getReference() : null);
+                element(xml, "netAmount", item.getNetAmount());
+                element(xml, "vatAmount", item.getVatAmount());
+                element(xml, "grossAmount", item.getGrossAmount());
+                xml.writeEndElement();
+                netAmount = add(netAmount, item.getNetAmount());
+                vatAmount = add(vatAmount, item.getVatAmount());
+                grossAmount = add(grossAmount, item.getGrossAmount());
+            }
+            xml.writeEndElement();
+            element(xml, "netAmount", netAmount);
+            element(xml, "vatAmount", vatAmount);
+            element(xml, "grossAmount", grossAmount);
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.close();
+        } catch (XMLStreamException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return buf.toString();
+    }
+
+    private static BigDecimal add(final BigDecimal total, final BigDecimal amount) {
+        return amount == null ? total : total.add(amount);
+    }
+
+    private static void element(final XMLStreamWriter xml, final String name, final Object value) throws XMLStreamException {
+        if (value == null) {
+            return;
+        }
+        xml.writeStartElement(name);
+        xml.writeCharacters(value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString());
+        xml.writeEndElement();
+    }
+
+}
@@ -1,9 +1,9 @@
 /**
- * Defines the content to be included when an {@link org.estatio.dom.invoice.Invoice} is published
- * through Isis' {@link org.apache.isis.applib.services.publish.PublishingService publishing service}.
+ * Defines the content to be delivered when an {@link org.estatio.dom.invoice.Invoice} is submitted, through the
+ * {@link org.estatio.services.outbox.OutboxService outbox}.
  * 
  * <p>
  * Specifically, the {@link org.estatio.dom.invoice.Invoice}'s {@link org.estatio.dom.invoice.Invoice#getItems() items}
- * are included in the published message.
+ * are included in the delivered message.
  */
 package org.estatio.dom.invoice.publishing;
\ No newline at end of file
@@ -0,0 +1,90 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.invoice.sepa;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The outcome of {@link CollectionFileService generating} a collection file:
+ * the number of direct debits written and their total, and the collected
+ * invoices that could not be included.
+ */
+public class CollectionFileReport {
+
+    private final String messageId;
+    private int numberOfTransactions;
+    private int numberOfPaymentInformations;
+    private BigDecimal controlSum = BigDecimal.ZERO;
+    private final List<String> rejected = Lists.newArrayList();
+
+    CollectionFileReport(final String messageId) {
+        this.messageId = messageId;
+    }
+
+    void written(final Pain008Writer writer) {
+        numberOfTransactions = writer.getNumberOfTransactions();
+        numberOfPaymentInformations = writer.getNumberOfPaymentInformations();
+        controlSum = writer.getControlSum();
+    }
+
+    void rejected(final String collectionNumber, final String reason) {
+        rejected.add(collectionNumber + ": " + reason);
+    }
+
+    // //////////////////////////////////////
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public int getNumberOfTransactions() {
+        return numberOfTransactions;
+    }
+
+    public int getNumberOfPaymentInformations() {
+        return numberOfPaymentInformations;
+    }
+
+    public BigDecimal getControlSum() {
+        return controlSum;
+    }
+
+    /**
+     * The collection numbers of the invoices not included, with the reason.
+     */
+    public List<String> getRejected() {
+        return Collections.unmodifiableList(rejected);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append(String.format("%s: %d direct debits in %d payment informations, total %s; %d invoices rejected",
+                messageId, numberOfTransactions, numberOfPaymentInformations, controlSum.toPlainString(), rejected.size()));
+        for (String rejection : rejected) {
+            buf.append("\n").append(rejection);
+        }
+        return buf.toString();
+    }
+
+}
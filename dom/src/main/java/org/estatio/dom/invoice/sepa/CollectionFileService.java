@@ -0,0 +1,365 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.invoice.sepa;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.annotation.ActionSemantics;
+import org.apache.isis.applib.annotation.ActionSemantics.Of;
+import org.apache.isis.applib.annotation.MemberOrder;
+import org.apache.isis.applib.annotation.Named;
+import org.apache.isis.applib.annotation.Optional;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.value.Blob;
+
+import org.estatio.dom.EstatioDomainService;
+import org.estatio.dom.financial.BankAccount;
+import org.estatio.dom.financial.BankMandate;
+import org.estatio.dom.financial.FinancialAccount;
+import org.estatio.dom.financial.utils.CreditorIdentifier;
+import org.estatio.dom.financial.utils.IBANValidator;
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.InvoiceSource;
+import org.estatio.dom.invoice.InvoiceStatus;
+import org.estatio.dom.invoice.PaymentMethod;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.party.Organisation;
+import org.estatio.dom.party.Party;
+import org.estatio.services.metrics.EstatioMetrics;
+import org.estatio.services.metrics.Timer;
+
+/**
+ * Generates the SEPA direct debit collection file (see
+ * {@link Pain008Writer}) of the {@link InvoiceStatus#COLLECTED collected}
+ * direct debit invoices of a due date and/or a range of collection numbers.
+ * 
+ * <p>
+ * The invoices are read in pages (of {@link #PAGE_SIZE} by default), ordered by
+ * collection number and each page starting after the last collection number
+ * of the previous one, by a persistence manager of its own that is cleared
+ * after each page; their gross amounts are summed with one query per page
+ * rather than by loading their items. The debtor is found through the bank
+ * mandate the lease is {@link Lease#getPaidBy() paid by}, the creditor
+ * (looked up once per seller) through the seller's bank account and fiscal
+ * code. Invoices whose debtor or creditor is incomplete, or whose debtor's
+ * IBAN is invalid, are left out and reported, rather than failing the file.
+ */
+public class CollectionFileService extends EstatioDomainService<Invoice> {
+
+    public static final int PAGE_SIZE = 1000;
+
+    private static final String CURRENCY = "EUR";
+
+    private int pageSize = PAGE_SIZE;
+
+    public CollectionFileService() {
+        super(CollectionFileService.class, Invoice.class);
+    }
+
+    /**
+     * The number of invoices read per page (by default {@link #PAGE_SIZE}).
+     */
+    @Programmatic
+    public void usePageSize(final int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    // //////////////////////////////////////
+
+    @ActionSemantics(Of.SAFE)
+    @MemberOrder(name = "Invoices", sequence = "30")
+    public Blob collectionFile(
+            final @Named("Due Date") @Optional LocalDate dueDate,
+            final @Named("From Collection Number") @Optional String fromCollectionNumber,
+            final @Named("To Collection Number") @Optional String toCollectionNumber) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final CollectionFileReport report;
+        try {
+            report = generate(dueDate, fromCollectionNumber, toCollectionNumber, out);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        if (!report.getRejected().isEmpty()) {
+            getContainer().warnUser(report.toString());
+        }
+        if (report.getNumberOfTransactions() == 0) {
+            getContainer().warnUser("No direct debits to collect");
+            return null;
+        }
+        return new Blob(report.getMessageId() + ".xml", "application/xml", out.toByteArray());
+    }
+
+    public String validateCollectionFile(
+            final LocalDate dueDate,
+            final String fromCollectionNumber,
+            final String toCollectionNumber) {
+        if (dueDate == null && fromCollectionNumber == null && toCollectionNumber == null) {
+            return "Either a due date or a range of collection numbers is required";
+        }
+        if (fromCollectionNumber != null && toCollectionNumber != null
+                && fromCollectionNumber.compareTo(toCollectionNumber) > 0) {
+            return "From collection number is after to collection number";
+        }
+        return null;
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Writes the collection file of the collected direct debit invoices of
+     * the due date (if any) with a collection number in the range (either
+     * bound optional, both inclusive).
+     */
+    @Programmatic
+    public CollectionFileReport generate(
+            final LocalDate dueDate,
+            final String fromCollectionNumber,
+            final String toCollectionNumber,
+            final OutputStream out) throws IOException {
+        final Timer.Context timer = EstatioMetrics.time("invoices.collectionFile");
+        final DateTime now = DateTime.now();
+        final String messageId = "ESTATIO-" + now.toString("yyyyMMddHHmmssSSS");
+        final CollectionFileReport report = new CollectionFileReport(messageId);
+        final Pain008Writer writer = new Pain008Writer(messageId, now);
+        final PersistenceManager pm = isisJdoSupport.getJdoPersistenceManager().getPersistenceManagerFactory().getPersistenceManager();
+        try {
+            pm.currentTransaction().begin();
+            final Map<String, Object> args = Maps.newHashMap();
+            args.put("status", InvoiceStatus.COLLECTED);
+            args.put("paymentMethod", PaymentMethod.DIRECT_DEBIT);
+            final List<String> conditions = Lists.newArrayList(
+                    "status == :status",
+                    "paymentMethod == :paymentMethod",
+                    "collectionNumber != null");
+            if (dueDate != null) {
+                conditions.add("dueDate == :dueDate");
+                args.put("dueDate", dueDate);
+            }
+            if (fromCollectionNumber != null) {
+                conditions.add("collectionNumber >= :fromCollectionNumber");
+                args.put("fromCollectionNumber", fromCollectionNumber);
+            }
+            if (toCollectionNumber != null) {
+                conditions.add("collectionNumber <= :toCollectionNumber");
+                args.put("toCollectionNumber", toCollectionNumber);
+            }
+
+            final Map<String, Pain008Writer.Creditor> creditors = Maps.newHashMap();
+            final Map<String, String> creditorErrors = Maps.newHashMap();
+            String after = null;
+            List<Invoice> page;
+            do {
+                page = nextPage(pm, conditions, args, after, pageSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                final String first = page.get(0).getCollectionNumber();
+                after = page.get(page.size() - 1).getCollectionNumber();
+                final Map<String, BigDecimal> amounts = grossAmounts(pm, conditions, args, first, after);
+                final Map<String, Boolean> validIbans = Maps.newHashMap();
+                for (Invoice invoice : page) {
+                    add(pm, invoice, amounts, validIbans, creditors, creditorErrors, writer, report);
+                }
+                pm.evictAll();
+            } while (page.size() == pageSize);
+
+            writer.finish(out);
+            report.written(writer);
+            EstatioMetrics.count("invoices.collected", report.getNumberOfTransactions());
+            return report;
+        } finally {
+            if (pm.currentTransaction().isActive()) {
+                pm.currentTransaction().rollback();
+            }
+            pm.close();
+            writer.close();
+            timer.stop();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Invoice> nextPage(
+            final PersistenceManager pm,
+            final List<String> conditions,
+            final Map<String, Object> args,
+            final String after,
+            final int pageSize) {
+        final List<String> pageConditions = Lists.newArrayList(conditions);
+        final Map<String, Object> pageArgs = Maps.newHashMap(args);
+        if (after != null) {
+            pageConditions.add("collectionNumber > :after");
+            pageArgs.put("after", after);
+        }
+        final Query query = pm.newQuery(Invoice.class, Joiner.on(" && ").join(pageConditions));
+        query.setOrdering("collectionNumber ascending");
+        query.setRange(0, pageSize);
+        return Lists.newArrayList((List<Invoice>) query.executeWithMap(pageArgs));
+    }
+
+    /**
+     * The gross amounts of the invoices with a collection number from first
+     * to last, by collection number.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, BigDecimal> grossAmounts(
+            final PersistenceManager pm,
+            final List<String> conditions,
+            final Map<String, Object> args,
+            final String first,
+            final String last) {
+        final List<String> itemConditions = Lists.newArrayList();
+        for (String condition : conditions) {
+            itemConditions.add("invoice." + condition);
+        }
+        itemConditions.add("invoice.collectionNumber >= :first");
+        itemConditions.add("invoice.collectionNumber <= :last");
+        final Map<String, Object> itemArgs = Maps.newHashMap(args);
+        itemArgs.put("first", first);
+        itemArgs.put("last", last);
+        final Query query = pm.newQuery(
+                "SELECT invoice.collectionNumber, sum(grossAmount) "
+                        + "FROM org.estatio.dom.invoice.InvoiceItem "
+                        + "WHERE " + Joiner.on(" && ").join(itemConditions) + " "
+                        + "GROUP BY invoice.collectionNumber");
+        final Map<String, BigDecimal> amounts = Maps.newHashMap();
+        for (Object[] row : (List<Object[]>) query.executeWithMap(itemArgs)) {
+            amounts.put((String) row[0], (BigDecimal) row[1]);
+        }
+        return amounts;
+    }
+
+    private static void add(
+            final PersistenceManager pm,
+            final Invoice invoice,
+            final Map<String, BigDecimal> amounts,
+            final Map<String, Boolean> validIbans,
+            final Map<String, Pain008Writer.Creditor> creditors,
+            final Map<String, String> creditorErrors,
+            final Pain008Writer writer,
+            final CollectionFileReport report) throws IOException {
+        final String collectionNumber = invoice.getCollectionNumber();
+        final BigDecimal amount = amounts.get(collectionNumber);
+        if (amount == null || amount.signum() <= 0) {
+            report.rejected(collectionNumber, "No positive amount to collect");
+            return;
+        }
+        if (invoice.getCurrency() == null || !CURRENCY.equals(invoice.getCurrency().getReference())) {
+            report.rejected(collectionNumber, "Not in " + CURRENCY);
+            return;
+        }
+        final Pain008Writer.Creditor creditor = creditorOf(pm, invoice.getSeller(), creditors, creditorErrors);
+        if (creditor == null) {
+            report.rejected(collectionNumber, creditorErrors.get(invoice.getSeller().getReference()));
+            return;
+        }
+        final InvoiceSource source = invoice.getSource();
+        final BankMandate mandate = source instanceof Lease ? ((Lease) source).getPaidBy() : null;
+        if (mandate == null) {
+            report.rejected(collectionNumber, "No bank mandate");
+            return;
+        }
+        final FinancialAccount account = mandate.getBankAccount();
+        if (!(account instanceof BankAccount)) {
+            report.rejected(collectionNumber, "No bank account for mandate " + mandate.getReference());
+            return;
+        }
+        final String iban = ((BankAccount) account).getIban();
+        Boolean validIban = validIbans.get(iban);
+        if (validIban == null) {
+            validIban = IBANValidator.valid(iban);
+            validIbans.put(iban, validIban);
+        }
+        if (!validIban) {
+            report.rejected(collectionNumber, "Invalid IBAN " + iban + " of mandate " + mandate.getReference());
+            return;
+        }
+        if (mandate.getStartDate() == null) {
+            report.rejected(collectionNumber, "No date of signature of mandate " + mandate.getReference());
+            return;
+        }
+        final Lease lease = (Lease) source;
+        final String remittanceInformation = invoice.getInvoiceNumber() != null
+                ? invoice.getInvoiceNumber()
+                : lease.getReference() + " " + invoice.getDueDate();
+        writer.add(
+                creditor,
+                invoice.getDueDate(),
+                new Pain008Writer.DirectDebit(
+                        collectionNumber,
+                        amount,
+                        CURRENCY,
+                        mandate.getReference(),
+                        mandate.getStartDate(),
+                        invoice.getBuyer().getName(),
+                        iban,
+                        remittanceInformation));
+    }
+
+    /**
+     * The {@link Pain008Writer.Creditor creditor} of the seller, cached by
+     * seller reference; <tt>null</tt> if there is none, the reason being
+     * cached instead.
+     */
+    @SuppressWarnings("unchecked")
+    private static Pain008Writer.Creditor creditorOf(
+            final PersistenceManager pm,
+            final Party seller,
+            final Map<String, Pain008Writer.Creditor> creditors,
+            final Map<String, String> creditorErrors) {
+        final String reference = seller.getReference();
+        if (creditors.containsKey(reference) || creditorErrors.containsKey(reference)) {
+            return creditors.get(reference);
+        }
+        if (!(seller instanceof Organisation) || ((Organisation) seller).getFiscalCode() == null) {
+            creditorErrors.put(reference, "No fiscal code for creditor " + reference);
+            return null;
+        }
+        final Query query = pm.newQuery(BankAccount.class, "owner == :owner");
+        for (BankAccount bankAccount : (List<BankAccount>) query.execute(seller)) {
+            if (IBANValidator.valid(bankAccount.getIban())) {
+                final Pain008Writer.Creditor creditor = new Pain008Writer.Creditor(
+                        seller.getName(),
+                        bankAccount.getIban(),
+                        CreditorIdentifier.of(
+                                bankAccount.getIban().substring(0, 2),
+                                ((Organisation) seller).getFiscalCode()));
+                creditors.put(reference, creditor);
+                return creditor;
+            }
+        }
+        creditorErrors.put(reference, "No valid bank account for creditor " + reference);
+        return null;
+    }
+
+}
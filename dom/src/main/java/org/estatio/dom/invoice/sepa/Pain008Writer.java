@@ -0,0 +1,407 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.invoice.sepa;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.SortedMap;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+
+/**
+ * Writes a SEPA direct debit collection file (ISO 20022
+ * <tt>pain.008.001.02</tt>), with a payment information block per creditor
+ * and collection date.
+ * 
+ * <p>
+ * The {@link DirectDebit direct debits} may be {@link #add(Creditor, LocalDate, DirectDebit) added}
+ * in any order. As the totals of the group header and of each payment
+ * information block precede its transactions in the file, each transaction
+ * is written as an XML fragment to a temporary file as it is added; only the
+ * totals and the positions of the fragments are kept in memory. On
+ * {@link #finish(OutputStream) finishing}, the headers are written and the
+ * fragments copied behind them, block by block.
+ */
+public class Pain008Writer implements Closeable {
+
+    static final String NAMESPACE = "urn:iso:std:iso:20022:tech:xsd:pain.008.001.02";
+
+    private static final String ENCODING = "UTF-8";
+    private static final String NOT_PROVIDED = "NOTPROVIDED";
+
+    private static final int ID_LENGTH_MAX = 35;
+    private static final int NAME_LENGTH_MAX = 70;
+    private static final int REMITTANCE_LENGTH_MAX = 140;
+
+    private final XMLOutputFactory factory = XMLOutputFactory.newInstance();
+
+    private final String messageId;
+    private final DateTime creationDateTime;
+    private final File fragments;
+    private final OutputStream fragmentsOut;
+    private long position;
+
+    private final SortedMap<String, PaymentInformation> paymentInformations = Maps.newTreeMap();
+    private int numberOfTransactions;
+    private BigDecimal controlSum = BigDecimal.ZERO;
+
+    public Pain008Writer(final String messageId, final DateTime creationDateTime) throws IOException {
+        this.messageId = truncate(messageId, ID_LENGTH_MAX);
+        this.creationDateTime = creationDateTime;
+        this.fragments = File.createTempFile("pain008-", ".xml");
+        this.fragmentsOut = new BufferedOutputStream(new FileOutputStream(fragments));
+    }
+
+    // //////////////////////////////////////
+
+    public static class Creditor {
+
+        private final String name;
+        private final String iban;
+        private final String identifier;
+
+        public Creditor(final String name, final String iban, final String identifier) {
+            this.name = name;
+            this.iban = iban;
+            this.identifier = identifier;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getIban() {
+            return iban;
+        }
+
+        /**
+         * The SEPA creditor identifier.
+         */
+        public String getIdentifier() {
+            return identifier;
+        }
+    }
+
+    public static class DirectDebit {
+
+        private final String endToEndId;
+        private final BigDecimal amount;
+        private final String currency;
+        private final String mandateId;
+        private final LocalDate mandateSignatureDate;
+        private final String debtorName;
+        private final String debtorIban;
+        private final String remittanceInformation;
+
+        public DirectDebit(
+                final String endToEndId,
+                final BigDecimal amount,
+                final String currency,
+                final String mandateId,
+                final LocalDate mandateSignatureDate,
+                final String debtorName,
+                final String debtorIban,
+                final String remittanceInformation) {
+            this.endToEndId = endToEndId;
+            this.amount = amount.setScale(2, RoundingMode.HALF_UP);
+            this.currency = currency;
+            this.mandateId = mandateId;
+            this.mandateSignatureDate = mandateSignatureDate;
+            this.debtorName = debtorName;
+            this.debtorIban = debtorIban;
+            this.remittanceInformation = remittanceInformation;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * The transactions of one creditor and collection date: their totals and
+     * the positions of their fragments in the temporary file, adjacent ones
+     * merged.
+     */
+    private static class PaymentInformation {
+
+        private final Creditor creditor;
+        private final LocalDate collectionDate;
+        private final List<long[]> segments = Lists.newArrayList();
+        private int numberOfTransactions;
+        private BigDecimal controlSum = BigDecimal.ZERO;
+
+        PaymentInformation(final Creditor creditor, final LocalDate collectionDate) {
+            this.creditor = creditor;
+            this.collectionDate = collectionDate;
+        }
+
+        void add(final long offset, final int length, final BigDecimal amount) {
+            final long[] last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (last != null && last[0] + last[1] == offset) {
+                last[1] += length;
+            } else {
+                segments.add(new long[] { offset, length });
+            }
+            numberOfTransactions++;
+            controlSum = controlSum.add(amount);
+        }
+    }
+
+    public void add(
+            final Creditor creditor,
+            final LocalDate collectionDate,
+            final DirectDebit directDebit) throws IOException {
+        final String key = creditor.getIdentifier() + "|" + creditor.getIban() + "|" + collectionDate;
+        PaymentInformation paymentInformation = paymentInformations.get(key);
+        if (paymentInformation == null) {
+            paymentInformation = new PaymentInformation(creditor, collectionDate);
+            paymentInformations.put(key, paymentInformation);
+        }
+        final byte[] fragment = fragmentOf(directDebit);
+        fragmentsOut.write(fragment);
+        paymentInformation.add(position, fragment.length, directDebit.getAmount());
+        position += fragment.length;
+        numberOfTransactions++;
+        controlSum = controlSum.add(directDebit.getAmount());
+    }
+
+    public int getNumberOfTransactions() {
+        return numberOfTransactions;
+    }
+
+    public BigDecimal getControlSum() {
+        return controlSum;
+    }
+
+    public int getNumberOfPaymentInformations() {
+        return paymentInformations.size();
+    }
+
+    private byte[] fragmentOf(final DirectDebit directDebit) throws IOException {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream(1024);
+        try {
+            final XMLStreamWriter xml = factory.createXMLStreamWriter(buf, ENCODING);
+            xml.writeStartElement("DrctDbtTxInf");
+            xml.writeStartElement("PmtId");
+            element(xml, "EndToEndId", truncate(directDebit.endToEndId, ID_LENGTH_MAX));
+            xml.writeEndElement();
+            xml.writeStartElement("InstdAmt");
+            xml.writeAttribute("Ccy", directDebit.currency);
+            xml.writeCharacters(directDebit.amount.toPlainString());
+            xml.writeEndElement();
+            xml.writeStartElement("DrctDbtTx");
+            xml.writeStartElement("MndtRltdInf");
+            element(xml, "MndtId", truncate(directDebit.mandateId, ID_LENGTH_MAX));
+            element(xml, "DtOfSgntr", directDebit.mandateSignatureDate.toString());
+            xml.writeEndElement();
+            xml.writeEndElement();
+            agent(xml, "DbtrAgt");
+            xml.writeStartElement("Dbtr");
+            element(xml, "Nm", truncate(directDebit.debtorName, NAME_LENGTH_MAX));
+            xml.writeEndElement();
+            account(xml, "DbtrAcct", directDebit.debtorIban);
+            xml.writeStartElement("RmtInf");
+            element(xml, "Ustrd", truncate(directDebit.remittanceInformation, REMITTANCE_LENGTH_MAX));
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.flush();
+            xml.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+        return buf.toByteArray();
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Writes the complete document; the writer should be {@link #close()
+     * closed} afterwards.
+     */
+    public void finish(final OutputStream out) throws IOException {
+        fragmentsOut.close();
+        final RandomAccessFile in = new RandomAccessFile(fragments, "r");
+        try {
+            final XMLStreamWriter xml = factory.createXMLStreamWriter(out, ENCODING);
+            xml.writeStartDocument(ENCODING, "1.0");
+            xml.writeStartElement("Document");
+            xml.writeDefaultNamespace(NAMESPACE);
+            xml.writeStartElement("CstmrDrctDbtInitn");
+            writeGroupHeader(xml);
+            int sequence = 0;
+            for (PaymentInformation paymentInformation : paymentInformations.values()) {
+                writePaymentInformationHeader(xml, paymentInformation, ++sequence);
+                // the header ends with a closed element, so the fragments can be copied as is
+                xml.flush();
+                for (long[] segment : paymentInformation.segments) {
+                    copy(in, segment[0], segment[1], out);
+                }
+                xml.writeEndElement();
+            }
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.flush();
+            xml.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        } finally {
+            in.close();
+        }
+        out.flush();
+    }
+
+    private void writeGroupHeader(final XMLStreamWriter xml) throws XMLStreamException {
+        xml.writeStartElement("GrpHdr");
+        element(xml, "MsgId", messageId);
+        element(xml, "CreDtTm", creationDateTime.toString("yyyy-MM-dd'T'HH:mm:ss"));
+        element(xml, "NbOfTxs", String.valueOf(numberOfTransactions));
+        element(xml, "CtrlSum", controlSum.toPlainString());
+        xml.writeStartElement("InitgPty");
+        element(xml, "Nm", truncate(initiatingPartyName(), NAME_LENGTH_MAX));
+        xml.writeEndElement();
+        xml.writeEndElement();
+    }
+
+    private String initiatingPartyName() {
+        return paymentInformations.isEmpty()
+                ? messageId
+                : paymentInformations.values().iterator().next().creditor.getName();
+    }
+
+    private void writePaymentInformationHeader(
+            final XMLStreamWriter xml,
+            final PaymentInformation paymentInformation,
+            final int sequence) throws XMLStreamException {
+        final Creditor creditor = paymentInformation.creditor;
+        xml.writeStartElement("PmtInf");
+        element(xml, "PmtInfId", truncate(messageId + "-" + sequence, ID_LENGTH_MAX));
+        element(xml, "PmtMtd", "DD");
+        element(xml, "NbOfTxs", String.valueOf(paymentInformation.numberOfTransactions));
+        element(xml, "CtrlSum", paymentInformation.controlSum.toPlainString());
+        xml.writeStartElement("PmtTpInf");
+        xml.writeStartElement("SvcLvl");
+        element(xml, "Cd", "SEPA");
+        xml.writeEndElement();
+        xml.writeStartElement("LclInstrm");
+        element(xml, "Cd", "CORE");
+        xml.writeEndElement();
+        element(xml, "SeqTp", "RCUR");
+        xml.writeEndElement();
+        element(xml, "ReqdColltnDt", paymentInformation.collectionDate.toString());
+        xml.writeStartElement("Cdtr");
+        element(xml, "Nm", truncate(creditor.getName(), NAME_LENGTH_MAX));
+        xml.writeEndElement();
+        account(xml, "CdtrAcct", creditor.getIban());
+        agent(xml, "CdtrAgt");
+        element(xml, "ChrgBr", "SLEV");
+        xml.writeStartElement("CdtrSchmeId");
+        xml.writeStartElement("Id");
+        xml.writeStartElement("PrvtId");
+        xml.writeStartElement("Othr");
+        element(xml, "Id", creditor.getIdentifier());
+        xml.writeStartElement("SchmeNm");
+        element(xml, "Prtry", "SEPA");
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndElement();
+    }
+
+    /**
+     * The BIC is not required for SEPA direct debits within the EEA.
+     */
+    private static void agent(final XMLStreamWriter xml, final String name) throws XMLStreamException {
+        xml.writeStartElement(name);
+        xml.writeStartElement("FinInstnId");
+        xml.writeStartElement("Othr");
+        element(xml, "Id", NOT_PROVIDED);
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndElement();
+    }
+
+    private static void account(final XMLStreamWriter xml, final String name, final String iban) throws XMLStreamException {
+        xml.writeStartElement(name);
+        xml.writeStartElement("Id");
+        element(xml, "IBAN", iban);
+        xml.writeEndElement();
+        xml.writeEndElement();
+    }
+
+    private static void element(final XMLStreamWriter xml, final String name, final String text) throws XMLStreamException {
+        xml.writeStartElement(name);
+        xml.writeCharacters(text);
+        xml.writeEndElement();
+    }
+
+    private static String truncate(final String str, final int length) {
+        return str == null || str.length() <= length ? str : str.substring(0, length);
+    }
+
+    private static void copy(
+            final RandomAccessFile in,
+            final long offset,
+            final long length,
+            final OutputStream out) throws IOException {
+        final byte[] buf = new byte[8192];
+        in.seek(offset);
+        long remaining = length;
+        while (remaining > 0) {
+            final int read = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+            if (read < 0) {
+                throw new IOException("Unexpected end of temporary file");
+            }
+            out.write(buf, 0, read);
+            remaining -= read;
+        }
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Deletes the temporary file.
+     */
+    @Override
+    public void close() throws IOException {
+        fragmentsOut.close();
+        fragments.delete();
+    }
+
+}
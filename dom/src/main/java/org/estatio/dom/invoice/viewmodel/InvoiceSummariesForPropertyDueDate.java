@@ -72,7 +72,7 @@ public class InvoiceSummariesForPropertyDueDate extends EstatioDomainService<Inv
     @ActionSemantics(Of.SAFE)
     @MemberOrder(name = "Invoices", sequence = "80")
     public List<InvoiceSummaryForPropertyDueDate> invoicesForPropertyDueDate() {
-        return allInstances();
+        return allInstancesOnReplica();
     }
 
     // //////////////////////////////////////
@@ -18,32 +18,33 @@
 package org.estatio.dom.invoice.viewmodel;
 
 import java.math.BigDecimal;
-import java.nio.charset.Charset;
 import java.util.List;
 
 import javax.jdo.annotations.Extension;
 import javax.jdo.annotations.IdentityType;
 import javax.jdo.annotations.InheritanceStrategy;
 
-import com.google.common.io.BaseEncoding;
-
 import org.jdom2.Element;
 import org.joda.time.LocalDate;
 
-import org.apache.isis.applib.AbstractViewModel;
 import org.apache.isis.applib.annotation.Bookmarkable;
 import org.apache.isis.applib.annotation.DescribedAs;
 import org.apache.isis.applib.annotation.Hidden;
 import org.apache.isis.applib.annotation.Immutable;
+import org.apache.isis.applib.annotation.Named;
 import org.apache.isis.applib.annotation.Optional;
 import org.apache.isis.applib.annotation.Render;
 import org.apache.isis.applib.annotation.Render.Type;
 import org.apache.isis.applib.annotation.Title;
 
+import org.estatio.app.EstatioViewModel;
+import org.estatio.app.ViewModelMemento;
 import org.estatio.dom.asset.Properties;
 import org.estatio.dom.asset.Property;
 import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.InvoiceStatus;
 import org.estatio.dom.invoice.Invoices;
+import org.estatio.dom.lease.invoicing.BulkTransitionService;
 import org.estatio.dom.utils.Jdom2Util;
 
 /**
@@ -72,11 +73,7 @@ import org.estatio.dom.utils.Jdom2Util;
                     "   SUM(\"InvoiceItem\".\"vatAmount\") AS \"vatAmount\", " +
                     "   SUM(\"InvoiceItem\".\"grossAmount\") AS \"grossAmount\" " +
                     "  FROM \"Invoice\" " +
-                    "  INNER JOIN \"Lease\"       ON \"Invoice\".\"sourceLeaseId\" = \"Lease\".\"id\" " +
-                    "  INNER JOIN \"Occupancy\"   ON \"Lease\".\"id\"              = \"Occupancy\".\"leaseId\" " +
-                    "  INNER JOIN \"Unit\"        ON \"Unit\".\"id\"               = \"Occupancy\".\"unitId\" " +
-                    "  INNER JOIN \"Property\"    ON \"Property\".\"id\"           = \"Unit\".\"propertyId\" " +
-                    "  INNER JOIN \"FixedAsset\"  ON \"FixedAsset\".\"id\"         = \"Property\".\"id\" " +
+                    "  INNER JOIN \"FixedAsset\"  ON \"FixedAsset\".\"id\"         = \"Invoice\".\"propertyId\" " +
                     "  INNER JOIN \"InvoiceItem\" ON \"InvoiceItem\".\"invoiceId\" = \"Invoice\".\"id\" " +
                     "GROUP BY " +
                     " \"FixedAsset\".\"reference\", " +
@@ -85,39 +82,45 @@ import org.estatio.dom.utils.Jdom2Util;
 @javax.jdo.annotations.Inheritance(strategy = InheritanceStrategy.NEW_TABLE)
 @Bookmarkable
 @Immutable
-public class InvoiceSummaryForPropertyDueDate extends AbstractViewModel {
+public class InvoiceSummaryForPropertyDueDate extends EstatioViewModel {
 
     /**
      * {@link org.apache.isis.applib.ViewModel} implementation.
      */
     @Override
     public String viewModelMemento() {
-        final String base64UrlEncode = base64UrlEncode(asSnapshotXml());
-        return base64UrlEncode;
+        return ViewModelMemento.writer()
+                .writeString(getReference())
+                .writeLocalDate(getDueDate())
+                .writeBigDecimal(getNetAmount())
+                .writeBigDecimal(getVatAmount())
+                .writeBigDecimal(getGrossAmount())
+                .writeInt(getTotal())
+                .toString();
     }
-    
-    /**
+
     /**
      * {@link org.apache.isis.applib.ViewModel} implementation.
      */
     @Override
     public void viewModelInit(final String memento) {
-        initFromSnapshotXml(base64UrlDecode(memento));
-    }
-
-    private String asSnapshotXml() {
-        Element el = new Element("memento");
-
-        set(el, "reference", getReference());
-        set(el, "dueDate", getDueDate());
-        set(el, "netAmount", getNetAmount());
-        set(el, "vatAmount", getVatAmount());
-        set(el, "grossAmount", getGrossAmount());
-        set(el, "total", ""+getTotal());
-        
-        return Jdom2Util.toString(el);
+        final String xml = ViewModelMemento.legacyXmlOf(memento);
+        if (xml != null) {
+            initFromSnapshotXml(xml);
+            return;
+        }
+        final ViewModelMemento.Reader reader = ViewModelMemento.reader(memento);
+        setReference(reader.readString());
+        setDueDate(reader.readLocalDate());
+        setNetAmount(reader.readBigDecimal());
+        setVatAmount(reader.readBigDecimal());
+        setGrossAmount(reader.readBigDecimal());
+        setTotal(reader.readInt());
     }
 
+    /**
+     * For mementos written (and bookmarked) before {@link ViewModelMemento}.
+     */
     private void initFromSnapshotXml(final String str) {
         final Element el = Jdom2Util.parse(str);
         
@@ -129,24 +132,6 @@ public class InvoiceSummaryForPropertyDueDate extends AbstractViewModel {
         setTotal(Jdom2Util.getChild(el, "total", Integer.class));
     }
 
-    static void set(final Element memento, final String name, final Object value) {
-        if(value != null) {
-            memento.addContent(new Element(name).setText(value.toString()));
-        }
-    }
-
-    static String get(final Element el, final String name) {
-        return el.getChild(name).getText();
-    }
-
-    private static String base64UrlEncode(final String str) {
-        return BaseEncoding.base64Url().encode(str.getBytes(Charset.forName("UTF-8")));
-    }
-    private static String base64UrlDecode(final String str) {
-        return new String(BaseEncoding.base64Url().decode(str), Charset.forName("UTF-8"));
-    }
-    
-
     // //////////////////////////////////////
 
     private String reference;
@@ -265,6 +250,42 @@ public class InvoiceSummaryForPropertyDueDate extends AbstractViewModel {
 
     // //////////////////////////////////////
 
+    /**
+     * Approves all {@link InvoiceStatus#NEW new} invoices of this property and
+     * due date in one go.
+     */
+    @Named("Approve All")
+    public InvoiceSummaryForPropertyDueDate approveAll() {
+        informUser(bulkTransitionService.approveInvoices(getProperty(), getDueDate()).toString());
+        return this;
+    }
+
+    /**
+     * Collects all approved direct debit invoices of this property and due
+     * date in one go.
+     */
+    @Named("Collect All")
+    public InvoiceSummaryForPropertyDueDate collectAll() {
+        informUser(bulkTransitionService.collectInvoices(getProperty(), getDueDate()).toString());
+        return this;
+    }
+
+    /**
+     * Invoices all approved and collected invoices of this property and due
+     * date in one go.
+     */
+    @Named("Invoice All")
+    public InvoiceSummaryForPropertyDueDate invoiceAll(final @Named("Invoice date") LocalDate invoiceDate) {
+        informUser(bulkTransitionService.invoiceInvoices(getProperty(), getDueDate(), invoiceDate).toString());
+        return this;
+    }
+
+    public LocalDate default0InvoiceAll() {
+        return getClockService().now();
+    }
+
+    // //////////////////////////////////////
+
     private Properties properties;
 
     final public void injectProperties(final Properties properties) {
@@ -277,4 +298,10 @@ public class InvoiceSummaryForPropertyDueDate extends AbstractViewModel {
         this.invoicesService = invoicesService;
     }
 
+    private BulkTransitionService bulkTransitionService;
+
+    final public void injectBulkTransitionService(final BulkTransitionService bulkTransitionService) {
+        this.bulkTransitionService = bulkTransitionService;
+    }
+
 }
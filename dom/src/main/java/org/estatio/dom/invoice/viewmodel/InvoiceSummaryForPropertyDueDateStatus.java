@@ -18,19 +18,15 @@
 package org.estatio.dom.invoice.viewmodel;
 
 import java.math.BigDecimal;
-import java.nio.charset.Charset;
 import java.util.List;
 
 import javax.jdo.annotations.Extension;
 import javax.jdo.annotations.IdentityType;
 import javax.jdo.annotations.InheritanceStrategy;
 
-import com.google.common.io.BaseEncoding;
-
 import org.jdom2.Element;
 import org.joda.time.LocalDate;
 
-import org.apache.isis.applib.AbstractViewModel;
 import org.apache.isis.applib.annotation.Bookmarkable;
 import org.apache.isis.applib.annotation.Hidden;
 import org.apache.isis.applib.annotation.Immutable;
@@ -39,6 +35,8 @@ import org.apache.isis.applib.annotation.Optional;
 import org.apache.isis.applib.annotation.Render;
 import org.apache.isis.applib.annotation.Render.Type;
 
+import org.estatio.app.EstatioViewModel;
+import org.estatio.app.ViewModelMemento;
 import org.estatio.dom.asset.Properties;
 import org.estatio.dom.asset.Property;
 import org.estatio.dom.invoice.Invoice;
@@ -70,11 +68,7 @@ import org.estatio.dom.utils.Jdom2Util;
                     "   SUM(\"InvoiceItem\".\"vatAmount\") AS \"vatAmount\", " +
                     "   SUM(\"InvoiceItem\".\"grossAmount\") AS \"grossAmount\" " +
                     "FROM \"Invoice\" " +
-                    "  INNER JOIN \"Lease\"       ON \"Invoice\".\"sourceLeaseId\" = \"Lease\".\"id\" " +
-                    "  INNER JOIN \"Occupancy\"   ON \"Lease\".\"id\"              = \"Occupancy\".\"leaseId\" " +
-                    "  INNER JOIN \"Unit\"        ON \"Unit\".\"id\"               = \"Occupancy\".\"unitId\" " +
-                    "  INNER JOIN \"Property\"    ON \"Property\".\"id\"           = \"Unit\".\"propertyId\" " +
-                    "  INNER JOIN \"FixedAsset\"  ON \"FixedAsset\".\"id\"         = \"Property\".\"id\" " +
+                    "  INNER JOIN \"FixedAsset\"  ON \"FixedAsset\".\"id\"         = \"Invoice\".\"propertyId\" " +
                     "  INNER JOIN \"InvoiceItem\" ON \"InvoiceItem\".\"invoiceId\" = \"Invoice\".\"id\" " +
                     "GROUP BY " +
                     "  \"FixedAsset\".\"reference\", " +
@@ -84,7 +78,7 @@ import org.estatio.dom.utils.Jdom2Util;
 @javax.jdo.annotations.Inheritance(strategy = InheritanceStrategy.NEW_TABLE)
 @Bookmarkable
 @Immutable
-public class InvoiceSummaryForPropertyDueDateStatus extends AbstractViewModel {
+public class InvoiceSummaryForPropertyDueDateStatus extends EstatioViewModel {
 
 
     /**
@@ -92,33 +86,40 @@ public class InvoiceSummaryForPropertyDueDateStatus extends AbstractViewModel {
      */
     @Override
     public String viewModelMemento() {
-        final String base64UrlEncode = base64UrlEncode(asSnapshotXml());
-        return base64UrlEncode;
+        return ViewModelMemento.writer()
+                .writeString(getReference())
+                .writeLocalDate(getDueDate())
+                .writeString(getStatus())
+                .writeBigDecimal(getNetAmount())
+                .writeBigDecimal(getVatAmount())
+                .writeBigDecimal(getGrossAmount())
+                .writeInt(getTotal())
+                .toString();
     }
-    
-    /**
+
     /**
      * {@link org.apache.isis.applib.ViewModel} implementation.
      */
     @Override
     public void viewModelInit(final String memento) {
-        initFromSnapshotXml(base64UrlDecode(memento));
-    }
-
-    private String asSnapshotXml() {
-        Element el = new org.jdom2.Element("memento");
-
-        set(el, "reference", getReference());
-        set(el, "dueDate", getDueDate());
-        set(el, "status", getStatus());
-        set(el, "netAmount", getNetAmount());
-        set(el, "vatAmount", getVatAmount());
-        set(el, "grossAmount", getGrossAmount());
-        set(el, "total", ""+getTotal());
-        
-        return Jdom2Util.toString(el);
+        final String xml = ViewModelMemento.legacyXmlOf(memento);
+        if (xml != null) {
+            initFromSnapshotXml(xml);
+            return;
+        }
+        final ViewModelMemento.Reader reader = ViewModelMemento.reader(memento);
+        setReference(reader.readString());
+        setDueDate(reader.readLocalDate());
+        setStatus(reader.readString());
+        setNetAmount(reader.readBigDecimal());
+        setVatAmount(reader.readBigDecimal());
+        setGrossAmount(reader.readBigDecimal());
+        setTotal(reader.readInt());
     }
 
+    /**
+     * For mementos written (and bookmarked) before {@link ViewModelMemento}.
+     */
     private void initFromSnapshotXml(final String str) {
         final Element el = Jdom2Util.parse(str);
         
@@ -131,24 +132,6 @@ public class InvoiceSummaryForPropertyDueDateStatus extends AbstractViewModel {
         setTotal(Jdom2Util.getChild(el, "total", Integer.class));
     }
 
-    static void set(final Element memento, final String name, final Object value) {
-        if(value != null) {
-            memento.addContent(new Element(name).setText(value.toString()));
-        }
-    }
-
-    static String get(final Element el, final String name) {
-        return el.getChild(name).getText();
-    }
-
-    private static String base64UrlEncode(final String str) {
-        return BaseEncoding.base64Url().encode(str.getBytes(Charset.forName("UTF-8")));
-    }
-    private static String base64UrlDecode(final String str) {
-        return new String(BaseEncoding.base64Url().decode(str), Charset.forName("UTF-8"));
-    }
-
-
     // //////////////////////////////////////
 
     private String reference;
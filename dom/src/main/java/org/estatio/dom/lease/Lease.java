@@ -29,11 +29,13 @@ import javax.jdo.annotations.InheritanceStrategy;
 
 import com.google.common.collect.Iterables;
 
+import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.joda.time.Period;
 
 import org.apache.isis.applib.annotation.ActionSemantics;
 import org.apache.isis.applib.annotation.ActionSemantics.Of;
+import org.apache.isis.applib.annotation.AutoComplete;
 import org.apache.isis.applib.annotation.Bookmarkable;
 import org.apache.isis.applib.annotation.Bulk;
 import org.apache.isis.applib.annotation.DescribedAs;
@@ -50,6 +52,8 @@ import org.apache.isis.applib.annotation.Where;
 import org.apache.isis.core.commons.exceptions.IsisApplicationException;
 
 import org.estatio.dom.JdoColumnLength;
+import org.estatio.dom.LastModifiedListener;
+import org.estatio.dom.WithLastModified;
 import org.estatio.dom.agreement.Agreement;
 import org.estatio.dom.agreement.AgreementRole;
 import org.estatio.dom.agreement.AgreementRoleType;
@@ -67,19 +71,40 @@ import org.estatio.dom.lease.Leases.InvoiceRunType;
 import org.estatio.dom.lease.breaks.BreakExerciseType;
 import org.estatio.dom.lease.breaks.BreakOption;
 import org.estatio.dom.lease.breaks.BreakType;
+import org.estatio.dom.lease.criticaldates.CriticalDates;
+import org.estatio.dom.lease.invoicing.BulkTransitionService;
+import org.estatio.dom.lease.invoicing.InvoiceCalculationService;
+import org.estatio.dom.lease.invoicing.InvoicingUnitOfWork;
 import org.estatio.dom.party.Party;
 import org.estatio.dom.utils.JodaPeriodUtils;
+import org.estatio.services.metrics.EstatioMetrics;
+import org.estatio.services.metrics.MetricsTags;
+import org.estatio.services.metrics.Timer;
 
 @javax.jdo.annotations.PersistenceCapable(identityType = IdentityType.DATASTORE)
 @javax.jdo.annotations.Inheritance(
         strategy = InheritanceStrategy.NEW_TABLE)
 // no @DatastoreIdentity nor @Version, since inherited from supertype
+@javax.jdo.annotations.Indices({
+        @javax.jdo.annotations.Index(
+                name = "Lease_property_IDX",
+                members = { "property" }),
+        @javax.jdo.annotations.Index(
+                name = "Lease_lastModified_IDX",
+                members = { "lastModified" })
+})
 @javax.jdo.annotations.Queries({
         @javax.jdo.annotations.Query(
                 name = "findByReference", language = "JDOQL",
                 value = "SELECT "
                         + "FROM org.estatio.dom.lease.Lease "
                         + "WHERE reference.matches(:reference)"),
+        @javax.jdo.annotations.Query(
+                name = "findModifiedSince", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.lease.Lease "
+                        + "WHERE lastModified > :since "
+                        + "ORDER BY lastModified"),
         @javax.jdo.annotations.Query(
                 name = "findByReferenceOrName", language = "JDOQL",
                 value = "SELECT "
@@ -90,10 +115,7 @@ import org.estatio.dom.utils.JodaPeriodUtils;
                 name = "findByProperty", language = "JDOQL",
                 value = "SELECT " +
                         "FROM org.estatio.dom.lease.Lease " +
-                        "WHERE occupancies.contains(lu) " +
-                        "&& (lu.unit.property == :property) " +
-                        "VARIABLES " +
-                        "org.estatio.dom.lease.Occupancy lu"),
+                        "WHERE property == :property"),
         @javax.jdo.annotations.Query(
                 name = "findByAssetAndActiveOnDate", language = "JDOQL",
                 value = "SELECT "
@@ -111,10 +133,11 @@ import org.estatio.dom.utils.JodaPeriodUtils;
                         "ORDER BY endDate")
 
 })
+@AutoComplete(repository = Leases.class, action = "autoComplete")
 @Bookmarkable
 public class Lease
         extends Agreement
-        implements InvoiceSource {
+        implements InvoiceSource, WithLastModified {
 
     // //////////////////////////////////////
 
@@ -138,6 +161,26 @@ public class Lease
 
     // //////////////////////////////////////
 
+    private DateTime lastModified;
+
+    /**
+     * When this lease, or any of its items or terms, was last changed; maintained by
+     * the {@link LastModifiedListener}, directly in the database if only
+     * the items or terms changed (so may be stale until reloaded).
+     */
+    @javax.jdo.annotations.Column(allowsNull = "true")
+    @Hidden(where = Where.ALL_TABLES)
+    @Disabled
+    public DateTime getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(final DateTime lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    // //////////////////////////////////////
+
     @Override
     @NotPersisted
     public Party getPrimaryParty() {
@@ -164,21 +207,29 @@ public class Lease
 
     // //////////////////////////////////////
 
+    private Property property;
+
     /**
-     * The {@link Property} of the (first of the) {@link #getOccupancies()
-     * LeaseUnit}s.
+     * The {@link Property} of the {@link #getOccupancies() occupancies}.
      * 
      * <p>
      * It is not possible for the {@link Occupancy}s to belong to different
-     * {@link Property properties}, and so it is sufficient to obtain the
-     * {@link Property} of the first such {@link Occupancy occupancy}.
+     * {@link Property properties}; the property is therefore set when the
+     * first {@link Occupancy occupancy} is
+     * {@link Occupancies#newOccupancy(Lease, UnitForLease, LocalDate)
+     * created}, and stored so that the lease can be found by property
+     * without joining its occupancies and units.
      */
+    @javax.jdo.annotations.Column(name = "propertyId", allowsNull = "true")
+    @Optional
+    @Disabled
     @Override
     public Property getProperty() {
-        if (getOccupancies().isEmpty()) {
-            return null;
-        }
-        return getOccupancies().first().getUnit().getProperty();
+        return property;
+    }
+
+    public void setProperty(final Property property) {
+        this.property = property;
     }
 
     // //////////////////////////////////////
@@ -305,6 +356,7 @@ public class Lease
         final LocalDate excersiseDate = date.minus(notificationPeriodJoda);
         breakOption.setExerciseDate(excersiseDate);
         persist(breakOption);
+        criticalDates.updateFor(this);
         return this;
     }
 
@@ -490,11 +542,7 @@ public class Lease
     @Bulk
     @Prototype
     public Lease approveAllTermsOfThisLease() {
-        for (LeaseItem item : getItems()) {
-            for (LeaseTerm term : item.getTerms()) {
-                term.approve();
-            }
-        }
+        bulkTransitionService.approveTerms(this);
         return this;
     }
 
@@ -508,9 +556,29 @@ public class Lease
 
     @Programmatic
     public void verifyUntil(final LocalDate date) {
-        for (LeaseItem item : getItems()) {
-            item.verifyUntil(date);
+        final MetricsTags tags = enterMetricsTags();
+        final Timer.Context timer = EstatioMetrics.time("lease.verifyUntil");
+        try {
+            for (LeaseItem item : getItems()) {
+                item.verifyUntil(date);
+            }
+            criticalDates.updateFor(this);
+        } finally {
+            timer.stop();
+            tags.exit();
+        }
+    }
+
+    /**
+     * Tags the metrics with the reference of this lease's property, unless
+     * already tagged by the caller (eg a run over a whole property).
+     */
+    private MetricsTags enterMetricsTags() {
+        if (!EstatioMetrics.isEnabled() || MetricsTags.current().getProperty() != null) {
+            return MetricsTags.enter(null, null);
         }
+        final Property property = getProperty();
+        return MetricsTags.enter(property == null ? null : property.getReference(), null);
     }
 
     // //////////////////////////////////////
@@ -521,8 +589,34 @@ public class Lease
             final @Named("Period End Date") @Optional LocalDate endDate,
             final @Named("Due date") LocalDate dueDate,
             final @Named("Run Type") InvoiceRunType runType) {
-        for (LeaseItem item : getItems()) {
-            item.calculate(startDate, endDate, dueDate, runType);
+        return calculate(startDate, endDate, dueDate, runType, EstatioMetrics.newRunId("calculate"));
+    }
+
+    /**
+     * Calculates as part of the run with the given id (eg a run over many
+     * leases), which is recorded on the invoice items.
+     */
+    @Programmatic
+    public Lease calculate(
+            final LocalDate startDate,
+            final LocalDate endDate,
+            final LocalDate dueDate,
+            final InvoiceRunType runType,
+            final String runId) {
+        final MetricsTags run = MetricsTags.enter(null, runId);
+        final MetricsTags tags = enterMetricsTags();
+        final Timer.Context timer = EstatioMetrics.time("lease.calculate");
+        final InvoicingUnitOfWork unitOfWork = invoiceCalculationService.beginUnitOfWork();
+        try {
+            for (LeaseItem item : getItems()) {
+                item.calculate(startDate, endDate, dueDate, runType, runId);
+            }
+            unitOfWork.complete();
+        } finally {
+            unitOfWork.end();
+            timer.stop();
+            tags.exit();
+            run.exit();
         }
         return this;
     }
@@ -563,6 +657,7 @@ public class Lease
         // TODO: break options
 
         setTerminationDate(terminationDate);
+        criticalDates.updateFor(this);
 
         return this;
     }
@@ -586,6 +681,18 @@ public class Lease
 
     // //////////////////////////////////////
 
+    @ActionSemantics(Of.IDEMPOTENT)
+    @Override
+    public Lease changeDates(
+            final @Named("Start Date") @Optional LocalDate startDate,
+            final @Named("End Date") @Optional LocalDate endDate) {
+        super.changeDates(startDate, endDate);
+        criticalDates.updateFor(this);
+        return this;
+    }
+
+    // //////////////////////////////////////
+
     public Lease assign(
             @Named("Reference") final String reference,
             @Named("Name") final String name,
@@ -752,4 +859,22 @@ public class Lease
         this.leases = leases;
     }
 
+    private CriticalDates criticalDates;
+
+    public final void injectCriticalDates(final CriticalDates criticalDates) {
+        this.criticalDates = criticalDates;
+    }
+
+    private BulkTransitionService bulkTransitionService;
+
+    public final void injectBulkTransitionService(final BulkTransitionService bulkTransitionService) {
+        this.bulkTransitionService = bulkTransitionService;
+    }
+
+    private InvoiceCalculationService invoiceCalculationService;
+
+    public final void injectInvoiceCalculationService(final InvoiceCalculationService invoiceCalculationService) {
+        this.invoiceCalculationService = invoiceCalculationService;
+    }
+
 }
@@ -48,6 +48,7 @@ import org.apache.isis.applib.annotation.Where;
 
 import org.estatio.dom.EstatioMutableObject;
 import org.estatio.dom.JdoColumnLength;
+import org.estatio.dom.WithLastModified;
 import org.estatio.dom.WithIntervalMutable;
 import org.estatio.dom.WithSequence;
 import org.estatio.dom.charge.Charge;
@@ -55,6 +56,7 @@ import org.estatio.dom.charge.Charges;
 import org.estatio.dom.invoice.PaymentMethod;
 import org.estatio.dom.lease.Leases.InvoiceRunType;
 import org.estatio.dom.valuetypes.LocalDateInterval;
+import org.estatio.services.metrics.EstatioMetrics;
 
 /**
  * An item component of an {@link #getLease() owning} {@link Lease}. Each is of
@@ -112,7 +114,7 @@ import org.estatio.dom.valuetypes.LocalDateInterval;
 @Bookmarkable(BookmarkPolicy.AS_CHILD)
 public class LeaseItem
         extends EstatioMutableObject<LeaseItem>
-        implements WithIntervalMutable<LeaseItem>, WithSequence {
+        implements WithIntervalMutable<LeaseItem>, WithSequence, WithLastModified.Part {
 
     private static final int PAGE_SIZE = 15;
 
@@ -152,6 +154,17 @@ public class LeaseItem
 
     // //////////////////////////////////////
 
+    /**
+     * {@link WithLastModified.Part} implementation.
+     */
+    @Programmatic
+    @Override
+    public Object getWhole() {
+        return getLease();
+    }
+
+    // //////////////////////////////////////
+
     private BigInteger sequence;
 
     @javax.jdo.annotations.Column(allowsNull = "false")
@@ -441,8 +454,18 @@ public class LeaseItem
             final @Named("Period end date") @Optional LocalDate endDate,
             final @Named("Due date") LocalDate dueDate,
             final @Named("Run Type") InvoiceRunType runType) {
+        return calculate(startDate, endDate, dueDate, runType, EstatioMetrics.newRunId("calculate"));
+    }
+
+    @Programmatic
+    public LeaseItem calculate(
+            final LocalDate startDate,
+            final LocalDate endDate,
+            final LocalDate dueDate,
+            final InvoiceRunType runType,
+            final String runId) {
         for (LeaseTerm term : getTerms()) {
-            term.calculate(startDate, endDate, dueDate, runType);
+            term.calculate(startDate, endDate, dueDate, runType, runId);
         }
         return this;
     }
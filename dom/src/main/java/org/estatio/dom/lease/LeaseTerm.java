@@ -20,6 +20,7 @@ package org.estatio.dom.lease;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -30,6 +31,8 @@ import javax.jdo.annotations.InheritanceStrategy;
 import javax.jdo.annotations.Persistent;
 import javax.jdo.annotations.VersionStrategy;
 
+import com.google.common.collect.Lists;
+
 import org.joda.time.LocalDate;
 
 import org.apache.isis.applib.annotation.ActionSemantics;
@@ -51,15 +54,22 @@ import org.apache.isis.applib.annotation.Where;
 import org.estatio.dom.Chained;
 import org.estatio.dom.EstatioMutableObject;
 import org.estatio.dom.JdoColumnLength;
+import org.estatio.dom.LastModifiedListener;
+import org.estatio.dom.WithLastModified;
 import org.estatio.dom.WithIntervalMutable;
 import org.estatio.dom.WithSequence;
 import org.estatio.dom.invoice.Invoice;
 import org.estatio.dom.invoice.InvoiceStatus;
 import org.estatio.dom.lease.Leases.InvoiceRunType;
+import org.estatio.dom.lease.criticaldates.CriticalDates;
 import org.estatio.dom.lease.invoicing.InvoiceCalculationService;
 import org.estatio.dom.lease.invoicing.InvoiceItemForLease;
 import org.estatio.dom.lease.invoicing.InvoiceItemsForLease;
+import org.estatio.dom.lease.invoicing.InvoicedValueSummaries;
+import org.estatio.dom.lease.invoicing.InvoicedValueSummary;
 import org.estatio.dom.valuetypes.LocalDateInterval;
+import org.estatio.services.metrics.EstatioMetrics;
+import org.estatio.services.metrics.Timer;
 
 @javax.jdo.annotations.PersistenceCapable(identityType = IdentityType.DATASTORE)
 @javax.jdo.annotations.Inheritance(strategy = InheritanceStrategy.NEW_TABLE)
@@ -106,7 +116,7 @@ import org.estatio.dom.valuetypes.LocalDateInterval;
 @Bookmarkable(BookmarkPolicy.AS_CHILD)
 public abstract class LeaseTerm
         extends EstatioMutableObject<LeaseTerm>
-        implements WithIntervalMutable<LeaseTerm>, Chained<LeaseTerm>, WithSequence {
+        implements WithIntervalMutable<LeaseTerm>, Chained<LeaseTerm>, WithSequence, WithLastModified.Part {
 
     public LeaseTerm() {
         // TODO: the integration tests fail if this is made DESCending.
@@ -132,6 +142,17 @@ public abstract class LeaseTerm
 
     // //////////////////////////////////////
 
+    /**
+     * {@link WithLastModified.Part} implementation.
+     */
+    @Programmatic
+    @Override
+    public Object getWhole() {
+        return getLeaseItem();
+    }
+
+    // //////////////////////////////////////
+
     private BigInteger sequence;
 
     @Hidden
@@ -227,7 +248,9 @@ public abstract class LeaseTerm
     public LeaseTerm changeDates(
             final @Named("Start Date") @Optional LocalDate startDate,
             final @Named("End Date") @Optional LocalDate endDate) {
-        return getChangeDates().changeDates(startDate, endDate);
+        getChangeDates().changeDates(startDate, endDate);
+        criticalDates.updateFor(getLeaseItem().getLease());
+        return this;
     }
 
     public String disableChangeDates(
@@ -266,6 +289,22 @@ public abstract class LeaseTerm
         return getInterval().overlap(getLeaseItem().getEffectiveInterval());
     }
 
+    /**
+     * The {@link #getInterval() interval} of the term; if open ended, up to
+     * the next start date of its {@link #getFrequency() frequency} (that is,
+     * the period the term will cover once its next term has been created).
+     */
+    @Programmatic
+    public LocalDateInterval getPeriodInterval() {
+        if (getEndDate() == null && getFrequency() != null) {
+            final LocalDate nextStartDate = getFrequency().nextDate(getStartDate());
+            if (nextStartDate != null) {
+                return LocalDateInterval.excluding(getStartDate(), nextStartDate);
+            }
+        }
+        return getInterval();
+    }
+
     // //////////////////////////////////////
 
     public boolean isCurrent() {
@@ -445,17 +484,29 @@ public abstract class LeaseTerm
 
     @Programmatic
     public void removeUnapprovedInvoiceItemsForDate(final LocalDate startDate, final LocalDate dueDate) {
+        final List<InvoiceItemForLease> invoiceItemsToRemove = Lists.newArrayList();
         for (InvoiceItemForLease invoiceItem : getInvoiceItems()) {
             Invoice invoice = invoiceItem.getInvoice();
             if ((invoice == null || invoice.getStatus().equals(InvoiceStatus.NEW)) &&
                     startDate.equals(invoiceItem.getStartDate()) &&
                     dueDate.equals(invoiceItem.getDueDate())) {
-                invoiceItem.setInvoice(null);
-                invoiceItem.clearLeaseTerm();
-                getContainer().flush();
-                remove(invoiceItem);
+                invoiceItemsToRemove.add(invoiceItem);
             }
         }
+        if (invoiceItemsToRemove.isEmpty()) {
+            return;
+        }
+        // detach all, then flush once, rather than once per item
+        LastModifiedListener.touchWholesOf(this);
+        for (InvoiceItemForLease invoiceItem : invoiceItemsToRemove) {
+            LastModifiedListener.touchWholesOf(invoiceItem);
+            invoiceItem.setInvoice(null);
+            invoiceItem.clearLeaseTerm();
+        }
+        getContainer().flush();
+        for (InvoiceItemForLease invoiceItem : invoiceItemsToRemove) {
+            remove(invoiceItem);
+        }
     }
 
     @Programmatic
@@ -464,11 +515,18 @@ public abstract class LeaseTerm
             final LocalDate dueDate) {
         InvoiceItemForLease ii = findUnapprovedInvoiceItemFor(startDate, dueDate);
         if (ii == null) {
-            ii = invoiceItemsForLease.newInvoiceItem(this, startDate, dueDate);
+            ii = newInvoiceItem(startDate, dueDate);
         }
         return ii;
     }
 
+    @Programmatic
+    public InvoiceItemForLease newInvoiceItem(
+            final LocalDate startDate,
+            final LocalDate dueDate) {
+        return invoiceItemsForLease.newInvoiceItem(this, startDate, dueDate);
+    }
+
     @Programmatic
     public InvoiceItemForLease findUnapprovedInvoiceItemFor(
             final LocalDate startDate,
@@ -485,6 +543,12 @@ public abstract class LeaseTerm
         return null;
     }
 
+    /**
+     * The sum of the net amounts of the items with the given start date on
+     * invoices that are no longer {@link InvoiceStatus#NEW new}, including
+     * the invoices that have been archived (see {@link InvoicedValueSummary});
+     * the same amount as used by the calculation.
+     */
     @Programmatic
     public BigDecimal invoicedValueFor(final LocalDate startDate) {
         BigDecimal invoicedValue = new BigDecimal(0);
@@ -497,6 +561,10 @@ public abstract class LeaseTerm
             }
             invoicedValue = invoicedValue.add(invoiceItem.getNetAmount());
         }
+        final InvoicedValueSummary archived = invoicedValueSummaries.findByLeaseTermAndStartDate(this, startDate);
+        if (archived != null) {
+            invoicedValue = invoicedValue.add(archived.getInvoicedValue());
+        }
         return invoicedValue;
     }
 
@@ -514,8 +582,22 @@ public abstract class LeaseTerm
             final @Named("Period end Date") @Optional LocalDate endDate,
             final @Named("Due Date") LocalDate dueDate,
             final @Named("Run Type") InvoiceRunType runType) {
+        return calculate(startDate, endDate, dueDate, runType, EstatioMetrics.newRunId("calculate"));
+    }
+
+    /**
+     * Calculates as part of the run with the given id, which is recorded on
+     * the invoice items.
+     */
+    @Programmatic
+    public LeaseTerm calculate(
+            final LocalDate startDate,
+            final LocalDate endDate,
+            final LocalDate dueDate,
+            final InvoiceRunType runType,
+            final String runId) {
         invoiceCalculationService.calculateAndInvoice(
-                this, startDate, endDate, dueDate, getLeaseItem().getInvoicingFrequency(), runType);
+                this, startDate, endDate, dueDate, getLeaseItem().getInvoicingFrequency(), runType, runId);
         return this;
     }
 
@@ -529,7 +611,7 @@ public abstract class LeaseTerm
 
     @Programmatic
     public void verifyUntil(final LocalDate date) {
-        update();
+        timedUpdate();
         // convenience code to automatically create terms but not for terms who
         // have a start date after today
         LeaseTerm nextTerm = getNext();
@@ -567,7 +649,7 @@ public abstract class LeaseTerm
         nextTerm = terms.newLeaseTerm(getLeaseItem(), this, nextStartDate);
         nextTerm.initialize();
         nextTerm.modifyStartDate(nextStartDate);
-        nextTerm.update();
+        nextTerm.timedUpdate();
         return nextTerm;
     }
     
@@ -585,6 +667,15 @@ public abstract class LeaseTerm
         setSequence(sequence);
     }
 
+    private void timedUpdate() {
+        final Timer.Context timer = EstatioMetrics.time("leaseTerm.update");
+        try {
+            update();
+        } finally {
+            timer.stop();
+        }
+    }
+
     @Programmatic
     protected void update() {
         // terminate the last term
@@ -665,4 +756,16 @@ public abstract class LeaseTerm
         this.terms = terms;
     }
 
+    private InvoicedValueSummaries invoicedValueSummaries;
+
+    public final void injectInvoicedValueSummaries(final InvoicedValueSummaries invoicedValueSummaries) {
+        this.invoicedValueSummaries = invoicedValueSummaries;
+    }
+
+    private CriticalDates criticalDates;
+
+    public final void injectCriticalDates(final CriticalDates criticalDates) {
+        this.criticalDates = criticalDates;
+    }
+
 }
@@ -82,12 +82,11 @@ public class LeaseTermForServiceCharge extends LeaseTerm {
     @Programmatic
     public BigDecimal valueForDate(final LocalDate dueDate) {
         // use the audited value after the end of the term and only when its
-        // available
+        // available; a term without an end date ends with its period
         if (MathUtils.isNotZeroOrNull(getAuditedValue())) {
-            if (getEndDate() != null) {
-                if (dueDate.compareTo(getEndDate().plusDays(1)) >= 0) {
-                    return getAuditedValue();
-                }
+            final LocalDate nextStartDate = getPeriodInterval().endDateExcluding();
+            if (nextStartDate != null && dueDate.compareTo(nextStartDate) >= 0) {
+                return getAuditedValue();
             }
         }
         return getBudgetedValue();
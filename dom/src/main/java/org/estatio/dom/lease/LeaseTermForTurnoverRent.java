@@ -24,6 +24,7 @@ import javax.jdo.annotations.InheritanceStrategy;
 
 import org.apache.isis.applib.annotation.Mandatory;
 import org.apache.isis.applib.annotation.Optional;
+import org.apache.isis.applib.annotation.Programmatic;
 
 import org.estatio.dom.JdoColumnLength;
 
@@ -51,7 +52,7 @@ public class LeaseTermForTurnoverRent extends LeaseTerm {
         if (rule == null || rule.trim().length() == 0) {
             return "Rule cannot be empty";
         }
-        TurnoverRentRuleHelper helper = new TurnoverRentRuleHelper(rule);
+        TurnoverRentRuleHelper helper = TurnoverRentRuleHelper.of(rule);
         return helper.isValid() ? null : "'" + rule + "' is not a valid rule";
     }
 
@@ -83,6 +84,18 @@ public class LeaseTermForTurnoverRent extends LeaseTerm {
         this.auditedTurnover = auditedTurnover;
     }
 
+    /**
+     * Sets the audited turnover, eg as
+     * {@link org.estatio.dom.lease.turnover.TurnoverIngestionService
+     * ingested}, and brings the contractual rent up to date, so that the
+     * {@link #getTrialValue() trial value} reflects both.
+     */
+    @Programmatic
+    public void updateAuditedTurnover(final BigDecimal auditedTurnover) {
+        setAuditedTurnover(auditedTurnover);
+        update();
+    }
+
     // //////////////////////////////////////
 
     private BigDecimal contractualRent;
@@ -122,7 +135,7 @@ public class LeaseTermForTurnoverRent extends LeaseTerm {
 
     @Override
     public BigDecimal getTrialValue() {
-        TurnoverRentRuleHelper helper = new TurnoverRentRuleHelper(getTurnoverRentRule());
+        TurnoverRentRuleHelper helper = TurnoverRentRuleHelper.of(getTurnoverRentRule());
         BigDecimal calculatedTurnoverRent = helper.calculateRent(getAuditedTurnover());
         if (getContractualRent() != null && 
             calculatedTurnoverRent.compareTo(getContractualRent()) > 0) {
@@ -52,6 +52,7 @@ public class LeaseTypes extends EstatioDomainService<LeaseType> {
         leaseType.setReference(reference);
         leaseType.setName(name);
         persistIfNotAlready(leaseType);
+        invalidateReferenceData();
         return leaseType;
     }
 
@@ -59,7 +60,7 @@ public class LeaseTypes extends EstatioDomainService<LeaseType> {
 
     @Programmatic
     public LeaseType findByReference(final String reference) {
-        return firstMatch("findByReference", "reference", reference);
+        return firstMatchByKey(reference, "findByReference", "reference", reference);
     }
 
     // //////////////////////////////////////
@@ -20,6 +20,8 @@ package org.estatio.dom.lease;
 
 import java.util.List;
 
+import com.google.common.collect.Lists;
+
 import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.joda.time.Period;
@@ -27,6 +29,7 @@ import org.joda.time.Period;
 import org.apache.isis.applib.annotation.ActionSemantics;
 import org.apache.isis.applib.annotation.ActionSemantics.Of;
 import org.apache.isis.applib.annotation.DescribedAs;
+import org.apache.isis.applib.annotation.Hidden;
 import org.apache.isis.applib.annotation.MemberOrder;
 import org.apache.isis.applib.annotation.Named;
 import org.apache.isis.applib.annotation.NotContributed;
@@ -46,11 +49,16 @@ import org.estatio.dom.asset.FixedAssets;
 import org.estatio.dom.asset.Property;
 import org.estatio.dom.invoice.viewmodel.InvoiceSummariesForPropertyDueDate;
 import org.estatio.dom.invoice.viewmodel.InvoiceSummaryForPropertyDueDate;
+import org.estatio.dom.lease.criticaldates.CriticalDates;
 import org.estatio.dom.lease.invoicing.InvoiceItemForLease;
 import org.estatio.dom.lease.invoicing.InvoiceItemsForLease;
 import org.estatio.dom.party.Party;
 import org.estatio.dom.utils.JodaPeriodUtils;
 import org.estatio.dom.utils.StringUtils;
+import org.estatio.services.metrics.EstatioMetrics;
+import org.estatio.services.metrics.MetricsTags;
+import org.estatio.services.retry.RetryReport;
+import org.estatio.services.retry.RetryService;
 
 public class Leases extends EstatioDomainService<Lease> {
 
@@ -97,6 +105,7 @@ public class Leases extends EstatioDomainService<Lease> {
         lease.setEndDate(calculatedEndDate);
         lease.setLeaseType(leaseType);
         persistIfNotAlready(lease);
+        criticalDates.updateFor(lease);
 
         if (tenant != null) {
             final AgreementRoleType artTenant = agreementRoleTypes.findByTitle(LeaseConstants.ART_TENANT);
@@ -154,6 +163,16 @@ public class Leases extends EstatioDomainService<Lease> {
     @MemberOrder(sequence = "3")
     public List<Lease> findLeases(
             final @Named("Reference or Name") @DescribedAs("May include wildcards '*' and '?'") String refOrName) {
+        return allMatchesOnReplica("findByReferenceOrName", "referenceOrName", StringUtils.wildcardToRegex(refOrName));
+    }
+
+    /**
+     * As {@link #findLeases(String)}, but always on the primary; for actions
+     * that change the leases found, which must not miss leases that are not
+     * replicated yet.
+     */
+    @Programmatic
+    public List<Lease> findLeasesByReferenceOrName(final String refOrName) {
         return allMatches("findByReferenceOrName", "referenceOrName", StringUtils.wildcardToRegex(refOrName));
     }
 
@@ -162,11 +181,22 @@ public class Leases extends EstatioDomainService<Lease> {
     public List<Lease> findLeasesActiveOnDate(
             final FixedAsset fixedAsset,
             final @Named("Active On Date") LocalDate activeOnDate) {
-        return allMatches("findByAssetAndActiveOnDate", "asset", fixedAsset, "activeOnDate", activeOnDate);
+        return allMatchesOnReplica("findByAssetAndActiveOnDate", "asset", fixedAsset, "activeOnDate", activeOnDate);
     }
 
     public List<FixedAsset> autoComplete0FindLeasesActiveOnDate(final String searchPhrase) {
-        return fixedAssets.findAssetsByReferenceOrName(searchPhrase);
+        return fixedAssets.autoComplete(searchPhrase);
+    }
+
+    // //////////////////////////////////////
+
+    @Hidden
+    public List<Lease> autoComplete(final String searchPhrase) {
+        final List<Lease> leases = searchReferenceOrName(searchPhrase);
+        if (leases != null) {
+            return leases;
+        }
+        return findLeasesByReferenceOrName("*".concat(searchPhrase).concat("*"));
     }
 
     public LocalDate default1FindLeasesActiveOnDate() {
@@ -175,6 +205,25 @@ public class Leases extends EstatioDomainService<Lease> {
 
     // //////////////////////////////////////
 
+    /**
+     * Leases changed (including their items and terms) after the given
+     * moment, oldest change first; allows clients to synchronise
+     * incrementally rather than re-reading all leases.
+     * 
+     * <p>
+     * Not routed to the replica: a client advancing its cursor to the last
+     * change it has seen would otherwise miss the changes committed on the
+     * primary before it but not yet replicated.
+     */
+    @ActionSemantics(Of.SAFE)
+    @MemberOrder(sequence = "5")
+    public List<Lease> findLeasesModifiedSince(
+            final @Named("Modified since") DateTime since) {
+        return allMatches("findModifiedSince", "since", since);
+    }
+
+    // //////////////////////////////////////
+
     public List<Lease> findAboutToExpireOnDate(final LocalDate date) {
         return allMatches("findAboutToExpireOnDate", "date", date);
     }
@@ -195,10 +244,12 @@ public class Leases extends EstatioDomainService<Lease> {
             final @Named("Period end Date") @Optional LocalDate endDate,
             final @Named("Due date") LocalDate dueDate,
             final @Named("Run Type") InvoiceRunType runType) {
-        final List<Lease> leases = findLeasesByProperty(property);
-        for (Lease lease : leases) {
-            lease.verifyUntil(endDate);
-            lease.calculate(startDate, endDate, dueDate, runType);
+        final String runId = EstatioMetrics.newRunId("calculateProperty");
+        final MetricsTags tags = MetricsTags.enter(property.getReference(), runId);
+        try {
+            calculate("calculateProperty", findLeasesByProperty(property), startDate, endDate, dueDate, runType, runId);
+        } finally {
+            tags.exit();
         }
         // As a convenience, we now go find them and display them.
         // We've done it this way so that the user can always just go to the
@@ -234,10 +285,12 @@ public class Leases extends EstatioDomainService<Lease> {
             final @Named("Period End Date") @Optional LocalDate endDate,
             final @Named("Due date") LocalDate dueDate,
             final @Named("Run Type") InvoiceRunType runType) {
-        final List<Lease> leases = findLeases(referenceOrName);
-        for (Lease lease : leases) {
-            lease.verifyUntil(endDate);
-            lease.calculate(startDate, endDate, dueDate, runType);
+        final String runId = EstatioMetrics.newRunId("calculateLeases");
+        final MetricsTags tags = MetricsTags.enter(null, runId);
+        try {
+            calculate("calculateLeases", findLeasesByReferenceOrName(referenceOrName), startDate, endDate, dueDate, runType, runId);
+        } finally {
+            tags.exit();
         }
         // As a convenience, we now go find them and display them.
         // We've done it this way so that the user can always just go to the
@@ -246,6 +299,37 @@ public class Leases extends EstatioDomainService<Lease> {
                 startDate, dueDate);
     }
 
+    /**
+     * Verifies and calculates each lease as a unit of work of its own, so that
+     * a conflict with a concurrent user only causes that lease to be retried.
+     */
+    private void calculate(
+            final String name,
+            final List<Lease> leases,
+            final LocalDate startDate,
+            final LocalDate endDate,
+            final LocalDate dueDate,
+            final InvoiceRunType runType,
+            final String runId) {
+        final List<RetryService.Unit> units = Lists.newArrayList();
+        for (final Lease lease : leases) {
+            units.add(new RetryService.Unit(lease.getReference()) {
+                @Override
+                public void execute() {
+                    lease.verifyUntil(endDate);
+                    lease.calculate(startDate, endDate, dueDate, runType, runId);
+                }
+            });
+        }
+        warnUserOfFailures(retryService.execute(name, units));
+    }
+
+    private void warnUserOfFailures(final RetryReport report) {
+        if (report.hasFailures()) {
+            warnUser(report.toString());
+        }
+    }
+
     public LocalDate default1CalculateLeases() {
         return getClockService().beginningOfQuarter();
     }
@@ -260,8 +344,21 @@ public class Leases extends EstatioDomainService<Lease> {
     public String verifyAllLeases() {
         DateTime dt = DateTime.now();
         List<Lease> leases = allLeases();
-        for (Lease lease : leases) {
-            lease.verifyUntil(getClockService().now());
+        final MetricsTags tags = MetricsTags.enter(null, EstatioMetrics.newRunId("verifyAllLeases"));
+        try {
+            final LocalDate date = getClockService().now();
+            final List<RetryService.Unit> units = Lists.newArrayList();
+            for (final Lease lease : leases) {
+                units.add(new RetryService.Unit(lease.getReference()) {
+                    @Override
+                    public void execute() {
+                        lease.verifyUntil(date);
+                    }
+                });
+            }
+            warnUserOfFailures(retryService.execute("verifyAllLeases", units));
+        } finally {
+            tags.exit();
         }
         Period p = new Period(dt, DateTime.now());
         return String.format("Verified %d leases in %s", leases.size(), JodaPeriodUtils.asString(p));
@@ -311,4 +408,16 @@ public class Leases extends EstatioDomainService<Lease> {
         this.invoiceSummaries = invoiceSummaries;
     }
 
+    private CriticalDates criticalDates;
+
+    public final void injectCriticalDates(final CriticalDates criticalDates) {
+        this.criticalDates = criticalDates;
+    }
+
+    private RetryService retryService;
+
+    public final void injectRetryService(final RetryService retryService) {
+        this.retryService = retryService;
+    }
+
 }
@@ -18,6 +18,8 @@
  */
 package org.estatio.dom.lease;
 
+import java.util.List;
+
 import org.joda.time.LocalDate;
 
 import org.apache.isis.applib.annotation.ActionSemantics;
@@ -49,6 +51,9 @@ public class Occupancies extends EstatioDomainService<Occupancy> {
         lu.setUnit(unit);
         lu.setStartDate(startDate);
         persistIfNotAlready(lu);
+        if (lease.getProperty() == null) {
+            lease.setProperty(unit.getProperty());
+        }
         return lu;
     }
 
@@ -63,4 +68,10 @@ public class Occupancies extends EstatioDomainService<Occupancy> {
          return firstMatch("findByLeaseAndUnitAndStartDate", "lease", lease, "unit", unit, "startDate", startDate);
     }
 
+    @ActionSemantics(Of.SAFE)
+    @Hidden
+    public List<Occupancy> findByUnit(final Unit unit) {
+        return allMatches("findByUnit", "unit", unit);
+    }
+
 }
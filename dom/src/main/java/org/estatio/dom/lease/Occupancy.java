@@ -75,7 +75,12 @@ import org.estatio.dom.valuetypes.LocalDateInterval;
                         + "FROM org.estatio.dom.lease.Occupancy "
                         + "WHERE lease == :lease "
                         + "&& unit == :unit "
-                        + "&& endDate == :endDate")
+                        + "&& endDate == :endDate"),
+        @javax.jdo.annotations.Query(
+                name = "findByUnit", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.lease.Occupancy "
+                        + "WHERE unit == :unit")
 })
 public class Occupancy
         extends EstatioMutableObject<Occupancy>
@@ -20,19 +20,60 @@ package org.estatio.dom.lease;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class TurnoverRentRuleHelper {
 
+    /**
+     * The number of distinct rules kept by {@link #of(String)}; there are
+     * typically only a handful across the whole portfolio.
+     */
+    static final int CACHE_SIZE = 1000;
+
+    private static final ConcurrentMap<String, TurnoverRentRuleHelper> HELPERS =
+            new ConcurrentHashMap<String, TurnoverRentRuleHelper>();
+
     private String rules[];
+    private final boolean valid;
+    private BigDecimal values[];
 
     public TurnoverRentRuleHelper(final String rule) {
         if (rule != null && rule.trim().length() != 0) {
             rules = rule.split(";");
         }
+        valid = rules != null && isValidRule();
+        if (valid) {
+            values = new BigDecimal[rules.length];
+            for (int i = 0; i < rules.length; i++) {
+                values[i] = new BigDecimal(rules[i]);
+            }
+        }
+    }
+
+    /**
+     * The helper of the given rule, parsed once and shared, so that
+     * calculating the rent of many terms does not parse the same rule over
+     * and over again.
+     */
+    public static TurnoverRentRuleHelper of(final String rule) {
+        if (rule == null) {
+            return new TurnoverRentRuleHelper(null);
+        }
+        final TurnoverRentRuleHelper helper = HELPERS.get(rule);
+        if (helper != null) {
+            return helper;
+        }
+        if (HELPERS.size() >= CACHE_SIZE) {
+            HELPERS.clear();
+        }
+        final TurnoverRentRuleHelper newHelper = new TurnoverRentRuleHelper(rule);
+        final TurnoverRentRuleHelper existing = HELPERS.putIfAbsent(rule, newHelper);
+        return existing != null ? existing : newHelper;
     }
 
     public boolean isValid() {
-        return (rules != null && isValidRule());
+        return valid;
     }
 
     private boolean isValidRule() {
@@ -66,13 +107,13 @@ public class TurnoverRentRuleHelper {
             BigDecimal base = BigDecimal.ZERO;
             if (i == rules.length - 1) {
                 // the last or single item
-                percentage = new BigDecimal(rules[i]).divide(LeaseConstants.PERCENTAGE_DIVISOR);
+                percentage = values[i].divide(LeaseConstants.PERCENTAGE_DIVISOR);
                 if (turnover.compareTo(prevCap) > 0) {
                     base = turnover.subtract(prevCap);
                 }
             } else {
-                percentage = new BigDecimal(rules[i + 1]).divide(LeaseConstants.PERCENTAGE_DIVISOR);
-                cap = new BigDecimal(rules[i]);
+                percentage = values[i + 1].divide(LeaseConstants.PERCENTAGE_DIVISOR);
+                cap = values[i];
                 if (turnover.compareTo(cap) > 0) {
                     base = cap.subtract(prevCap);
                 } else {
@@ -36,6 +36,7 @@ import org.joda.time.Period;
 
 import org.apache.isis.applib.annotation.Disabled;
 import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Named;
 import org.apache.isis.applib.annotation.NotPersisted;
 import org.apache.isis.applib.annotation.Optional;
 import org.apache.isis.applib.annotation.Programmatic;
@@ -46,9 +47,11 @@ import org.apache.isis.applib.annotation.Where;
 
 import org.estatio.dom.EstatioMutableObject;
 import org.estatio.dom.JdoColumnLength;
+import org.estatio.dom.WithLastModified;
 import org.estatio.dom.event.Event;
 import org.estatio.dom.event.EventSubject;
 import org.estatio.dom.event.Events;
+import org.estatio.dom.lease.criticaldates.CriticalDates;
 import org.estatio.dom.lease.Lease;
 import org.estatio.dom.utils.JodaPeriodUtils;
 
@@ -70,7 +73,7 @@ import org.estatio.dom.utils.JodaPeriodUtils;
         members = { "lease", "type", "notificationDate" })
 public abstract class BreakOption
         extends EstatioMutableObject<BreakOption>
-        implements EventSubject {
+        implements EventSubject, WithLastModified.Part {
 
     public BreakOption() {
         super("lease, type, exerciseDate");
@@ -92,6 +95,15 @@ public abstract class BreakOption
         this.lease = lease;
     }
 
+    /**
+     * {@link WithLastModified.Part} implementation.
+     */
+    @Programmatic
+    @Override
+    public Object getWhole() {
+        return getLease();
+    }
+
     // //////////////////////////////////////
 
     private BreakType type;
@@ -146,6 +158,37 @@ public abstract class BreakOption
         this.exerciseDate = exerciseDate;
     }
 
+    /**
+     * Moves the {@link #getExerciseDate() exercise date}, and with it the
+     * {@link #getNotificationPeriod() notification period}, its calendar event
+     * and the critical dates of the {@link #getLease() lease}.
+     */
+    public BreakOption changeExerciseDate(
+            final @Named("Exercise date") LocalDate exerciseDate) {
+        setExerciseDate(exerciseDate);
+        setNotificationPeriod(JodaPeriodUtils.asSimpleString(new Period(exerciseDate, getBreakDate())));
+        final Event exerciseEvent = events.findEventsBySubjectAndSubjectEventType(this, exerciseCalendarName());
+        if (exerciseEvent != null) {
+            exerciseEvent.setDate(exerciseDate);
+        }
+        criticalDates.updateFor(getLease());
+        return this;
+    }
+
+    public LocalDate default0ChangeExerciseDate() {
+        return getExerciseDate();
+    }
+
+    public String validateChangeExerciseDate(final LocalDate exerciseDate) {
+        return exerciseDate.isBefore(getBreakDate()) ? null : "Exercise date must be before break date";
+    }
+
+    /**
+     * The calendar of the event created for the {@link #getExerciseDate()
+     * exercise date}.
+     */
+    protected abstract String exerciseCalendarName();
+
     // //////////////////////////////////////
 
     private BreakExerciseType exerciseType;
@@ -300,4 +343,10 @@ public abstract class BreakOption
         this.events = events;
     }
 
+    private CriticalDates criticalDates;
+
+    public final void injectCriticalDates(final CriticalDates criticalDates) {
+        this.criticalDates = criticalDates;
+    }
+
 }
@@ -93,6 +93,11 @@ public class FixedBreakOption
         this.reminderDate = reminderDate;
     }
 
+    @Override
+    protected String exerciseCalendarName() {
+        return CALENDAR_NAME_FIXED_BREAK_EXERCISE;
+    }
+
     // //////////////////////////////////////
 
     @Override
@@ -63,6 +63,11 @@ public class RollingBreakOption
         return Sets.newHashSet(CALENDAR_NAME_ROLLING_BREAK_EXERCISE);
     }
 
+    @Override
+    protected String exerciseCalendarName() {
+        return CALENDAR_NAME_ROLLING_BREAK_EXERCISE;
+    }
+
     // //////////////////////////////////////
 
     @Override
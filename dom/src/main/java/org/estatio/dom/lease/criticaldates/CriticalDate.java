@@ -0,0 +1,172 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.criticaldates;
+
+import javax.jdo.annotations.IdGeneratorStrategy;
+import javax.jdo.annotations.IdentityType;
+
+import com.danhaywood.isis.wicket.fullcalendar2.applib.CalendarEvent;
+import com.danhaywood.isis.wicket.fullcalendar2.applib.CalendarEventable;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Immutable;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.annotation.Title;
+import org.apache.isis.applib.annotation.Where;
+
+import org.estatio.dom.EstatioImmutableObject;
+import org.estatio.dom.JdoColumnLength;
+import org.estatio.dom.lease.Lease;
+
+/**
+ * A date in the life of a {@link Lease} that needs attention: the
+ * notification date of a break option, the expiry of the lease, the next
+ * index review of an indexable rent or the end of a term.
+ * 
+ * <p>
+ * Critical dates are derived from the lease and kept up to date by
+ * {@link CriticalDates#updateFor(Lease)}. They are indexed on date, and carry
+ * a precomputed {@link #getTitle() title}, so that a date window can be
+ * listed (or shown in a calendar) without loading the leases, break options
+ * or terms they were derived from.
+ */
+@javax.jdo.annotations.PersistenceCapable(identityType = IdentityType.DATASTORE)
+@javax.jdo.annotations.DatastoreIdentity(
+        strategy = IdGeneratorStrategy.NATIVE,
+        column = "id")
+@javax.jdo.annotations.Uniques({
+        @javax.jdo.annotations.Unique(
+                name = "CriticalDate_lease_type_sourceKey_UNQ",
+                members = { "lease", "type", "sourceKey" })
+})
+@javax.jdo.annotations.Indices({
+        @javax.jdo.annotations.Index(
+                name = "CriticalDate_date_type_IDX",
+                members = { "date", "type" }),
+        @javax.jdo.annotations.Index(
+                name = "CriticalDate_type_date_IDX",
+                members = { "type", "date" })
+})
+@javax.jdo.annotations.Queries({
+        @javax.jdo.annotations.Query(
+                name = "findByLease", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.lease.criticaldates.CriticalDate "
+                        + "WHERE lease == :lease")
+})
+@Immutable
+public class CriticalDate
+        extends EstatioImmutableObject<CriticalDate>
+        implements CalendarEventable {
+
+    public CriticalDate() {
+        super("date, type, title");
+    }
+
+    // //////////////////////////////////////
+
+    private LocalDate date;
+
+    @javax.jdo.annotations.Column(allowsNull = "false")
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(final LocalDate date) {
+        this.date = date;
+    }
+
+    // //////////////////////////////////////
+
+    private CriticalDateType type;
+
+    @javax.jdo.annotations.Column(allowsNull = "false", length = JdoColumnLength.TYPE_ENUM)
+    public CriticalDateType getType() {
+        return type;
+    }
+
+    public void setType(final CriticalDateType type) {
+        this.type = type;
+    }
+
+    // //////////////////////////////////////
+
+    private Lease lease;
+
+    @javax.jdo.annotations.Column(name = "leaseId", allowsNull = "false")
+    @Hidden(where = Where.REFERENCES_PARENT)
+    public Lease getLease() {
+        return lease;
+    }
+
+    public void setLease(final Lease lease) {
+        this.lease = lease;
+    }
+
+    // //////////////////////////////////////
+
+    private String sourceKey;
+
+    /**
+     * Identifies, within the {@link #getLease() lease} and
+     * {@link #getType() type}, what this date was derived from (eg the lease
+     * item and sequence of a term), so that it can be updated rather than
+     * recreated when the source changes.
+     */
+    @javax.jdo.annotations.Column(allowsNull = "false", length = JdoColumnLength.NAME)
+    @Hidden
+    public String getSourceKey() {
+        return sourceKey;
+    }
+
+    public void setSourceKey(final String sourceKey) {
+        this.sourceKey = sourceKey;
+    }
+
+    // //////////////////////////////////////
+
+    private String title;
+
+    @javax.jdo.annotations.Column(allowsNull = "false", length = JdoColumnLength.DESCRIPTION)
+    @Title
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(final String title) {
+        this.title = title;
+    }
+
+    // //////////////////////////////////////
+
+    @Programmatic
+    @Override
+    public String getCalendarName() {
+        return getType().title();
+    }
+
+    @Programmatic
+    @Override
+    public CalendarEvent toCalendarEvent() {
+        return new CalendarEvent(getDate().toDateTimeAtStartOfDay(), getCalendarName(), getTitle());
+    }
+
+}
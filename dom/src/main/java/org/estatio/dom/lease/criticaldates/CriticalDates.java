@@ -0,0 +1,264 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.criticaldates;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.jdo.Query;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.joda.time.Period;
+
+import org.apache.isis.applib.annotation.ActionSemantics;
+import org.apache.isis.applib.annotation.ActionSemantics.Of;
+import org.apache.isis.applib.annotation.MemberOrder;
+import org.apache.isis.applib.annotation.Named;
+import org.apache.isis.applib.annotation.NotContributed;
+import org.apache.isis.applib.annotation.Optional;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.annotation.Prototype;
+
+import org.estatio.dom.EstatioDomainService;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseItem;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.lease.LeaseTermForIndexableRent;
+import org.estatio.dom.lease.Leases;
+import org.estatio.dom.lease.breaks.BreakOption;
+import org.estatio.dom.utils.JodaPeriodUtils;
+
+/**
+ * Maintains and queries the {@link CriticalDate}s, contributed to the
+ * <i>Leases</i> menu.
+ */
+public class CriticalDates extends EstatioDomainService<CriticalDate> {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    public CriticalDates() {
+        super(CriticalDates.class, CriticalDate.class);
+    }
+
+    // //////////////////////////////////////
+
+    @ActionSemantics(Of.SAFE)
+    @MemberOrder(name = "Leases", sequence = "7")
+    @NotContributed
+    public List<CriticalDate> findCriticalDates(
+            final @Named("From") LocalDate startDate,
+            final @Named("Until") LocalDate endDate,
+            final @Named("Type") @Optional CriticalDateType type,
+            final @Named("Page") @Optional Integer page) {
+        final int pageNumber = page == null ? 1 : page;
+        return findByDateBetween(
+                startDate, endDate, type, (pageNumber - 1) * DEFAULT_PAGE_SIZE, DEFAULT_PAGE_SIZE);
+    }
+
+    public LocalDate default0FindCriticalDates() {
+        return getClockService().now();
+    }
+
+    public LocalDate default1FindCriticalDates() {
+        return getClockService().now().plusMonths(3);
+    }
+
+    public String validateFindCriticalDates(
+            final LocalDate startDate,
+            final LocalDate endDate,
+            final CriticalDateType type,
+            final Integer page) {
+        if (endDate.isBefore(startDate)) {
+            return "Until date cannot be before from date";
+        }
+        return page != null && page < 1 ? "Page must be at least 1" : null;
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * The critical dates in the (inclusive) window, ordered by date.
+     * 
+     * @param type
+     *            - all types if <tt>null</tt>
+     * @param first
+     *            - the (zero-based) index of the first one to return
+     * @param max
+     *            - the maximum number to return
+     */
+    @SuppressWarnings("unchecked")
+    @Programmatic
+    public List<CriticalDate> findByDateBetween(
+            final LocalDate startDate,
+            final LocalDate endDate,
+            final CriticalDateType type,
+            final int first,
+            final int max) {
+        final Query query = newQuery(
+                "SELECT FROM org.estatio.dom.lease.criticaldates.CriticalDate "
+                        + "WHERE date >= :startDate "
+                        + "&& date <= :endDate "
+                        + (type == null ? "" : "&& type == :type ")
+                        + "ORDER BY date ASC, title ASC");
+        query.setRange(first, first + max);
+        final Map<String, Object> args = Maps.newHashMap();
+        args.put("startDate", startDate);
+        args.put("endDate", endDate);
+        if (type != null) {
+            args.put("type", type);
+        }
+        return Lists.newArrayList((List<CriticalDate>) query.executeWithMap(args));
+    }
+
+    @Programmatic
+    public List<CriticalDate> findByLease(final Lease lease) {
+        return allMatches("findByLease", "lease", lease);
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Brings the critical dates of the lease in line with the lease, its break
+     * options and its terms, only touching those that have changed.
+     * 
+     * <p>
+     * To be called whenever any of these change.
+     */
+    @Programmatic
+    public void updateFor(final Lease lease) {
+        final Map<String, CriticalDate> existing = Maps.newHashMap();
+        for (CriticalDate criticalDate : findByLease(lease)) {
+            existing.put(keyOf(criticalDate), criticalDate);
+        }
+        for (CriticalDate candidate : candidatesFor(lease)) {
+            final CriticalDate criticalDate = existing.remove(keyOf(candidate));
+            if (criticalDate == null) {
+                newCriticalDate(candidate);
+            } else {
+                if (!Objects.equal(criticalDate.getDate(), candidate.getDate())) {
+                    criticalDate.setDate(candidate.getDate());
+                }
+                if (!Objects.equal(criticalDate.getTitle(), candidate.getTitle())) {
+                    criticalDate.setTitle(candidate.getTitle());
+                }
+            }
+        }
+        for (CriticalDate obsolete : existing.values()) {
+            remove(obsolete);
+        }
+    }
+
+    private void newCriticalDate(final CriticalDate candidate) {
+        final CriticalDate criticalDate = newTransientInstance();
+        criticalDate.setLease(candidate.getLease());
+        criticalDate.setType(candidate.getType());
+        criticalDate.setSourceKey(candidate.getSourceKey());
+        criticalDate.setDate(candidate.getDate());
+        criticalDate.setTitle(candidate.getTitle());
+        persistIfNotAlready(criticalDate);
+    }
+
+    private static String keyOf(final CriticalDate criticalDate) {
+        return criticalDate.getType() + "|" + criticalDate.getSourceKey();
+    }
+
+    /**
+     * The critical dates as they should be for the lease (not persisted).
+     */
+    static List<CriticalDate> candidatesFor(final Lease lease) {
+        final List<CriticalDate> candidates = Lists.newArrayList();
+        final String reference = lease.getReference();
+        final LocalDate expiryDate =
+                lease.getTerminationDate() != null ? lease.getTerminationDate() : lease.getEndDate();
+        addCandidate(candidates, lease, CriticalDateType.LEASE_EXPIRY, "", expiryDate,
+                String.format("%s %s", reference, lease.getTerminationDate() != null ? "termination" : "expiry"));
+        for (BreakOption breakOption : lease.getBreakOptions()) {
+            addCandidate(candidates, lease, CriticalDateType.BREAK_NOTIFICATION,
+                    breakOption.getType() + "/" + breakOption.getBreakDate(),
+                    breakOption.getExerciseDate(),
+                    String.format("%s %s break on %s", reference, breakOption.getType().title(), breakOption.getBreakDate()));
+        }
+        for (LeaseItem item : lease.getItems()) {
+            for (LeaseTerm term : item.getTerms()) {
+                final String sourceKey = item.getType() + "/" + item.getSequence() + "/" + term.getSequence();
+                addCandidate(candidates, lease, CriticalDateType.TERM_END, sourceKey, term.getEndDate(),
+                        String.format("%s %s term %s end", reference, item.getType().title(), term.getSequence()));
+                if (term instanceof LeaseTermForIndexableRent) {
+                    final LocalDate nextIndexStartDate = ((LeaseTermForIndexableRent) term).getNextIndexStartDate();
+                    addCandidate(candidates, lease, CriticalDateType.INDEX_REVIEW, sourceKey, nextIndexStartDate,
+                            String.format("%s %s term %s index review", reference, item.getType().title(), term.getSequence()));
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private static void addCandidate(
+            final List<CriticalDate> candidates,
+            final Lease lease,
+            final CriticalDateType type,
+            final String sourceKey,
+            final LocalDate date,
+            final String title) {
+        if (date == null) {
+            return;
+        }
+        final CriticalDate candidate = new CriticalDate();
+        candidate.setLease(lease);
+        candidate.setType(type);
+        candidate.setSourceKey(sourceKey);
+        candidate.setDate(date);
+        candidate.setTitle(title);
+        candidates.add(candidate);
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Rebuilds the critical dates of all leases, eg after they have been
+     * imported.
+     */
+    @Prototype
+    @MemberOrder(name = "Administration", sequence = "critical dates.1")
+    public String rebuildCriticalDates() {
+        final DateTime start = DateTime.now();
+        final List<Lease> allLeases = leases.allLeases();
+        for (Lease lease : allLeases) {
+            updateFor(lease);
+        }
+        return String.format(
+                "Updated critical dates of %d leases in %s",
+                allLeases.size(),
+                JodaPeriodUtils.asString(new Period(start, DateTime.now())));
+    }
+
+    // //////////////////////////////////////
+
+    private Leases leases;
+
+    public final void injectLeases(final Leases leases) {
+        this.leases = leases;
+    }
+
+}
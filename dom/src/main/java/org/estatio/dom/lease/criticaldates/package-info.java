@@ -0,0 +1,4 @@
+/**
+ * Index of the dates in the life of leases that need attention.
+ */
+package org.estatio.dom.lease.criticaldates;
\ No newline at end of file
@@ -0,0 +1,90 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.invoicing;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.Joiner;
+
+/**
+ * The outcome of a bulk transition by the {@link BulkTransitionService}: the
+ * number of objects transitioned, and the ids of those that matched but
+ * could not be transitioned.
+ */
+public class BulkTransitionResult {
+
+    private final String transition;
+    private final int count;
+    private final List<String> rejectedIds;
+    private final String reason;
+
+    BulkTransitionResult(final String transition, final int count, final List<String> rejectedIds) {
+        this(transition, count, rejectedIds, null);
+    }
+
+    private BulkTransitionResult(
+            final String transition,
+            final int count,
+            final List<String> rejectedIds,
+            final String reason) {
+        this.transition = transition;
+        this.count = count;
+        this.rejectedIds = rejectedIds;
+        this.reason = reason;
+    }
+
+    /**
+     * Nothing transitioned, for the reason given.
+     */
+    static BulkTransitionResult failed(final String transition, final String reason) {
+        return new BulkTransitionResult(transition, 0, Collections.<String> emptyList(), reason);
+    }
+
+    // //////////////////////////////////////
+
+    public int getCount() {
+        return count;
+    }
+
+    public List<String> getRejectedIds() {
+        return Collections.unmodifiableList(rejectedIds);
+    }
+
+    /**
+     * Why nothing was transitioned; <tt>null</tt> if the transition was
+     * performed.
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        if (reason != null) {
+            return String.format("%s: %s", transition, reason);
+        }
+        final StringBuilder buf = new StringBuilder(String.format("%s: %d", transition, count));
+        if (!rejectedIds.isEmpty()) {
+            buf.append(String.format(", rejected %d (%s)", rejectedIds.size(), Joiner.on(", ").join(rejectedIds)));
+        }
+        return buf.toString();
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.invoicing;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.jdo.Query;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.annotation.ActionSemantics;
+import org.apache.isis.applib.annotation.ActionSemantics.Of;
+import org.apache.isis.applib.annotation.MemberOrder;
+import org.apache.isis.applib.annotation.Named;
+import org.apache.isis.applib.annotation.NotContributed;
+import org.apache.isis.applib.annotation.Programmatic;
+
+import org.estatio.dom.EstatioDomainService;
+import org.estatio.dom.asset.Property;
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.InvoiceStatus;
+import org.estatio.dom.invoice.Invoices;
+import org.estatio.dom.invoice.PaymentMethod;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.lease.LeaseTermStatus;
+import org.estatio.dom.numerator.Numerator;
+
+/**
+ * Moves all {@link Invoice}s of a property and due date, or all
+ * {@link LeaseTerm}s of a lease or property, to their next status in one go.
+ * 
+ * <p>
+ * Unlike the equivalent <tt>@Bulk</tt> actions on the objects themselves, the
+ * candidates (and those that have to be rejected) are selected with a single
+ * query each, the numerator is looked up once and a block of numbers is
+ * reserved from it with a single update, and no guards are evaluated per
+ * object. The status changes are flushed together at the end of the
+ * transaction.
+ */
+public class BulkTransitionService extends EstatioDomainService<Invoice> {
+
+    public BulkTransitionService() {
+        super(BulkTransitionService.class, Invoice.class);
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Equivalent to {@link Invoice#approve()} for all {@link InvoiceStatus#NEW
+     * new} invoices of the property and due date.
+     */
+    @Programmatic
+    public BulkTransitionResult approveInvoices(final Property property, final LocalDate dueDate) {
+        final List<Invoice> candidates = findInvoices(property, dueDate,
+                "status == :status",
+                ImmutableMap.<String, Object> of("status", InvoiceStatus.NEW));
+        for (Invoice invoice : candidates) {
+            invoice.setStatus(InvoiceStatus.APPROVED);
+        }
+        return new BulkTransitionResult("Approved invoices", candidates.size(), Collections.<String> emptyList());
+    }
+
+    /**
+     * Equivalent to {@link Invoice#collect()} for all
+     * {@link InvoiceStatus#APPROVED approved} direct debit invoices of the
+     * property and due date; those that already have a collection number are
+     * rejected.
+     */
+    @Programmatic
+    public BulkTransitionResult collectInvoices(final Property property, final LocalDate dueDate) {
+        final String transition = "Collected invoices";
+        final Numerator numerator = invoices.findCollectionNumberNumerator();
+        if (numerator == null) {
+            return BulkTransitionResult.failed(transition, "No 'collection number' numerator found");
+        }
+        final Map<String, Object> args = ImmutableMap.<String, Object> of(
+                "status", InvoiceStatus.APPROVED,
+                "paymentMethod", PaymentMethod.DIRECT_DEBIT);
+        final List<Invoice> candidates = findInvoices(property, dueDate,
+                "status == :status && paymentMethod == :paymentMethod && collectionNumber == null", args);
+        final List<Invoice> rejected = findInvoices(property, dueDate,
+                "status == :status && paymentMethod == :paymentMethod && collectionNumber != null", args);
+
+        final List<String> collectionNumbers = numerator.increment(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            final Invoice invoice = candidates.get(i);
+            invoice.setCollectionNumber(collectionNumbers.get(i));
+            invoice.setStatus(InvoiceStatus.COLLECTED);
+        }
+        return new BulkTransitionResult(transition, candidates.size(), idsOf(rejected));
+    }
+
+    /**
+     * Equivalent to {@link Invoice#invoiceOn(LocalDate)} for all
+     * {@link InvoiceStatus#APPROVED approved} and
+     * {@link InvoiceStatus#COLLECTED collected} invoices of the property and
+     * due date; those that already have an invoice number are rejected.
+     */
+    @Programmatic
+    public BulkTransitionResult invoiceInvoices(
+            final Property property,
+            final LocalDate dueDate,
+            final LocalDate invoiceDate) {
+        final String transition = "Invoiced invoices";
+        final Numerator numerator = invoices.findInvoiceNumberNumerator(property);
+        if (numerator == null) {
+            return BulkTransitionResult.failed(transition, "No 'invoice number' numerator found for property");
+        }
+        final Map<String, Object> args = ImmutableMap.<String, Object> of(
+                "approved", InvoiceStatus.APPROVED,
+                "collected", InvoiceStatus.COLLECTED);
+        final List<Invoice> candidates = findInvoices(property, dueDate,
+                "(status == :approved || status == :collected) && invoiceNumber == null", args);
+        final List<Invoice> rejected = findInvoices(property, dueDate,
+                "(status == :approved || status == :collected) && invoiceNumber != null", args);
+
+        final List<String> invoiceNumbers = numerator.increment(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            final Invoice invoice = candidates.get(i);
+            invoice.setInvoiceNumber(invoiceNumbers.get(i));
+            invoice.setInvoiceDate(invoiceDate);
+            invoice.setStatus(InvoiceStatus.INVOICED);
+        }
+        return new BulkTransitionResult(transition, candidates.size(), idsOf(rejected));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Invoice> findInvoices(
+            final Property property,
+            final LocalDate dueDate,
+            final String filter,
+            final Map<String, Object> args) {
+        final Query query = newQuery(
+                "SELECT FROM org.estatio.dom.invoice.Invoice "
+                        + "WHERE property == :property "
+                        + "&& dueDate == :dueDate "
+                        + "&& " + filter + " "
+                        + "ORDER BY buyer.reference ASC");
+        final Map<String, Object> allArgs = ImmutableMap.<String, Object> builder()
+                .putAll(args)
+                .put("property", property)
+                .put("dueDate", dueDate)
+                .build();
+        return Lists.newArrayList((List<Invoice>) query.executeWithMap(allArgs));
+    }
+
+    private static List<String> idsOf(final List<Invoice> invoices) {
+        final List<String> ids = Lists.newArrayList();
+        for (Invoice invoice : invoices) {
+            ids.add(invoice.getId());
+        }
+        return ids;
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Equivalent to {@link LeaseTerm#approve()} for all
+     * {@link LeaseTermStatus#NEW new} terms of the lease.
+     */
+    @Programmatic
+    public BulkTransitionResult approveTerms(final Lease lease) {
+        return approveTerms("leaseItem.lease == :lease", ImmutableMap.<String, Object> of("lease", lease));
+    }
+
+    /**
+     * Equivalent to {@link LeaseTerm#approve()} for all
+     * {@link LeaseTermStatus#NEW new} terms of all leases of the property.
+     */
+    @ActionSemantics(Of.IDEMPOTENT)
+    @MemberOrder(name = "Leases", sequence = "8")
+    @NotContributed
+    public String approveAllNewTerms(final @Named("Property") Property property) {
+        return approveTerms("leaseItem.lease.property == :property", ImmutableMap.<String, Object> of("property", property)).toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private BulkTransitionResult approveTerms(final String filter, final Map<String, Object> args) {
+        final Query query = newQuery(
+                "SELECT FROM org.estatio.dom.lease.LeaseTerm "
+                        + "WHERE status == :status "
+                        + "&& " + filter);
+        final Map<String, Object> allArgs = ImmutableMap.<String, Object> builder()
+                .putAll(args)
+                .put("status", LeaseTermStatus.NEW)
+                .build();
+        final List<LeaseTerm> candidates = (List<LeaseTerm>) query.executeWithMap(allArgs);
+        int count = 0;
+        for (LeaseTerm term : candidates) {
+            term.setStatus(LeaseTermStatus.APPROVED);
+            count++;
+        }
+        return new BulkTransitionResult("Approved terms", count, Collections.<String> emptyList());
+    }
+
+    // //////////////////////////////////////
+
+    private Invoices invoices;
+
+    public final void injectInvoices(final Invoices invoices) {
+        this.invoices = invoices;
+    }
+
+}
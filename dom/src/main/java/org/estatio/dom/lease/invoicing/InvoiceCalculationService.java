@@ -28,8 +28,11 @@ import com.google.common.collect.Lists;
 import org.joda.time.Interval;
 import org.joda.time.LocalDate;
 
+import org.apache.isis.applib.DomainObjectContainer;
 import org.apache.isis.applib.annotation.Hidden;
 import org.apache.isis.applib.annotation.NotContributed;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
 
 import org.estatio.dom.charge.Charge;
 import org.estatio.dom.lease.InvoicingFrequency;
@@ -39,6 +42,8 @@ import org.estatio.dom.lease.Leases.InvoiceRunType;
 import org.estatio.dom.tax.Tax;
 import org.estatio.dom.utils.CalendarUtils;
 import org.estatio.dom.valuetypes.LocalDateInterval;
+import org.estatio.services.metrics.EstatioMetrics;
+import org.estatio.services.metrics.Timer;
 import org.estatio.services.settings.EstatioSettingsService;
 
 @Hidden
@@ -92,6 +97,8 @@ public class InvoiceCalculationService {
      * @param dueDate
      * @param invoicingFrequency
      * @param runType
+     * @param runId
+     *            the id of the run, recorded on the invoice items
      */
     @NotContributed
     public void calculateAndInvoice(
@@ -100,18 +107,25 @@ public class InvoiceCalculationService {
             final LocalDate periodEndDate,
             final LocalDate dueDate,
             final InvoicingFrequency invoicingFrequency, 
-            final InvoiceRunType runType) {
-        final List<CalculationResult> results;
-        LocalDate start = periodStartDate;
-        LocalDate end = periodEndDate;
-        if (runType.equals(InvoiceRunType.RETRO_RUN)) {
-            start = leaseTerm.getStartDate();
-            if (leaseTerm.getEndDate() == null || leaseTerm.getEndDate().isAfter(dueDate)) {
-                end = dueDate;
+            final InvoiceRunType runType,
+            final String runId) {
+        final Timer.Context timer = EstatioMetrics.time("invoiceCalculation.calculateAndInvoice");
+        try {
+            final List<CalculationResult> results;
+            LocalDate start = periodStartDate;
+            LocalDate end = periodEndDate;
+            if (runType.equals(InvoiceRunType.RETRO_RUN)) {
+                start = leaseTerm.getStartDate();
+                if (leaseTerm.getEndDate() == null || leaseTerm.getEndDate().isAfter(dueDate)) {
+                    end = dueDate;
+                }
             }
+            results = calculateWithFrequency(leaseTerm, start, end, dueDate, invoicingFrequency);
+            EstatioMetrics.record("invoiceCalculation.periods", results.size());
+            createAdjustedInvoiceItem(leaseTerm, dueDate, results, invoicingFrequency, runId);
+        } finally {
+            timer.stop();
         }
-        results = calculateWithFrequency(leaseTerm, start, end, dueDate, invoicingFrequency);
-        createAdjustedInvoiceItem(leaseTerm, dueDate, results, invoicingFrequency);
     }
 
     /**
@@ -169,27 +183,45 @@ public class InvoiceCalculationService {
         final List<Interval> intervals = CalendarUtils.intervalsInRange(periodStartDate, periodEndDate, rrule);
 
         for (final Interval interval : intervals) {
-            final LocalDateInterval termInterval = leaseTerm.getEffectiveInterval();
-            final LocalDateInterval calculationInterval = new LocalDateInterval(interval);
-            final LocalDateInterval overlap = calculationInterval.overlap(termInterval);
-            if (overlap != null) {
-                final BigDecimal overlapDays = new BigDecimal(overlap.days());
-                final BigDecimal frequencyDays = new BigDecimal(calculationInterval.days());
-                final BigDecimal rangeFactor = overlapDays.divide(frequencyDays, MathContext.DECIMAL64);
-                final BigDecimal annualFactor = invoicingFrequency.annualMultiplier();
-                final BigDecimal currentValue = leaseTerm.valueForDate(valueDate);
-                if (currentValue != null && annualFactor != null && rangeFactor != null) {
-                    final BigDecimal value =
-                            currentValue.multiply(annualFactor)
-                                    .multiply(rangeFactor)
-                                    .setScale(2, RoundingMode.HALF_UP);
-                    results.add(new CalculationResult(calculationInterval, value));
-                }
+            final CalculationResult result =
+                    calculateInterval(leaseTerm, new LocalDateInterval(interval), valueDate, invoicingFrequency);
+            if (result != null) {
+                results.add(result);
             }
         }
         return results;
     }
 
+    /**
+     * Calculates a term for a single interval of the invoicing frequency
+     * 
+     * @return the result or <tt>null</tt> if the term does not overlap the
+     *         interval or has no value
+     */
+    private CalculationResult calculateInterval(
+            final LeaseTerm leaseTerm,
+            final LocalDateInterval calculationInterval,
+            final LocalDate valueDate,
+            final InvoicingFrequency invoicingFrequency) {
+        final LocalDateInterval termInterval = leaseTerm.getEffectiveInterval();
+        final LocalDateInterval overlap = calculationInterval.overlap(termInterval);
+        if (overlap != null) {
+            final BigDecimal overlapDays = new BigDecimal(overlap.days());
+            final BigDecimal frequencyDays = new BigDecimal(calculationInterval.days());
+            final BigDecimal rangeFactor = overlapDays.divide(frequencyDays, MathContext.DECIMAL64);
+            final BigDecimal annualFactor = invoicingFrequency.annualMultiplier();
+            final BigDecimal currentValue = leaseTerm.valueForDate(valueDate);
+            if (currentValue != null && annualFactor != null && rangeFactor != null) {
+                final BigDecimal value =
+                        currentValue.multiply(annualFactor)
+                                .multiply(rangeFactor)
+                                .setScale(2, RoundingMode.HALF_UP);
+                return new CalculationResult(calculationInterval, value);
+            }
+        }
+        return null;
+    }
+
     @NotContributed
     public List<CalculationResult> calculateFullLengthOfTerm(final LeaseTerm leaseTerm, final LocalDate dueDate) {
         final LocalDate startDate = leaseTerm.getStartDate();
@@ -238,76 +270,124 @@ public class InvoiceCalculationService {
     void createInvoiceItems(
             final LeaseTerm leaseTerm,
             final LocalDate dueDate,
-            final List<CalculationResult> results) {
-        createAdjustedInvoiceItem(leaseTerm, dueDate, results, leaseTerm.getLeaseItem().getInvoicingFrequency());
+            final List<CalculationResult> results,
+            final String runId) {
+        createAdjustedInvoiceItem(leaseTerm, dueDate, results, leaseTerm.getLeaseItem().getInvoicingFrequency(), runId);
     }
 
     /**
      * Calculates an invoice item with the difference between the already
      * invoiced and calculated value.
      * 
+     * <p>
+     * The invoiced values of the term are collected in a single pass into an
+     * {@link InvoicedValueLedger}, all adjustments are computed against that
+     * ledger and only then emitted as invoice items. This keeps a retro run
+     * over the full length of a term linear in the number of periods.
+     * 
      * @param leaseTerm
      * @param dueDate
      * @param calculationResult
      * @param invoicingFrequency
+     * @param runId
      */
     void createAdjustedInvoiceItem(
             final LeaseTerm leaseTerm,
             final LocalDate dueDate,
             final List<CalculationResult> results,
-            final InvoicingFrequency invoicingFrequency) {
-        final LocalDate epochDate = estatioSettingsService.fetchEpochDate();
+            final InvoicingFrequency invoicingFrequency,
+            final String runId) {
+        final InvoicedValueLedger ledger =
+                InvoicedValueLedger.of(leaseTerm, invoicedValueSummaries.findByLeaseTerm(leaseTerm));
+        final List<CalculationResult> adjustments = calculateAdjustments(leaseTerm, results, invoicingFrequency, ledger);
+        for (CalculationResult adjustment : adjustments) {
+            createInvoiceItem(leaseTerm, dueDate, adjustment, ledger, runId);
+        }
+    }
 
+    /**
+     * Calculates the difference between the calculated and the already
+     * invoiced value for every period.
+     * 
+     * <p>
+     * Periods before the epoch date were invoiced outside of Estatio, they are
+     * assumed to be invoiced with the value of the term at the start of the
+     * period.
+     * 
+     * @return the results with a non zero difference, holding that difference
+     *         as their value
+     */
+    List<CalculationResult> calculateAdjustments(
+            final LeaseTerm leaseTerm,
+            final List<CalculationResult> results,
+            final InvoicingFrequency invoicingFrequency,
+            final InvoicedValueLedger ledger) {
+        final InvoicingUnitOfWork unitOfWork = InvoicingUnitOfWork.current();
+        final LocalDate epochDate = unitOfWork != null
+                ? unitOfWork.fetchEpochDate(estatioSettingsService)
+                : estatioSettingsService.fetchEpochDate();
+        final List<CalculationResult> adjustments = Lists.newArrayList();
         for (CalculationResult result : results) {
             final LocalDate startDate = result.frequencyInterval.startDate();
             BigDecimal invoicedValue;
             if (epochDate != null && startDate.compareTo(epochDate) < 0) {
-                List<CalculationResult> mockResult = calculateWithFrequency(
+                final CalculationResult epochResult = calculateInterval(
                         leaseTerm,
-                        startDate,
-                        null,
+                        result.frequencyInterval,
                         startDate,
                         invoicingFrequency);
-                invoicedValue = CalculationResultsUtil.sum(mockResult);
+                invoicedValue = epochResult == null ? BigDecimal.ZERO : epochResult.getCalculatedValue();
             } else {
-                invoicedValue = leaseTerm.invoicedValueFor(startDate);
+                invoicedValue = ledger.invoicedValueFor(startDate);
             }
             BigDecimal newValue = result.value.subtract(invoicedValue);
             if (newValue.compareTo(BigDecimal.ZERO) != 0) {
-                createInvoiceItem(leaseTerm, dueDate, result, newValue);
+                adjustments.add(new CalculationResult(result.frequencyInterval, newValue));
             }
         }
-
+        return adjustments;
     }
 
     /**
-     * Creates an invoice item
+     * Creates an invoice item, tagged with the id of the run so that it can be
+     * {@link InvoiceItemsForLease#rollbackRun(String) rolled back}; an
+     * unapproved item of an earlier run is reused and keeps what that run
+     * calculated (see {@link InvoiceItemForLease#recalculatedBy(String)}).
      * 
      * @param leaseTerm
      * @param dueDate
-     * @param calculationResult
-     *            the result of the calculation of the lease term
-     * @param overrideValue
-     *            the value that overrides the calculation result usually based
-     *            on the already invoiced amounts
+     * @param adjustment
+     *            the adjustment of the lease term, its value is the difference
+     *            between the calculated and the already invoiced amount
+     * @param ledger
+     *            the ledger of the lease term, used to find an existing
+     *            unapproved item
+     * @param runId
      */
     private void createInvoiceItem(
             final LeaseTerm leaseTerm,
             final LocalDate dueDate,
-            final CalculationResult calculationResult,
-            final BigDecimal overrideValue) {
+            final CalculationResult adjustment,
+            final InvoicedValueLedger ledger,
+            final String runId) {
+        final LocalDateInterval calculationInterval = adjustment.frequencyInterval;
         InvoiceItemForLease invoiceItem =
-                leaseTerm.findOrCreateUnapprovedInvoiceItemFor(
-                        calculationResult.frequencyInterval.startDate(), dueDate);
-        invoiceItem.setNetAmount(overrideValue);
+                ledger.unapprovedInvoiceItemFor(calculationInterval.startDate(), dueDate);
+        if (invoiceItem == null) {
+            invoiceItem = leaseTerm.newInvoiceItem(calculationInterval.startDate(), dueDate);
+            invoiceItem.setRunId(runId);
+        } else {
+            invoiceItem.recalculatedBy(runId);
+        }
+        invoiceItem.setNetAmount(adjustment.getCalculatedValue());
         invoiceItem.setQuantity(BigDecimal.ONE);
         LeaseItem leaseItem = leaseTerm.getLeaseItem();
         Charge charge = leaseItem.getCharge();
         invoiceItem.setCharge(charge);
         invoiceItem.setDescription(charge.getName());
         invoiceItem.setDueDate(dueDate);
-        invoiceItem.setStartDate(calculationResult.frequencyInterval.startDate());
-        invoiceItem.setEndDate(calculationResult.frequencyInterval.endDate());
+        invoiceItem.setStartDate(calculationInterval.startDate());
+        invoiceItem.setEndDate(calculationInterval.endDate());
         Tax tax = charge.getTax();
         invoiceItem.setTax(tax);
         invoiceItem.attachToInvoice();
@@ -316,11 +396,39 @@ public class InvoiceCalculationService {
 
     // //////////////////////////////////////
 
+    /**
+     * Begins an {@link InvoicingUnitOfWork}, or joins the one already active.
+     */
+    @Programmatic
+    public InvoicingUnitOfWork beginUnitOfWork() {
+        return InvoicingUnitOfWork.begin(isisJdoSupport.getJdoPersistenceManager(), container);
+    }
+
+    // //////////////////////////////////////
+
+    private DomainObjectContainer container;
+
+    public void setContainer(final DomainObjectContainer container) {
+        this.container = container;
+    }
+
+    private IsisJdoSupport isisJdoSupport;
+
+    public final void injectIsisJdoSupport(final IsisJdoSupport isisJdoSupport) {
+        this.isisJdoSupport = isisJdoSupport;
+    }
+
     private EstatioSettingsService estatioSettingsService;
 
     public void setEstatioSettings(final EstatioSettingsService estatioSettings) {
         this.estatioSettingsService = estatioSettings;
     }
 
+    private InvoicedValueSummaries invoicedValueSummaries;
+
+    public final void injectInvoicedValueSummaries(final InvoicedValueSummaries invoicedValueSummaries) {
+        this.invoicedValueSummaries = invoicedValueSummaries;
+    }
+
 
 }
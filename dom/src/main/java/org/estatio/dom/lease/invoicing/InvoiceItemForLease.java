@@ -18,15 +18,20 @@
  */
 package org.estatio.dom.lease.invoicing;
 
+import java.math.BigDecimal;
+
 import javax.jdo.annotations.InheritanceStrategy;
 
 import com.google.common.collect.Ordering;
 
 import org.apache.isis.applib.annotation.Disabled;
 import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Optional;
 import org.apache.isis.applib.annotation.Programmatic;
 import org.apache.isis.applib.annotation.Where;
 
+import org.estatio.dom.LastModifiedListener;
+import org.estatio.dom.JdoColumnLength;
 import org.estatio.dom.agreement.AgreementRole;
 import org.estatio.dom.agreement.AgreementRoleType;
 import org.estatio.dom.agreement.AgreementRoleTypes;
@@ -41,6 +46,8 @@ import org.estatio.dom.lease.LeaseConstants;
 import org.estatio.dom.lease.LeaseTerm;
 import org.estatio.dom.party.Party;
 import org.estatio.dom.valuetypes.LocalDateInterval;
+import org.estatio.services.metrics.EstatioMetrics;
+import org.estatio.services.metrics.Timer;
 
 /**
  * A lease-specific subclass of {@link InvoiceItem}, referring
@@ -51,6 +58,12 @@ import org.estatio.dom.valuetypes.LocalDateInterval;
 @javax.jdo.annotations.Inheritance(
         strategy = InheritanceStrategy.SUPERCLASS_TABLE)
 //no @DatastoreIdentity nor @Version, since inherited from supertype
+@javax.jdo.annotations.Cacheable("false")
+@javax.jdo.annotations.Indices({
+        @javax.jdo.annotations.Index(
+                name = "InvoiceItemForLease_runId_IDX",
+                members = { "runId" })
+})
 @javax.jdo.annotations.Queries({
         @javax.jdo.annotations.Query(
                 name = "findByLeaseAndStartDateAndDueDate", language = "JDOQL",
@@ -73,7 +86,18 @@ import org.estatio.dom.valuetypes.LocalDateInterval;
                         + "FROM org.estatio.dom.lease.invoicing.InvoiceItemForLease "
                         + "WHERE invoice == :invoice "
                         + "&& leaseTerm == :leaseTerm "
-                        + "&& endDate == :endDate")
+                        + "&& endDate == :endDate"),
+        @javax.jdo.annotations.Query(
+                name = "findByRunIdRecalculated", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.lease.invoicing.InvoiceItemForLease "
+                        + "WHERE runId == :runId "
+                        + "&& previousNetAmount != null"),
+        @javax.jdo.annotations.Query(
+                name = "findByPreviousRunId", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.lease.invoicing.InvoiceItemForLease "
+                        + "WHERE previousRunId == :runId")
 })
 public class InvoiceItemForLease extends InvoiceItem {
 
@@ -116,6 +140,96 @@ public class InvoiceItemForLease extends InvoiceItem {
 
     // //////////////////////////////////////
 
+    private String runId;
+
+    /**
+     * The id of the calculation run that last calculated this item, if any;
+     * see {@link InvoiceItemsForLease#rollbackRun(String)}.
+     */
+    @javax.jdo.annotations.Column(allowsNull = "true", length = JdoColumnLength.RUN_ID)
+    @Optional
+    @Disabled
+    @Hidden(where = Where.ALL_TABLES)
+    public String getRunId() {
+        return runId;
+    }
+
+    public void setRunId(final String runId) {
+        this.runId = runId;
+    }
+
+    // //////////////////////////////////////
+
+    private String previousRunId;
+
+    /**
+     * The id of the run that calculated this item before it was recalculated
+     * by the {@link #getRunId() current run}; only set (as is the
+     * {@link #getPreviousNetAmount() previous net amount}) when the item was
+     * recalculated by another run.
+     */
+    @javax.jdo.annotations.Column(allowsNull = "true", length = JdoColumnLength.RUN_ID)
+    @Hidden
+    public String getPreviousRunId() {
+        return previousRunId;
+    }
+
+    public void setPreviousRunId(final String previousRunId) {
+        this.previousRunId = previousRunId;
+    }
+
+    private BigDecimal previousNetAmount;
+
+    /**
+     * The net amount before the item was recalculated by the
+     * {@link #getRunId() current run}, restored when that run is
+     * {@link InvoiceItemsForLease#rollbackRun(String) rolled back}.
+     */
+    @javax.jdo.annotations.Column(allowsNull = "true", scale = 2)
+    @Hidden
+    public BigDecimal getPreviousNetAmount() {
+        return previousNetAmount;
+    }
+
+    public void setPreviousNetAmount(final BigDecimal previousNetAmount) {
+        this.previousNetAmount = previousNetAmount;
+    }
+
+    /**
+     * Tags an existing item with the run that recalculates it, keeping the run
+     * id and net amount of the run that calculated it before, so that rolling
+     * back this run can {@link #restorePreviousRun() restore} them.
+     * 
+     * <p>
+     * Only one previous run is kept: a run recalculating the item of a run
+     * that itself recalculated it replaces that history, so runs are to be
+     * rolled back latest first.
+     */
+    @Programmatic
+    public void recalculatedBy(final String runId) {
+        if (runId == null || runId.equals(getRunId())) {
+            return;
+        }
+        setPreviousRunId(getRunId());
+        setPreviousNetAmount(getNetAmount());
+        setRunId(runId);
+    }
+
+    /**
+     * Undoes the last {@link #recalculatedBy(String) recalculation} by another
+     * run.
+     */
+    @Programmatic
+    public void restorePreviousRun() {
+        setNetAmount(getPreviousNetAmount());
+        setRunId(getPreviousRunId());
+        setPreviousRunId(null);
+        setPreviousNetAmount(null);
+        verify();
+    }
+
+    // //////////////////////////////////////
+
     @Override
     @Programmatic
     public LocalDateInterval getEffectiveInterval() {
@@ -130,20 +244,36 @@ public class InvoiceItemForLease extends InvoiceItem {
         if (lease == null) {
             return;
         }
-        final AgreementRoleType landlord = agreementRoleTypes.findByTitle(LeaseConstants.ART_LANDLORD);
-        final AgreementRoleType tenant = agreementRoleTypes.findByTitle(LeaseConstants.ART_TENANT);
-
-        final AgreementRole role = lease.findRoleWithType(landlord, getDueDate());
-        final Party seller = role.getParty();
-        final Party buyer = lease.findRoleWithType(tenant, getDueDate()).getParty();
-        final PaymentMethod paymentMethod = getLeaseTerm().getLeaseItem().getPaymentMethod();
-        Invoice invoice = invoices.findInvoiceByVarious(
-                seller, buyer, paymentMethod, lease, InvoiceStatus.NEW, getDueDate());
-        if (invoice == null) {
-            invoice = createInvoice(seller, buyer, paymentMethod, lease);
+        final Timer.Context timer = EstatioMetrics.time("invoiceItem.attachToInvoice");
+        try {
+            final AgreementRoleType landlord = agreementRoleTypes.findByTitle(LeaseConstants.ART_LANDLORD);
+            final AgreementRoleType tenant = agreementRoleTypes.findByTitle(LeaseConstants.ART_TENANT);
+
+            final AgreementRole role = lease.findRoleWithType(landlord, getDueDate());
+            final Party seller = role.getParty();
+            final Party buyer = lease.findRoleWithType(tenant, getDueDate()).getParty();
+            final PaymentMethod paymentMethod = getLeaseTerm().getLeaseItem().getPaymentMethod();
+            // invoices created within a unit of work are not flushed yet
+            final InvoicingUnitOfWork unitOfWork = InvoicingUnitOfWork.current();
+            Invoice invoice = unitOfWork != null
+                    ? unitOfWork.findInvoice(seller, buyer, paymentMethod, lease, getDueDate())
+                    : null;
+            if (invoice == null) {
+                invoice = invoices.findInvoiceByVarious(
+                        seller, buyer, paymentMethod, lease, InvoiceStatus.NEW, getDueDate());
+                if (invoice == null) {
+                    invoice = createInvoice(seller, buyer, paymentMethod, lease);
+                    EstatioMetrics.count("invoiceItem.invoicesCreated");
+                }
+                if (unitOfWork != null) {
+                    unitOfWork.addInvoice(invoice, seller, buyer, paymentMethod, lease, getDueDate());
+                }
+            }
+            setSequence(invoice.nextItemSequence());
+            this.setInvoice(invoice);
+        } finally {
+            timer.stop();
         }
-        setSequence(invoice.nextItemSequence());
-        this.setInvoice(invoice);
     }
 
     private Invoice createInvoice(
@@ -156,6 +286,8 @@ public class InvoiceItemForLease extends InvoiceItem {
         invoice.setBuyer(buyer);
         invoice.setSeller(seller);
         invoice.setSource(lease);
+        invoice.setProperty(lease.getProperty());
+        invoice.setRunId(getRunId());
         invoice.setDueDate(getDueDate());
         invoice.setPaymentMethod(paymentMethod);
         invoice.setStatus(InvoiceStatus.NEW);
@@ -167,6 +299,7 @@ public class InvoiceItemForLease extends InvoiceItem {
     @Hidden
     public void remove() {
         // no safeguard, assuming being called with precaution
+        LastModifiedListener.touchWholesOf(getLeaseTerm());
         clearLeaseTerm();
         super.remove();
     }
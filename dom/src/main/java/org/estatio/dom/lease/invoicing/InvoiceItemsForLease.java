@@ -18,9 +18,20 @@
  */
 package org.estatio.dom.lease.invoicing;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.List;
 
+import javax.jdo.datastore.JDOConnection;
+
+import com.google.common.collect.Lists;
+
+import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
+import org.joda.time.Period;
 
 import org.apache.isis.applib.annotation.ActionSemantics;
 import org.apache.isis.applib.annotation.ActionSemantics.Of;
@@ -28,11 +39,20 @@ import org.apache.isis.applib.annotation.DescribedAs;
 import org.apache.isis.applib.annotation.Hidden;
 import org.apache.isis.applib.annotation.MemberOrder;
 import org.apache.isis.applib.annotation.Named;
+import org.apache.isis.applib.annotation.Programmatic;
 import org.apache.isis.applib.annotation.Prototype;
 
 import org.estatio.dom.EstatioDomainService;
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.InvoiceItem;
+import org.estatio.dom.invoice.InvoiceStatus;
+import org.estatio.dom.lease.Lease;
 import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.utils.JodaPeriodUtils;
 import org.estatio.dom.utils.StringUtils;
+import org.estatio.services.cache.ClusterCacheService;
+import org.estatio.services.metrics.EstatioMetrics;
+import org.estatio.services.metrics.Timer;
 
 public class InvoiceItemsForLease extends EstatioDomainService<InvoiceItemForLease> {
 
@@ -43,6 +63,11 @@ public class InvoiceItemsForLease extends EstatioDomainService<InvoiceItemForLea
     // //////////////////////////////////////
 
     
+    /**
+     * Within an {@link InvoicingUnitOfWork}, the new item is only added to
+     * the (sorted) items of the term and persisted when the unit of work
+     * completes, once its properties are all set.
+     */
     @ActionSemantics(Of.NON_IDEMPOTENT)
     @Hidden
     public InvoiceItemForLease newInvoiceItem(
@@ -50,8 +75,14 @@ public class InvoiceItemsForLease extends EstatioDomainService<InvoiceItemForLea
         InvoiceItemForLease invoiceItem = newTransientInstance();
         invoiceItem.setStartDate(startDate);
         invoiceItem.setDueDate(dueDate);
-        invoiceItem.modifyLeaseTerm(leaseTerm);
-        persistIfNotAlready(invoiceItem);
+        final InvoicingUnitOfWork unitOfWork = InvoicingUnitOfWork.current();
+        if (unitOfWork != null) {
+            invoiceItem.setLeaseTerm(leaseTerm);
+            unitOfWork.addNewItem(invoiceItem);
+        } else {
+            invoiceItem.modifyLeaseTerm(leaseTerm);
+            persistIfNotAlready(invoiceItem);
+        }
         return invoiceItem;
     }
 
@@ -77,6 +108,207 @@ public class InvoiceItemsForLease extends EstatioDomainService<InvoiceItemForLea
                 "dueDate", dueDate);
     }
     
+    // //////////////////////////////////////
+
+    /**
+     * Undoes a calculation run: restores the unapproved items it recalculated
+     * from an earlier run to what that run calculated, removes the other
+     * items it calculated that are not yet on an approved invoice, and the new
+     * invoices it created that are left without items.
+     * 
+     * <p>
+     * Refused while a later run has recalculated items of this run, as only
+     * the run before is kept on an item (see
+     * {@link InvoiceItemForLease#recalculatedBy(String)}); that run is to be
+     * rolled back first.
+     * 
+     * <p>
+     * Apart from restoring the (few) recalculated items, done with a few
+     * set-based statements rather than removing the items one by one (as
+     * {@link LeaseTerm#removeUnapprovedInvoiceItemsForDate(LocalDate, LocalDate)}
+     * does), so intended to be run in an interaction of its own. The
+     * {@link org.estatio.dom.invoice.Invoice#getLastItemSequence() item sequence}
+     * of the invoices that are kept is reset to their remaining items.
+     */
+    @ActionSemantics(Of.NON_IDEMPOTENT)
+    @MemberOrder(name="Invoices", sequence = "90")
+    public String rollbackRun(final @Named("Run id") String runId) {
+        final String refusal = validateRollbackRun(runId);
+        if (refusal != null) {
+            return refusal;
+        }
+        final DateTime start = DateTime.now();
+        final Timer.Context timer = EstatioMetrics.time("invoiceCalculation.rollbackRun");
+        try {
+            int itemsRestored = 0;
+            for (InvoiceItemForLease invoiceItem : findByRunIdRecalculated(runId)) {
+                if (isUnapproved(invoiceItem)) {
+                    invoiceItem.restorePreviousRun();
+                    itemsRestored++;
+                }
+            }
+            getContainer().flush();
+            final int[] removed = executeRollback(runId);
+            evictFromCache();
+            return String.format(
+                    "Removed %d invoice items and %d invoices and restored %d invoice items of run %s in %s",
+                    removed[0], removed[1], itemsRestored, runId,
+                    JodaPeriodUtils.asString(new Period(start, DateTime.now())));
+        } finally {
+            timer.stop();
+        }
+    }
+
+    public List<String> choices0RollbackRun() {
+        return findRunIds();
+    }
+
+    public String validateRollbackRun(final String runId) {
+        if (runId == null || !runId.matches(RUN_ID_REGEX)) {
+            return "Not a valid run id";
+        }
+        for (InvoiceItemForLease invoiceItem : findByPreviousRunId(runId)) {
+            if (isUnapproved(invoiceItem)) {
+                return "Items of run " + runId + " were recalculated by run " + invoiceItem.getRunId()
+                        + ", roll back that run first";
+            }
+        }
+        return null;
+    }
+
+    private static final String RUN_ID_REGEX = "[\\w-]+";
+
+    private static boolean isUnapproved(final InvoiceItemForLease invoiceItem) {
+        final Invoice invoice = invoiceItem.getInvoice();
+        return invoice == null || invoice.getStatus() == InvoiceStatus.NEW;
+    }
+
+    private List<InvoiceItemForLease> findByRunIdRecalculated(final String runId) {
+        return allMatches("findByRunIdRecalculated", "runId", runId);
+    }
+
+    private List<InvoiceItemForLease> findByPreviousRunId(final String runId) {
+        return allMatches("findByPreviousRunId", "runId", runId);
+    }
+
+    /**
+     * @return the number of items and of invoices removed
+     */
+    private int[] executeRollback(final String runId) {
+        final JDOConnection jdoConnection = isisJdoSupport.getJdoPersistenceManager().getDataStoreConnection();
+        try {
+            final Connection connection = (Connection) jdoConnection.getNativeConnection();
+            // these statements bypass the LastModifiedListener, so touch
+            // the invoices and leases losing items explicitly
+            final Timestamp now = new Timestamp(DateTime.now().getMillis());
+            executeUpdate(connection,
+                    "UPDATE \"Invoice\" SET \"lastItemSequence\" = ("
+                            + "SELECT MAX(\"sequence\") FROM \"InvoiceItem\" "
+                            + "WHERE \"invoiceId\" = \"Invoice\".\"id\" "
+                            + "AND (\"runId\" IS NULL OR \"runId\" <> ?)), "
+                            + "\"lastModified\" = ?, \"version\" = \"version\" + 1 "
+                            + "WHERE \"status\" = 'NEW' "
+                            + "AND EXISTS (SELECT \"id\" FROM \"InvoiceItem\" "
+                            + "WHERE \"invoiceId\" = \"Invoice\".\"id\" AND \"runId\" = ?)",
+                    runId, now, runId);
+            executeUpdate(connection,
+                    "UPDATE \"Lease\" SET \"lastModified\" = ? "
+                            + "WHERE \"id\" IN (" + LEASES_OF_RUN + ")",
+                    now, runId);
+            executeUpdate(connection,
+                    "UPDATE \"Agreement\" SET \"version\" = \"version\" + 1 "
+                            + "WHERE \"id\" IN (" + LEASES_OF_RUN + ")",
+                    runId);
+            final int itemsRemoved = executeUpdate(connection,
+                    "DELETE FROM \"InvoiceItem\" "
+                            + "WHERE \"runId\" = ? "
+                            + "AND (\"invoiceId\" IS NULL OR \"invoiceId\" IN ("
+                            + "SELECT \"id\" FROM \"Invoice\" WHERE \"status\" = 'NEW'))",
+                    runId);
+            final int invoicesRemoved = executeUpdate(connection,
+                    "DELETE FROM \"Invoice\" "
+                            + "WHERE \"runId\" = ? "
+                            + "AND \"status\" = 'NEW' "
+                            + "AND NOT EXISTS (SELECT \"id\" FROM \"InvoiceItem\" "
+                            + "WHERE \"invoiceId\" = \"Invoice\".\"id\")",
+                    runId);
+            return new int[] { itemsRemoved, invoicesRemoved };
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Could not roll back run " + runId, ex);
+        } finally {
+            jdoConnection.close();
+        }
+    }
+
+    private static final String LEASES_OF_RUN =
+            "SELECT \"LeaseItem\".\"leaseId\" FROM \"LeaseItem\" "
+                    + "JOIN \"LeaseTerm\" ON \"LeaseTerm\".\"leaseItemId\" = \"LeaseItem\".\"id\" "
+                    + "JOIN \"InvoiceItem\" ON \"InvoiceItem\".\"leaseTermId\" = \"LeaseTerm\".\"id\" "
+                    + "LEFT JOIN \"Invoice\" ON \"Invoice\".\"id\" = \"InvoiceItem\".\"invoiceId\" "
+                    + "WHERE \"InvoiceItem\".\"runId\" = ? "
+                    + "AND (\"Invoice\".\"id\" IS NULL OR \"Invoice\".\"status\" = 'NEW')";
+
+    private static int executeUpdate(
+            final Connection connection,
+            final String sql,
+            final Object... parameters) throws SQLException {
+        final PreparedStatement statement = connection.prepareStatement(sql);
+        try {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            return statement.executeUpdate();
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static final int MAX_RUN_IDS = 20;
+
+    /**
+     * The ids of the most recent runs that have calculated invoice items,
+     * latest first; as the items are numbered in the order they are created,
+     * by the last item of each run.
+     */
+    @Programmatic
+    public List<String> findRunIds() {
+        final List<String> runIds = Lists.newArrayList();
+        final JDOConnection jdoConnection = isisJdoSupport.getJdoPersistenceManager().getDataStoreConnection();
+        try {
+            final Connection connection = (Connection) jdoConnection.getNativeConnection();
+            final PreparedStatement statement = connection.prepareStatement(
+                    "SELECT \"runId\" FROM \"InvoiceItem\" "
+                            + "WHERE \"runId\" IS NOT NULL "
+                            + "GROUP BY \"runId\" "
+                            + "ORDER BY MAX(\"id\") DESC");
+            try {
+                statement.setMaxRows(MAX_RUN_IDS);
+                final ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    runIds.add(resultSet.getString(1));
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Could not find the run ids", ex);
+        } finally {
+            jdoConnection.close();
+        }
+        return runIds;
+    }
+
+    /**
+     * The changes made by the statements bypass DataNucleus (and so the
+     * {@link org.estatio.services.cache.CacheInvalidationListener}): evict the
+     * invoices, items and leases from the second level cache of every node,
+     * and the objects already loaded so that they are read again.
+     */
+    private void evictFromCache() {
+        clusterCacheService.evictAll(Lease.class, Invoice.class, InvoiceItem.class);
+        isisJdoSupport.getJdoPersistenceManager().evictAll();
+    }
+
     // //////////////////////////////////////
     
     @Prototype
@@ -86,4 +318,12 @@ public class InvoiceItemsForLease extends EstatioDomainService<InvoiceItemForLea
         return allInstances();
     }
 
+    // //////////////////////////////////////
+
+    private ClusterCacheService clusterCacheService;
+
+    public final void injectClusterCacheService(final ClusterCacheService clusterCacheService) {
+        this.clusterCacheService = clusterCacheService;
+    }
+
 }
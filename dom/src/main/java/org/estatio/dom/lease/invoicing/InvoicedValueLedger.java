@@ -0,0 +1,125 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.invoicing;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+import org.joda.time.LocalDate;
+
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.InvoiceStatus;
+import org.estatio.dom.lease.LeaseTerm;
+
+/**
+ * Snapshot of the invoice items of a single {@link LeaseTerm}, built in one
+ * pass over {@link LeaseTerm#getInvoiceItems()}.
+ *
+ * <p>
+ * Holds the already invoiced amount per period start date (equivalent to
+ * {@link LeaseTerm#invoicedValueFor(LocalDate)}) and the unapproved item per
+ * period start and due date (equivalent to
+ * {@link LeaseTerm#findUnapprovedInvoiceItemFor(LocalDate, LocalDate)}), so
+ * that a calculation over many periods does not have to rescan the items for
+ * every period.
+ * 
+ * <p>
+ * The invoiced amounts of archived invoices, which are no longer part of the
+ * term's items, are included through their {@link InvoicedValueSummary
+ * summaries}.
+ */
+class InvoicedValueLedger {
+
+    private final Map<LocalDate, BigDecimal> invoicedValues = Maps.newHashMap();
+    private final Map<String, InvoiceItemForLease> unapprovedItems = Maps.newHashMap();
+
+    private InvoicedValueLedger() {
+    }
+
+    static InvoicedValueLedger of(final LeaseTerm leaseTerm) {
+        return of(leaseTerm, Collections.<InvoicedValueSummary> emptyList());
+    }
+
+    static InvoicedValueLedger of(
+            final LeaseTerm leaseTerm,
+            final List<InvoicedValueSummary> archivedSummaries) {
+        final InvoicedValueLedger ledger = new InvoicedValueLedger();
+        for (InvoiceItemForLease invoiceItem : leaseTerm.getInvoiceItems()) {
+            ledger.add(leaseTerm, invoiceItem);
+        }
+        for (InvoicedValueSummary summary : archivedSummaries) {
+            ledger.addInvoicedValue(summary.getStartDate(), summary.getInvoicedValue());
+        }
+        return ledger;
+    }
+
+    private void add(final LeaseTerm leaseTerm, final InvoiceItemForLease invoiceItem) {
+        final LocalDate startDate = invoiceItem.getStartDate();
+        if (startDate == null) {
+            return;
+        }
+        final Invoice invoice = invoiceItem.getInvoice();
+        if (invoice == null || invoice.getStatus().equals(InvoiceStatus.NEW)) {
+            final String key = keyFor(startDate, invoiceItem.getDueDate());
+            if (leaseTerm.equals(invoiceItem.getLeaseTerm()) && !unapprovedItems.containsKey(key)) {
+                // first one wins, as in LeaseTerm#findUnapprovedInvoiceItemFor
+                unapprovedItems.put(key, invoiceItem);
+            }
+            return;
+        }
+        addInvoicedValue(startDate, invoiceItem.getNetAmount());
+    }
+
+    private void addInvoicedValue(final LocalDate startDate, final BigDecimal amount) {
+        final BigDecimal current = invoicedValues.get(startDate);
+        invoicedValues.put(
+                startDate,
+                (current == null ? BigDecimal.ZERO : current).add(amount));
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * The sum of the net amounts of all items with the given start date on
+     * invoices that are no longer {@link InvoiceStatus#NEW new}, including
+     * archived ones.
+     */
+    BigDecimal invoicedValueFor(final LocalDate startDate) {
+        final BigDecimal invoicedValue = invoicedValues.get(startDate);
+        return invoicedValue == null ? BigDecimal.ZERO : invoicedValue;
+    }
+
+    /**
+     * The item with the given start and due date that is not yet attached to
+     * an invoice, or attached to an invoice that is still
+     * {@link InvoiceStatus#NEW new}; <tt>null</tt> if there is none.
+     */
+    InvoiceItemForLease unapprovedInvoiceItemFor(final LocalDate startDate, final LocalDate dueDate) {
+        return unapprovedItems.get(keyFor(startDate, dueDate));
+    }
+
+    private static String keyFor(final LocalDate startDate, final LocalDate dueDate) {
+        return startDate + "|" + dueDate;
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.invoicing;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.annotation.ActionSemantics;
+import org.apache.isis.applib.annotation.ActionSemantics.Of;
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.NotContributed;
+import org.apache.isis.applib.annotation.Programmatic;
+
+import org.estatio.dom.EstatioDomainService;
+import org.estatio.dom.lease.LeaseTerm;
+
+@Hidden
+public class InvoicedValueSummaries extends EstatioDomainService<InvoicedValueSummary> {
+
+    public InvoicedValueSummaries() {
+        super(InvoicedValueSummaries.class, InvoicedValueSummary.class);
+    }
+
+    // //////////////////////////////////////
+
+    @ActionSemantics(Of.SAFE)
+    @NotContributed
+    public List<InvoicedValueSummary> findByLeaseTerm(final LeaseTerm leaseTerm) {
+        return allMatches("findByLeaseTerm", "leaseTerm", leaseTerm);
+    }
+
+    @ActionSemantics(Of.SAFE)
+    @NotContributed
+    public InvoicedValueSummary findByLeaseTermAndStartDate(
+            final LeaseTerm leaseTerm,
+            final LocalDate startDate) {
+        return firstMatch("findByLeaseTermAndStartDate", "leaseTerm", leaseTerm, "startDate", startDate);
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Adds the amount to the summary of the term and period, creating the
+     * summary if required.
+     */
+    @Programmatic
+    public InvoicedValueSummary addInvoicedValue(
+            final LeaseTerm leaseTerm,
+            final LocalDate startDate,
+            final BigDecimal amount) {
+        InvoicedValueSummary summary = findByLeaseTermAndStartDate(leaseTerm, startDate);
+        if (summary == null) {
+            summary = newTransientInstance();
+            summary.setLeaseTerm(leaseTerm);
+            summary.setStartDate(startDate);
+            summary.setInvoicedValue(BigDecimal.ZERO);
+            persistIfNotAlready(summary);
+        }
+        summary.add(amount);
+        return summary;
+    }
+
+}
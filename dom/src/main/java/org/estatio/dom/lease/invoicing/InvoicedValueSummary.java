@@ -0,0 +1,135 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.invoicing;
+
+import java.math.BigDecimal;
+
+import javax.jdo.annotations.IdGeneratorStrategy;
+import javax.jdo.annotations.IdentityType;
+import javax.jdo.annotations.VersionStrategy;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.annotation.Disabled;
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Immutable;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.annotation.Title;
+import org.apache.isis.applib.annotation.Where;
+
+import org.estatio.dom.EstatioMutableObject;
+import org.estatio.dom.lease.LeaseTerm;
+
+/**
+ * The total net amount invoiced for a {@link LeaseTerm} and period (identified
+ * by its start date) by invoices that have been archived.
+ * 
+ * <p>
+ * Once an invoice is archived its items are no longer part of
+ * {@link LeaseTerm#getInvoiceItems()}; these summaries are added to the
+ * {@link InvoicedValueLedger} so that the adjustments calculated by the
+ * {@link InvoiceCalculationService} stay correct.
+ */
+@javax.jdo.annotations.PersistenceCapable(identityType = IdentityType.DATASTORE)
+@javax.jdo.annotations.DatastoreIdentity(
+        strategy = IdGeneratorStrategy.NATIVE,
+        column = "id")
+@javax.jdo.annotations.Version(
+        strategy = VersionStrategy.VERSION_NUMBER,
+        column = "version")
+@javax.jdo.annotations.Uniques({
+        @javax.jdo.annotations.Unique(
+                name = "InvoicedValueSummary_leaseTerm_startDate_UNQ",
+                members = { "leaseTerm", "startDate" })
+})
+@javax.jdo.annotations.Queries({
+        @javax.jdo.annotations.Query(
+                name = "findByLeaseTerm", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.lease.invoicing.InvoicedValueSummary "
+                        + "WHERE leaseTerm == :leaseTerm"),
+        @javax.jdo.annotations.Query(
+                name = "findByLeaseTermAndStartDate", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.lease.invoicing.InvoicedValueSummary "
+                        + "WHERE leaseTerm == :leaseTerm "
+                        + "&& startDate == :startDate")
+})
+@Immutable
+public class InvoicedValueSummary extends EstatioMutableObject<InvoicedValueSummary> {
+
+    public InvoicedValueSummary() {
+        super("leaseTerm, startDate");
+    }
+
+    // //////////////////////////////////////
+
+    private LeaseTerm leaseTerm;
+
+    @javax.jdo.annotations.Column(name = "leaseTermId", allowsNull = "false")
+    @Hidden(where = Where.REFERENCES_PARENT)
+    @Disabled
+    @Title(sequence = "1", append = ":")
+    public LeaseTerm getLeaseTerm() {
+        return leaseTerm;
+    }
+
+    public void setLeaseTerm(final LeaseTerm leaseTerm) {
+        this.leaseTerm = leaseTerm;
+    }
+
+    // //////////////////////////////////////
+
+    @javax.jdo.annotations.Persistent
+    private LocalDate startDate;
+
+    @javax.jdo.annotations.Column(allowsNull = "false")
+    @Disabled
+    @Title(sequence = "2")
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(final LocalDate startDate) {
+        this.startDate = startDate;
+    }
+
+    // //////////////////////////////////////
+
+    private BigDecimal invoicedValue;
+
+    @javax.jdo.annotations.Column(scale = 2, allowsNull = "false")
+    @Disabled
+    public BigDecimal getInvoicedValue() {
+        return invoicedValue;
+    }
+
+    public void setInvoicedValue(final BigDecimal invoicedValue) {
+        this.invoicedValue = invoicedValue;
+    }
+
+    @Programmatic
+    public void add(final BigDecimal amount) {
+        if (amount == null) {
+            return;
+        }
+        setInvoicedValue(getInvoicedValue() == null ? amount : getInvoicedValue().add(amount));
+    }
+
+}
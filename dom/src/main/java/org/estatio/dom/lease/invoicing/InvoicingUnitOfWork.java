@@ -0,0 +1,186 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.invoicing;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.jdo.PersistenceManager;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.DomainObjectContainer;
+
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.PaymentMethod;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.party.Party;
+import org.estatio.services.settings.EstatioSettingsService;
+
+/**
+ * Collects the invoice items and invoices created by a calculation (eg of a
+ * single lease) in memory, and writes them to the database in one go when
+ * the calculation {@link #complete() completes}.
+ * 
+ * <p>
+ * While a unit of work is active on the current thread:
+ * <ul>
+ * <li>the persistence manager does not flush, not even before the queries
+ * of {@link org.estatio.dom.EstatioDomainService domain services}, so the
+ * properties of an item are set in memory rather than each with an
+ * <tt>UPDATE</tt> of its own;</li>
+ * <li>{@link InvoiceItemsForLease#newInvoiceItem(org.estatio.dom.lease.LeaseTerm, LocalDate, LocalDate) new items}
+ * are only added to the (sorted) items of their term and persisted on
+ * completion, once fully built, so that each is written with a single
+ * <tt>INSERT</tt>;</li>
+ * <li>the invoices found or created so far are looked up here, because
+ * queries do not see unflushed changes (and would otherwise be repeated for
+ * every item).</li>
+ * </ul>
+ * 
+ * <p>
+ * Units of work must be ended in a <tt>finally</tt> block:
+ * 
+ * <pre>
+ * final InvoicingUnitOfWork unitOfWork = invoiceCalculationService.beginUnitOfWork();
+ * try {
+ *     ...
+ *     unitOfWork.complete();
+ * } finally {
+ *     unitOfWork.end();
+ * }
+ * </pre>
+ * 
+ * A unit of work begun while another is active joins that one; only the
+ * outermost one writes on completion.
+ */
+public final class InvoicingUnitOfWork {
+
+    static final String FLUSH_MODE = "datanucleus.flush.mode";
+
+    private static final ThreadLocal<InvoicingUnitOfWork> CURRENT = new ThreadLocal<InvoicingUnitOfWork>();
+
+    private final PersistenceManager persistenceManager;
+    private final DomainObjectContainer container;
+    private final Object previousFlushMode;
+
+    private final List<InvoiceItemForLease> newItems = Lists.newArrayList();
+    private final Map<List<Object>, Invoice> invoices = Maps.newHashMap();
+
+    private LocalDate epochDate;
+    private boolean epochDateFetched;
+
+    private int depth = 1;
+
+    private InvoicingUnitOfWork(final PersistenceManager persistenceManager, final DomainObjectContainer container) {
+        this.persistenceManager = persistenceManager;
+        this.container = container;
+        this.previousFlushMode = persistenceManager.getProperties().get(FLUSH_MODE);
+        persistenceManager.setProperty(FLUSH_MODE, "MANUAL");
+    }
+
+    static InvoicingUnitOfWork begin(final PersistenceManager persistenceManager, final DomainObjectContainer container) {
+        final InvoicingUnitOfWork current = CURRENT.get();
+        if (current != null) {
+            current.depth++;
+            return current;
+        }
+        final InvoicingUnitOfWork unitOfWork = new InvoicingUnitOfWork(persistenceManager, container);
+        CURRENT.set(unitOfWork);
+        return unitOfWork;
+    }
+
+    /**
+     * The unit of work active on the current thread, or <tt>null</tt> if
+     * none.
+     */
+    public static InvoicingUnitOfWork current() {
+        return CURRENT.get();
+    }
+
+    // //////////////////////////////////////
+
+    void addNewItem(final InvoiceItemForLease invoiceItem) {
+        newItems.add(invoiceItem);
+    }
+
+    void addInvoice(final Invoice invoice, final Party seller, final Party buyer, final PaymentMethod paymentMethod, final Lease lease, final LocalDate dueDate) {
+        invoices.put(keyFor(seller, buyer, paymentMethod, lease, dueDate), invoice);
+    }
+
+    /**
+     * The new invoice found or created earlier in this unit of work for the
+     * given parameters, <tt>null</tt> if none.
+     */
+    Invoice findInvoice(final Party seller, final Party buyer, final PaymentMethod paymentMethod, final Lease lease, final LocalDate dueDate) {
+        return invoices.get(keyFor(seller, buyer, paymentMethod, lease, dueDate));
+    }
+
+    private static List<Object> keyFor(final Party seller, final Party buyer, final PaymentMethod paymentMethod, final Lease lease, final LocalDate dueDate) {
+        return Arrays.<Object> asList(seller, buyer, paymentMethod, lease, dueDate);
+    }
+
+    /**
+     * The epoch date, fetched once per unit of work, as the settings are
+     * queried through the container (which flushes first).
+     */
+    LocalDate fetchEpochDate(final EstatioSettingsService estatioSettingsService) {
+        if (!epochDateFetched) {
+            epochDate = estatioSettingsService.fetchEpochDate();
+            epochDateFetched = true;
+        }
+        return epochDate;
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Persists the new items and flushes all changes, unless this unit of
+     * work has joined an outer one.
+     */
+    public void complete() {
+        if (depth > 1) {
+            return;
+        }
+        for (InvoiceItemForLease invoiceItem : newItems) {
+            invoiceItem.getLeaseTerm().addToInvoiceItems(invoiceItem);
+            container.persistIfNotAlready(invoiceItem);
+        }
+        newItems.clear();
+        container.flush();
+        persistenceManager.flush();
+    }
+
+    public void end() {
+        if (--depth > 0) {
+            return;
+        }
+        CURRENT.remove();
+        if (previousFlushMode != null) {
+            persistenceManager.setProperty(FLUSH_MODE, previousFlushMode);
+        } else {
+            persistenceManager.setProperty(FLUSH_MODE, persistenceManager.currentTransaction().getOptimistic() ? "MANUAL" : "AUTO");
+        }
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.servicecharge;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.joda.time.LocalDate;
+
+import org.estatio.dom.lease.LeaseTermForServiceCharge;
+
+/**
+ * The outcome of {@link ServiceChargeReconciliationService reconciling} the
+ * service charges of a property and year: per charge, the audited total and
+ * the part apportioned to the tenants (the rest being borne by the landlord,
+ * eg for vacant units); per term, the budgeted and the audited value; the
+ * reconciliation invoice items created; and the rows or terms rejected.
+ */
+public class ServiceChargeReconciliationReport {
+
+    /**
+     * The apportionment of the audited total of a charge.
+     */
+    public static class ChargeSummary {
+
+        private final String chargeReference;
+        private final BigDecimal auditedTotal;
+        private final BigDecimal apportioned;
+        private final int terms;
+
+        ChargeSummary(
+                final String chargeReference,
+                final BigDecimal auditedTotal,
+                final BigDecimal apportioned,
+                final int terms) {
+            this.chargeReference = chargeReference;
+            this.auditedTotal = auditedTotal;
+            this.apportioned = apportioned;
+            this.terms = terms;
+        }
+
+        public String getChargeReference() {
+            return chargeReference;
+        }
+
+        public BigDecimal getAuditedTotal() {
+            return auditedTotal;
+        }
+
+        /**
+         * The part of the total apportioned to the terms, for the days of
+         * the year they cover.
+         */
+        public BigDecimal getApportioned() {
+            return apportioned;
+        }
+
+        /**
+         * The part of the total not apportioned to any tenant.
+         */
+        public BigDecimal getLandlordShare() {
+            return auditedTotal.subtract(apportioned);
+        }
+
+        public int getTerms() {
+            return terms;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: audited %s, apportioned %s to %d terms, landlord %s",
+                    chargeReference, auditedTotal, apportioned, terms, getLandlordShare());
+        }
+    }
+
+    /**
+     * The audited value set on a term.
+     */
+    public static class TermReconciliation {
+
+        private final String leaseReference;
+        private final String chargeReference;
+        private final LocalDate termStartDate;
+        private final BigDecimal budgetedValue;
+        private final BigDecimal auditedValue;
+
+        TermReconciliation(
+                final String leaseReference,
+                final String chargeReference,
+                final LocalDate termStartDate,
+                final BigDecimal budgetedValue,
+                final BigDecimal auditedValue) {
+            this.leaseReference = leaseReference;
+            this.chargeReference = chargeReference;
+            this.termStartDate = termStartDate;
+            this.budgetedValue = budgetedValue;
+            this.auditedValue = auditedValue;
+        }
+
+        public String getLeaseReference() {
+            return leaseReference;
+        }
+
+        public String getChargeReference() {
+            return chargeReference;
+        }
+
+        public LocalDate getTermStartDate() {
+            return termStartDate;
+        }
+
+        public BigDecimal getBudgetedValue() {
+            return budgetedValue;
+        }
+
+        public BigDecimal getAuditedValue() {
+            return auditedValue;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %s: budgeted %s, audited %s",
+                    leaseReference, chargeReference, termStartDate, budgetedValue, auditedValue);
+        }
+    }
+
+    private final String propertyReference;
+    private final int year;
+    private final List<ChargeSummary> chargeSummaries = Lists.newArrayList();
+    private final List<TermReconciliation> termReconciliations = Lists.newArrayList();
+    private String runId;
+    private int invoiceItems;
+    private BigDecimal invoicedAmount = BigDecimal.ZERO;
+    private final List<String> errors = Lists.newArrayList();
+
+    ServiceChargeReconciliationReport(final String propertyReference, final int year) {
+        this.propertyReference = propertyReference;
+        this.year = year;
+    }
+
+    void apportioned(
+            final String chargeReference,
+            final BigDecimal auditedTotal,
+            final BigDecimal apportioned,
+            final int terms) {
+        chargeSummaries.add(new ChargeSummary(chargeReference, auditedTotal, apportioned, terms));
+    }
+
+    void reconciled(final LeaseTermForServiceCharge term, final BigDecimal auditedValue) {
+        termReconciliations.add(new TermReconciliation(
+                term.getLeaseItem().getLease().getReference(),
+                term.getLeaseItem().getCharge().getReference(),
+                term.getStartDate(),
+                term.getBudgetedValue(),
+                auditedValue));
+    }
+
+    void invoicedBy(final String runId) {
+        this.runId = runId;
+    }
+
+    void invoiced(final BigDecimal netAmount) {
+        invoiceItems++;
+        invoicedAmount = invoicedAmount.add(netAmount);
+    }
+
+    void failed(final String subject, final String reason) {
+        errors.add(subject + ": " + reason);
+    }
+
+    // //////////////////////////////////////
+
+    public String getPropertyReference() {
+        return propertyReference;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public List<ChargeSummary> getChargeSummaries() {
+        return Collections.unmodifiableList(chargeSummaries);
+    }
+
+    public List<TermReconciliation> getTermReconciliations() {
+        return Collections.unmodifiableList(termReconciliations);
+    }
+
+    /**
+     * The id of the run the reconciliation invoice items were created by, eg
+     * to roll them back; <tt>null</tt> if the terms were not calculated.
+     */
+    public String getRunId() {
+        return runId;
+    }
+
+    /**
+     * The number of reconciliation invoice items created or updated.
+     */
+    public int getInvoiceItems() {
+        return invoiceItems;
+    }
+
+    /**
+     * The net amount of the reconciliation invoice items; positive if the
+     * tenants owe more than was invoiced on the budget.
+     */
+    public BigDecimal getInvoicedAmount() {
+        return invoicedAmount;
+    }
+
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append(String.format(
+                "%s %d: %d charges reconciled, %d terms audited; %d invoice items for a net amount of %s",
+                propertyReference, year, chargeSummaries.size(), termReconciliations.size(),
+                invoiceItems, invoicedAmount));
+        if (runId != null) {
+            buf.append(" (run ").append(runId).append(")");
+        }
+        for (ChargeSummary chargeSummary : chargeSummaries) {
+            buf.append("\n").append(chargeSummary);
+        }
+        for (TermReconciliation termReconciliation : termReconciliations) {
+            buf.append("\n").append(termReconciliation);
+        }
+        for (String error : errors) {
+            buf.append("\n").append(error);
+        }
+        return buf.toString();
+    }
+
+}
@@ -0,0 +1,509 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.servicecharge;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.annotation.ActionSemantics;
+import org.apache.isis.applib.annotation.ActionSemantics.Of;
+import org.apache.isis.applib.annotation.MemberOrder;
+import org.apache.isis.applib.annotation.Named;
+import org.apache.isis.applib.annotation.Optional;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.value.Clob;
+
+import org.estatio.dom.EstatioDomainService;
+import org.estatio.dom.asset.Property;
+import org.estatio.dom.asset.Unit;
+import org.estatio.dom.charge.Charges;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseItem;
+import org.estatio.dom.lease.LeaseItemType;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.lease.LeaseTermForServiceCharge;
+import org.estatio.dom.lease.Leases;
+import org.estatio.dom.lease.Leases.InvoiceRunType;
+import org.estatio.dom.lease.Occupancy;
+import org.estatio.dom.lease.invoicing.InvoiceCalculationService;
+import org.estatio.dom.lease.invoicing.InvoiceItemForLease;
+import org.estatio.dom.lease.invoicing.InvoicingUnitOfWork;
+import org.estatio.dom.valuetypes.LocalDateInterval;
+import org.estatio.services.metrics.EstatioMetrics;
+import org.estatio.services.metrics.MetricsTags;
+import org.estatio.services.metrics.Timer;
+
+/**
+ * Reconciles the service charges of a {@link Property} for a year, from the
+ * audited totals per charge given as {@link ServiceChargeRow rows}.
+ * 
+ * <p>
+ * The {@link LeaseTermForServiceCharge service charge terms} of the leases of
+ * the property that fall within the year are collected in one pass. Per
+ * charge, leases with a fixed share get that share of the total; the rest is
+ * apportioned by the area of the units each lease occupies, relative to the
+ * area of all units of the property, so that the share of vacant units is
+ * borne by the landlord; the cents lost by rounding are
+ * {@link #allocate(BigDecimal, Map, BigDecimal) allocated} rather than
+ * dropped. The results are (annual)
+ * {@link LeaseTermForServiceCharge#getAuditedValue() audited values}, set on
+ * all terms within a single {@link InvoicingUnitOfWork} so that they are
+ * written in one batch; if a due date is given, the terms are then
+ * calculated for the year in the same unit of work, creating the
+ * reconciliation invoice items (the audited value less what was invoiced on
+ * the budget) under a run id of their own.
+ */
+public class ServiceChargeReconciliationService extends EstatioDomainService<LeaseTerm> {
+
+    static final int SCALE = 2;
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    public ServiceChargeReconciliationService() {
+        super(ServiceChargeReconciliationService.class, LeaseTerm.class);
+    }
+
+    // //////////////////////////////////////
+
+    @ActionSemantics(Of.NON_IDEMPOTENT)
+    @MemberOrder(name = "Leases", sequence = "10")
+    public String reconcileServiceCharges(
+            final @Named("Property") Property property,
+            final @Named("Year") Integer year,
+            final @Named("Due date") @Optional LocalDate dueDate,
+            final @Named("File (charge, lease, amount or share)") Clob file) {
+        try {
+            return reconcile(property, year, dueDate, new StringReader(file.getChars().toString())).toString();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public Integer default1ReconcileServiceCharges() {
+        return getClockService().now().getYear() - 1;
+    }
+
+    public String validateReconcileServiceCharges(
+            final Property property,
+            final Integer year,
+            final LocalDate dueDate,
+            final Clob file) {
+        if (year >= getClockService().now().getYear()) {
+            return "Year has not ended yet";
+        }
+        if (dueDate != null && dueDate.getYear() <= year) {
+            return "Due date must be after the year";
+        }
+        return null;
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Reconciles from the rows read from the reader, one per line; lines that
+     * cannot be parsed are reported as errors.
+     */
+    @Programmatic
+    public ServiceChargeReconciliationReport reconcile(
+            final Property property,
+            final int year,
+            final LocalDate dueDate,
+            final Reader reader) throws IOException {
+        final ServiceChargeReconciliationReport report =
+                new ServiceChargeReconciliationReport(property.getReference(), year);
+        final List<ServiceChargeRow> rows = Lists.newArrayList();
+        final BufferedReader lines = new BufferedReader(reader);
+        int lineNumber = 0;
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            lineNumber++;
+            try {
+                final ServiceChargeRow row = ServiceChargeRow.parse(line, lineNumber);
+                if (row != null) {
+                    rows.add(row);
+                }
+            } catch (IllegalArgumentException ex) {
+                report.failed("line " + lineNumber, ex.getMessage());
+            }
+        }
+        reconcile(property, year, dueDate, rows, report);
+        return report;
+    }
+
+    @Programmatic
+    public ServiceChargeReconciliationReport reconcile(
+            final Property property,
+            final int year,
+            final LocalDate dueDate,
+            final List<ServiceChargeRow> rows) {
+        final ServiceChargeReconciliationReport report =
+                new ServiceChargeReconciliationReport(property.getReference(), year);
+        reconcile(property, year, dueDate, rows, report);
+        return report;
+    }
+
+    private void reconcile(
+            final Property property,
+            final int year,
+            final LocalDate dueDate,
+            final List<ServiceChargeRow> rows,
+            final ServiceChargeReconciliationReport report) {
+        final Timer.Context timer = EstatioMetrics.time("serviceCharges.reconcile");
+        try {
+            final LocalDateInterval yearInterval =
+                    LocalDateInterval.including(new LocalDate(year, 1, 1), new LocalDate(year, 12, 31));
+
+            final Map<String, BigDecimal> totals = Maps.newLinkedHashMap();
+            final Map<String, Map<String, BigDecimal>> sharesByCharge = Maps.newHashMap();
+            collect(rows, totals, sharesByCharge, report);
+
+            final Map<String, List<LeaseTermForServiceCharge>> termsByCharge =
+                    termsByCharge(property, yearInterval, totals, report);
+            final BigDecimal propertyArea = areaOf(property, yearInterval);
+
+            final Map<LeaseTermForServiceCharge, BigDecimal> auditedValues = Maps.newLinkedHashMap();
+            for (Map.Entry<String, BigDecimal> entry : totals.entrySet()) {
+                final String chargeReference = entry.getKey();
+                final Map<String, BigDecimal> shares = sharesByCharge.get(chargeReference);
+                apportion(
+                        property,
+                        yearInterval,
+                        chargeReference,
+                        entry.getValue(),
+                        shares != null ? shares : Maps.<String, BigDecimal> newHashMap(),
+                        termsByCharge.get(chargeReference),
+                        propertyArea,
+                        auditedValues,
+                        report);
+            }
+            apply(yearInterval, dueDate, auditedValues, property, report);
+            EstatioMetrics.count("serviceCharges.reconciled", auditedValues.size());
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private void collect(
+            final List<ServiceChargeRow> rows,
+            final Map<String, BigDecimal> totals,
+            final Map<String, Map<String, BigDecimal>> sharesByCharge,
+            final ServiceChargeReconciliationReport report) {
+        for (ServiceChargeRow row : rows) {
+            if (!row.isShare()) {
+                if (totals.containsKey(row.getChargeReference())) {
+                    report.failed(row.toString(), "Total already given");
+                } else if (charges.findCharge(row.getChargeReference()) == null) {
+                    report.failed(row.toString(), "No charge '" + row.getChargeReference() + "'");
+                } else {
+                    totals.put(row.getChargeReference(), row.getAmount());
+                }
+                continue;
+            }
+            Map<String, BigDecimal> shares = sharesByCharge.get(row.getChargeReference());
+            if (shares == null) {
+                shares = Maps.newHashMap();
+                sharesByCharge.put(row.getChargeReference(), shares);
+            }
+            if (shares.containsKey(row.getLeaseReference())) {
+                report.failed(row.toString(), "Share already given");
+            } else {
+                shares.put(row.getLeaseReference(), row.getAmount());
+            }
+        }
+        for (String chargeReference : sharesByCharge.keySet()) {
+            if (!totals.containsKey(chargeReference)) {
+                report.failed(chargeReference, "Shares given without a total");
+            }
+        }
+    }
+
+    /**
+     * The service charge terms of the leases of the property that overlap
+     * the year, by charge; terms that overlap but do not fall within the
+     * year are reported.
+     */
+    private Map<String, List<LeaseTermForServiceCharge>> termsByCharge(
+            final Property property,
+            final LocalDateInterval yearInterval,
+            final Map<String, BigDecimal> totals,
+            final ServiceChargeReconciliationReport report) {
+        final Map<String, List<LeaseTermForServiceCharge>> termsByCharge = Maps.newHashMap();
+        for (Lease lease : leases.findLeasesByProperty(property)) {
+            for (LeaseItem leaseItem : lease.getItems()) {
+                if (leaseItem.getType() != LeaseItemType.SERVICE_CHARGE
+                        || !totals.containsKey(leaseItem.getCharge().getReference())) {
+                    continue;
+                }
+                for (LeaseTerm leaseTerm : leaseItem.getTerms()) {
+                    final LocalDateInterval period = leaseTerm.getPeriodInterval();
+                    if (!period.overlaps(yearInterval)) {
+                        continue;
+                    }
+                    if (!yearInterval.contains(period)) {
+                        report.failed(lease.getReference() + " " + leaseTerm, "Term does not fall within the year");
+                        continue;
+                    }
+                    final String chargeReference = leaseItem.getCharge().getReference();
+                    List<LeaseTermForServiceCharge> terms = termsByCharge.get(chargeReference);
+                    if (terms == null) {
+                        terms = Lists.newArrayList();
+                        termsByCharge.put(chargeReference, terms);
+                    }
+                    terms.add((LeaseTermForServiceCharge) leaseTerm);
+                }
+            }
+        }
+        return termsByCharge;
+    }
+
+    private void apportion(
+            final Property property,
+            final LocalDateInterval yearInterval,
+            final String chargeReference,
+            final BigDecimal total,
+            final Map<String, BigDecimal> shares,
+            final List<LeaseTermForServiceCharge> terms,
+            final BigDecimal propertyArea,
+            final Map<LeaseTermForServiceCharge, BigDecimal> auditedValues,
+            final ServiceChargeReconciliationReport report) {
+        if (terms == null) {
+            report.failed(chargeReference, "No service charge terms within the year");
+            return;
+        }
+        final Map<LeaseTermForServiceCharge, BigDecimal> sharesByTerm = Maps.newLinkedHashMap();
+        final Map<LeaseTermForServiceCharge, BigDecimal> areasByTerm = Maps.newLinkedHashMap();
+        final Map<String, BigDecimal> unmatchedShares = Maps.newHashMap(shares);
+        for (LeaseTermForServiceCharge term : terms) {
+            final String leaseReference = term.getLeaseItem().getLease().getReference();
+            final BigDecimal share = shares.get(leaseReference);
+            if (share != null) {
+                sharesByTerm.put(term, share);
+                unmatchedShares.remove(leaseReference);
+                continue;
+            }
+            final BigDecimal area = areaOf(term, property);
+            if (area.signum() == 0) {
+                report.failed(leaseReference + " " + term, "No area occupied, left to the landlord");
+                continue;
+            }
+            areasByTerm.put(term, area);
+        }
+        for (String leaseReference : unmatchedShares.keySet()) {
+            report.failed(chargeReference + " " + leaseReference, "No service charge term of the lease within the year");
+        }
+        if (sumOf(shares.values()).compareTo(HUNDRED) > 0) {
+            report.failed(chargeReference, "Shares exceed 100%");
+            return;
+        }
+        if (!areasByTerm.isEmpty() && propertyArea.signum() == 0) {
+            report.failed(chargeReference, "Units of the property have no area");
+            return;
+        }
+
+        final Map<LeaseTermForServiceCharge, BigDecimal> values =
+                apportion(total, sharesByTerm, areasByTerm, propertyArea);
+        final BigDecimal yearDays = BigDecimal.valueOf(yearInterval.days());
+        BigDecimal apportioned = BigDecimal.ZERO;
+        for (Map.Entry<LeaseTermForServiceCharge, BigDecimal> entry : values.entrySet()) {
+            final BigDecimal days = BigDecimal.valueOf(entry.getKey().getPeriodInterval().days());
+            apportioned = apportioned.add(
+                    entry.getValue().multiply(days).divide(yearDays, SCALE, RoundingMode.HALF_UP));
+        }
+        auditedValues.putAll(values);
+        report.apportioned(chargeReference, total, apportioned, values.size());
+    }
+
+    /**
+     * Sets the audited values and, if a due date is given, calculates the
+     * terms for the year, in one unit of work.
+     */
+    private void apply(
+            final LocalDateInterval yearInterval,
+            final LocalDate dueDate,
+            final Map<LeaseTermForServiceCharge, BigDecimal> auditedValues,
+            final Property property,
+            final ServiceChargeReconciliationReport report) {
+        if (auditedValues.isEmpty()) {
+            return;
+        }
+        final String runId = EstatioMetrics.newRunId("reconcileServiceCharges");
+        final MetricsTags run = MetricsTags.enter(property.getReference(), runId);
+        final InvoicingUnitOfWork unitOfWork = invoiceCalculationService.beginUnitOfWork();
+        try {
+            for (Map.Entry<LeaseTermForServiceCharge, BigDecimal> entry : auditedValues.entrySet()) {
+                report.reconciled(entry.getKey(), entry.getValue());
+                entry.getKey().setAuditedValue(entry.getValue());
+            }
+            if (dueDate != null) {
+                // the due date is after the year, so the audited values are
+                // used and the difference with the budget is invoiced
+                for (LeaseTermForServiceCharge term : auditedValues.keySet()) {
+                    term.calculate(
+                            yearInterval.startDate(), yearInterval.endDate(), dueDate, InvoiceRunType.NORMAL_RUN, runId);
+                }
+            }
+            unitOfWork.complete();
+            if (dueDate != null) {
+                report.invoicedBy(runId);
+                for (LeaseTermForServiceCharge term : auditedValues.keySet()) {
+                    for (InvoiceItemForLease invoiceItem : term.getInvoiceItems()) {
+                        if (runId.equals(invoiceItem.getRunId())) {
+                            report.invoiced(invoiceItem.getNetAmount());
+                        }
+                    }
+                }
+            }
+        } finally {
+            unitOfWork.end();
+            run.exit();
+        }
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * The annual values of the keys: those with a fixed share (in percent) get
+     * that share of the total; the remainder is apportioned to the others in
+     * proportion of their area to the total area.
+     */
+    static <K> Map<K, BigDecimal> apportion(
+            final BigDecimal total,
+            final Map<K, BigDecimal> shares,
+            final Map<K, BigDecimal> areas,
+            final BigDecimal totalArea) {
+        final Map<K, BigDecimal> values = allocate(total, shares, HUNDRED);
+        final BigDecimal remainder = total.subtract(sumOf(values.values()));
+        values.putAll(allocate(remainder, areas, totalArea));
+        return values;
+    }
+
+    /**
+     * The amount allocated to the keys in proportion of their weight to the
+     * total weight, in cents that add up to their part of the amount (rounded
+     * half up): each value is rounded down, and the cents that leaves go to
+     * the keys that lost the most by it, rather than being lost.
+     */
+    static <K> Map<K, BigDecimal> allocate(
+            final BigDecimal amount,
+            final Map<K, BigDecimal> weights,
+            final BigDecimal totalWeight) {
+        final Map<K, BigDecimal> values = Maps.newLinkedHashMap();
+        if (weights.isEmpty()) {
+            return values;
+        }
+        final BigDecimal target =
+                amount.multiply(sumOf(weights.values())).divide(totalWeight, SCALE, RoundingMode.HALF_UP);
+        final List<Map.Entry<K, BigDecimal>> losses = Lists.newArrayList();
+        BigDecimal allocated = BigDecimal.ZERO;
+        for (Map.Entry<K, BigDecimal> entry : weights.entrySet()) {
+            final BigDecimal exact = amount.multiply(entry.getValue()).divide(totalWeight, MathContext.DECIMAL64);
+            final BigDecimal value = exact.setScale(SCALE, RoundingMode.FLOOR);
+            values.put(entry.getKey(), value);
+            losses.add(Maps.immutableEntry(entry.getKey(), exact.subtract(value)));
+            allocated = allocated.add(value);
+        }
+        // stable, so ties go to the keys in the order given
+        Collections.sort(losses, new Comparator<Map.Entry<K, BigDecimal>>() {
+            @Override
+            public int compare(final Map.Entry<K, BigDecimal> o1, final Map.Entry<K, BigDecimal> o2) {
+                return o2.getValue().compareTo(o1.getValue());
+            }
+        });
+        final BigDecimal cent = BigDecimal.ONE.movePointLeft(SCALE);
+        final int cents = target.subtract(allocated).movePointRight(SCALE).intValue();
+        for (int i = 0; i < cents; i++) {
+            final K key = losses.get(i % losses.size()).getKey();
+            values.put(key, values.get(key).add(cent));
+        }
+        return values;
+    }
+
+    /**
+     * The area of the units of the property occupied by the lease of the term
+     * during the term.
+     */
+    private static BigDecimal areaOf(final LeaseTermForServiceCharge term, final Property property) {
+        final LocalDateInterval period = term.getPeriodInterval();
+        BigDecimal area = BigDecimal.ZERO;
+        for (Occupancy occupancy : term.getLeaseItem().getLease().getOccupancies()) {
+            final Unit unit = occupancy.getUnit();
+            if (unit.getArea() != null
+                    && property.equals(unit.getProperty())
+                    && occupancy.getInterval().overlaps(period)) {
+                area = area.add(unit.getArea());
+            }
+        }
+        return area;
+    }
+
+    /**
+     * The area of the units of the property that exist during the year.
+     */
+    private static BigDecimal areaOf(final Property property, final LocalDateInterval yearInterval) {
+        BigDecimal area = BigDecimal.ZERO;
+        for (Unit unit : property.getUnits()) {
+            if (unit.getArea() != null && unit.getInterval().overlaps(yearInterval)) {
+                area = area.add(unit.getArea());
+            }
+        }
+        return area;
+    }
+
+    private static BigDecimal sumOf(final Iterable<BigDecimal> values) {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (BigDecimal value : values) {
+            sum = sum.add(value);
+        }
+        return sum;
+    }
+
+    // //////////////////////////////////////
+
+    private Leases leases;
+
+    public final void injectLeases(final Leases leases) {
+        this.leases = leases;
+    }
+
+    private Charges charges;
+
+    public final void injectCharges(final Charges charges) {
+        this.charges = charges;
+    }
+
+    private InvoiceCalculationService invoiceCalculationService;
+
+    public final void injectInvoiceCalculationService(final InvoiceCalculationService invoiceCalculationService) {
+        this.invoiceCalculationService = invoiceCalculationService;
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.servicecharge;
+
+import java.math.BigDecimal;
+import java.util.regex.Pattern;
+
+/**
+ * A line of the audited service charges of a property and year, to be
+ * {@link ServiceChargeReconciliationService reconciled}: either the audited
+ * total of a charge, or the fixed share of a lease in that total.
+ * 
+ * <p>
+ * As a line, the fields (charge, lease, amount or share) are separated by
+ * commas or semicolons, eg <tt>SERVICE_CHARGE,,120000.00</tt> for the total
+ * and <tt>SERVICE_CHARGE,OXF-MEDIAX-002,12.5%</tt> for a share (the
+ * <tt>%</tt> is optional). The part of the total that is not taken by fixed
+ * shares is apportioned by the area of the units occupied.
+ */
+public final class ServiceChargeRow {
+
+    private static final Pattern SEPARATOR = Pattern.compile("\\s*[,;]\\s*");
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private final int lineNumber;
+    private final String chargeReference;
+    private final String leaseReference;
+    private final BigDecimal amount;
+
+    public ServiceChargeRow(
+            final int lineNumber,
+            final String chargeReference,
+            final String leaseReference,
+            final BigDecimal amount) {
+        this.lineNumber = lineNumber;
+        this.chargeReference = chargeReference;
+        this.leaseReference = leaseReference;
+        this.amount = amount;
+    }
+
+    /**
+     * The row of the given line; <tt>null</tt> for a blank line, a comment
+     * (starting with <tt>#</tt>) or the header (the first line, if its amount
+     * is not a number).
+     * 
+     * @throws IllegalArgumentException
+     *             if the line cannot be parsed
+     */
+    public static ServiceChargeRow parse(final String line, final int lineNumber) {
+        final String trimmed = line.trim();
+        if (trimmed.length() == 0 || trimmed.startsWith("#")) {
+            return null;
+        }
+        final String[] fields = SEPARATOR.split(trimmed, -1);
+        if (fields.length != 3 || fields[0].length() == 0) {
+            throw new IllegalArgumentException("Expected charge, lease (for a share only) and amount or share");
+        }
+        String amount = fields[2];
+        if (lineNumber == 1 && !amount.matches("-?[\\d.]+%?")) {
+            return null;
+        }
+        final String leaseReference = fields[1].length() == 0 ? null : fields[1];
+        if (amount.endsWith("%")) {
+            if (leaseReference == null) {
+                throw new IllegalArgumentException("A share requires a lease");
+            }
+            amount = amount.substring(0, amount.length() - 1).trim();
+        }
+        final BigDecimal value;
+        try {
+            value = new BigDecimal(amount);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid amount or share '" + fields[2] + "'");
+        }
+        if (leaseReference != null && (value.signum() < 0 || value.compareTo(HUNDRED) > 0)) {
+            throw new IllegalArgumentException("Share must be between 0 and 100");
+        }
+        return new ServiceChargeRow(lineNumber, fields[0], leaseReference, value);
+    }
+
+    // //////////////////////////////////////
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public String getChargeReference() {
+        return chargeReference;
+    }
+
+    /**
+     * The reference of the lease with a fixed share; <tt>null</tt> for the
+     * audited total of the charge.
+     */
+    public String getLeaseReference() {
+        return leaseReference;
+    }
+
+    public boolean isShare() {
+        return leaseReference != null;
+    }
+
+    /**
+     * The audited total or, for a {@link #isShare() share}, the share in
+     * percent.
+     */
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String toString() {
+        return "line " + lineNumber + " (" + chargeReference + (leaseReference != null ? " " + leaseReference : "") + ")";
+    }
+
+}
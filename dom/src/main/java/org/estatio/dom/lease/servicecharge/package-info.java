@@ -0,0 +1,7 @@
+/**
+ * Defines the {@link org.estatio.dom.lease.servicecharge.ServiceChargeReconciliationService}, which reconciles
+ * the service charges of a property for a year: the audited totals per charge are apportioned to the
+ * {@link org.estatio.dom.lease.LeaseTermForServiceCharge service charge terms} of its leases, by a fixed share or
+ * else by the area of the units occupied, and the reconciliation invoice items are calculated in one go.
+ */
+package org.estatio.dom.lease.servicecharge;
@@ -0,0 +1,149 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.turnover;
+
+import java.math.BigDecimal;
+
+import javax.jdo.annotations.IdGeneratorStrategy;
+import javax.jdo.annotations.IdentityType;
+import javax.jdo.annotations.VersionStrategy;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.annotation.Disabled;
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Immutable;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.annotation.Title;
+import org.apache.isis.applib.annotation.Where;
+
+import org.estatio.dom.EstatioMutableObject;
+import org.estatio.dom.lease.Occupancy;
+import org.estatio.dom.valuetypes.LocalDateInterval;
+
+/**
+ * The turnover reported for an {@link Occupancy} over a period, either a
+ * calendar month or (as audited) a calendar year.
+ */
+@javax.jdo.annotations.PersistenceCapable(identityType = IdentityType.DATASTORE)
+@javax.jdo.annotations.DatastoreIdentity(
+        strategy = IdGeneratorStrategy.NATIVE,
+        column = "id")
+@javax.jdo.annotations.Version(
+        strategy = VersionStrategy.VERSION_NUMBER,
+        column = "version")
+@javax.jdo.annotations.Uniques({
+        @javax.jdo.annotations.Unique(
+                name = "Turnover_occupancy_startDate_endDate_UNQ",
+                members = { "occupancy", "startDate", "endDate" })
+})
+@javax.jdo.annotations.Queries({
+        @javax.jdo.annotations.Query(
+                name = "findByOccupancy", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.lease.turnover.Turnover "
+                        + "WHERE occupancy == :occupancy"),
+        @javax.jdo.annotations.Query(
+                name = "findByLease", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.dom.lease.turnover.Turnover "
+                        + "WHERE occupancy.lease == :lease")
+})
+@Immutable
+public class Turnover extends EstatioMutableObject<Turnover> {
+
+    public Turnover() {
+        super("occupancy, startDate desc, endDate");
+    }
+
+    // //////////////////////////////////////
+
+    private Occupancy occupancy;
+
+    @javax.jdo.annotations.Column(name = "occupancyId", allowsNull = "false")
+    @Hidden(where = Where.REFERENCES_PARENT)
+    @Disabled
+    @Title(sequence = "1", append = ":")
+    public Occupancy getOccupancy() {
+        return occupancy;
+    }
+
+    public void setOccupancy(final Occupancy occupancy) {
+        this.occupancy = occupancy;
+    }
+
+    // //////////////////////////////////////
+
+    @javax.jdo.annotations.Persistent
+    private LocalDate startDate;
+
+    @javax.jdo.annotations.Column(allowsNull = "false")
+    @Disabled
+    @Title(sequence = "2")
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(final LocalDate startDate) {
+        this.startDate = startDate;
+    }
+
+    @javax.jdo.annotations.Persistent
+    private LocalDate endDate;
+
+    @javax.jdo.annotations.Column(allowsNull = "false")
+    @Disabled
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(final LocalDate endDate) {
+        this.endDate = endDate;
+    }
+
+    @Programmatic
+    public LocalDateInterval getInterval() {
+        return LocalDateInterval.including(getStartDate(), getEndDate());
+    }
+
+    /**
+     * Whether this is the turnover of a whole calendar year, which takes
+     * precedence over the turnovers of the months of that year.
+     */
+    @Programmatic
+    public boolean isAnnual() {
+        return getStartDate().getDayOfYear() == 1
+                && getEndDate().equals(getStartDate().plusYears(1).minusDays(1));
+    }
+
+    // //////////////////////////////////////
+
+    private BigDecimal amount;
+
+    @javax.jdo.annotations.Column(scale = 2, allowsNull = "false")
+    @Disabled
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(final BigDecimal amount) {
+        this.amount = amount;
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.turnover;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.joda.time.LocalDate;
+
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseTermForTurnoverRent;
+import org.estatio.dom.party.Party;
+
+/**
+ * The outcome of {@link TurnoverIngestionService ingesting} turnovers: what
+ * was created or changed, the number of turnover rent terms recalculated, the
+ * tenants whose turnover rent changed, and the rows rejected.
+ */
+public class TurnoverIngestionReport {
+
+    /**
+     * The change of the turnover rent of a term, as recalculated.
+     */
+    public static class RentChange {
+
+        private final String leaseReference;
+        private final String tenantName;
+        private final LocalDate termStartDate;
+        private final BigDecimal previousValue;
+        private final BigDecimal value;
+
+        RentChange(
+                final String leaseReference,
+                final String tenantName,
+                final LocalDate termStartDate,
+                final BigDecimal previousValue,
+                final BigDecimal value) {
+            this.leaseReference = leaseReference;
+            this.tenantName = tenantName;
+            this.termStartDate = termStartDate;
+            this.previousValue = previousValue;
+            this.value = value;
+        }
+
+        public String getLeaseReference() {
+            return leaseReference;
+        }
+
+        public String getTenantName() {
+            return tenantName;
+        }
+
+        public LocalDate getTermStartDate() {
+            return termStartDate;
+        }
+
+        public BigDecimal getPreviousValue() {
+            return previousValue;
+        }
+
+        public BigDecimal getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%s) %s: %s -> %s",
+                    leaseReference, tenantName, termStartDate, previousValue, value);
+        }
+    }
+
+    private int created;
+    private int updated;
+    private int unchanged;
+    private int reportedSeparately;
+    private int recalculated;
+    private final List<RentChange> rentChanges = Lists.newArrayList();
+    private final List<String> errors = Lists.newArrayList();
+
+    TurnoverIngestionReport() {
+    }
+
+    void created() {
+        created++;
+    }
+
+    void updated() {
+        updated++;
+    }
+
+    void unchanged() {
+        unchanged++;
+    }
+
+    void reportedSeparately() {
+        reportedSeparately++;
+    }
+
+    void recalculated(
+            final LeaseTermForTurnoverRent term,
+            final BigDecimal previousValue,
+            final BigDecimal value) {
+        recalculated++;
+        if (previousValue != null && previousValue.compareTo(value) == 0) {
+            return;
+        }
+        final Lease lease = term.getLeaseItem().getLease();
+        final Party tenant = lease.getSecondaryParty();
+        rentChanges.add(new RentChange(
+                lease.getReference(),
+                tenant != null ? tenant.getName() : null,
+                term.getStartDate(),
+                previousValue,
+                value));
+    }
+
+    void failed(final String row, final String reason) {
+        errors.add(row + ": " + reason);
+    }
+
+    // //////////////////////////////////////
+
+    public int getCreated() {
+        return created;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    int getChanged() {
+        return created + updated;
+    }
+
+    /**
+     * The number of turnovers of occupancies that report turnover separately,
+     * stored but excluded from the turnover rent.
+     */
+    public int getReportedSeparately() {
+        return reportedSeparately;
+    }
+
+    public int getRecalculated() {
+        return recalculated;
+    }
+
+    /**
+     * The terms whose turnover rent changed, with their lease and tenant.
+     */
+    public List<RentChange> getRentChanges() {
+        return Collections.unmodifiableList(rentChanges);
+    }
+
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append(String.format(
+                "%d turnovers created, %d updated, %d unchanged (%d reported separately); "
+                        + "%d turnover rent terms recalculated, %d changed",
+                created, updated, unchanged, reportedSeparately, recalculated, rentChanges.size()));
+        for (RentChange rentChange : rentChanges) {
+            buf.append("\n").append(rentChange);
+        }
+        for (String error : errors) {
+            buf.append("\n").append(error);
+        }
+        return buf.toString();
+    }
+
+}
@@ -0,0 +1,402 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.turnover;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.apache.isis.applib.annotation.ActionSemantics;
+import org.apache.isis.applib.annotation.ActionSemantics.Of;
+import org.apache.isis.applib.annotation.MemberOrder;
+import org.apache.isis.applib.annotation.Named;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.value.Clob;
+
+import org.estatio.dom.EstatioDomainService;
+import org.estatio.dom.asset.Unit;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseItem;
+import org.estatio.dom.lease.LeaseItemType;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.lease.LeaseTermForTurnoverRent;
+import org.estatio.dom.lease.Leases;
+import org.estatio.dom.lease.Occupancies;
+import org.estatio.dom.lease.Occupancy;
+import org.estatio.dom.lease.Occupancy.OccupancyReportingType;
+import org.estatio.dom.lease.UnitsForLease;
+import org.estatio.dom.valuetypes.LocalDateInterval;
+import org.estatio.services.metrics.EstatioMetrics;
+import org.estatio.services.metrics.Timer;
+
+/**
+ * Loads the monthly or annual turnover statements of tenants in bulk, from
+ * {@link TurnoverRow rows}, and recalculates the turnover rent they affect.
+ * 
+ * <p>
+ * Each row is matched to an {@link Occupancy}, by the references of lease
+ * and/or unit looked up once per file; occupancies that do not
+ * {@link Occupancy#getReportTurnover() report turnover} are rejected. Per
+ * lease, the existing {@link Turnover}s are read once and the rows applied,
+ * creating the turnovers that do not exist yet and updating those that
+ * changed. The {@link LeaseTermForTurnoverRent turnover rent terms} whose
+ * period includes a changed turnover then get the turnovers of that period
+ * as their {@link LeaseTermForTurnoverRent#getAuditedTurnover() audited
+ * turnover}, together with the contractual rent, and are recalculated;
+ * occupancies that report turnover {@link OccupancyReportingType#SEPARATE
+ * separately} are left out of the total. The changes are flushed every
+ * {@link #BATCH_SIZE} turnovers, so that they are written in JDBC batches.
+ */
+public class TurnoverIngestionService extends EstatioDomainService<Turnover> {
+
+    static final int BATCH_SIZE = 500;
+
+    public TurnoverIngestionService() {
+        super(TurnoverIngestionService.class, Turnover.class);
+    }
+
+    // //////////////////////////////////////
+
+    @ActionSemantics(Of.IDEMPOTENT)
+    @MemberOrder(name = "Leases", sequence = "9")
+    public String importTurnovers(
+            final @Named("File (lease, unit, month or year, turnover)") Clob file) {
+        try {
+            return ingest(new StringReader(file.getChars().toString())).toString();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Ingests the rows read from the reader, one per line; lines that cannot
+     * be parsed are reported as errors.
+     */
+    @Programmatic
+    public TurnoverIngestionReport ingest(final Reader reader) throws IOException {
+        final TurnoverIngestionReport report = new TurnoverIngestionReport();
+        final List<TurnoverRow> rows = Lists.newArrayList();
+        final BufferedReader lines = new BufferedReader(reader);
+        int lineNumber = 0;
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            lineNumber++;
+            try {
+                final TurnoverRow row = TurnoverRow.parse(line, lineNumber);
+                if (row != null) {
+                    rows.add(row);
+                }
+            } catch (IllegalArgumentException ex) {
+                report.failed("line " + lineNumber, ex.getMessage());
+            }
+        }
+        ingest(rows, report);
+        return report;
+    }
+
+    @Programmatic
+    public TurnoverIngestionReport ingest(final List<TurnoverRow> rows) {
+        final TurnoverIngestionReport report = new TurnoverIngestionReport();
+        ingest(rows, report);
+        return report;
+    }
+
+    private void ingest(final List<TurnoverRow> rows, final TurnoverIngestionReport report) {
+        final Timer.Context timer = EstatioMetrics.time("turnovers.ingest");
+        try {
+            final Map<String, List<Occupancy>> occupanciesByReference = Maps.newHashMap();
+            final Map<Lease, Map<Occupancy, List<TurnoverRow>>> rowsByLease = Maps.newLinkedHashMap();
+            for (TurnoverRow row : rows) {
+                final Occupancy occupancy = occupancyOf(row, occupanciesByReference, report);
+                if (occupancy == null) {
+                    continue;
+                }
+                Map<Occupancy, List<TurnoverRow>> rowsByOccupancy = rowsByLease.get(occupancy.getLease());
+                if (rowsByOccupancy == null) {
+                    rowsByOccupancy = Maps.newLinkedHashMap();
+                    rowsByLease.put(occupancy.getLease(), rowsByOccupancy);
+                }
+                List<TurnoverRow> occupancyRows = rowsByOccupancy.get(occupancy);
+                if (occupancyRows == null) {
+                    occupancyRows = Lists.newArrayList();
+                    rowsByOccupancy.put(occupancy, occupancyRows);
+                }
+                occupancyRows.add(row);
+            }
+            for (Map.Entry<Lease, Map<Occupancy, List<TurnoverRow>>> entry : rowsByLease.entrySet()) {
+                ingest(entry.getKey(), entry.getValue(), report);
+            }
+            getContainer().flush();
+            EstatioMetrics.count("turnovers.ingested", report.getChanged());
+            EstatioMetrics.count("turnovers.recalculated", report.getRecalculated());
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * The occupancy of the lease and/or unit of the row during its period;
+     * <tt>null</tt> (and reported) if there is none, more than one, or it does
+     * not report turnover.
+     */
+    private Occupancy occupancyOf(
+            final TurnoverRow row,
+            final Map<String, List<Occupancy>> occupanciesByReference,
+            final TurnoverIngestionReport report) {
+        final List<Occupancy> candidates = row.getLeaseReference() != null
+                ? occupanciesOfLease(row.getLeaseReference(), occupanciesByReference)
+                : occupanciesOfUnit(row.getUnitReference(), occupanciesByReference);
+        if (candidates == null) {
+            report.failed(row.toString(), row.getLeaseReference() != null
+                    ? "No lease '" + row.getLeaseReference() + "'"
+                    : "No unit '" + row.getUnitReference() + "'");
+            return null;
+        }
+        final List<Occupancy> matches = Lists.newArrayList();
+        for (Occupancy occupancy : candidates) {
+            if ((row.getUnitReference() == null || row.getUnitReference().equals(occupancy.getUnit().getReference()))
+                    && occupancy.getInterval().overlaps(row.getInterval())) {
+                matches.add(occupancy);
+            }
+        }
+        if (matches.isEmpty()) {
+            report.failed(row.toString(), "No occupancy during the period");
+            return null;
+        }
+        if (matches.size() > 1) {
+            report.failed(row.toString(), row.getUnitReference() == null
+                    ? "Lease occupies several units, the unit is required"
+                    : "Unit is occupied by several leases, the lease is required");
+            return null;
+        }
+        final Occupancy occupancy = matches.get(0);
+        final OccupancyReportingType reportTurnover = occupancy.getReportTurnover();
+        if (reportTurnover == null || reportTurnover == OccupancyReportingType.NO) {
+            report.failed(row.toString(), "Occupancy does not report turnover");
+            return null;
+        }
+        return occupancy;
+    }
+
+    private List<Occupancy> occupanciesOfLease(
+            final String reference,
+            final Map<String, List<Occupancy>> occupanciesByReference) {
+        final String key = "lease:" + reference;
+        if (!occupanciesByReference.containsKey(key)) {
+            final Lease lease = leases.findLeaseByReference(reference);
+            occupanciesByReference.put(key,
+                    lease != null ? Lists.newArrayList(lease.getOccupancies()) : null);
+        }
+        return occupanciesByReference.get(key);
+    }
+
+    private List<Occupancy> occupanciesOfUnit(
+            final String reference,
+            final Map<String, List<Occupancy>> occupanciesByReference) {
+        final String key = "unit:" + reference;
+        if (!occupanciesByReference.containsKey(key)) {
+            final Unit unit = unitsForLease.findUnitByReference(reference);
+            occupanciesByReference.put(key,
+                    unit != null ? occupancies.findByUnit(unit) : null);
+        }
+        return occupanciesByReference.get(key);
+    }
+
+    // //////////////////////////////////////
+
+    private void ingest(
+            final Lease lease,
+            final Map<Occupancy, List<TurnoverRow>> rowsByOccupancy,
+            final TurnoverIngestionReport report) {
+        final Map<Occupancy, Map<LocalDateInterval, Turnover>> existing = Maps.newHashMap();
+        for (Turnover turnover : turnovers.findByLease(lease)) {
+            turnoversOf(existing, turnover.getOccupancy()).put(turnover.getInterval(), turnover);
+        }
+
+        final List<LocalDateInterval> changedPeriods = Lists.newArrayList();
+        for (Map.Entry<Occupancy, List<TurnoverRow>> entry : rowsByOccupancy.entrySet()) {
+            final Occupancy occupancy = entry.getKey();
+            final boolean separate = occupancy.getReportTurnover() == OccupancyReportingType.SEPARATE;
+            final Map<LocalDateInterval, Turnover> occupancyTurnovers = turnoversOf(existing, occupancy);
+            for (TurnoverRow row : entry.getValue()) {
+                if (upsert(occupancy, occupancyTurnovers, row, report) && !separate) {
+                    changedPeriods.add(row.getInterval());
+                }
+                if (separate) {
+                    report.reportedSeparately();
+                }
+                if (report.getChanged() > 0 && report.getChanged() % BATCH_SIZE == 0) {
+                    getContainer().flush();
+                }
+            }
+        }
+        if (changedPeriods.isEmpty()) {
+            return;
+        }
+
+        final List<Turnover> reported = Lists.newArrayList();
+        for (Map.Entry<Occupancy, Map<LocalDateInterval, Turnover>> entry : existing.entrySet()) {
+            if (entry.getKey().getReportTurnover() == OccupancyReportingType.YES) {
+                reported.addAll(entry.getValue().values());
+            }
+        }
+        for (LeaseItem leaseItem : lease.getItems()) {
+            if (leaseItem.getType() != LeaseItemType.TURNOVER_RENT) {
+                continue;
+            }
+            for (LeaseTerm leaseTerm : leaseItem.getTerms()) {
+                final LocalDateInterval period = leaseTerm.getPeriodInterval();
+                if (overlapsAny(period, changedPeriods)) {
+                    recalculate((LeaseTermForTurnoverRent) leaseTerm, auditedTurnoverOf(reported, period), report);
+                }
+            }
+        }
+    }
+
+    private static Map<LocalDateInterval, Turnover> turnoversOf(
+            final Map<Occupancy, Map<LocalDateInterval, Turnover>> turnoversByOccupancy,
+            final Occupancy occupancy) {
+        Map<LocalDateInterval, Turnover> occupancyTurnovers = turnoversByOccupancy.get(occupancy);
+        if (occupancyTurnovers == null) {
+            occupancyTurnovers = Maps.newHashMap();
+            turnoversByOccupancy.put(occupancy, occupancyTurnovers);
+        }
+        return occupancyTurnovers;
+    }
+
+    /**
+     * Creates or updates the turnover of the row; whether it changed.
+     */
+    private boolean upsert(
+            final Occupancy occupancy,
+            final Map<LocalDateInterval, Turnover> occupancyTurnovers,
+            final TurnoverRow row,
+            final TurnoverIngestionReport report) {
+        final Turnover existing = occupancyTurnovers.get(row.getInterval());
+        if (existing == null) {
+            final Turnover turnover = turnovers.newTurnover(
+                    occupancy, row.getStartDate(), row.getEndDate(), row.getAmount());
+            occupancyTurnovers.put(row.getInterval(), turnover);
+            report.created();
+            return true;
+        }
+        if (existing.getAmount().compareTo(row.getAmount()) != 0) {
+            existing.setAmount(row.getAmount());
+            report.updated();
+            return true;
+        }
+        report.unchanged();
+        return false;
+    }
+
+    private static void recalculate(
+            final LeaseTermForTurnoverRent term,
+            final BigDecimal auditedTurnover,
+            final TurnoverIngestionReport report) {
+        if (term.getStatus().isApproved()) {
+            if (term.getAuditedTurnover() == null || term.getAuditedTurnover().compareTo(auditedTurnover) != 0) {
+                report.failed(term.toString(), "Approved, audited turnover " + auditedTurnover + " not applied");
+            }
+            return;
+        }
+        final BigDecimal previousValue = term.getAuditedTurnover() != null ? term.getTrialValue() : null;
+        term.updateAuditedTurnover(auditedTurnover);
+        report.recalculated(term, previousValue, term.getTrialValue());
+    }
+
+    // //////////////////////////////////////
+
+    private static boolean overlapsAny(final LocalDateInterval period, final Collection<LocalDateInterval> others) {
+        for (LocalDateInterval other : others) {
+            if (period.overlaps(other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The total of the turnovers within the period; of a year for which an
+     * occupancy has an (audited) annual turnover, its monthly turnovers are
+     * left out.
+     */
+    static BigDecimal auditedTurnoverOf(final Collection<Turnover> turnovers, final LocalDateInterval period) {
+        final Map<Occupancy, Set<Integer>> annualYears = Maps.newHashMap();
+        for (Turnover turnover : turnovers) {
+            if (turnover.isAnnual()) {
+                Set<Integer> years = annualYears.get(turnover.getOccupancy());
+                if (years == null) {
+                    years = Sets.newHashSet();
+                    annualYears.put(turnover.getOccupancy(), years);
+                }
+                years.add(turnover.getStartDate().getYear());
+            }
+        }
+        BigDecimal total = BigDecimal.ZERO;
+        for (Turnover turnover : turnovers) {
+            if (!period.contains(turnover.getInterval())) {
+                continue;
+            }
+            final Set<Integer> years = annualYears.get(turnover.getOccupancy());
+            if (!turnover.isAnnual() && years != null && years.contains(turnover.getStartDate().getYear())) {
+                continue;
+            }
+            total = total.add(turnover.getAmount());
+        }
+        return total;
+    }
+
+    // //////////////////////////////////////
+
+    private Leases leases;
+
+    public final void injectLeases(final Leases leases) {
+        this.leases = leases;
+    }
+
+    private UnitsForLease unitsForLease;
+
+    public final void injectUnitsForLease(final UnitsForLease unitsForLease) {
+        this.unitsForLease = unitsForLease;
+    }
+
+    private Occupancies occupancies;
+
+    public final void injectOccupancies(final Occupancies occupancies) {
+        this.occupancies = occupancies;
+    }
+
+    private Turnovers turnovers;
+
+    public final void injectTurnovers(final Turnovers turnovers) {
+        this.turnovers = turnovers;
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.turnover;
+
+import java.math.BigDecimal;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.joda.time.IllegalFieldValueException;
+import org.joda.time.LocalDate;
+
+import org.estatio.dom.valuetypes.LocalDateInterval;
+
+/**
+ * A turnover statement of a tenant, to be {@link TurnoverIngestionService
+ * ingested}: the reference of the lease and/or of the unit, the month or
+ * year, and the turnover.
+ * 
+ * <p>
+ * As a line, the fields are separated by commas or semicolons, eg
+ * <tt>OXF-TOPMODEL-001,,2013-08,31250.00</tt> for a month or
+ * <tt>,OXF-001,2012,402500</tt> for a (audited) year. Either reference may be
+ * left out, as long as the other identifies a single occupancy; the month
+ * may also be written as in SDMX (<tt>2013-M08</tt>) or as its first day
+ * (<tt>2013-08-01</tt>).
+ */
+public final class TurnoverRow {
+
+    private static final Pattern SEPARATOR = Pattern.compile("\\s*[,;]\\s*");
+    private static final Pattern YEAR = Pattern.compile("\\d{4}");
+    private static final Pattern MONTH = Pattern.compile("(\\d{4})-M?(\\d{1,2})(-01)?");
+
+    private final int lineNumber;
+    private final String leaseReference;
+    private final String unitReference;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final BigDecimal amount;
+
+    public TurnoverRow(
+            final int lineNumber,
+            final String leaseReference,
+            final String unitReference,
+            final LocalDate startDate,
+            final LocalDate endDate,
+            final BigDecimal amount) {
+        this.lineNumber = lineNumber;
+        this.leaseReference = leaseReference;
+        this.unitReference = unitReference;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.amount = amount;
+    }
+
+    /**
+     * The row of the given line; <tt>null</tt> for a blank line, a comment
+     * (starting with <tt>#</tt>) or the header (the first line, if its
+     * turnover is not a number).
+     * 
+     * @throws IllegalArgumentException
+     *             if the line cannot be parsed
+     */
+    public static TurnoverRow parse(final String line, final int lineNumber) {
+        final String trimmed = line.trim();
+        if (trimmed.length() == 0 || trimmed.startsWith("#")) {
+            return null;
+        }
+        final String[] fields = SEPARATOR.split(trimmed, -1);
+        if (fields.length != 4) {
+            throw new IllegalArgumentException("Expected lease, unit, month or year and turnover");
+        }
+        if (lineNumber == 1 && !fields[3].matches("-?[\\d.]+")) {
+            return null;
+        }
+        final String leaseReference = emptyToNull(fields[0]);
+        final String unitReference = emptyToNull(fields[1]);
+        if (leaseReference == null && unitReference == null) {
+            throw new IllegalArgumentException("Either lease or unit required");
+        }
+        final LocalDate startDate;
+        final LocalDate endDate;
+        try {
+            final Matcher month = MONTH.matcher(fields[2]);
+            if (YEAR.matcher(fields[2]).matches()) {
+                startDate = new LocalDate(Integer.parseInt(fields[2]), 1, 1);
+                endDate = startDate.plusYears(1).minusDays(1);
+            } else if (month.matches()) {
+                startDate = new LocalDate(Integer.parseInt(month.group(1)), Integer.parseInt(month.group(2)), 1);
+                endDate = startDate.plusMonths(1).minusDays(1);
+            } else {
+                throw new IllegalArgumentException("Invalid month or year '" + fields[2] + "'");
+            }
+        } catch (IllegalFieldValueException ex) {
+            throw new IllegalArgumentException("Invalid month '" + fields[2] + "'");
+        }
+        try {
+            return new TurnoverRow(
+                    lineNumber, leaseReference, unitReference, startDate, endDate, new BigDecimal(fields[3]));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid turnover '" + fields[3] + "'");
+        }
+    }
+
+    private static String emptyToNull(final String field) {
+        return field.length() == 0 ? null : field;
+    }
+
+    // //////////////////////////////////////
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * The reference of the lease; <tt>null</tt> if the occupancy is
+     * identified by the unit only.
+     */
+    public String getLeaseReference() {
+        return leaseReference;
+    }
+
+    /**
+     * The reference of the unit; <tt>null</tt> if the lease has a single
+     * occupancy reporting turnover.
+     */
+    public String getUnitReference() {
+        return unitReference;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public LocalDateInterval getInterval() {
+        return LocalDateInterval.including(startDate, endDate);
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String toString() {
+        return "line " + lineNumber + " ("
+                + (leaseReference != null ? leaseReference : "") + "/" + (unitReference != null ? unitReference : "")
+                + " " + startDate.toString(endDate.getMonthOfYear() == startDate.getMonthOfYear() ? "yyyy-MM" : "yyyy")
+                + ")";
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.turnover;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.annotation.ActionSemantics;
+import org.apache.isis.applib.annotation.ActionSemantics.Of;
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.NotContributed;
+import org.apache.isis.applib.annotation.Programmatic;
+
+import org.estatio.dom.EstatioDomainService;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.Occupancy;
+
+@Hidden
+public class Turnovers extends EstatioDomainService<Turnover> {
+
+    public Turnovers() {
+        super(Turnovers.class, Turnover.class);
+    }
+
+    // //////////////////////////////////////
+
+    @ActionSemantics(Of.SAFE)
+    @NotContributed
+    public List<Turnover> findByOccupancy(final Occupancy occupancy) {
+        return allMatches("findByOccupancy", "occupancy", occupancy);
+    }
+
+    @ActionSemantics(Of.SAFE)
+    @NotContributed
+    public List<Turnover> findByLease(final Lease lease) {
+        return allMatches("findByLease", "lease", lease);
+    }
+
+    // //////////////////////////////////////
+
+    @Programmatic
+    public Turnover newTurnover(
+            final Occupancy occupancy,
+            final LocalDate startDate,
+            final LocalDate endDate,
+            final BigDecimal amount) {
+        final Turnover turnover = newTransientInstance();
+        turnover.setOccupancy(occupancy);
+        turnover.setStartDate(startDate);
+        turnover.setEndDate(endDate);
+        turnover.setAmount(amount);
+        persist(turnover);
+        return turnover;
+    }
+
+}
@@ -0,0 +1,12 @@
+/**
+ * Defines {@link org.estatio.dom.lease.turnover.Turnover}, the turnover reported for an
+ * {@link org.estatio.dom.lease.Occupancy Occupancy} over a month or a year, and the
+ * {@link org.estatio.dom.lease.turnover.TurnoverIngestionService} that loads the statements of tenants in bulk.
+ * 
+ * <p>
+ * The turnovers of the occupancies of a {@link org.estatio.dom.lease.Lease Lease} that
+ * {@link org.estatio.dom.lease.Occupancy#getReportTurnover() report turnover} are aggregated into the
+ * {@link org.estatio.dom.lease.LeaseTermForTurnoverRent#getAuditedTurnover() audited turnover} of its
+ * {@link org.estatio.dom.lease.LeaseTermForTurnoverRent turnover rent terms}.
+ */
+package org.estatio.dom.lease.turnover;
@@ -19,11 +19,14 @@
 package org.estatio.dom.numerator;
 
 import java.math.BigInteger;
+import java.util.List;
 
 import javax.jdo.annotations.IdGeneratorStrategy;
 import javax.jdo.annotations.IdentityType;
 import javax.jdo.annotations.VersionStrategy;
 
+import com.google.common.collect.Lists;
+
 import org.apache.isis.applib.annotation.Disabled;
 import org.apache.isis.applib.annotation.Immutable;
 import org.apache.isis.applib.annotation.NotPersisted;
@@ -33,6 +36,8 @@ import org.apache.isis.applib.services.bookmark.BookmarkHolder;
 
 import org.estatio.dom.EstatioMutableObject;
 import org.estatio.dom.JdoColumnLength;
+import org.estatio.services.metrics.EstatioMetrics;
+import org.estatio.services.metrics.Timer;
 
 /**
  * Generates a sequence of values (eg <tt>XYZ-00101</tt>, <tt>XYZ-00102</tt>, <tt>XYZ-00103</tt> etc)
@@ -55,6 +60,8 @@ import org.estatio.dom.JdoColumnLength;
 @javax.jdo.annotations.Version(
         strategy = VersionStrategy.VERSION_NUMBER, 
         column = "version")
+// incremented concurrently by all nodes
+@javax.jdo.annotations.Cacheable("false")
 @javax.jdo.annotations.Queries({
     @javax.jdo.annotations.Query(
         name = "findByNameAndObjectTypeAndObjectIdentifier", language = "JDOQL", 
@@ -220,10 +227,38 @@ public class Numerator
 
     @Programmatic
     public String increment() {
-        return format(incrementCounter());
+        final Timer.Context timer = EstatioMetrics.time("numerator.increment");
+        try {
+            return format(incrementCounter());
+        } finally {
+            timer.stop();
+        }
     }
 
 
+    /**
+     * Reserves the next <tt>count</tt> values in one go, updating the
+     * {@link #getLastIncrement() last increment} only once.
+     */
+    @Programmatic
+    public List<String> increment(final int count) {
+        final Timer.Context timer = EstatioMetrics.time("numerator.incrementBatch");
+        try {
+            final List<String> values = Lists.newArrayListWithCapacity(count);
+            BigInteger last = getLastIncrement();
+            if (last == null) {
+                last = BigInteger.ZERO;
+            }
+            for (int i = 1; i <= count; i++) {
+                values.add(format(last.add(BigInteger.valueOf(i))));
+            }
+            setLastIncrement(last.add(BigInteger.valueOf(count)));
+            return values;
+        } finally {
+            timer.stop();
+        }
+    }
+
     private BigInteger incrementCounter() {
         BigInteger last = getLastIncrement();
         if (last == null) {
@@ -67,6 +67,10 @@ public class Parties extends EstatioDomainService<Party> {
 
     @Hidden
     public List<Party> autoComplete(final String searchPhrase) {
+        final List<Party> parties = searchReferenceOrName(searchPhrase);
+        if (parties != null) {
+            return parties;
+        }
         return searchPhrase.length() > 2
                 ? findParties("*" + searchPhrase + "*")
                 : Lists.<Party> newArrayList();
@@ -0,0 +1,204 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.search;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+
+import org.estatio.dom.WithNameGetter;
+import org.estatio.dom.WithReferenceGetter;
+import org.estatio.dom.asset.Property;
+import org.estatio.dom.asset.Unit;
+import org.estatio.dom.financial.FinancialAccount;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.party.Party;
+import org.estatio.services.metrics.EstatioMetrics;
+
+/**
+ * The {@link TrigramIndex trigram indexes} of the references and names of
+ * the {@link #INDEXED_TYPES indexed types}, keyed by JDO object id, one set
+ * per persistence manager factory.
+ * 
+ * <p>
+ * The index of a type is built on first use with a single projection query
+ * (so without instantiating any of the objects), and from then on kept up to
+ * date by the {@link SearchIndexListener}. Because that only sees the changes
+ * made by this node, the index is rebuilt once it is older than
+ * {@link #REBUILD_AFTER_MILLIS}; in the meantime objects renamed or deleted on
+ * other nodes are filtered out by the {@link SearchIndexService} when
+ * resolving the matches, only those created there are missed.
+ */
+public class SearchIndex {
+
+    static final List<Class<?>> INDEXED_TYPES = ImmutableList.<Class<?>> of(
+            Party.class, Lease.class, Property.class, Unit.class, FinancialAccount.class);
+
+    static final long REBUILD_AFTER_MILLIS = 10 * 60 * 1000L;
+
+    private static final ConcurrentMap<PersistenceManagerFactory, SearchIndex> INSTANCES =
+            new MapMaker().weakKeys().makeMap();
+
+    public static SearchIndex of(final PersistenceManagerFactory persistenceManagerFactory) {
+        final SearchIndex index = INSTANCES.get(persistenceManagerFactory);
+        if (index != null) {
+            return index;
+        }
+        final SearchIndex created = new SearchIndex();
+        final SearchIndex previous = INSTANCES.putIfAbsent(persistenceManagerFactory, created);
+        return previous != null ? previous : created;
+    }
+
+    private static class Built {
+        private final TrigramIndex<Object> index = new TrigramIndex<Object>();
+        private final long builtAt = System.currentTimeMillis();
+
+        private boolean isStale() {
+            return System.currentTimeMillis() - builtAt > REBUILD_AFTER_MILLIS;
+        }
+    }
+
+    private final ConcurrentMap<Class<?>, Built> indexesByType = new ConcurrentHashMap<Class<?>, Built>();
+
+    private SearchIndex() {
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * The object ids of the instances of the type whose reference or name
+     * contains the phrase, at most <tt>max</tt>, best matches first.
+     * 
+     * <p>
+     * For a supertype of indexed types (eg <tt>FixedAsset</tt>) the matches
+     * of those types are merged; for a subtype of an indexed type (eg
+     * <tt>UnitForLease</tt>) the matches may include instances of other
+     * subtypes, to be filtered by the caller.
+     */
+    List<Object> search(
+            final PersistenceManager persistenceManager,
+            final Class<?> type,
+            final String phrase,
+            final int max) {
+        final List<TrigramIndex.Hit<Object>> hits = Lists.newArrayList();
+        for (Class<?> indexedType : INDEXED_TYPES) {
+            if (type.isAssignableFrom(indexedType) || indexedType.isAssignableFrom(type)) {
+                hits.addAll(indexFor(persistenceManager, indexedType).search(phrase, max));
+            }
+        }
+        Collections.sort(hits, TrigramIndex.Hit.BY_SCORE);
+        final List<Object> objectIds = Lists.newArrayList();
+        for (TrigramIndex.Hit<Object> hit : hits) {
+            if (objectIds.size() == max) {
+                break;
+            }
+            objectIds.add(hit.getKey());
+        }
+        return objectIds;
+    }
+
+    /**
+     * Whether the type is, or is a subtype or a supertype of, an indexed type.
+     */
+    static boolean isIndexed(final Class<?> type) {
+        for (Class<?> indexedType : INDEXED_TYPES) {
+            if (type.isAssignableFrom(indexedType) || indexedType.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private TrigramIndex<Object> indexFor(final PersistenceManager persistenceManager, final Class<?> indexedType) {
+        final Built built = indexesByType.get(indexedType);
+        if (built != null && !built.isStale()) {
+            return built.index;
+        }
+        final Built rebuilt = build(persistenceManager, indexedType);
+        indexesByType.put(indexedType, rebuilt);
+        return rebuilt.index;
+    }
+
+    private static Built build(final PersistenceManager persistenceManager, final Class<?> indexedType) {
+        final Built built = new Built();
+        final Query query = persistenceManager.newQuery(
+                "SELECT JDOHelper.getObjectId(this), reference, name FROM " + indexedType.getName());
+        try {
+            for (Object row : (Collection<?>) query.execute()) {
+                final Object[] columns = (Object[]) row;
+                built.index.put(columns[0], (String) columns[1], (String) columns[2]);
+            }
+        } finally {
+            query.closeAll();
+        }
+        EstatioMetrics.count("searchIndex." + indexedType.getSimpleName() + ".builds");
+        return built;
+    }
+
+    // //////////////////////////////////////
+
+    void changed(final Object pojo) {
+        final Built built = builtFor(pojo);
+        if (built == null) {
+            return;
+        }
+        built.index.put(
+                JDOHelper.getObjectId(pojo),
+                ((WithReferenceGetter) pojo).getReference(),
+                ((WithNameGetter) pojo).getName());
+    }
+
+    void deleted(final Object pojo) {
+        final Built built = builtFor(pojo);
+        if (built == null) {
+            return;
+        }
+        built.index.remove(JDOHelper.getObjectId(pojo));
+    }
+
+    /**
+     * The index that the object belongs in, <tt>null</tt> if none or if not
+     * yet built (in which case it will be read from the database).
+     */
+    private Built builtFor(final Object pojo) {
+        for (Map.Entry<Class<?>, Built> entry : indexesByType.entrySet()) {
+            if (entry.getKey().isInstance(pojo)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    void clear() {
+        indexesByType.clear();
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.search;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.listener.DeleteLifecycleListener;
+import javax.jdo.listener.InstanceLifecycleEvent;
+import javax.jdo.listener.StoreLifecycleListener;
+
+/**
+ * Keeps the {@link SearchIndex} up to date with the objects persisted,
+ * updated and deleted on this node.
+ * 
+ * <p>
+ * Registered through the
+ * <tt>javax.jdo.listener.InstanceLifecycleListener.org.estatio.dom.search.SearchIndexListener</tt>
+ * property of the persistence manager factory.
+ */
+public class SearchIndexListener implements StoreLifecycleListener, DeleteLifecycleListener {
+
+    private static final SearchIndexListener INSTANCE = new SearchIndexListener();
+
+    /**
+     * As required by JDO to instantiate listeners that are registered by
+     * property.
+     */
+    public static SearchIndexListener getInstance() {
+        return INSTANCE;
+    }
+
+    private SearchIndexListener() {
+    }
+
+    // //////////////////////////////////////
+
+    @Override
+    public void preStore(final InstanceLifecycleEvent event) {
+    }
+
+    @Override
+    public void postStore(final InstanceLifecycleEvent event) {
+        final Object pojo = event.getPersistentInstance();
+        final SearchIndex index = indexOf(pojo);
+        if (index != null) {
+            index.changed(pojo);
+        }
+    }
+
+    @Override
+    public void preDelete(final InstanceLifecycleEvent event) {
+        final Object pojo = event.getPersistentInstance();
+        final SearchIndex index = indexOf(pojo);
+        if (index != null) {
+            index.deleted(pojo);
+        }
+    }
+
+    @Override
+    public void postDelete(final InstanceLifecycleEvent event) {
+    }
+
+    // //////////////////////////////////////
+
+    private static SearchIndex indexOf(final Object pojo) {
+        if (!SearchIndex.isIndexed(pojo.getClass())) {
+            return null;
+        }
+        final PersistenceManager persistenceManager = JDOHelper.getPersistenceManager(pojo);
+        return persistenceManager == null ? null : SearchIndex.of(persistenceManager.getPersistenceManagerFactory());
+    }
+
+}
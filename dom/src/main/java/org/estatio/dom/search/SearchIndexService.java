@@ -0,0 +1,110 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.search;
+
+import java.util.List;
+
+import javax.jdo.JDOObjectNotFoundException;
+import javax.jdo.PersistenceManager;
+
+import com.google.common.collect.Lists;
+
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+import org.estatio.dom.WithNameGetter;
+import org.estatio.dom.WithReferenceGetter;
+import org.estatio.services.metrics.EstatioMetrics;
+
+/**
+ * Infix search on the reference and name of parties, leases, properties,
+ * units and financial accounts, for their auto-complete actions, using the
+ * in-memory {@link SearchIndex} rather than a (case insensitive, so not
+ * indexable) regular expression query.
+ */
+@Hidden
+public class SearchIndexService {
+
+    public static final int MAX_RESULTS = 50;
+
+    /**
+     * The instances of the type whose reference or name contains the phrase
+     * (ignoring case), best matches first; <tt>null</tt> if the phrase cannot
+     * be searched for this way, because it is shorter than three characters,
+     * contains wildcards or the type is not indexed, in which case the caller
+     * falls back to a query.
+     */
+    @Programmatic
+    public <T> List<T> search(final Class<T> type, final String phrase) {
+        if (!isSearchable(type, phrase)) {
+            return null;
+        }
+        final PersistenceManager persistenceManager = isisJdoSupport.getJdoPersistenceManager();
+        final List<Object> objectIds = SearchIndex.of(persistenceManager.getPersistenceManagerFactory())
+                .search(persistenceManager, type, phrase, MAX_RESULTS);
+        final String normalizedPhrase = TrigramIndex.normalize(phrase);
+        final List<T> results = Lists.newArrayList();
+        for (Object objectId : objectIds) {
+            final Object object;
+            try {
+                object = persistenceManager.getObjectById(objectId, false);
+            } catch (JDOObjectNotFoundException ex) {
+                // deleted on another node
+                continue;
+            }
+            // the index may be behind, eg if renamed on another node
+            if (type.isInstance(object) && matches(object, normalizedPhrase)) {
+                results.add(type.cast(object));
+            }
+        }
+        EstatioMetrics.count("searchIndex." + type.getSimpleName() + ".searches");
+        return results;
+    }
+
+    static boolean isSearchable(final Class<?> type, final String phrase) {
+        return phrase != null
+                && phrase.length() >= TrigramIndex.N
+                && phrase.indexOf('*') < 0
+                && phrase.indexOf('?') < 0
+                && SearchIndex.isIndexed(type);
+    }
+
+    private static boolean matches(final Object object, final String normalizedPhrase) {
+        return TrigramIndex.normalize(((WithReferenceGetter) object).getReference()).contains(normalizedPhrase)
+                || TrigramIndex.normalize(((WithNameGetter) object).getName()).contains(normalizedPhrase);
+    }
+
+    /**
+     * Discards the indexes, to be rebuilt on next use.
+     */
+    @Programmatic
+    public void rebuild() {
+        SearchIndex.of(isisJdoSupport.getJdoPersistenceManager().getPersistenceManagerFactory()).clear();
+    }
+
+    // //////////////////////////////////////
+
+    private IsisJdoSupport isisJdoSupport;
+
+    public final void injectIsisJdoSupport(final IsisJdoSupport isisJdoSupport) {
+        this.isisJdoSupport = isisJdoSupport;
+    }
+
+}
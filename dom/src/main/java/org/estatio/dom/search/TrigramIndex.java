@@ -0,0 +1,233 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.search;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * In-memory index of the texts (eg reference and name) of a set of objects,
+ * by the trigrams (substrings of three characters) of those texts, to find
+ * the objects that have a text containing a given phrase.
+ * 
+ * <p>
+ * The candidates are those listed under the least common trigram of the
+ * phrase, which are then checked to actually contain it. Matches are
+ * {@link Hit#getScore() ranked} by where the phrase is found: the whole
+ * text first, then at the start of the text, at the start of a word and
+ * anywhere else; in the first text (the reference) before the others.
+ * Equally ranked matches are ordered by the text matched, shortest first.
+ */
+class TrigramIndex<K> {
+
+    static final int N = 3;
+
+    private final Map<String, Set<K>> keysByTrigram = Maps.newHashMap();
+    private final Map<K, String[]> textsByKey = Maps.newHashMap();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    void put(final K key, final String... texts) {
+        final String[] normalized = new String[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            normalized[i] = normalize(texts[i]);
+        }
+        lock.writeLock().lock();
+        try {
+            removeInternal(key);
+            textsByKey.put(key, normalized);
+            for (String text : normalized) {
+                for (String trigram : trigramsOf(text)) {
+                    Set<K> keys = keysByTrigram.get(trigram);
+                    if (keys == null) {
+                        keys = Sets.newHashSet();
+                        keysByTrigram.put(trigram, keys);
+                    }
+                    keys.add(key);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(final K key) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeInternal(final K key) {
+        final String[] texts = textsByKey.remove(key);
+        if (texts == null) {
+            return;
+        }
+        for (String text : texts) {
+            for (String trigram : trigramsOf(text)) {
+                final Set<K> keys = keysByTrigram.get(trigram);
+                if (keys != null) {
+                    keys.remove(key);
+                    if (keys.isEmpty()) {
+                        keysByTrigram.remove(trigram);
+                    }
+                }
+            }
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return textsByKey.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * The best matches for the phrase, at most <tt>max</tt>, best first.
+     * 
+     * @param phrase
+     *            - at least {@link #N} characters long
+     */
+    List<Hit<K>> search(final String phrase, final int max) {
+        final String normalizedPhrase = normalize(phrase);
+        final Set<String> trigrams = trigramsOf(normalizedPhrase);
+        if (trigrams.isEmpty()) {
+            throw new IllegalArgumentException("Phrase must be at least " + N + " characters long");
+        }
+        final List<Hit<K>> hits = Lists.newArrayList();
+        lock.readLock().lock();
+        try {
+            Set<K> candidates = null;
+            for (String trigram : trigrams) {
+                final Set<K> keys = keysByTrigram.get(trigram);
+                if (keys == null) {
+                    return hits;
+                }
+                if (candidates == null || keys.size() < candidates.size()) {
+                    candidates = keys;
+                }
+            }
+            for (K candidate : candidates) {
+                final String[] texts = textsByKey.get(candidate);
+                final int score = scoreOf(texts, normalizedPhrase);
+                if (score >= 0) {
+                    hits.add(new Hit<K>(candidate, score, texts[score % texts.length]));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Collections.sort(hits, Hit.BY_SCORE);
+        return hits.size() > max ? Lists.newArrayList(hits.subList(0, max)) : hits;
+    }
+
+    /**
+     * Lower is better; -1 if the phrase is not found in any of the texts.
+     */
+    static int scoreOf(final String[] texts, final String phrase) {
+        int best = -1;
+        for (int i = 0; i < texts.length; i++) {
+            final String text = texts[i];
+            final int at = text.indexOf(phrase);
+            if (at < 0) {
+                continue;
+            }
+            final int position;
+            if (text.length() == phrase.length()) {
+                position = 0;
+            } else if (at == 0) {
+                position = 1;
+            } else if (!Character.isLetterOrDigit(text.charAt(at - 1))) {
+                position = 2;
+            } else {
+                position = 3;
+            }
+            final int score = position * texts.length + i;
+            if (best < 0 || score < best) {
+                best = score;
+            }
+        }
+        return best;
+    }
+
+    static String normalize(final String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ENGLISH);
+    }
+
+    static Set<String> trigramsOf(final String text) {
+        final Set<String> trigrams = Sets.newHashSet();
+        for (int i = 0; i + N <= text.length(); i++) {
+            trigrams.add(text.substring(i, i + N));
+        }
+        return trigrams;
+    }
+
+    // //////////////////////////////////////
+
+    static class Hit<K> {
+
+        static final Comparator<Hit<?>> BY_SCORE = new Comparator<Hit<?>>() {
+            @Override
+            public int compare(final Hit<?> o1, final Hit<?> o2) {
+                if (o1.score != o2.score) {
+                    return o1.score - o2.score;
+                }
+                if (o1.text.length() != o2.text.length()) {
+                    return o1.text.length() - o2.text.length();
+                }
+                return o1.text.compareTo(o2.text);
+            }
+        };
+
+        private final K key;
+        private final int score;
+        private final String text;
+
+        Hit(final K key, final int score, final String text) {
+            this.key = key;
+            this.score = score;
+            this.text = text;
+        }
+
+        K getKey() {
+            return key;
+        }
+
+        int getScore() {
+            return score;
+        }
+    }
+
+}
@@ -110,19 +110,48 @@ public final class CalendarUtils {
         return false;
     }
 
+    /**
+     * Returns the consecutive intervals based on rrule, starting with the
+     * interval containing startDate up to and including the interval
+     * containing endDate (or just the first one when endDate is
+     * <tt>null</tt>).
+     * 
+     * <p>
+     * Walks the rrule only once, rather than once for every interval.
+     * 
+     * @param startDate
+     * @param endDate
+     * @param rrule
+     * @return
+     */
     public static List<Interval> intervalsInRange(
             final LocalDate startDate, final LocalDate endDate, final String rrule) {
-        List<Interval> intervals = Lists.newArrayList();
+        final List<Interval> intervals = Lists.newArrayList();
+        if (startDate == null || rrule == null) {
+            return intervals;
+        }
         LocalDate start = startDate;
-        LocalDate end = endDate == null ? startDate : endDate;
-        Interval interval = null;
-        do {
-            interval = intervalContaining(start, rrule);
-            if (interval != null) {
-                intervals.add(interval);
-                start = interval.getEnd().toLocalDate();
+        final LocalDate end = endDate == null ? startDate : endDate;
+        try {
+            LocalDate thisDate = START_DATE_DEFAULT;
+            final LocalDateIterator iter =
+                    LocalDateIteratorFactory.createLocalDateIterator(rrule, thisDate, true);
+            while (iter.hasNext()) {
+                final LocalDate nextDate = iter.next();
+                if (nextDate.compareTo(start) > 0) {
+                    intervals.add(new Interval(
+                            thisDate.toInterval().getStartMillis(),
+                            nextDate.toInterval().getStartMillis()));
+                    start = nextDate;
+                    if (!start.isBefore(end)) {
+                        break;
+                    }
+                }
+                thisDate = nextDate;
             }
-        } while (interval != null && start.isBefore(end));
+        } catch (final ParseException ex) {
+            throw new EstatioApplicationException("Unable to parse rrule >>" + rrule + "<<", ex);
+        }
         return intervals;
     }
 
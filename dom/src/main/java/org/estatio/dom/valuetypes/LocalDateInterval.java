@@ -197,7 +197,7 @@ public final class LocalDateInterval {
     @Override
     public int hashCode() {
         // TODO: use Isis' ObjectContracts?
-        return new HashCodeBuilder(16, 23). // two randomly chosen prime numbers
+        return new HashCodeBuilder(17, 23). // two randomly chosen prime numbers
                 append(startInstant).
                 append(endInstant).
                 toHashCode();
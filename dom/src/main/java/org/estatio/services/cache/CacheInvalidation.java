@@ -0,0 +1,134 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.cache;
+
+import javax.jdo.annotations.IdGeneratorStrategy;
+import javax.jdo.annotations.IdentityType;
+
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Immutable;
+
+import org.estatio.dom.JdoColumnLength;
+
+/**
+ * A change made on one node that the other nodes of the cluster are to evict
+ * from their L2 cache; see {@link ClusterCacheNode}.
+ */
+@javax.jdo.annotations.PersistenceCapable(
+        identityType = IdentityType.DATASTORE,
+        table = "CacheInvalidation")
+@javax.jdo.annotations.DatastoreIdentity(
+        strategy = IdGeneratorStrategy.IDENTITY,
+        column = "id")
+@javax.jdo.annotations.Cacheable("false")
+@javax.jdo.annotations.Index(
+        name = "CacheInvalidation_timestampEpoch_IDX",
+        members = { "timestampEpoch" })
+@javax.jdo.annotations.Queries({
+        @javax.jdo.annotations.Query(
+                name = "findSince", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.services.cache.CacheInvalidation "
+                        + "WHERE timestampEpoch >= :since "
+                        + "ORDER BY timestampEpoch"),
+        @javax.jdo.annotations.Query(
+                name = "findBefore", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.services.cache.CacheInvalidation "
+                        + "WHERE timestampEpoch < :before")
+})
+@Immutable
+@Hidden
+public class CacheInvalidation {
+
+    public CacheInvalidation() {
+    }
+
+    CacheInvalidation(
+            final String node,
+            final long timestampEpoch,
+            final String objectType,
+            final String identifier) {
+        this.node = node;
+        this.timestampEpoch = timestampEpoch;
+        this.objectType = objectType;
+        this.identifier = identifier;
+    }
+
+    // //////////////////////////////////////
+
+    private String node;
+
+    /**
+     * The node that made the change, and so does not need to evict it.
+     */
+    @javax.jdo.annotations.Column(allowsNull = "false", length = JdoColumnLength.NAME)
+    public String getNode() {
+        return node;
+    }
+
+    public void setNode(final String node) {
+        this.node = node;
+    }
+
+    // //////////////////////////////////////
+
+    private long timestampEpoch;
+
+    @javax.jdo.annotations.Column(allowsNull = "false")
+    public long getTimestampEpoch() {
+        return timestampEpoch;
+    }
+
+    public void setTimestampEpoch(final long timestampEpoch) {
+        this.timestampEpoch = timestampEpoch;
+    }
+
+    // //////////////////////////////////////
+
+    private String objectType;
+
+    @javax.jdo.annotations.Column(allowsNull = "false", length = JdoColumnLength.FQCN)
+    public String getObjectType() {
+        return objectType;
+    }
+
+    public void setObjectType(final String objectType) {
+        this.objectType = objectType;
+    }
+
+    // //////////////////////////////////////
+
+    private String identifier;
+
+    /**
+     * The string form of the JDO object id of the changed object, or
+     * <tt>null</tt> if all instances of the {@link #getObjectType() type} are
+     * to be evicted.
+     */
+    @javax.jdo.annotations.Column(allowsNull = "true", length = JdoColumnLength.FQCN)
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public void setIdentifier(final String identifier) {
+        this.identifier = identifier;
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.cache;
+
+import java.util.Collections;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.Transaction;
+import javax.jdo.listener.DeleteLifecycleListener;
+import javax.jdo.listener.InstanceLifecycleEvent;
+import javax.jdo.listener.StoreLifecycleListener;
+
+/**
+ * Collects the cached objects that are changed or deleted in a transaction,
+ * to be recorded for the other nodes as it commits; see
+ * {@link ClusterCacheNode}.
+ * 
+ * <p>
+ * Registered through the
+ * <tt>javax.jdo.listener.InstanceLifecycleListener.org.estatio.services.cache.CacheInvalidationListener</tt>
+ * property of the persistence manager factory.
+ */
+public class CacheInvalidationListener implements StoreLifecycleListener, DeleteLifecycleListener {
+
+    private static final CacheInvalidationListener INSTANCE = new CacheInvalidationListener();
+
+    /**
+     * As required by JDO to instantiate listeners that are registered by
+     * property.
+     */
+    public static CacheInvalidationListener getInstance() {
+        return INSTANCE;
+    }
+
+    private CacheInvalidationListener() {
+    }
+
+    // //////////////////////////////////////
+
+    @Override
+    public void preStore(final InstanceLifecycleEvent event) {
+    }
+
+    @Override
+    public void postStore(final InstanceLifecycleEvent event) {
+        final Object pojo = event.getPersistentInstance();
+        if (JDOHelper.isNew(pojo)) {
+            // not yet cached anywhere else
+            return;
+        }
+        changed(pojo);
+    }
+
+    @Override
+    public void preDelete(final InstanceLifecycleEvent event) {
+        changed(event.getPersistentInstance());
+    }
+
+    @Override
+    public void postDelete(final InstanceLifecycleEvent event) {
+    }
+
+    // //////////////////////////////////////
+
+    private static void changed(final Object pojo) {
+        final Class<?> type = pojo.getClass();
+        if (CachePolicy.of(type) == CachePolicy.NONE) {
+            return;
+        }
+        final PersistenceManager persistenceManager = JDOHelper.getPersistenceManager(pojo);
+        final Object objectId = JDOHelper.getObjectId(pojo);
+        if (persistenceManager == null || objectId == null) {
+            return;
+        }
+        final ClusterCacheNode node = ClusterCacheNode.of(persistenceManager.getPersistenceManagerFactory());
+        final Transaction transaction = persistenceManager.currentTransaction();
+        if (!transaction.isActive()) {
+            node.publish(Collections.<Object, Class<?>> singletonMap(objectId, type), Collections.<Class<?>> emptyList());
+            return;
+        }
+        PendingInvalidations.enlist(node, transaction).add(objectId, type);
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.cache;
+
+import java.util.List;
+
+import javax.jdo.annotations.Cacheable;
+
+import com.google.common.collect.ImmutableList;
+
+import org.estatio.dom.agreement.AgreementRoleCommunicationChannelType;
+import org.estatio.dom.agreement.AgreementRoleType;
+import org.estatio.dom.agreement.AgreementType;
+import org.estatio.dom.charge.Charge;
+import org.estatio.dom.charge.ChargeGroup;
+import org.estatio.dom.currency.Currency;
+import org.estatio.dom.geography.Country;
+import org.estatio.dom.geography.State;
+import org.estatio.dom.index.Index;
+import org.estatio.dom.index.IndexBase;
+import org.estatio.dom.index.IndexValue;
+import org.estatio.dom.lease.LeaseType;
+import org.estatio.dom.tax.Tax;
+import org.estatio.dom.tax.TaxRate;
+
+/**
+ * How the instances of an entity type are held in the L2 cache.
+ */
+public enum CachePolicy {
+
+    /**
+     * Reference data: read all the time, hardly ever changed, so kept until
+     * evicted.
+     */
+    PINNED,
+    /**
+     * Everything else, such as leases and their terms: softly referenced,
+     * so held as long as there is memory to spare.
+     */
+    SOFT,
+    /**
+     * Not cached at all, for types annotated with
+     * <tt>@Cacheable("false")</tt>: invoices and their items (which are
+     * changed in bulk while being calculated), and numerators.
+     */
+    NONE;
+
+    static final List<Class<?>> PINNED_TYPES = ImmutableList.<Class<?>> of(
+            AgreementType.class,
+            AgreementRoleType.class,
+            AgreementRoleCommunicationChannelType.class,
+            Charge.class,
+            ChargeGroup.class,
+            Currency.class,
+            Country.class,
+            State.class,
+            Index.class,
+            IndexBase.class,
+            IndexValue.class,
+            LeaseType.class,
+            Tax.class,
+            TaxRate.class);
+
+    public static CachePolicy of(final Class<?> type) {
+        for (Class<?> cls = type; cls != null; cls = cls.getSuperclass()) {
+            final Cacheable cacheable = cls.getAnnotation(Cacheable.class);
+            if (cacheable != null && "false".equals(cacheable.value())) {
+                return NONE;
+            }
+        }
+        for (Class<?> pinnedType : PINNED_TYPES) {
+            if (pinnedType.isAssignableFrom(type)) {
+                return PINNED;
+            }
+        }
+        return SOFT;
+    }
+
+}
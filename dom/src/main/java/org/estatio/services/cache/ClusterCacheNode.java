@@ -0,0 +1,283 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+import javax.jdo.Transaction;
+import javax.jdo.datastore.DataStoreCache;
+
+import com.google.common.collect.Maps;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.estatio.services.metrics.EstatioMetrics;
+
+/**
+ * Keeps the L2 cache of one {@link PersistenceManagerFactory} (one webapp
+ * node) coherent with those of the other nodes of the cluster, using the
+ * database as the channel.
+ * 
+ * <p>
+ * Every committed change to a cached object is recorded as a
+ * {@link CacheInvalidation} (see {@link CacheInvalidationListener}); every
+ * node {@link #poll() polls} for the ones recorded by the other nodes and
+ * evicts the objects concerned. Until then another node may read a stale
+ * copy, but any change it makes to it is still refused by the optimistic
+ * locking check on the object's version.
+ * 
+ * <p>
+ * Polling re-reads the invalidations of the last {@link #OVERLAP_MILLIS},
+ * so that those committed late or by a node whose clock is somewhat behind
+ * are not missed; the ones already applied are remembered so that they are
+ * evicted only once.
+ */
+public class ClusterCacheNode {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClusterCacheNode.class);
+
+    static final long OVERLAP_MILLIS = 10000L;
+    static final long RETENTION_MILLIS = 60 * 60 * 1000L;
+
+    private static final ConcurrentMap<PersistenceManagerFactory, ClusterCacheNode> NODES =
+            new ConcurrentHashMap<PersistenceManagerFactory, ClusterCacheNode>();
+
+    public static ClusterCacheNode of(final PersistenceManagerFactory persistenceManagerFactory) {
+        final ClusterCacheNode node = NODES.get(persistenceManagerFactory);
+        if (node != null) {
+            return node;
+        }
+        final ClusterCacheNode created = new ClusterCacheNode(persistenceManagerFactory);
+        final ClusterCacheNode previous = NODES.putIfAbsent(persistenceManagerFactory, created);
+        return previous != null ? previous : created;
+    }
+
+    // //////////////////////////////////////
+
+    private final PersistenceManagerFactory persistenceManagerFactory;
+    private final String name = UUID.randomUUID().toString();
+
+    private final Map<Object, Long> applied = Maps.newHashMap();
+    private long lastPolled = System.currentTimeMillis();
+    private long lastPurged = lastPolled;
+
+    private ClusterCacheNode(final PersistenceManagerFactory persistenceManagerFactory) {
+        this.persistenceManagerFactory = persistenceManagerFactory;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Records the given objects as changed, in a transaction of its own; for
+     * changes made outside of a transaction, or directly in the database.
+     * 
+     * <p>
+     * Should that fail, the objects are evicted from this node's cache, so
+     * that at least this node re-reads them; the other nodes only will once
+     * evicted from their cache for some other reason, which is why the
+     * failure is counted as <tt>clusterCache.publishFailed</tt>.
+     * 
+     * @param objectIds
+     *            - the JDO object ids of the changed objects, mapped to their
+     *            type
+     * @param types
+     *            - the types of which all instances have changed
+     */
+    void publish(final Map<Object, Class<?>> objectIds, final Collection<Class<?>> types) {
+        final PersistenceManager persistenceManager = persistenceManagerFactory.getPersistenceManager();
+        final Transaction transaction = persistenceManager.currentTransaction();
+        try {
+            transaction.begin();
+            record(persistenceManager, objectIds, types);
+            transaction.commit();
+            published(objectIds, types);
+        } catch (RuntimeException ex) {
+            LOG.warn("Could not publish invalidation of " + objectIds.size() + " objects and " + types, ex);
+            evictLocally(objectIds, types);
+            EstatioMetrics.count("clusterCache.publishFailed", objectIds.size() + types.size());
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            persistenceManager.close();
+        }
+    }
+
+    /**
+     * Records the given objects as changed, in the current transaction of the
+     * given persistence manager; committed (or rolled back) together with the
+     * changes themselves.
+     */
+    void record(
+            final PersistenceManager persistenceManager,
+            final Map<Object, Class<?>> objectIds,
+            final Collection<Class<?>> types) {
+        final long now = System.currentTimeMillis();
+        for (Map.Entry<Object, Class<?>> entry : objectIds.entrySet()) {
+            persistenceManager.makePersistent(
+                    new CacheInvalidation(name, now, entry.getValue().getName(), entry.getKey().toString()));
+        }
+        for (Class<?> type : types) {
+            persistenceManager.makePersistent(new CacheInvalidation(name, now, type.getName(), null));
+        }
+    }
+
+    /**
+     * Records the given objects as changed, in the current transaction of the
+     * given persistence manager; for changes made directly in the database
+     * as that transaction completes, so after the changes made through
+     * DataNucleus have been collected.
+     */
+    public void recordChanged(final PersistenceManager persistenceManager, final Map<Object, Class<?>> objectIds) {
+        record(persistenceManager, objectIds, Collections.<Class<?>> emptyList());
+    }
+
+    void published(final Map<Object, Class<?>> objectIds, final Collection<Class<?>> types) {
+        EstatioMetrics.count("clusterCache.published", objectIds.size() + types.size());
+    }
+
+    void evictLocally(final Map<Object, Class<?>> objectIds, final Collection<Class<?>> types) {
+        final DataStoreCache cache = persistenceManagerFactory.getDataStoreCache();
+        cache.evictAll(objectIds.keySet());
+        for (Class<?> type : types) {
+            cache.evictAll(true, type);
+        }
+    }
+
+    /**
+     * Evicts all instances of the given types, on this node and (once they
+     * have polled) on all other nodes; for changes made in bulk, directly in
+     * the database.
+     * 
+     * <p>
+     * If the given transaction is active, the eviction is recorded as it
+     * commits (and repeated on this node once committed), so that no node
+     * re-reads the instances before the changes are visible.
+     */
+    public void evictAll(final Transaction transaction, final Class<?>... types) {
+        evictLocally(Collections.<Object, Class<?>> emptyMap(), Arrays.asList(types));
+        if (!transaction.isActive()) {
+            publish(Collections.<Object, Class<?>> emptyMap(), Arrays.asList(types));
+            return;
+        }
+        PendingInvalidations.enlist(this, transaction).addAll(Arrays.asList(types));
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Evicts the objects changed by other nodes since the last poll, and
+     * pins the {@link CachePolicy#PINNED reference data} loaded since.
+     * 
+     * @return the number of invalidations applied
+     */
+    public synchronized int poll() {
+        final long now = System.currentTimeMillis();
+        final long since = lastPolled - OVERLAP_MILLIS;
+        final DataStoreCache cache = persistenceManagerFactory.getDataStoreCache();
+        final PersistenceManager persistenceManager = persistenceManagerFactory.getPersistenceManager();
+        int evicted = 0;
+        try {
+            final Query query = persistenceManager.newNamedQuery(CacheInvalidation.class, "findSince");
+            for (Object result : (Collection<?>) query.execute(since)) {
+                final CacheInvalidation invalidation = (CacheInvalidation) result;
+                final Object invalidationId = JDOHelper.getObjectId(invalidation);
+                if (name.equals(invalidation.getNode()) || applied.containsKey(invalidationId)) {
+                    continue;
+                }
+                evict(cache, persistenceManager, invalidation);
+                applied.put(invalidationId, invalidation.getTimestampEpoch());
+                evicted++;
+            }
+            query.closeAll();
+            if (now - lastPurged > RETENTION_MILLIS) {
+                purge(persistenceManager, now - RETENTION_MILLIS);
+                lastPurged = now;
+            }
+        } finally {
+            persistenceManager.close();
+        }
+        forgetAppliedBefore(since);
+        lastPolled = now;
+        for (Class<?> pinnedType : CachePolicy.PINNED_TYPES) {
+            cache.pinAll(true, pinnedType);
+        }
+        EstatioMetrics.count("clusterCache.evicted", evicted);
+        return evicted;
+    }
+
+    private static void evict(
+            final DataStoreCache cache,
+            final PersistenceManager persistenceManager,
+            final CacheInvalidation invalidation) {
+        final Class<?> type;
+        try {
+            type = Class.forName(invalidation.getObjectType(), true, Thread.currentThread().getContextClassLoader());
+        } catch (ClassNotFoundException ex) {
+            // not known to this (older) node, so cannot be cached either
+            return;
+        }
+        final String identifier = invalidation.getIdentifier();
+        if (identifier == null) {
+            cache.evictAll(true, type);
+        } else {
+            cache.evict(persistenceManager.newObjectIdInstance(type, identifier));
+        }
+    }
+
+    private void forgetAppliedBefore(final long since) {
+        for (Iterator<Long> iterator = applied.values().iterator(); iterator.hasNext();) {
+            if (iterator.next() < since) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void purge(final PersistenceManager persistenceManager, final long before) {
+        final Transaction transaction = persistenceManager.currentTransaction();
+        try {
+            transaction.begin();
+            final Query query = persistenceManager.newNamedQuery(CacheInvalidation.class, "findBefore");
+            final long deleted = query.deletePersistentAll(before);
+            transaction.commit();
+            EstatioMetrics.count("clusterCache.purged", deleted);
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+        }
+    }
+
+}
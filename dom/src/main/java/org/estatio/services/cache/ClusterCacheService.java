@@ -0,0 +1,138 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.cache;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.core.runtime.authentication.standard.SimpleSession;
+import org.apache.isis.core.runtime.system.context.IsisContext;
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+/**
+ * Polls for the changes made by the other nodes of the cluster every
+ * <tt>estatio.cache.cluster.pollMillis</tt> milliseconds (not at all if not
+ * set, for a single node); see {@link ClusterCacheNode}.
+ */
+@Hidden
+public class ClusterCacheService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClusterCacheService.class);
+
+    static final String POLL_MILLIS_KEY = "estatio.cache.cluster.pollMillis";
+
+    private ScheduledExecutorService scheduler;
+    private volatile PersistenceManagerFactory persistenceManagerFactory;
+
+    @PostConstruct
+    public void init(final Map<String, String> properties) {
+        final String pollMillis = properties.get(POLL_MILLIS_KEY);
+        if (pollMillis == null || Long.parseLong(pollMillis) <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "cluster-cache-poller");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final long interval = Long.parseLong(pollMillis);
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    poll();
+                } catch (RuntimeException ex) {
+                    LOG.warn("Could not poll for cache invalidations", ex);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Evicts all instances of the given types from the L2 cache of every
+     * node; to be called after changing them with SQL statements, in the same
+     * transaction.
+     */
+    @Programmatic
+    public void evictAll(final Class<?>... types) {
+        final PersistenceManager persistenceManager = isisJdoSupport.getJdoPersistenceManager();
+        ClusterCacheNode.of(persistenceManager.getPersistenceManagerFactory())
+                .evictAll(persistenceManager.currentTransaction(), types);
+    }
+
+    @Programmatic
+    public int poll() {
+        return ClusterCacheNode.of(getPersistenceManagerFactory()).poll();
+    }
+
+    /**
+     * Looked up in a session of its own the first time, as the poller runs
+     * outside of any request.
+     */
+    private PersistenceManagerFactory getPersistenceManagerFactory() {
+        if (persistenceManagerFactory == null) {
+            final boolean inSession = IsisContext.inSession();
+            if (!inSession) {
+                IsisContext.openSession(new SimpleSession("__cluster-cache", new String[0]));
+            }
+            try {
+                persistenceManagerFactory = isisJdoSupport.getJdoPersistenceManager().getPersistenceManagerFactory();
+            } finally {
+                if (!inSession) {
+                    IsisContext.closeSession();
+                }
+            }
+        }
+        return persistenceManagerFactory;
+    }
+
+    // //////////////////////////////////////
+
+    private IsisJdoSupport isisJdoSupport;
+
+    public final void injectIsisJdoSupport(final IsisJdoSupport isisJdoSupport) {
+        this.isisJdoSupport = isisJdoSupport;
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Transaction;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * The objects (and types of which all instances were) changed in a single transaction, {@link ClusterCacheNode#record(javax.jdo.PersistenceManager, Map, java.util.Collection)
+ * recorded} as it commits, so that the invalidations are committed (or rolled
+ * back) together with the changes themselves.
+ * 
+ * <p>
+ * The transaction is flushed first, so that the changes still pending are
+ * collected too; the {@link CacheInvalidation}s themselves are new, and so
+ * are not collected.
+ * 
+ * <p>
+ * Registered as the transaction's {@link Synchronization} for the duration
+ * of that transaction, delegating to the one that was registered before (if
+ * any) and restoring it afterwards.
+ */
+class PendingInvalidations implements Synchronization {
+
+    static PendingInvalidations enlist(final ClusterCacheNode node, final Transaction transaction) {
+        // looked up by key, as it may have been wrapped by a synchronization
+        // registered since
+        final PersistenceManager persistenceManager = transaction.getPersistenceManager();
+        final PendingInvalidations current =
+                (PendingInvalidations) persistenceManager.getUserObject(PendingInvalidations.class);
+        if (current != null) {
+            return current;
+        }
+        final PendingInvalidations pending = new PendingInvalidations(node, transaction, transaction.getSynchronization());
+        transaction.setSynchronization(pending);
+        persistenceManager.putUserObject(PendingInvalidations.class, pending);
+        return pending;
+    }
+
+    private final ClusterCacheNode node;
+    private final Transaction transaction;
+    private final Synchronization previous;
+
+    private final Map<Object, Class<?>> objectIds = Maps.newLinkedHashMap();
+    private final Set<Class<?>> types = Sets.newLinkedHashSet();
+
+    private PendingInvalidations(
+            final ClusterCacheNode node,
+            final Transaction transaction,
+            final Synchronization previous) {
+        this.node = node;
+        this.transaction = transaction;
+        this.previous = previous;
+    }
+
+    void add(final Object objectId, final Class<?> type) {
+        objectIds.put(objectId, type);
+    }
+
+    void addAll(final Collection<Class<?>> types) {
+        this.types.addAll(types);
+    }
+
+    @Override
+    public void beforeCompletion() {
+        if (previous != null) {
+            previous.beforeCompletion();
+        }
+        final PersistenceManager persistenceManager = transaction.getPersistenceManager();
+        persistenceManager.flush();
+        if (!objectIds.isEmpty() || !types.isEmpty()) {
+            node.record(persistenceManager, objectIds, types);
+        }
+    }
+
+    @Override
+    public void afterCompletion(final int status) {
+        transaction.getPersistenceManager().removeUserObject(PendingInvalidations.class);
+        if (transaction.getSynchronization() == this) {
+            transaction.setSynchronization(previous);
+        }
+        if (previous != null) {
+            previous.afterCompletion(status);
+        }
+        if (status != Status.STATUS_COMMITTED) {
+            return;
+        }
+        if (!types.isEmpty()) {
+            // read again (from before the commit) in the meantime
+            node.evictLocally(Collections.<Object, Class<?>> emptyMap(), types);
+        }
+        if (!objectIds.isEmpty() || !types.isEmpty()) {
+            node.published(objectIds, types);
+        }
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.etag;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.datastore.JDOConnection;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.bookmark.Bookmark;
+import org.apache.isis.applib.services.bookmark.BookmarkService;
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+import org.estatio.dom.WithLastModified;
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.lease.Lease;
+import org.estatio.services.metrics.EstatioMetrics;
+
+/**
+ * Derives the (weak) HTTP entity tags of the representations of an object
+ * from its optimistic locking version, so that a conditional request can be
+ * answered without rendering the representation.
+ * 
+ * <p>
+ * Only {@link WithLastModified} entities (leases and invoices) are tagged.
+ * Changing one of their items or terms does not increment their version
+ * (see {@link org.estatio.dom.LastModifiedListener}), so their tag also
+ * covers the state of those {@link WithLastModified.Part parts}, as read by a
+ * single query: the last modified time of the whole, maintained whenever
+ * a part is stored or deleted, and the versions of the parts. The version of
+ * other entities does not cover their collections, so their representations
+ * are not tagged at all. The titles of other objects referenced by the
+ * representation are not covered, and may be stale until the object itself
+ * changes.
+ */
+@Hidden
+public class EntityTagService {
+
+    /**
+     * Selects the state of the parts of a whole, given its id. The versions
+     * of the parts are summed rather than taking the largest, as they are
+     * incremented independently of each other.
+     */
+    private static final Map<Class<?>, String> PARTS_QUERIES = ImmutableMap.<Class<?>, String> of(
+            Lease.class,
+            "SELECT \"lastModified\", "
+                    + "(SELECT SUM(\"LeaseItem\".\"version\") FROM \"LeaseItem\" "
+                    + "WHERE \"LeaseItem\".\"leaseId\" = \"Lease\".\"id\"), "
+                    + "(SELECT SUM(\"LeaseTerm\".\"version\") FROM \"LeaseTerm\" "
+                    + "JOIN \"LeaseItem\" ON \"LeaseItem\".\"id\" = \"LeaseTerm\".\"leaseItemId\" "
+                    + "WHERE \"LeaseItem\".\"leaseId\" = \"Lease\".\"id\"), "
+                    + "(SELECT SUM(\"BreakOption\".\"version\") FROM \"BreakOption\" "
+                    + "WHERE \"BreakOption\".\"leaseId\" = \"Lease\".\"id\") "
+                    + "FROM \"Lease\" WHERE \"id\" = ?",
+            Invoice.class,
+            "SELECT \"lastModified\", "
+                    + "(SELECT SUM(\"InvoiceItem\".\"version\") FROM \"InvoiceItem\" "
+                    + "WHERE \"InvoiceItem\".\"invoiceId\" = \"Invoice\".\"id\") "
+                    + "FROM \"Invoice\" WHERE \"id\" = ?");
+
+    /**
+     * The entity tag of the representation of the object identified by the
+     * object type and identifier (as in a {@link Bookmark}), or <tt>null</tt>
+     * if there is no such object or if the object is not a versioned
+     * {@link WithLastModified}.
+     * 
+     * @param variant
+     *            - distinguishes the representations of the same object
+     *            (eg. by sub-resource, query string, media type and user).
+     */
+    @Programmatic
+    public String entityTagFor(final String objectType, final String identifier, final String variant) {
+        final Object object;
+        try {
+            object = bookmarkService.lookup(new Bookmark(objectType, identifier));
+        } catch (RuntimeException ex) {
+            // malformed identifier; let the request fail the usual way
+            return null;
+        }
+        if (!(object instanceof WithLastModified)) {
+            return null;
+        }
+        final Object version = JDOHelper.getVersion(object);
+        final String partsQuery = partsQueryFor(object.getClass());
+        if (version == null || partsQuery == null) {
+            return null;
+        }
+        final String parts = partsOf(partsQuery, JDOHelper.getObjectId(object));
+        EstatioMetrics.count("etag.computed");
+        return "W/\"" + version + "-" + hashOf(objectType + ":" + identifier + "|" + parts + "|" + variant) + "\"";
+    }
+
+    private static String partsQueryFor(final Class<?> type) {
+        for (Map.Entry<Class<?>, String> entry : PARTS_QUERIES.entrySet()) {
+            if (entry.getKey().isAssignableFrom(type)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The columns selected by the query, read directly from the database as
+     * the last modified time of a whole is not maintained through
+     * DataNucleus.
+     */
+    private String partsOf(final String partsQuery, final Object objectId) {
+        final JDOConnection jdoConnection = isisJdoSupport.getJdoPersistenceManager().getDataStoreConnection();
+        try {
+            final Connection connection = (Connection) jdoConnection.getNativeConnection();
+            final PreparedStatement statement = connection.prepareStatement(partsQuery);
+            try {
+                // the object id is of the form 123[OID]org.estatio.dom.lease.Lease
+                statement.setLong(1, Long.parseLong(objectId.toString().split("\\[OID\\]")[0]));
+                final ResultSet resultSet = statement.executeQuery();
+                final StringBuilder buf = new StringBuilder();
+                if (resultSet.next()) {
+                    for (int i = 1; i <= resultSet.getMetaData().getColumnCount(); i++) {
+                        buf.append(resultSet.getString(i)).append(";");
+                    }
+                }
+                return buf.toString();
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Could not read the parts of " + objectId, ex);
+        } finally {
+            jdoConnection.close();
+        }
+    }
+
+    /**
+     * Whether the value of an <tt>If-None-Match</tt> header matches the
+     * entity tag (weak comparison, as appropriate for <tt>GET</tt>).
+     */
+    @Programmatic
+    public boolean matches(final String ifNoneMatch, final String entityTag) {
+        if (ifNoneMatch == null || entityTag == null) {
+            return false;
+        }
+        final String opaqueTag = opaqueTagOf(entityTag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            final String trimmed = candidate.trim();
+            if ("*".equals(trimmed) || opaqueTagOf(trimmed).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTagOf(final String entityTag) {
+        return entityTag.startsWith("W/") ? entityTag.substring(2) : entityTag;
+    }
+
+    private static String hashOf(final String str) {
+        try {
+            final byte[] hash = MessageDigest.getInstance("SHA-1").digest(str.getBytes("UTF-8"));
+            final StringBuilder buf = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                buf.append(String.format("%02x", hash[i]));
+            }
+            return buf.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // //////////////////////////////////////
+
+    private BookmarkService bookmarkService;
+
+    public final void injectBookmarkService(final BookmarkService bookmarkService) {
+        this.bookmarkService = bookmarkService;
+    }
+
+    private IsisJdoSupport isisJdoSupport;
+
+    public final void injectIsisJdoSupport(final IsisJdoSupport isisJdoSupport) {
+        this.isisJdoSupport = isisJdoSupport;
+    }
+
+}
@@ -0,0 +1,368 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.joda.time.DateTime;
+
+/**
+ * Registry of the {@link Timer timers}, {@link Counter counters} and
+ * {@link Histogram histograms} of Estatio, keyed by name and by the
+ * {@link MetricsTags tags} in effect on the current thread.
+ * 
+ * <p>
+ * Accessed statically, so that entities as well as services can record
+ * metrics without having anything injected. Recording takes no locks, so the
+ * metrics can be left on in production; they can nevertheless be
+ * {@link #setEnabled(boolean) disabled}. Only the metrics of the last
+ * {@link #MAX_RUNS} runs are kept.
+ * 
+ * <p>
+ * Exposed through JMX as <tt>org.estatio:type=Metrics</tt>, and through the
+ * administration menu.
+ */
+public final class EstatioMetrics {
+
+    public static final String OBJECT_NAME = "org.estatio:type=Metrics";
+
+    static final int MAX_RUNS = 20;
+
+    private static final ConcurrentMap<MetricKey, Timer> TIMERS = Maps.newConcurrentMap();
+    private static final ConcurrentMap<MetricKey, Counter> COUNTERS = Maps.newConcurrentMap();
+    private static final ConcurrentMap<MetricKey, Histogram> HISTOGRAMS = Maps.newConcurrentMap();
+
+    private static final Set<String> RUN_IDS = Sets.newLinkedHashSet();
+    private static final AtomicLong RUN_SEQUENCE = new AtomicLong();
+
+    private static volatile boolean enabled = true;
+
+    static {
+        registerMBean();
+    }
+
+    private EstatioMetrics() {
+    }
+
+    // //////////////////////////////////////
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(final boolean enabled) {
+        EstatioMetrics.enabled = enabled;
+    }
+
+    /**
+     * A new, unique id for a run, to be used as a {@link MetricsTags tag}.
+     */
+    public static String newRunId(final String prefix) {
+        return String.format("%s-%s-%d", prefix, DateTime.now().toString("yyyyMMddHHmmss"), RUN_SEQUENCE.incrementAndGet());
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Starts timing; the returned context must be
+     * {@link Timer.Context#stop() stopped} in a <tt>finally</tt> block.
+     */
+    public static Timer.Context time(final String name) {
+        if (!enabled) {
+            return Timer.Context.NOOP;
+        }
+        return lookup(TIMERS, name, Timer.class).start();
+    }
+
+    public static void count(final String name) {
+        count(name, 1);
+    }
+
+    public static void count(final String name, final long n) {
+        if (enabled) {
+            lookup(COUNTERS, name, Counter.class).increment(n);
+        }
+    }
+
+    public static void record(final String name, final long value) {
+        if (enabled) {
+            lookup(HISTOGRAMS, name, Histogram.class).update(value);
+        }
+    }
+
+    private static <T> T lookup(final ConcurrentMap<MetricKey, T> metrics, final String name, final Class<T> cls) {
+        final MetricKey key = MetricsTags.current().keyFor(name);
+        T metric = metrics.get(key);
+        if (metric == null) {
+            retain(key.getRunId());
+            try {
+                metric = cls.newInstance();
+            } catch (InstantiationException e) {
+                throw new IllegalStateException(e);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+            final T existing = metrics.putIfAbsent(key, metric);
+            if (existing != null) {
+                metric = existing;
+            }
+        }
+        return metric;
+    }
+
+    /**
+     * Drops the metrics of the oldest run once more than {@link #MAX_RUNS}
+     * runs have been seen.
+     */
+    private static void retain(final String runId) {
+        if (runId == null) {
+            return;
+        }
+        synchronized (RUN_IDS) {
+            if (!RUN_IDS.add(runId) || RUN_IDS.size() <= MAX_RUNS) {
+                return;
+            }
+            final Iterator<String> iterator = RUN_IDS.iterator();
+            final String oldest = iterator.next();
+            iterator.remove();
+            removeRun(TIMERS, oldest);
+            removeRun(COUNTERS, oldest);
+            removeRun(HISTOGRAMS, oldest);
+        }
+    }
+
+    private static void removeRun(final Map<MetricKey, ?> metrics, final String runId) {
+        for (final Iterator<MetricKey> iterator = metrics.keySet().iterator(); iterator.hasNext();) {
+            if (runId.equals(iterator.next().getRunId())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public static void reset() {
+        synchronized (RUN_IDS) {
+            RUN_IDS.clear();
+            TIMERS.clear();
+            COUNTERS.clear();
+            HISTOGRAMS.clear();
+        }
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * One line per metric name, aggregated over all properties and runs.
+     * 
+     * @param nameFilter
+     *            - only the metrics whose name contains this; all if
+     *            <tt>null</tt>
+     */
+    public static List<String> summary(final String nameFilter) {
+        final List<String> lines = Lists.newArrayList();
+        for (Map.Entry<String, Timer> entry : aggregate(TIMERS, nameFilter, Timer.class).entrySet()) {
+            lines.add(formatTimer(entry.getKey(), entry.getValue()));
+        }
+        for (Map.Entry<String, Counter> entry : aggregateCounters(nameFilter).entrySet()) {
+            lines.add(formatCounter(entry.getKey(), entry.getValue()));
+        }
+        for (Map.Entry<String, Histogram> entry : aggregate(HISTOGRAMS, nameFilter, Histogram.class).entrySet()) {
+            lines.add(formatHistogram(entry.getKey(), entry.getValue()));
+        }
+        return lines;
+    }
+
+    /**
+     * One line per metric name and tags.
+     * 
+     * @param nameFilter
+     *            - only the metrics whose name contains this; all if
+     *            <tt>null</tt>
+     */
+    public static List<String> details(final String nameFilter) {
+        final List<String> lines = Lists.newArrayList();
+        for (Map.Entry<MetricKey, Timer> entry : TIMERS.entrySet()) {
+            if (matches(entry.getKey(), nameFilter)) {
+                lines.add(formatTimer(entry.getKey().toString(), entry.getValue()));
+            }
+        }
+        for (Map.Entry<MetricKey, Counter> entry : COUNTERS.entrySet()) {
+            if (matches(entry.getKey(), nameFilter)) {
+                lines.add(formatCounter(entry.getKey().toString(), entry.getValue()));
+            }
+        }
+        for (Map.Entry<MetricKey, Histogram> entry : HISTOGRAMS.entrySet()) {
+            if (matches(entry.getKey(), nameFilter)) {
+                lines.add(formatHistogram(entry.getKey().toString(), entry.getValue()));
+            }
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private static boolean matches(final MetricKey key, final String nameFilter) {
+        return nameFilter == null || key.getName().contains(nameFilter);
+    }
+
+    private static <T extends Histogram> SortedMap<String, T> aggregate(
+            final Map<MetricKey, T> metrics, final String nameFilter, final Class<T> cls) {
+        final SortedMap<String, T> aggregates = Maps.newTreeMap();
+        for (Map.Entry<MetricKey, T> entry : metrics.entrySet()) {
+            if (!matches(entry.getKey(), nameFilter)) {
+                continue;
+            }
+            final String name = entry.getKey().getName();
+            T aggregate = aggregates.get(name);
+            if (aggregate == null) {
+                try {
+                    aggregate = cls.newInstance();
+                } catch (InstantiationException e) {
+                    throw new IllegalStateException(e);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+                aggregates.put(name, aggregate);
+            }
+            entry.getValue().addTo(aggregate);
+        }
+        return aggregates;
+    }
+
+    private static SortedMap<String, Counter> aggregateCounters(final String nameFilter) {
+        final SortedMap<String, Counter> aggregates = Maps.newTreeMap();
+        for (Map.Entry<MetricKey, Counter> entry : COUNTERS.entrySet()) {
+            if (!matches(entry.getKey(), nameFilter)) {
+                continue;
+            }
+            final String name = entry.getKey().getName();
+            Counter aggregate = aggregates.get(name);
+            if (aggregate == null) {
+                aggregate = new Counter();
+                aggregates.put(name, aggregate);
+            }
+            aggregate.increment(entry.getValue().getCount());
+        }
+        return aggregates;
+    }
+
+    private static String formatTimer(final String name, final Timer timer) {
+        return String.format(
+                "%s: count=%d, total=%dms, mean=%.3fms, p95=%.3fms, max=%.3fms",
+                name,
+                timer.getCount(),
+                TimeUnit.NANOSECONDS.toMillis(timer.getSum()),
+                millis(timer.getMean()),
+                millis(timer.getPercentile(95)),
+                millis(timer.getMax()));
+    }
+
+    private static double millis(final long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    private static String formatCounter(final String name, final Counter counter) {
+        return String.format("%s: count=%d", name, counter.getCount());
+    }
+
+    private static String formatHistogram(final String name, final Histogram histogram) {
+        return String.format(
+                "%s: count=%d, mean=%d, p95=%d, max=%d",
+                name,
+                histogram.getCount(),
+                histogram.getMean(),
+                histogram.getPercentile(95),
+                histogram.getMax());
+    }
+
+    // //////////////////////////////////////
+
+    public interface MetricsMBean {
+
+        boolean isEnabled();
+
+        void setEnabled(boolean enabled);
+
+        String[] getSummary();
+
+        String[] details(String nameFilter);
+
+        void reset();
+    }
+
+    static class Metrics implements MetricsMBean {
+
+        @Override
+        public boolean isEnabled() {
+            return EstatioMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(final boolean enabled) {
+            EstatioMetrics.setEnabled(enabled);
+        }
+
+        @Override
+        public String[] getSummary() {
+            final List<String> summary = EstatioMetrics.summary(null);
+            return summary.toArray(new String[summary.size()]);
+        }
+
+        @Override
+        public String[] details(final String nameFilter) {
+            final List<String> details = EstatioMetrics.details(nameFilter);
+            return details.toArray(new String[details.size()]);
+        }
+
+        @Override
+        public void reset() {
+            EstatioMetrics.reset();
+        }
+    }
+
+    private static void registerMBean() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(new Metrics(), objectName);
+            }
+        } catch (JMException e) {
+            // metrics are still available through the administration menu
+        } catch (SecurityException e) {
+            // ditto
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of non-negative values, kept in power-of-two buckets so that
+ * recording a value is a handful of atomic additions and takes no locks.
+ * 
+ * <p>
+ * {@link #getPercentile(double) Percentiles} are therefore approximate: they
+ * return the upper bound of the bucket the percentile falls in.
+ */
+public class Histogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    public void update(final long value) {
+        final long v = value < 0 ? 0 : value;
+        count.incrementAndGet();
+        sum.addAndGet(v);
+        buckets.incrementAndGet(bucketFor(v));
+        long current = max.get();
+        while (v > current && !max.compareAndSet(current, v)) {
+            current = max.get();
+        }
+    }
+
+    static int bucketFor(final long value) {
+        return value == 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(value) - 1;
+    }
+
+    private static long upperBoundOf(final int bucket) {
+        return bucket >= BUCKETS - 2 ? Long.MAX_VALUE : (2L << bucket) - 1;
+    }
+
+    // //////////////////////////////////////
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        final long n = getCount();
+        return n == 0 ? 0 : getSum() / n;
+    }
+
+    /**
+     * @param percentile
+     *            - between 0 and 100
+     */
+    public long getPercentile(final double percentile) {
+        final long n = getCount();
+        if (n == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(n * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Adds the values recorded by this histogram to the other, eg to
+     * aggregate the histograms of one metric over all properties and runs.
+     */
+    void addTo(final Histogram other) {
+        other.count.addAndGet(count.get());
+        other.sum.addAndGet(sum.get());
+        for (int i = 0; i < BUCKETS; i++) {
+            other.buckets.addAndGet(i, buckets.get(i));
+        }
+        final long m = max.get();
+        long current = other.max.get();
+        while (m > current && !other.max.compareAndSet(current, m)) {
+            current = other.max.get();
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.metrics;
+
+import com.google.common.base.Objects;
+
+/**
+ * Identifies a metric by its name and the {@link MetricsTags tags} in effect
+ * when it was recorded.
+ */
+public final class MetricKey {
+
+    private final String name;
+    private final String property;
+    private final String runId;
+
+    public MetricKey(final String name, final String property, final String runId) {
+        this.name = name;
+        this.property = property;
+        this.runId = runId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Reference of the property, if any.
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * Id of the run, if any.
+     */
+    public String getRunId() {
+        return runId;
+    }
+
+    // //////////////////////////////////////
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(name, property, runId);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof MetricKey)) {
+            return false;
+        }
+        final MetricKey other = (MetricKey) obj;
+        return Objects.equal(name, other.name)
+                && Objects.equal(property, other.property)
+                && Objects.equal(runId, other.runId);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder(name);
+        if (property != null || runId != null) {
+            buf.append("{");
+            if (property != null) {
+                buf.append("property=").append(property);
+            }
+            if (runId != null) {
+                buf.append(property != null ? "," : "").append("run=").append(runId);
+            }
+            buf.append("}");
+        }
+        return buf.toString();
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.metrics;
+
+/**
+ * The tags (property and run id) that metrics recorded on the current thread
+ * are keyed by.
+ * 
+ * <p>
+ * Tags are entered around a unit of work, and must be exited in a
+ * <tt>finally</tt> block:
+ * 
+ * <pre>
+ * final MetricsTags tags = MetricsTags.enter(property.getReference(), runId);
+ * try {
+ *     ...
+ * } finally {
+ *     tags.exit();
+ * }
+ * </pre>
+ * 
+ * A tag that is passed as <tt>null</tt> is inherited from the enclosing
+ * tags, if any.
+ */
+public final class MetricsTags {
+
+    private static final ThreadLocal<MetricsTags> CURRENT = new ThreadLocal<MetricsTags>();
+
+    private static final MetricsTags NONE = new MetricsTags(null, null, null);
+
+    private final String property;
+    private final String runId;
+    private final MetricsTags previous;
+
+    private MetricsTags(final String property, final String runId, final MetricsTags previous) {
+        this.property = property;
+        this.runId = runId;
+        this.previous = previous;
+    }
+
+    public static MetricsTags enter(final String property, final String runId) {
+        final MetricsTags previous = CURRENT.get();
+        final MetricsTags outer = previous == null ? NONE : previous;
+        final MetricsTags tags = new MetricsTags(
+                property != null ? property : outer.property,
+                runId != null ? runId : outer.runId,
+                previous);
+        CURRENT.set(tags);
+        return tags;
+    }
+
+    public void exit() {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public static MetricsTags current() {
+        final MetricsTags tags = CURRENT.get();
+        return tags == null ? NONE : tags;
+    }
+
+    // //////////////////////////////////////
+
+    public String getProperty() {
+        return property;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    MetricKey keyFor(final String name) {
+        return new MetricKey(name, property, runId);
+    }
+
+}
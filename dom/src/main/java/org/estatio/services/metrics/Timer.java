@@ -0,0 +1,53 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.metrics;
+
+/**
+ * A {@link Histogram} of elapsed times, in nanoseconds.
+ */
+public class Timer extends Histogram {
+
+    /**
+     * Returned by {@link Timer#start()}; to be {@link #stop() stopped} in a
+     * <tt>finally</tt> block.
+     */
+    public static class Context {
+
+        static final Context NOOP = new Context(null);
+
+        private final Timer timer;
+        private final long start;
+
+        private Context(final Timer timer) {
+            this.timer = timer;
+            this.start = timer == null ? 0 : System.nanoTime();
+        }
+
+        public void stop() {
+            if (timer != null) {
+                timer.update(System.nanoTime() - start);
+            }
+        }
+    }
+
+    public Context start() {
+        return new Context(this);
+    }
+
+}
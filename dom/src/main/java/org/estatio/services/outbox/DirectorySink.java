@@ -0,0 +1,84 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.outbox;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes each message to a file of its own in the directory given by the
+ * <tt>estatio.outbox.sink.directory</tt> property, for another system to
+ * pick up; named after the time it was recorded and its id, so that a
+ * message delivered twice overwrites its earlier copy.
+ * 
+ * <p>
+ * Each file is written under a temporary name first and then renamed, so
+ * that it is never picked up half-written.
+ */
+public class DirectorySink implements OutboxSink {
+
+    static final String DIRECTORY_KEY = "estatio.outbox.sink.directory";
+
+    private static final String ENCODING = "UTF-8";
+
+    private File directory;
+
+    public DirectorySink() {
+    }
+
+    public DirectorySink(final File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void init(final Map<String, String> properties) {
+        final String path = properties.get(DIRECTORY_KEY);
+        if (path == null) {
+            throw new IllegalArgumentException(DIRECTORY_KEY + " not set");
+        }
+        directory = new File(path);
+    }
+
+    @Override
+    public void deliver(final List<OutboxMessage> messages) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        for (OutboxMessage message : messages) {
+            final String name = String.format("%013d-%s.xml", message.getTimestampEpoch(), message.getId());
+            final File temporary = new File(directory, "." + name + ".tmp");
+            final Writer writer = new OutputStreamWriter(new FileOutputStream(temporary), ENCODING);
+            try {
+                writer.write(message.getPayload());
+            } finally {
+                writer.close();
+            }
+            final File file = new File(directory, name);
+            if (file.exists() && !file.delete() || !temporary.renameTo(file)) {
+                throw new IOException("Could not rename " + temporary + " to " + file);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,330 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.outbox;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+import javax.jdo.Transaction;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.estatio.dom.JdoColumnLength;
+import org.estatio.services.metrics.EstatioMetrics;
+import org.estatio.services.metrics.Timer;
+
+/**
+ * Delivers the {@link OutboxEvent}s recorded by committed transactions to
+ * the {@link OutboxSink}, a batch at a time, using a persistence manager
+ * (and transaction) of its own.
+ * 
+ * <p>
+ * The events due are read in the order they were recorded, rendered by the
+ * {@link OutboxRenderer} of their type of object and delivered together. If
+ * the batch cannot be delivered, each of its events is attempted again after
+ * a delay that doubles with every attempt, up to the maximum number of
+ * attempts after which it is marked {@link OutboxStatus#FAILED failed}. An
+ * event is held back as long as an earlier event of the same object has not
+ * been delivered, so that the events of an object arrive in order; the
+ * events held back do not count towards the batch.
+ * 
+ * <p>
+ * The outcome is recorded when the transaction commits; if another node
+ * dispatched the same events meanwhile, the version check makes this commit
+ * fail, and the events are delivered again by the next dispatch (see
+ * {@link OutboxSink}).
+ */
+public class OutboxDispatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    static final long BACKOFF_MILLIS_MAX = 60 * 60 * 1000L;
+    static final long RETENTION_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+    static final long PURGE_INTERVAL_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private static final OutboxRenderer REFERENCE_RENDERER = new ReferenceRenderer();
+
+    private final PersistenceManagerFactory persistenceManagerFactory;
+    private final Map<String, OutboxRenderer> renderers;
+    private final OutboxSink sink;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    private long lastPurged = System.currentTimeMillis();
+
+    OutboxDispatcher(
+            final PersistenceManagerFactory persistenceManagerFactory,
+            final Map<String, OutboxRenderer> renderers,
+            final OutboxSink sink,
+            final int batchSize,
+            final int maxAttempts,
+            final long backoffMillis) {
+        this.persistenceManagerFactory = persistenceManagerFactory;
+        this.renderers = renderers;
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Delivers the next batch of events that are due.
+     * 
+     * @return the number of events delivered
+     */
+    public synchronized int dispatch() {
+        final long now = System.currentTimeMillis();
+        final PersistenceManager persistenceManager = persistenceManagerFactory.getPersistenceManager();
+        final Transaction transaction = persistenceManager.currentTransaction();
+        int delivered = 0;
+        int failed = 0;
+        try {
+            transaction.begin();
+            final Map<String, Long> heldBackFrom = earliestUndeliverable(persistenceManager, now);
+
+            final List<OutboxEvent> rendered = Lists.newArrayList();
+            final List<OutboxMessage> messages = Lists.newArrayList();
+            // held back events are skipped, so carry on reading until the
+            // batch is filled or there are no more events due
+            int start = 0;
+            List<OutboxEvent> events;
+            do {
+                events = findDue(persistenceManager, now, start);
+                start += events.size();
+                for (OutboxEvent event : events) {
+                    if (messages.size() == batchSize) {
+                        break;
+                    }
+                    final String key = keyOf(event.getObjectType(), event.getIdentifier());
+                    final Long from = heldBackFrom.get(key);
+                    if (from != null && from < event.getTimestampEpoch()) {
+                        continue;
+                    }
+                    try {
+                        messages.add(render(persistenceManager, event));
+                        rendered.add(event);
+                    } catch (RuntimeException ex) {
+                        LOG.warn("Could not render " + event.getEventType() + " of " + event.getIdentifier(), ex);
+                        failed(event, ex, now);
+                        failed++;
+                        heldBackFrom.put(key, event.getTimestampEpoch());
+                    }
+                }
+            } while (messages.size() < batchSize && events.size() == batchSize);
+            if (!messages.isEmpty()) {
+                final Timer.Context timer = EstatioMetrics.time("outbox.deliver");
+                try {
+                    sink.deliver(messages);
+                    for (OutboxEvent event : rendered) {
+                        event.setStatus(OutboxStatus.DELIVERED);
+                        event.setDeliveredEpoch(now);
+                        event.setAttempts(event.getAttempts() + 1);
+                        event.setLastError(null);
+                    }
+                    delivered = rendered.size();
+                } catch (Exception ex) {
+                    LOG.warn("Could not deliver " + messages.size() + " events", ex);
+                    for (OutboxEvent event : rendered) {
+                        failed(event, ex, now);
+                    }
+                    failed += rendered.size();
+                } finally {
+                    timer.stop();
+                }
+            }
+            if (now - lastPurged > PURGE_INTERVAL_MILLIS) {
+                purge(persistenceManager, now - RETENTION_MILLIS);
+                lastPurged = now;
+            }
+            transaction.commit();
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            persistenceManager.close();
+        }
+        EstatioMetrics.count("outbox.delivered", delivered);
+        EstatioMetrics.count("outbox.failed", failed);
+        return delivered;
+    }
+
+    /**
+     * The next page of (at most a batch of) the events due, in the order
+     * recorded.
+     */
+    @SuppressWarnings("unchecked")
+    private List<OutboxEvent> findDue(
+            final PersistenceManager persistenceManager,
+            final long now,
+            final int start) {
+        final Query query = persistenceManager.newNamedQuery(OutboxEvent.class, "findDue");
+        query.setRange(start, start + batchSize);
+        final List<OutboxEvent> events = Lists.newArrayList(
+                (Collection<OutboxEvent>) query.execute(OutboxStatus.PENDING, now));
+        query.closeAll();
+        return events;
+    }
+
+    /**
+     * The time of the earliest event of each object that cannot be delivered
+     * now, as it failed or is waiting to be attempted again.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Long> earliestUndeliverable(
+            final PersistenceManager persistenceManager,
+            final long now) {
+        final Map<String, Long> earliest = Maps.newHashMap();
+        final Query query = persistenceManager.newNamedQuery(OutboxEvent.class, "findEarliestUndeliverable");
+        for (Object[] row : (Collection<Object[]>) query.execute(OutboxStatus.FAILED, OutboxStatus.PENDING, now)) {
+            earliest.put(keyOf((String) row[0], (String) row[1]), ((Number) row[2]).longValue());
+        }
+        query.closeAll();
+        return earliest;
+    }
+
+    private OutboxMessage render(final PersistenceManager persistenceManager, final OutboxEvent event) {
+        final Class<?> type;
+        try {
+            type = Class.forName(event.getObjectType(), true, Thread.currentThread().getContextClassLoader());
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException("Unknown type " + event.getObjectType(), ex);
+        }
+        final Object target = persistenceManager.getObjectById(
+                persistenceManager.newObjectIdInstance(type, event.getIdentifier()));
+        final OutboxRenderer renderer = renderers.containsKey(event.getObjectType())
+                ? renderers.get(event.getObjectType())
+                : REFERENCE_RENDERER;
+        return new OutboxMessage(
+                idOf(event),
+                event.getEventType(),
+                event.getObjectType(),
+                event.getIdentifier(),
+                event.getTimestampEpoch(),
+                renderer.render(event.getEventType(), target));
+    }
+
+    private void failed(final OutboxEvent event, final Exception ex, final long now) {
+        final int attempts = event.getAttempts() + 1;
+        event.setAttempts(attempts);
+        event.setLastError(truncate(String.valueOf(ex.getMessage() != null ? ex.getMessage() : ex)));
+        if (attempts >= maxAttempts) {
+            event.setStatus(OutboxStatus.FAILED);
+        } else {
+            event.setNextAttemptEpoch(now + backoffMillis(backoffMillis, attempts));
+        }
+    }
+
+    /**
+     * The delay before the next attempt: the initial delay, doubled for
+     * every attempt after the first, but at most {@link #BACKOFF_MILLIS_MAX}.
+     */
+    static long backoffMillis(final long initialMillis, final int attempts) {
+        final long backoff = initialMillis << Math.min(attempts - 1, 20);
+        return Math.min(backoff, BACKOFF_MILLIS_MAX);
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Makes the {@link OutboxStatus#FAILED failed} events due again.
+     * 
+     * @return the number of events
+     */
+    @SuppressWarnings("unchecked")
+    public int retryFailed() {
+        final long now = System.currentTimeMillis();
+        final PersistenceManager persistenceManager = persistenceManagerFactory.getPersistenceManager();
+        final Transaction transaction = persistenceManager.currentTransaction();
+        try {
+            transaction.begin();
+            final Query query = persistenceManager.newNamedQuery(OutboxEvent.class, "findByStatus");
+            final Collection<OutboxEvent> events = (Collection<OutboxEvent>) query.execute(OutboxStatus.FAILED);
+            for (OutboxEvent event : events) {
+                event.setStatus(OutboxStatus.PENDING);
+                event.setAttempts(0);
+                event.setNextAttemptEpoch(now);
+            }
+            final int retried = events.size();
+            transaction.commit();
+            return retried;
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            persistenceManager.close();
+        }
+    }
+
+    /**
+     * The number of events by status.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<OutboxStatus, Long> countByStatus() {
+        final Map<OutboxStatus, Long> counts = Maps.newEnumMap(OutboxStatus.class);
+        final PersistenceManager persistenceManager = persistenceManagerFactory.getPersistenceManager();
+        try {
+            final Query query = persistenceManager.newNamedQuery(OutboxEvent.class, "countByStatus");
+            for (Object[] row : (Collection<Object[]>) query.execute()) {
+                counts.put((OutboxStatus) row[0], ((Number) row[1]).longValue());
+            }
+        } finally {
+            persistenceManager.close();
+        }
+        return counts;
+    }
+
+    private static void purge(final PersistenceManager persistenceManager, final long before) {
+        final Query query = persistenceManager.newNamedQuery(OutboxEvent.class, "findDeliveredBefore");
+        final long deleted = query.deletePersistentAll(OutboxStatus.DELIVERED, before);
+        EstatioMetrics.count("outbox.purged", deleted);
+    }
+
+    // //////////////////////////////////////
+
+    private static String keyOf(final String objectType, final String identifier) {
+        return objectType + "|" + identifier;
+    }
+
+    /**
+     * The key of the event's datastore identity, eg <tt>123</tt> of
+     * <tt>123[OID]org.estatio.services.outbox.OutboxEvent</tt>.
+     */
+    private static String idOf(final OutboxEvent event) {
+        final String objectId = String.valueOf(JDOHelper.getObjectId(event));
+        final int bracket = objectId.indexOf('[');
+        return bracket > 0 ? objectId.substring(0, bracket) : objectId.replaceAll("[^A-Za-z0-9]", "_");
+    }
+
+    private static String truncate(final String str) {
+        return str.length() <= JdoColumnLength.DESCRIPTION ? str : str.substring(0, JdoColumnLength.DESCRIPTION);
+    }
+
+}
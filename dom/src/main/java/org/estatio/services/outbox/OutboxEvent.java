@@ -0,0 +1,216 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.outbox;
+
+import javax.jdo.annotations.IdGeneratorStrategy;
+import javax.jdo.annotations.IdentityType;
+import javax.jdo.annotations.VersionStrategy;
+
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Immutable;
+
+import org.estatio.dom.JdoColumnLength;
+
+/**
+ * An event to be delivered once the transaction that recorded it has
+ * committed: the type of event and a reference to the object concerned,
+ * rendered only when it is dispatched; see {@link OutboxDispatcher}.
+ */
+@javax.jdo.annotations.PersistenceCapable(
+        identityType = IdentityType.DATASTORE,
+        table = "OutboxEvent")
+@javax.jdo.annotations.DatastoreIdentity(
+        strategy = IdGeneratorStrategy.IDENTITY,
+        column = "id")
+// so that only one node records the outcome of a dispatch
+@javax.jdo.annotations.Version(
+        strategy = VersionStrategy.VERSION_NUMBER,
+        column = "version")
+@javax.jdo.annotations.Cacheable("false")
+@javax.jdo.annotations.Indices({
+        @javax.jdo.annotations.Index(
+                name = "OutboxEvent_status_nextAttemptEpoch_IDX",
+                members = { "status", "nextAttemptEpoch" }),
+        @javax.jdo.annotations.Index(
+                name = "OutboxEvent_objectType_identifier_IDX",
+                members = { "objectType", "identifier" })
+})
+@javax.jdo.annotations.Queries({
+        @javax.jdo.annotations.Query(
+                name = "findDue", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.services.outbox.OutboxEvent "
+                        + "WHERE status == :status "
+                        + "&& nextAttemptEpoch <= :now "
+                        + "ORDER BY timestampEpoch"),
+        @javax.jdo.annotations.Query(
+                name = "findEarliestUndeliverable", language = "JDOQL",
+                value = "SELECT objectType, identifier, min(timestampEpoch) "
+                        + "FROM org.estatio.services.outbox.OutboxEvent "
+                        + "WHERE status == :failed "
+                        + "|| (status == :pending && nextAttemptEpoch > :now) "
+                        + "GROUP BY objectType, identifier"),
+        @javax.jdo.annotations.Query(
+                name = "findByStatus", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.services.outbox.OutboxEvent "
+                        + "WHERE status == :status "
+                        + "ORDER BY timestampEpoch"),
+        @javax.jdo.annotations.Query(
+                name = "countByStatus", language = "JDOQL",
+                value = "SELECT status, count(this) "
+                        + "FROM org.estatio.services.outbox.OutboxEvent "
+                        + "GROUP BY status"),
+        @javax.jdo.annotations.Query(
+                name = "findDeliveredBefore", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.services.outbox.OutboxEvent "
+                        + "WHERE status == :status "
+                        + "&& deliveredEpoch < :before")
+})
+@Immutable
+@Hidden
+public class OutboxEvent {
+
+    private String eventType;
+
+    /**
+     * Eg <tt>submitToCoda</tt>; passed to the {@link OutboxRenderer}.
+     */
+    @javax.jdo.annotations.Column(allowsNull = "false", length = JdoColumnLength.NAME)
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(final String eventType) {
+        this.eventType = eventType;
+    }
+
+    // //////////////////////////////////////
+
+    private String objectType;
+
+    @javax.jdo.annotations.Column(allowsNull = "false", length = JdoColumnLength.FQCN)
+    public String getObjectType() {
+        return objectType;
+    }
+
+    public void setObjectType(final String objectType) {
+        this.objectType = objectType;
+    }
+
+    // //////////////////////////////////////
+
+    private String identifier;
+
+    /**
+     * The string form of the JDO object id of the object concerned.
+     */
+    @javax.jdo.annotations.Column(allowsNull = "false", length = JdoColumnLength.FQCN)
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public void setIdentifier(final String identifier) {
+        this.identifier = identifier;
+    }
+
+    // //////////////////////////////////////
+
+    private long timestampEpoch;
+
+    /**
+     * When the event was recorded, unique per node; the events of an object
+     * are delivered in this order.
+     */
+    @javax.jdo.annotations.Column(allowsNull = "false")
+    public long getTimestampEpoch() {
+        return timestampEpoch;
+    }
+
+    public void setTimestampEpoch(final long timestampEpoch) {
+        this.timestampEpoch = timestampEpoch;
+    }
+
+    // //////////////////////////////////////
+
+    private OutboxStatus status;
+
+    @javax.jdo.annotations.Column(allowsNull = "false", length = JdoColumnLength.STATUS_ENUM)
+    public OutboxStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(final OutboxStatus status) {
+        this.status = status;
+    }
+
+    // //////////////////////////////////////
+
+    private int attempts;
+
+    @javax.jdo.annotations.Column(allowsNull = "false")
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(final int attempts) {
+        this.attempts = attempts;
+    }
+
+    // //////////////////////////////////////
+
+    private long nextAttemptEpoch;
+
+    @javax.jdo.annotations.Column(allowsNull = "false")
+    public long getNextAttemptEpoch() {
+        return nextAttemptEpoch;
+    }
+
+    public void setNextAttemptEpoch(final long nextAttemptEpoch) {
+        this.nextAttemptEpoch = nextAttemptEpoch;
+    }
+
+    // //////////////////////////////////////
+
+    private Long deliveredEpoch;
+
+    @javax.jdo.annotations.Column(allowsNull = "true")
+    public Long getDeliveredEpoch() {
+        return deliveredEpoch;
+    }
+
+    public void setDeliveredEpoch(final Long deliveredEpoch) {
+        this.deliveredEpoch = deliveredEpoch;
+    }
+
+    // //////////////////////////////////////
+
+    private String lastError;
+
+    @javax.jdo.annotations.Column(allowsNull = "true", length = JdoColumnLength.DESCRIPTION)
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(final String lastError) {
+        this.lastError = lastError;
+    }
+
+}
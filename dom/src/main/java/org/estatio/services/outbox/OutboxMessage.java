@@ -0,0 +1,81 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.outbox;
+
+/**
+ * A rendered {@link OutboxEvent}, as handed to the {@link OutboxSink}.
+ */
+public class OutboxMessage {
+
+    private final String id;
+    private final String eventType;
+    private final String objectType;
+    private final String identifier;
+    private final long timestampEpoch;
+    private final String payload;
+
+    OutboxMessage(
+            final String id,
+            final String eventType,
+            final String objectType,
+            final String identifier,
+            final long timestampEpoch,
+            final String payload) {
+        this.id = id;
+        this.eventType = eventType;
+        this.objectType = objectType;
+        this.identifier = identifier;
+        this.timestampEpoch = timestampEpoch;
+        this.payload = payload;
+    }
+
+    /**
+     * Unique per event, and the same on every attempt to deliver it, so that
+     * sinks can ignore duplicates.
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public String getObjectType() {
+        return objectType;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public long getTimestampEpoch() {
+        return timestampEpoch;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    @Override
+    public String toString() {
+        return eventType + " " + objectType + " " + identifier + " (" + id + ")";
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.outbox;
+
+/**
+ * Renders the payload of the {@link OutboxEvent}s of one type of object;
+ * registered with the {@link OutboxService} through the
+ * <tt>estatio.outbox.renderer.&lt;object type&gt;</tt> property.
+ * 
+ * <p>
+ * Called outside of any Isis session, with the object loaded by a plain
+ * JDO persistence manager: no services are injected into it.
+ */
+public interface OutboxRenderer {
+
+    String render(String eventType, Object target);
+
+}
@@ -0,0 +1,305 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.outbox;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jdo.JDOHelper;
+
+import com.google.common.collect.Maps;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.isis.applib.DomainObjectContainer;
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.core.runtime.authentication.standard.SimpleSession;
+import org.apache.isis.core.runtime.system.context.IsisContext;
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+import org.estatio.services.metrics.EstatioMetrics;
+
+/**
+ * {@link #record(String, Object) Records} events in the current transaction
+ * and dispatches them (see {@link OutboxDispatcher}) every
+ * <tt>estatio.outbox.dispatchMillis</tt> milliseconds (not at all if not
+ * set), in batches of <tt>estatio.outbox.batchSize</tt> events. Events that
+ * cannot be delivered are attempted again after
+ * <tt>estatio.outbox.backoffMillis</tt>, doubled on every attempt, up to
+ * <tt>estatio.outbox.maxAttempts</tt> times.
+ * 
+ * <p>
+ * The sink is the {@link OutboxSink} named by <tt>estatio.outbox.sink</tt>,
+ * or else a {@link DirectorySink} if <tt>estatio.outbox.sink.directory</tt>
+ * is set; without either, the events are recorded but not dispatched. The
+ * renderer of a type of object is named by
+ * <tt>estatio.outbox.renderer.&lt;object type&gt;</tt>.
+ */
+@Hidden
+public class OutboxService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OutboxService.class);
+
+    static final String DISPATCH_MILLIS_KEY = "estatio.outbox.dispatchMillis";
+    static final String BATCH_SIZE_KEY = "estatio.outbox.batchSize";
+    static final String MAX_ATTEMPTS_KEY = "estatio.outbox.maxAttempts";
+    static final String BACKOFF_MILLIS_KEY = "estatio.outbox.backoffMillis";
+    static final String SINK_KEY = "estatio.outbox.sink";
+    static final String RENDERER_KEY_PREFIX = "estatio.outbox.renderer.";
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    static final int DEFAULT_MAX_ATTEMPTS = 10;
+    static final long DEFAULT_BACKOFF_MILLIS = 10 * 1000L;
+
+    private static final AtomicLong LAST_TIMESTAMP = new AtomicLong();
+
+    private final Map<String, OutboxRenderer> renderers = Maps.newHashMap();
+    private OutboxSink sink;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long backoffMillis = DEFAULT_BACKOFF_MILLIS;
+
+    private ScheduledExecutorService scheduler;
+    private volatile OutboxDispatcher dispatcher;
+
+    @PostConstruct
+    public void init(final Map<String, String> properties) {
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            if (entry.getKey().startsWith(RENDERER_KEY_PREFIX)) {
+                renderers.put(
+                        entry.getKey().substring(RENDERER_KEY_PREFIX.length()),
+                        newInstance(entry.getValue(), OutboxRenderer.class));
+            }
+        }
+        if (properties.get(SINK_KEY) != null) {
+            sink = newInstance(properties.get(SINK_KEY), OutboxSink.class);
+        } else if (properties.get(DirectorySink.DIRECTORY_KEY) != null) {
+            sink = new DirectorySink();
+        }
+        if (sink != null) {
+            sink.init(properties);
+        }
+        if (properties.get(BATCH_SIZE_KEY) != null) {
+            batchSize = Integer.parseInt(properties.get(BATCH_SIZE_KEY));
+        }
+        if (properties.get(MAX_ATTEMPTS_KEY) != null) {
+            maxAttempts = Integer.parseInt(properties.get(MAX_ATTEMPTS_KEY));
+        }
+        if (properties.get(BACKOFF_MILLIS_KEY) != null) {
+            backoffMillis = Long.parseLong(properties.get(BACKOFF_MILLIS_KEY));
+        }
+
+        final String dispatchMillis = properties.get(DISPATCH_MILLIS_KEY);
+        if (sink == null || dispatchMillis == null || Long.parseLong(dispatchMillis) <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "outbox-dispatcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final long interval = Long.parseLong(dispatchMillis);
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // carry on while there are full batches
+                    int delivered;
+                    do {
+                        delivered = dispatch();
+                    } while (delivered == batchSize);
+                } catch (RuntimeException ex) {
+                    LOG.warn("Could not dispatch outbox events", ex);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static <T> T newInstance(final String className, final Class<T> type) {
+        try {
+            return type.cast(Class.forName(className, true, Thread.currentThread().getContextClassLoader()).newInstance());
+        } catch (Exception ex) {
+            throw new IllegalArgumentException("Could not instantiate " + type.getSimpleName() + " " + className, ex);
+        }
+    }
+
+    /**
+     * Replaces the sink, eg to deliver to another directory; <tt>null</tt>
+     * to stop delivering.
+     */
+    @Programmatic
+    public void useSink(final OutboxSink sink) {
+        this.sink = sink;
+        this.dispatcher = null;
+    }
+
+    /**
+     * Replaces the number of events delivered at a time.
+     */
+    @Programmatic
+    public void useBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+        this.dispatcher = null;
+    }
+
+    /**
+     * Replaces the delay before an event that could not be delivered is
+     * attempted again.
+     */
+    @Programmatic
+    public void useBackoffMillis(final long backoffMillis) {
+        this.backoffMillis = backoffMillis;
+        this.dispatcher = null;
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Records the event for the (persistent) object in the current
+     * transaction, to be rendered and delivered once it has committed.
+     */
+    @Programmatic
+    public void record(final String eventType, final Object target) {
+        Object objectId = JDOHelper.getObjectId(target);
+        if (objectId == null) {
+            container.flush();
+            objectId = JDOHelper.getObjectId(target);
+        }
+        if (objectId == null) {
+            throw new IllegalArgumentException("Not persistent: " + target);
+        }
+        final long timestamp = nextTimestamp();
+        final OutboxEvent event = container.newTransientInstance(OutboxEvent.class);
+        event.setEventType(eventType);
+        event.setObjectType(target.getClass().getName());
+        event.setIdentifier(objectId.toString());
+        event.setTimestampEpoch(timestamp);
+        event.setStatus(OutboxStatus.PENDING);
+        event.setNextAttemptEpoch(timestamp);
+        container.persist(event);
+        EstatioMetrics.count("outbox.recorded");
+    }
+
+    /**
+     * The current time, but later than the one returned before, so that the
+     * events recorded by this node are ordered even if recorded within the
+     * same millisecond.
+     */
+    static long nextTimestamp() {
+        while (true) {
+            final long last = LAST_TIMESTAMP.get();
+            final long next = Math.max(System.currentTimeMillis(), last + 1);
+            if (LAST_TIMESTAMP.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Delivers the next batch of events that are due.
+     * 
+     * @return the number of events delivered; 0 if there is no sink
+     */
+    @Programmatic
+    public int dispatch() {
+        final OutboxDispatcher dispatcher = getDispatcher();
+        return dispatcher != null ? dispatcher.dispatch() : 0;
+    }
+
+    /**
+     * Makes the events that were given up on due again.
+     */
+    @Programmatic
+    public int retryFailed() {
+        final OutboxDispatcher dispatcher = getDispatcher();
+        return dispatcher != null ? dispatcher.retryFailed() : 0;
+    }
+
+    @Programmatic
+    public Map<OutboxStatus, Long> countByStatus() {
+        final OutboxDispatcher dispatcher = getDispatcher();
+        return dispatcher != null ? dispatcher.countByStatus() : Maps.<OutboxStatus, Long> newEnumMap(OutboxStatus.class);
+    }
+
+    /**
+     * Created the first time, in a session of its own if need be, as the
+     * dispatcher runs outside of any request; <tt>null</tt> if there is no
+     * sink.
+     */
+    private OutboxDispatcher getDispatcher() {
+        if (sink == null) {
+            return null;
+        }
+        if (dispatcher == null) {
+            final boolean inSession = IsisContext.inSession();
+            if (!inSession) {
+                IsisContext.openSession(new SimpleSession("__outbox", new String[0]));
+            }
+            try {
+                dispatcher = new OutboxDispatcher(
+                        isisJdoSupport.getJdoPersistenceManager().getPersistenceManagerFactory(),
+                        renderers,
+                        sink,
+                        batchSize,
+                        maxAttempts,
+                        backoffMillis);
+            } finally {
+                if (!inSession) {
+                    IsisContext.closeSession();
+                }
+            }
+        }
+        return dispatcher;
+    }
+
+    // //////////////////////////////////////
+
+    private DomainObjectContainer container;
+
+    public void setContainer(final DomainObjectContainer container) {
+        this.container = container;
+    }
+
+    private IsisJdoSupport isisJdoSupport;
+
+    public final void injectIsisJdoSupport(final IsisJdoSupport isisJdoSupport) {
+        this.isisJdoSupport = isisJdoSupport;
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.outbox;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where the {@link OutboxMessage}s are delivered to; registered with the
+ * {@link OutboxService} through the <tt>estatio.outbox.sink</tt> property.
+ * 
+ * <p>
+ * Delivery is at least once: a batch may be delivered again if the outcome
+ * of an earlier attempt could not be recorded, so sinks should ignore
+ * messages whose {@link OutboxMessage#getId() id} they have seen before.
+ */
+public interface OutboxSink {
+
+    void init(Map<String, String> properties);
+
+    /**
+     * Delivers all messages, in the order given; if any cannot be delivered,
+     * the whole batch is attempted again later.
+     */
+    void deliver(List<OutboxMessage> messages) throws IOException;
+
+}
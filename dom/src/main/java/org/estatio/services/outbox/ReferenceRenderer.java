@@ -0,0 +1,52 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.outbox;
+
+import java.io.StringWriter;
+
+import javax.jdo.JDOHelper;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Renders just the type of event and the reference to the object, for the
+ * types of object that have no {@link OutboxRenderer} of their own.
+ */
+class ReferenceRenderer implements OutboxRenderer {
+
+    @Override
+    public String render(final String eventType, final Object target) {
+        final StringWriter buf = new StringWriter();
+        try {
+            final XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(buf);
+            xml.writeStartDocument();
+            xml.writeEmptyElement("event");
+            xml.writeAttribute("type", eventType);
+            xml.writeAttribute("objectType", target.getClass().getName());
+            xml.writeAttribute("identifier", String.valueOf(JDOHelper.getObjectId(target)));
+            xml.writeEndDocument();
+            xml.close();
+        } catch (XMLStreamException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return buf.toString();
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.replica;
+
+import javax.jdo.annotations.IdGeneratorStrategy;
+import javax.jdo.annotations.IdentityType;
+
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Immutable;
+
+import org.estatio.dom.JdoColumnLength;
+
+/**
+ * The time at which a node last wrote to the primary database; once
+ * replicated, it tells how far the replica is behind. See
+ * {@link ReplicaRouter}.
+ */
+@javax.jdo.annotations.PersistenceCapable(
+        identityType = IdentityType.DATASTORE,
+        table = "ReplicaHeartbeat")
+@javax.jdo.annotations.DatastoreIdentity(
+        strategy = IdGeneratorStrategy.IDENTITY,
+        column = "id")
+@javax.jdo.annotations.Cacheable("false")
+@javax.jdo.annotations.Uniques({
+        @javax.jdo.annotations.Unique(
+                name = "ReplicaHeartbeat_node_UNQ", members = { "node" })
+})
+@javax.jdo.annotations.Queries({
+        @javax.jdo.annotations.Query(
+                name = "findByNode", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.services.replica.ReplicaHeartbeat "
+                        + "WHERE node == :node"),
+        @javax.jdo.annotations.Query(
+                name = "findLatest", language = "JDOQL",
+                value = "SELECT max(timestampEpoch) "
+                        + "FROM org.estatio.services.replica.ReplicaHeartbeat"),
+        @javax.jdo.annotations.Query(
+                name = "findBefore", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.services.replica.ReplicaHeartbeat "
+                        + "WHERE timestampEpoch < :before")
+})
+@Immutable
+@Hidden
+public class ReplicaHeartbeat {
+
+    public ReplicaHeartbeat() {
+    }
+
+    ReplicaHeartbeat(final String node, final long timestampEpoch) {
+        this.node = node;
+        this.timestampEpoch = timestampEpoch;
+    }
+
+    // //////////////////////////////////////
+
+    private String node;
+
+    @javax.jdo.annotations.Column(allowsNull = "false", length = JdoColumnLength.NAME)
+    public String getNode() {
+        return node;
+    }
+
+    public void setNode(final String node) {
+        this.node = node;
+    }
+
+    // //////////////////////////////////////
+
+    private long timestampEpoch;
+
+    @javax.jdo.annotations.Column(allowsNull = "false")
+    public long getTimestampEpoch() {
+        return timestampEpoch;
+    }
+
+    public void setTimestampEpoch(final long timestampEpoch) {
+        this.timestampEpoch = timestampEpoch;
+    }
+
+}
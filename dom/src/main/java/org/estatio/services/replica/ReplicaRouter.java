@@ -0,0 +1,219 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.replica;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+import javax.jdo.Transaction;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.estatio.services.metrics.EstatioMetrics;
+
+/**
+ * Runs queries on a read-only replica of the primary database, as long as
+ * the replica is at most a given number of milliseconds behind.
+ * 
+ * <p>
+ * How far the replica is behind is measured with {@link ReplicaHeartbeat
+ * heartbeats}: every node {@link #beat() writes} the current time to the
+ * primary at least every quarter of the bound, and the replica is used only
+ * if the latest heartbeat it has received is at most three quarters of the
+ * bound old. As the outcome of that check is reused for another quarter of
+ * the bound, the data read never lags by more than the bound; a replica
+ * that lags by more than half of it may be considered too stale though.
+ * 
+ * <p>
+ * The objects found on the replica are handed to a resolver, that is to
+ * return the corresponding object on the primary, eg by its object id. If
+ * the replica is too far behind or fails (or the resolver does, eg because
+ * the object has been deleted since), the query is to be run on the primary
+ * instead.
+ */
+public class ReplicaRouter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicaRouter.class);
+
+    static final long RETENTION_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final PersistenceManagerFactory primary;
+    private final PersistenceManagerFactory replica;
+    private final long maxStalenessMillis;
+    private final String node = UUID.randomUUID().toString();
+
+    private volatile long checkedAt;
+    private volatile boolean fresh;
+
+    public ReplicaRouter(
+            final PersistenceManagerFactory primary,
+            final PersistenceManagerFactory replica,
+            final long maxStalenessMillis) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxStalenessMillis = maxStalenessMillis;
+    }
+
+    /**
+     * How often {@link #beat()} is to be called.
+     */
+    public long getHeartbeatMillis() {
+        return Math.max(1, maxStalenessMillis / 4);
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Writes the current time to the primary, in a transaction of its own.
+     */
+    public void beat() {
+        final long now = System.currentTimeMillis();
+        final PersistenceManager persistenceManager = primary.getPersistenceManager();
+        final Transaction transaction = persistenceManager.currentTransaction();
+        try {
+            transaction.begin();
+            final Query query = persistenceManager.newNamedQuery(ReplicaHeartbeat.class, "findByNode");
+            final Collection<?> heartbeats = (Collection<?>) query.execute(node);
+            if (heartbeats.isEmpty()) {
+                // first beat of this node; forget the nodes long gone
+                persistenceManager.newNamedQuery(ReplicaHeartbeat.class, "findBefore")
+                        .deletePersistentAll(now - RETENTION_MILLIS);
+                persistenceManager.makePersistent(new ReplicaHeartbeat(node, now));
+            } else {
+                ((ReplicaHeartbeat) heartbeats.iterator().next()).setTimestampEpoch(now);
+            }
+            transaction.commit();
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            persistenceManager.close();
+        }
+    }
+
+    /**
+     * Whether the replica is recent enough to be read from.
+     */
+    public boolean isFresh() {
+        final long now = System.currentTimeMillis();
+        if (now - checkedAt < getHeartbeatMillis()) {
+            return fresh;
+        }
+        boolean isFresh;
+        try {
+            final Long latest = latestHeartbeatOnReplica();
+            isFresh = latest != null && now - latest <= maxStalenessMillis - getHeartbeatMillis();
+        } catch (RuntimeException ex) {
+            LOG.warn("Could not check how far the replica is behind", ex);
+            isFresh = false;
+        }
+        fresh = isFresh;
+        checkedAt = now;
+        if (!isFresh) {
+            EstatioMetrics.count("replica.stale");
+        }
+        return isFresh;
+    }
+
+    private Long latestHeartbeatOnReplica() {
+        final PersistenceManager persistenceManager = replica.getPersistenceManager();
+        try {
+            final Query query = persistenceManager.newNamedQuery(ReplicaHeartbeat.class, "findLatest");
+            query.setUnique(true);
+            return (Long) query.execute();
+        } finally {
+            persistenceManager.close();
+        }
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * The objects matched by the named query (all instances if
+     * <tt>null</tt>) on the replica, as resolved on the primary; or
+     * <tt>null</tt> if the query is to be run on the primary instead.
+     * 
+     * @param parameters
+     *            - the query's parameters; persistent objects (of the
+     *            primary) are replaced by the same objects of the replica
+     */
+    public <T> List<T> allMatches(
+            final Class<T> type,
+            final String queryName,
+            final Map<String, Object> parameters,
+            final Function<Object, T> resolver) {
+        if (!isFresh()) {
+            return null;
+        }
+        final PersistenceManager persistenceManager = replica.getPersistenceManager();
+        try {
+            final Query query = queryName != null
+                    ? persistenceManager.newNamedQuery(type, queryName)
+                    : persistenceManager.newQuery(type);
+            final List<T> matches = Lists.newArrayList();
+            for (Object result : (Collection<?>) query.executeWithMap(onReplica(persistenceManager, parameters))) {
+                matches.add(resolver.apply(result));
+            }
+            query.closeAll();
+            EstatioMetrics.count("replica.routed");
+            return matches;
+        } catch (RuntimeException ex) {
+            LOG.warn("Could not run " + type.getSimpleName() + "#" + queryName + " on the replica", ex);
+            EstatioMetrics.count("replica.failed");
+            return null;
+        } finally {
+            persistenceManager.close();
+        }
+    }
+
+    private static Map<String, Object> onReplica(
+            final PersistenceManager persistenceManager,
+            final Map<String, Object> parameters) {
+        final Map<String, Object> translated = Maps.newHashMap();
+        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+            final Object value = entry.getValue();
+            translated.put(
+                    entry.getKey(),
+                    JDOHelper.isPersistent(value) ? objectOn(persistenceManager, value) : value);
+        }
+        return translated;
+    }
+
+    /**
+     * The object with the same object id as the given one (of another
+     * persistence manager factory).
+     */
+    public static Object objectOn(final PersistenceManager persistenceManager, final Object object) {
+        final Object objectId = persistenceManager.newObjectIdInstance(
+                object.getClass(), JDOHelper.getObjectId(object).toString());
+        return persistenceManager.getObjectById(objectId);
+    }
+
+}
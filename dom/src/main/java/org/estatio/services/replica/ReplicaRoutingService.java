@@ -0,0 +1,253 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.replica;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManagerFactory;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Maps;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.isis.applib.DomainObjectContainer;
+import org.apache.isis.applib.ViewModel;
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.core.runtime.authentication.standard.SimpleSession;
+import org.apache.isis.core.runtime.system.context.IsisContext;
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+/**
+ * Routes the queries of safe actions to the read-only replica at
+ * <tt>estatio.replica.connectionURL</tt> (not at all if not set), as long
+ * as it is at most <tt>estatio.replica.maxStalenessMillis</tt> behind the
+ * primary; see {@link ReplicaRouter}.
+ * 
+ * <p>
+ * The replica is connected to with the same DataNucleus settings as the
+ * primary, except for <tt>estatio.replica.connectionUserName</tt> and
+ * <tt>estatio.replica.connectionPassword</tt> if set. Entities found on the
+ * replica are resolved on the primary by their object id (mostly from the
+ * L2 cache), so only the query itself runs on the replica; view models are
+ * recreated from their memento.
+ */
+@Hidden
+public class ReplicaRoutingService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicaRoutingService.class);
+
+    static final String CONNECTION_URL_KEY = "estatio.replica.connectionURL";
+    static final String CONNECTION_USER_NAME_KEY = "estatio.replica.connectionUserName";
+    static final String CONNECTION_PASSWORD_KEY = "estatio.replica.connectionPassword";
+    static final String MAX_STALENESS_MILLIS_KEY = "estatio.replica.maxStalenessMillis";
+
+    static final long DEFAULT_MAX_STALENESS_MILLIS = 10000L;
+
+    private static final String DATANUCLEUS_PREFIX = "isis.persistor.datanucleus.impl.";
+    private static final String LISTENER_PREFIX = "javax.jdo.listener.";
+
+    private ScheduledExecutorService scheduler;
+    private PersistenceManagerFactory ownReplica;
+
+    private volatile PersistenceManagerFactory replica;
+    private volatile long maxStalenessMillis;
+    private volatile ReplicaRouter router;
+
+    @PostConstruct
+    public void init(final Map<String, String> properties) {
+        final String connectionUrl = properties.get(CONNECTION_URL_KEY);
+        if (connectionUrl == null) {
+            return;
+        }
+        final String maxStaleness = properties.get(MAX_STALENESS_MILLIS_KEY);
+        ownReplica = JDOHelper.getPersistenceManagerFactory(replicaPropertiesOf(properties));
+        connect(ownReplica, maxStaleness != null ? Long.parseLong(maxStaleness) : DEFAULT_MAX_STALENESS_MILLIS);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "replica-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final long interval = Math.max(1, maxStalenessMillis / 4);
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    beat();
+                } catch (RuntimeException ex) {
+                    LOG.warn("Could not write replica heartbeat", ex);
+                }
+            }
+        }, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    static Map<String, String> replicaPropertiesOf(final Map<String, String> properties) {
+        final Map<String, String> replicaProperties = Maps.newHashMap();
+        replicaProperties.put("javax.jdo.PersistenceManagerFactoryClass", "org.datanucleus.api.jdo.JDOPersistenceManagerFactory");
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            if (entry.getKey().startsWith(DATANUCLEUS_PREFIX)) {
+                final String key = entry.getKey().substring(DATANUCLEUS_PREFIX.length());
+                if (!key.startsWith(LISTENER_PREFIX)) {
+                    replicaProperties.put(key, entry.getValue());
+                }
+            }
+        }
+        replicaProperties.put("javax.jdo.option.ConnectionURL", properties.get(CONNECTION_URL_KEY));
+        if (properties.containsKey(CONNECTION_USER_NAME_KEY)) {
+            replicaProperties.put("javax.jdo.option.ConnectionUserName", properties.get(CONNECTION_USER_NAME_KEY));
+        }
+        if (properties.containsKey(CONNECTION_PASSWORD_KEY)) {
+            replicaProperties.put("javax.jdo.option.ConnectionPassword", properties.get(CONNECTION_PASSWORD_KEY));
+        }
+        replicaProperties.put("datanucleus.autoCreateSchema", "false");
+        replicaProperties.put("datanucleus.validateSchema", "false");
+        replicaProperties.put("datanucleus.readOnlyDatastore", "true");
+        // objects are resolved on (and cached by) the primary
+        replicaProperties.put("datanucleus.cache.level2.type", "none");
+        return replicaProperties;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (ownReplica != null) {
+            ownReplica.close();
+        }
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Routes to the given replica from now on.
+     */
+    @Programmatic
+    public void connect(final PersistenceManagerFactory replica, final long maxStalenessMillis) {
+        this.replica = replica;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.router = null;
+    }
+
+    /**
+     * Runs all queries on the primary from now on.
+     */
+    @Programmatic
+    public void disconnect() {
+        this.replica = null;
+        this.router = null;
+    }
+
+    @Programmatic
+    public void beat() {
+        final ReplicaRouter router = getRouter();
+        if (router != null) {
+            router.beat();
+        }
+    }
+
+    /**
+     * The objects matched by the named query (all instances if
+     * <tt>null</tt>), found on the replica; or <tt>null</tt> if there is no
+     * replica or it is too far behind, for the caller to run the query on the
+     * primary.
+     * 
+     * @param paramArgs
+     *            - the query's parameters, as name and value pairs
+     */
+    @Programmatic
+    public <T> List<T> allMatches(final Class<T> type, final String queryName, final Object... paramArgs) {
+        final ReplicaRouter router = getRouter();
+        if (router == null) {
+            return null;
+        }
+        final Map<String, Object> parameters = Maps.newHashMap();
+        for (int i = 0; i < paramArgs.length; i += 2) {
+            parameters.put((String) paramArgs[i], paramArgs[i + 1]);
+        }
+        return router.allMatches(type, queryName, parameters, new Function<Object, T>() {
+            @Override
+            public T apply(final Object onReplica) {
+                if (onReplica instanceof ViewModel) {
+                    return container.newViewModelInstance(type, ((ViewModel) onReplica).viewModelMemento());
+                }
+                return type.cast(ReplicaRouter.objectOn(isisJdoSupport.getJdoPersistenceManager(), onReplica));
+            }
+        });
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Created the first time, in a session of its own if need be, as the
+     * heartbeat is written outside of any request.
+     */
+    private ReplicaRouter getRouter() {
+        final PersistenceManagerFactory replica = this.replica;
+        if (replica == null) {
+            return null;
+        }
+        if (router == null) {
+            final boolean inSession = IsisContext.inSession();
+            if (!inSession) {
+                IsisContext.openSession(new SimpleSession("__replica-heartbeat", new String[0]));
+            }
+            try {
+                router = new ReplicaRouter(
+                        isisJdoSupport.getJdoPersistenceManager().getPersistenceManagerFactory(),
+                        replica,
+                        maxStalenessMillis);
+            } finally {
+                if (!inSession) {
+                    IsisContext.closeSession();
+                }
+            }
+        }
+        return router;
+    }
+
+    // //////////////////////////////////////
+
+    private DomainObjectContainer container;
+
+    public void setContainer(final DomainObjectContainer container) {
+        this.container = container;
+    }
+
+    private IsisJdoSupport isisJdoSupport;
+
+    public final void injectIsisJdoSupport(final IsisJdoSupport isisJdoSupport) {
+        this.isisJdoSupport = isisJdoSupport;
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.retry;
+
+import javax.jdo.PersistenceManager;
+
+import org.apache.isis.core.runtime.system.context.IsisContext;
+import org.apache.isis.core.runtime.system.transaction.IsisTransaction;
+import org.apache.isis.core.runtime.system.transaction.IsisTransactionManager;
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+/**
+ * {@link TransactionBoundary} on the Isis transaction of the current
+ * session.
+ * 
+ * <p>
+ * An action runs in a single Isis transaction that is committed by the
+ * framework once the action completes. Ending that transaction early
+ * commits the work so far; the transaction that is {@link #resume() resumed}
+ * afterwards is the one that the framework finally commits (or aborts).
+ * 
+ * <p>
+ * The datastore transactions are pessimistic by default, in which case
+ * DataNucleus does not check versions when writing; the transactions of the
+ * units are therefore made optimistic.
+ */
+class IsisTransactionBoundary implements TransactionBoundary {
+
+    /**
+     * Optimistic transactions only flush on commit by default, whereas Isis
+     * expects an object to be deleted as soon as it has deleted it.
+     */
+    private static final String FLUSH_MODE = "datanucleus.flush.mode";
+
+    private final IsisJdoSupport isisJdoSupport;
+
+    IsisTransactionBoundary(final IsisJdoSupport isisJdoSupport) {
+        this.isisJdoSupport = isisJdoSupport;
+    }
+
+    @Override
+    public void commit() {
+        getTransactionManager().endTransaction();
+    }
+
+    /**
+     * Aborts the transaction, unless it already is: a commit that fails
+     * aborts the transaction itself, and aborting it twice is refused.
+     */
+    @Override
+    public void abort() {
+        final IsisTransaction transaction = getTransactionManager().getTransaction();
+        if (transaction != null && transaction.getState().isComplete()) {
+            return;
+        }
+        getTransactionManager().abortTransaction();
+    }
+
+    @Override
+    public void begin() {
+        begin(true);
+    }
+
+    @Override
+    public void resume() {
+        final PersistenceManager persistenceManager = isisJdoSupport.getJdoPersistenceManager();
+        begin(persistenceManager.getPersistenceManagerFactory().getOptimistic());
+    }
+
+    private void begin(final boolean optimistic) {
+        final PersistenceManager persistenceManager = isisJdoSupport.getJdoPersistenceManager();
+        persistenceManager.currentTransaction().setOptimistic(optimistic);
+        persistenceManager.setProperty(FLUSH_MODE, "AUTO");
+        getTransactionManager().startTransaction();
+    }
+
+    private static IsisTransactionManager getTransactionManager() {
+        return IsisContext.getTransactionManager();
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.retry;
+
+import java.util.Random;
+
+/**
+ * How often a {@link RetryService.Unit unit of work} is attempted, and how
+ * long to back off between attempts.
+ * 
+ * <p>
+ * The backoff is exponential with full jitter: before attempt <i>n</i> a
+ * random time between zero and <tt>initialBackoffMillis * 2^(n-2)</tt> (but
+ * no more than <tt>maxBackoffMillis</tt>) is waited, so that competing users
+ * do not retry in lock step.
+ */
+public class RetryPolicy {
+
+    public static final RetryPolicy DEFAULT = new RetryPolicy(3, 50, 2000);
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public RetryPolicy(final int maxAttempts, final long initialBackoffMillis, final long maxBackoffMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    /**
+     * The time to wait before the given attempt, which is at least 2.
+     */
+    long backoffMillis(final int attempt, final Random random) {
+        final int doublings = Math.min(attempt - 2, 30);
+        final long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << doublings);
+        if (ceiling <= 0) {
+            return 0;
+        }
+        return (long) (random.nextDouble() * ceiling);
+    }
+
+}
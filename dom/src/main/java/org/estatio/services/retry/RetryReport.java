@@ -0,0 +1,118 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.retry;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The outcome of {@link RetryService#execute(String, List) executing} a list
+ * of units of work.
+ */
+public class RetryReport {
+
+    /**
+     * A unit that could not be completed, and why.
+     */
+    public static class Failure {
+
+        private final String description;
+        private final String reason;
+
+        Failure(final String description, final String reason) {
+            this.description = description;
+            this.reason = reason;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return description + ": " + reason;
+        }
+    }
+
+    // //////////////////////////////////////
+
+    private final String name;
+    private int succeeded;
+    private int retries;
+    private final List<Failure> failures = Lists.newArrayList();
+
+    RetryReport(final String name) {
+        this.name = name;
+    }
+
+    void succeeded() {
+        succeeded++;
+    }
+
+    void retried() {
+        retries++;
+    }
+
+    void failed(final String description, final String reason) {
+        failures.add(new Failure(description, reason));
+    }
+
+    // //////////////////////////////////////
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * The number of attempts that conflicted and were retried.
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    public List<Failure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append(String.format("%s: %d succeeded, %d retried, %d failed",
+                name, succeeded, retries, failures.size()));
+        for (Failure failure : failures) {
+            buf.append("; ").append(failure);
+        }
+        return buf.toString();
+    }
+
+}
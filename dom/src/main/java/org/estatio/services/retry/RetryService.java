@@ -0,0 +1,173 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.retry;
+
+import java.util.List;
+import java.util.Random;
+
+import javax.jdo.JDOException;
+import javax.jdo.JDOOptimisticVerificationException;
+
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+import org.estatio.services.metrics.EstatioMetrics;
+
+/**
+ * Runs long-running work (eg a calculation over all leases of a property) as
+ * a list of independent {@link Unit units}, each committed in its own
+ * transaction.
+ * 
+ * <p>
+ * A unit whose commit fails because a concurrent user changed the same
+ * (versioned) objects is rolled back and retried, after a jittered backoff,
+ * up to the {@link RetryPolicy#getMaxAttempts() maximum number of attempts}.
+ * Units that keep conflicting, or fail for any other reason, are rolled
+ * back and reported in the {@link RetryReport}, without losing the work of
+ * the other units.
+ * 
+ * <p>
+ * Units must therefore be idempotent: a retried unit starts from the state
+ * committed by the other user, not from the state of its failed attempt.
+ * The objects referenced by a unit are reloaded when accessed after a
+ * rollback.
+ * 
+ * <p>
+ * The work done by the calling action before the units are executed is
+ * committed first.
+ */
+@Hidden
+public class RetryService {
+
+    /**
+     * An idempotent unit of work.
+     */
+    public abstract static class Unit {
+
+        private final String description;
+
+        protected Unit(final String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public abstract void execute();
+    }
+
+    // //////////////////////////////////////
+
+    private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+    private TransactionBoundary transactionBoundary;
+    private final Random random = new Random();
+
+    @Programmatic
+    public RetryReport execute(final String name, final List<? extends Unit> units) {
+        final RetryReport report = new RetryReport(name);
+        transactionBoundary.commit();
+        for (Unit unit : units) {
+            execute(unit, report);
+        }
+        transactionBoundary.resume();
+        EstatioMetrics.count("retry." + name + ".units", units.size());
+        EstatioMetrics.count("retry." + name + ".retries", report.getRetries());
+        EstatioMetrics.count("retry." + name + ".failures", report.getFailures().size());
+        return report;
+    }
+
+    private void execute(final Unit unit, final RetryReport report) {
+        for (int attempt = 1;; attempt++) {
+            transactionBoundary.begin();
+            try {
+                unit.execute();
+                transactionBoundary.commit();
+                report.succeeded();
+                return;
+            } catch (RuntimeException ex) {
+                transactionBoundary.abort();
+                if (!isConflict(ex)) {
+                    report.failed(unit.getDescription(), ex.getMessage());
+                    return;
+                }
+                if (attempt >= retryPolicy.getMaxAttempts()) {
+                    report.failed(unit.getDescription(), "still conflicting after " + attempt + " attempts");
+                    return;
+                }
+                report.retried();
+                sleep(retryPolicy.backoffMillis(attempt + 1, random));
+            }
+        }
+    }
+
+    /**
+     * Whether the exception, or any of its causes, is an optimistic locking
+     * failure.
+     */
+    static boolean isConflict(final Throwable ex) {
+        if (ex == null) {
+            return false;
+        }
+        if (ex instanceof JDOOptimisticVerificationException) {
+            return true;
+        }
+        if (ex instanceof JDOException) {
+            final Throwable[] nestedExceptions = ((JDOException) ex).getNestedExceptions();
+            if (nestedExceptions != null) {
+                for (Throwable nested : nestedExceptions) {
+                    if (nested != ex && isConflict(nested)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return ex.getCause() != ex && isConflict(ex.getCause());
+    }
+
+    private static void sleep(final long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // //////////////////////////////////////
+
+    @Programmatic
+    public void setRetryPolicy(final RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    void setTransactionBoundary(final TransactionBoundary transactionBoundary) {
+        this.transactionBoundary = transactionBoundary;
+    }
+
+    // //////////////////////////////////////
+
+    public final void injectIsisJdoSupport(final IsisJdoSupport isisJdoSupport) {
+        this.transactionBoundary = new IsisTransactionBoundary(isisJdoSupport);
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.retry;
+
+/**
+ * Commits or aborts the current transaction and starts the next one, so that
+ * each {@link RetryService.Unit unit of work} is committed on its own.
+ */
+public interface TransactionBoundary {
+
+    /**
+     * Flushes and commits the current transaction; a conflict with a
+     * concurrent transaction surfaces as an exception.
+     */
+    void commit();
+
+    /**
+     * Rolls back the current transaction, if the commit did not already.
+     */
+    void abort();
+
+    /**
+     * Starts the transaction of a unit, in which a conflict with a concurrent
+     * transaction is detected.
+     */
+    void begin();
+
+    /**
+     * Starts the transaction that the calling action continues in, once all
+     * units are done.
+     */
+    void resume();
+
+}
@@ -76,6 +76,24 @@ public class EstatioSettingsService {
         }
     }
 
+    /**
+     * @see org.estatio.dom.invoice.ApplicationSettingKey#archiveHorizonInMonths
+     */
+    public final static String ARCHIVE_HORIZON_IN_MONTHS_KEY = 
+            org.estatio.dom.invoice.ApplicationSettingKey.archiveHorizonInMonths.name();
+
+    /**
+     * @see org.estatio.dom.invoice.ApplicationSettingKey#archiveHorizonInMonths
+     */
+    @Hidden
+    public int fetchArchiveHorizonInMonths() {
+        getApplicationSettings().installDefaultsIfRequired();
+        final ApplicationSetting archiveHorizon = applicationSettingsService.find(ARCHIVE_HORIZON_IN_MONTHS_KEY);
+        return archiveHorizon != null 
+                ? archiveHorizon.valueAsInt() 
+                : (Integer) org.estatio.dom.invoice.ApplicationSettingKey.archiveHorizonInMonths.getDefaultValue();
+    }
+
     @Hidden
     public List<ApplicationSetting> listAll() {
         return applicationSettingsService.listAll();
@@ -0,0 +1,126 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.startup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.isis.applib.annotation.Hidden;
+import org.apache.isis.applib.annotation.Programmatic;
+
+/**
+ * Checks on start up that the database is at the schema version this
+ * release expects, for when the schema is not validated by DataNucleus (see
+ * <tt>persistor_datanucleus.properties.PRODUCTION</tt>).
+ * 
+ * <p>
+ * The expected version is the <tt>version</tt> in
+ * <tt>db/schema-version.properties</tt>, to be incremented with every
+ * migration script added to <tt>db/migration</tt>; the last script applied
+ * to the database records its version in the <tt>SchemaVersion</tt> table.
+ * Only done if <tt>estatio.startup.checkSchemaVersion</tt> is set.
+ */
+@Hidden
+public class SchemaVersionService {
+
+    static final String CHECK_KEY = "estatio.startup.checkSchemaVersion";
+    static final String RESOURCE = "/db/schema-version.properties";
+
+    private static final String CONNECTION_KEY_PREFIX = "isis.persistor.datanucleus.impl.javax.jdo.option.Connection";
+
+    @PostConstruct
+    public void init(final Map<String, String> properties) {
+        if (!Boolean.parseBoolean(properties.get(CHECK_KEY))) {
+            return;
+        }
+        check(getExpectedVersion(), readVersion(properties));
+    }
+
+    @Programmatic
+    public int getExpectedVersion() {
+        final InputStream in = SchemaVersionService.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            throw new IllegalStateException(RESOURCE + " not found");
+        }
+        try {
+            final Properties properties = new Properties();
+            properties.load(in);
+            return Integer.parseInt(properties.getProperty("version").trim());
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not read " + RESOURCE, ex);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    static void check(final int expectedVersion, final Integer actualVersion) {
+        if (actualVersion == null) {
+            throw new IllegalStateException(
+                    "Database has no schema version; expected version " + expectedVersion);
+        }
+        if (actualVersion != expectedVersion) {
+            throw new IllegalStateException(String.format(
+                    "Database is at schema version %d, expected version %d; apply the migrations in db/migration",
+                    actualVersion, expectedVersion));
+        }
+    }
+
+    /**
+     * With a connection of its own, as no persistence session is available
+     * yet.
+     */
+    private static Integer readVersion(final Map<String, String> properties) {
+        try {
+            final String driverName = properties.get(CONNECTION_KEY_PREFIX + "DriverName");
+            if (driverName != null) {
+                Class.forName(driverName);
+            }
+            final Connection connection = DriverManager.getConnection(
+                    properties.get(CONNECTION_KEY_PREFIX + "URL"),
+                    properties.get(CONNECTION_KEY_PREFIX + "UserName"),
+                    properties.get(CONNECTION_KEY_PREFIX + "Password"));
+            try {
+                final Statement statement = connection.createStatement();
+                final ResultSet resultSet = statement.executeQuery(
+                        "SELECT MAX(\"version\") FROM \"SchemaVersion\"");
+                final int version = resultSet.next() ? resultSet.getInt(1) : 0;
+                return version > 0 ? version : null;
+            } finally {
+                connection.close();
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Could not read the schema version of the database", ex);
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException("Could not load the database driver", ex);
+        }
+    }
+
+}
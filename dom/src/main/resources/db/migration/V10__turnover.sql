@@ -0,0 +1,37 @@
+--
+--  Copyright 2012-2013 Eurocommercial Properties NV
+--
+--  Licensed under the Apache License, Version 2.0 (the "License");
+--  you may not use this file except in compliance with the License.
+--  You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+--  Unless required by applicable law or agreed to in writing,
+--  software distributed under the License is distributed on an
+--  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+--  either express or implied. See the License for the specific
+--  language governing permissions and limitations under the License.
+--
+
+--
+-- The turnovers reported for occupancies, from which turnover rent is
+-- calculated (see Turnovers).
+--
+
+CREATE TABLE "Turnover" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "amount" DECIMAL(19,2) NOT NULL,
+    "endDate" DATE NOT NULL,
+    "occupancyId" BIGINT NOT NULL,
+    "startDate" DATE NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "Turnover_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "Turnover_occupancy_startDate_endDate_UNQ" UNIQUE ("occupancyId", "startDate", "endDate")
+);
+CREATE INDEX "Turnover_N49" ON "Turnover" ("occupancyId");
+
+ALTER TABLE "Turnover" ADD CONSTRAINT "Turnover_FK1"
+    FOREIGN KEY ("occupancyId") REFERENCES "Occupancy" ("id");
+
+INSERT INTO "SchemaVersion" ("version") VALUES (10);
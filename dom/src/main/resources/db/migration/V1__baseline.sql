@@ -0,0 +1,857 @@
+--
+--  Copyright 2012-2013 Eurocommercial Properties NV
+--
+--  Licensed under the Apache License, Version 2.0 (the "License");
+--  you may not use this file except in compliance with the License.
+--  You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+--  Unless required by applicable law or agreed to in writing,
+--  software distributed under the License is distributed on an
+--  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+--  either express or implied. See the License for the specific
+--  language governing permissions and limitations under the License.
+--
+
+--
+-- Baseline: the schema of the release before the first migration, as created
+-- by DataNucleus (autoCreateSchema) from the JDO metadata of estatio-dom and
+-- estatio-dom-italy, plus the table recording the version of the schema.
+--
+-- The names of the primary, foreign and unique keys and of the indexes are
+-- those DataNucleus gives them; its own indexes on foreign key columns are
+-- the <Table>_N<nn> ones. DataNucleus does not create the
+-- BreakOption_lease_type_notificationDate_UNQ constraint, declared on a
+-- member that BreakOption does not have.
+--
+-- Every later script V<n>__<description>.sql ends by recording version <n>.
+--
+
+CREATE TABLE "Activity" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "name" VARCHAR(50) NOT NULL,
+    "sectorId" BIGINT NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "Activity_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "Activity_sector_name_UNQ" UNIQUE ("sectorId", "name")
+);
+CREATE INDEX "Activity_N49" ON "Activity" ("sectorId");
+
+CREATE TABLE "Agreement" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "endDate" DATE,
+    "name" VARCHAR(50),
+    "nextAgreementId" BIGINT,
+    "reference" VARCHAR(24) NOT NULL,
+    "startDate" DATE,
+    "terminationDate" DATE,
+    "typeId" BIGINT NOT NULL,
+    "version" BIGINT NOT NULL,
+    "discriminator" VARCHAR(255) NOT NULL,
+    CONSTRAINT "Agreement_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "Agreement_reference_UNQ" UNIQUE ("reference")
+);
+CREATE INDEX "Agreement_N49" ON "Agreement" ("typeId");
+CREATE INDEX "Agreement_N50" ON "Agreement" ("nextAgreementId");
+CREATE INDEX "Lease_reference_name_IDX" ON "Agreement" ("reference", "name");
+
+CREATE TABLE "AgreementRole" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "agreementId" BIGINT NOT NULL,
+    "endDate" DATE,
+    "partyId" BIGINT NOT NULL,
+    "startDate" DATE,
+    "typeId" BIGINT NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "AgreementRole_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "AgreementRole_N49" ON "AgreementRole" ("agreementId");
+CREATE INDEX "AgreementRole_N50" ON "AgreementRole" ("typeId");
+CREATE INDEX "AgreementRole_N51" ON "AgreementRole" ("partyId");
+
+CREATE TABLE "AgreementRoleCommunicationChannel" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "communicationChannelId" BIGINT NOT NULL,
+    "endDate" DATE,
+    "agreementRoleId" BIGINT NOT NULL,
+    "startDate" DATE,
+    "typeId" BIGINT NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "AgreementRoleCommunicationChannel_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "AgreementRoleCommunicationChannel_N49" ON "AgreementRoleCommunicationChannel" ("typeId");
+CREATE INDEX "AgreementRoleCommunicationChannel_N50" ON "AgreementRoleCommunicationChannel" ("agreementRoleId");
+CREATE INDEX "AgreementRoleCommunicationChannel_N51" ON "AgreementRoleCommunicationChannel" ("communicationChannelId");
+
+CREATE TABLE "AgreementRoleCommunicationChannelType" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "appliesToAgreementTypeId" BIGINT NOT NULL,
+    "title" VARCHAR(50) NOT NULL,
+    CONSTRAINT "AgreementRoleCommunicationChannelType_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "AgreementRoleCommunicationChannelType_N49" ON "AgreementRoleCommunicationChannelType" ("appliesToAgreementTypeId");
+
+CREATE TABLE "AgreementRoleType" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "appliesToAgreementTypeId" BIGINT NOT NULL,
+    "title" VARCHAR(50) NOT NULL,
+    CONSTRAINT "AgreementRoleType_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "AgreementRoleType_N49" ON "AgreementRoleType" ("appliesToAgreementTypeId");
+
+CREATE TABLE "AgreementType" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "title" VARCHAR(50) NOT NULL,
+    CONSTRAINT "AgreementType_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "AgreementType_title_UNQ" UNIQUE ("title")
+);
+
+CREATE TABLE "AuditEntry" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "identifier" VARCHAR(20) NOT NULL,
+    "objectType" VARCHAR(254) NOT NULL,
+    "postValue" VARCHAR(255),
+    "preValue" VARCHAR(255),
+    "timestampEpoch" BIGINT NOT NULL,
+    "user" VARCHAR(50),
+    CONSTRAINT "AuditEntry_PK" PRIMARY KEY ("id")
+);
+
+CREATE TABLE "BankAccount" (
+    "id" BIGINT NOT NULL,
+    "accountNumber" VARCHAR(20),
+    "bankPartyId" BIGINT,
+    "bankAccountType" VARCHAR(20) NOT NULL,
+    "branchCode" VARCHAR(20),
+    "countryId" BIGINT,
+    "iban" VARCHAR(32),
+    "nationalBankCode" VARCHAR(20),
+    "nationalCheckCode" VARCHAR(20),
+    CONSTRAINT "BankAccount_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "BankAccount_N49" ON "BankAccount" ("countryId");
+CREATE INDEX "BankAccount_N50" ON "BankAccount" ("bankPartyId");
+
+CREATE TABLE "BankMandate" (
+    "id" BIGINT NOT NULL,
+    "bankAccountId" BIGINT NOT NULL,
+    CONSTRAINT "BankMandate_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "BankMandate_N49" ON "BankMandate" ("bankAccountId");
+
+CREATE TABLE "Brand" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "name" VARCHAR(50) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "Brand_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "Brand_name_UNQ" UNIQUE ("name")
+);
+
+CREATE TABLE "BreakOption" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "breakDate" DATE NOT NULL,
+    "description" VARCHAR(254),
+    "exerciseDate" DATE NOT NULL,
+    "exerciseType" VARCHAR(20) NOT NULL,
+    "leaseId" BIGINT NOT NULL,
+    "notificationPeriod" VARCHAR(20),
+    "type" VARCHAR(20) NOT NULL,
+    "version" BIGINT NOT NULL,
+    "discriminator" VARCHAR(255) NOT NULL,
+    "reminderDate" DATE,
+    CONSTRAINT "BreakOption_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "BreakOption_N49" ON "BreakOption" ("leaseId");
+
+CREATE TABLE "Charge" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "description" VARCHAR(254) NOT NULL,
+    "groupId" BIGINT NOT NULL,
+    "name" VARCHAR(50) NOT NULL,
+    "reference" VARCHAR(24) NOT NULL,
+    "taxId" BIGINT NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "Charge_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "Charge_reference_UNQ" UNIQUE ("reference"),
+    CONSTRAINT "Charge_name_UNQ" UNIQUE ("name")
+);
+CREATE INDEX "Charge_N49" ON "Charge" ("taxId");
+CREATE INDEX "Charge_N50" ON "Charge" ("groupId");
+
+CREATE TABLE "ChargeGroup" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "name" VARCHAR(50) NOT NULL,
+    "reference" VARCHAR(24) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "ChargeGroup_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "ChargeGroup_reference_UNQ" UNIQUE ("reference")
+);
+
+CREATE TABLE "CommunicationChannel" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "description" VARCHAR(254),
+    "legal" BOOLEAN NOT NULL,
+    "ownerOrganisationId" BIGINT,
+    "ownerPersonId" BIGINT,
+    "ownerPropertyId" BIGINT,
+    "ownerUnitId" BIGINT,
+    "reference" VARCHAR(24),
+    "type" VARCHAR(20) NOT NULL,
+    "version" BIGINT NOT NULL,
+    "discriminator" VARCHAR(255) NOT NULL,
+    "phoneNumber" VARCHAR(20),
+    "emailAddress" VARCHAR(50),
+    "address1" VARCHAR(100),
+    "address2" VARCHAR(100),
+    "city" VARCHAR(50),
+    "countryId" BIGINT,
+    "postalCode" VARCHAR(12),
+    "stateId" BIGINT,
+    CONSTRAINT "CommunicationChannel_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "CommunicationChannel_N49" ON "CommunicationChannel" ("ownerOrganisationId");
+CREATE INDEX "CommunicationChannel_N50" ON "CommunicationChannel" ("countryId");
+CREATE INDEX "CommunicationChannel_N51" ON "CommunicationChannel" ("ownerUnitId");
+CREATE INDEX "CommunicationChannel_N52" ON "CommunicationChannel" ("ownerPersonId");
+CREATE INDEX "CommunicationChannel_N53" ON "CommunicationChannel" ("stateId");
+CREATE INDEX "CommunicationChannel_N54" ON "CommunicationChannel" ("ownerPropertyId");
+CREATE INDEX "EmailAddress_emailAddress_IDX" ON "CommunicationChannel" ("emailAddress");
+CREATE INDEX "PhoneNumber_phoneNumber_IDX" ON "CommunicationChannel" ("phoneNumber");
+CREATE INDEX "PostalAddress_main_idx" ON "CommunicationChannel" ("ownerOrganisationId", "ownerPersonId", "ownerPropertyId", "ownerUnitId", "address1", "postalCode", "city", "countryId");
+
+CREATE TABLE "Country" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "alpha2Code" VARCHAR(2) NOT NULL,
+    "name" VARCHAR(50) NOT NULL,
+    "reference" VARCHAR(24) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "Country_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "Country_alpha2Code_UNQ" UNIQUE ("alpha2Code"),
+    CONSTRAINT "Country_reference_UNQ" UNIQUE ("reference"),
+    CONSTRAINT "Country_name_UNQ" UNIQUE ("name")
+);
+
+CREATE TABLE "Currency" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "name" VARCHAR(50) NOT NULL,
+    "reference" VARCHAR(24) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "Currency_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "Currency_reference_UNQ" UNIQUE ("reference"),
+    CONSTRAINT "Currency_name_UNQ" UNIQUE ("name")
+);
+
+CREATE TABLE "Event" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "calendarName" VARCHAR(254) NOT NULL,
+    "date" DATE NOT NULL,
+    "notes" VARCHAR(4000),
+    "subjectBreakOptionId" BIGINT,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "Event_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "Event_N49" ON "Event" ("subjectBreakOptionId");
+
+CREATE TABLE "FinancialAccount" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "name" VARCHAR(50) NOT NULL,
+    "ownerPartyId" BIGINT NOT NULL,
+    "reference" VARCHAR(24) NOT NULL,
+    "type" VARCHAR(20) NOT NULL,
+    "version" BIGINT NOT NULL,
+    "discriminator" VARCHAR(255) NOT NULL,
+    CONSTRAINT "FinancialAccount_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "FinancialAccount_reference_UNQ" UNIQUE ("reference")
+);
+CREATE INDEX "FinancialAccount_N49" ON "FinancialAccount" ("ownerPartyId");
+
+CREATE TABLE "FixedAsset" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "name" VARCHAR(50) NOT NULL,
+    "reference" VARCHAR(24) NOT NULL,
+    "version" BIGINT NOT NULL,
+    "discriminator" VARCHAR(255) NOT NULL,
+    CONSTRAINT "FixedAsset_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "FixedAsset_reference_UNQ" UNIQUE ("reference")
+);
+CREATE INDEX "FixedAsset_reference_name_IDX" ON "FixedAsset" ("reference", "name");
+
+CREATE TABLE "FixedAssetRegistration" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "subjectId" BIGINT NOT NULL,
+    "typeId" BIGINT NOT NULL,
+    "version" BIGINT NOT NULL,
+    "discriminator" VARCHAR(255) NOT NULL,
+    CONSTRAINT "FixedAssetRegistration_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "FixedAssetRegistration_N49" ON "FixedAssetRegistration" ("subjectId");
+CREATE INDEX "FixedAssetRegistration_N50" ON "FixedAssetRegistration" ("typeId");
+
+CREATE TABLE "FixedAssetRegistrationType" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "fullyQualifiedClassName" VARCHAR(254) NOT NULL,
+    "title" VARCHAR(50) NOT NULL,
+    CONSTRAINT "FixedAssetRegistrationType_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "FixedAssetRegistrationType_title_UNQ" UNIQUE ("title")
+);
+
+CREATE TABLE "FixedAssetRole" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "assetId" BIGINT NOT NULL,
+    "endDate" DATE,
+    "partyId" BIGINT NOT NULL,
+    "startDate" DATE,
+    "type" VARCHAR(20) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "FixedAssetRole_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "FixedAssetRole_N49" ON "FixedAssetRole" ("partyId");
+CREATE INDEX "FixedAssetRole_N50" ON "FixedAssetRole" ("assetId");
+
+CREATE TABLE "Index" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "name" VARCHAR(50) NOT NULL,
+    "reference" VARCHAR(24) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "Index_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "Index_reference_UNQ" UNIQUE ("reference"),
+    CONSTRAINT "Index_name_UNQ" UNIQUE ("name")
+);
+
+CREATE TABLE "IndexBase" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "factor" DECIMAL(19,4),
+    "indexId" BIGINT NOT NULL,
+    "nextIndexBaseId" BIGINT,
+    "startDate" DATE NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "IndexBase_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "IndexBase_N49" ON "IndexBase" ("nextIndexBaseId");
+CREATE INDEX "IndexBase_N50" ON "IndexBase" ("indexId");
+
+CREATE TABLE "IndexValue" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "indexBaseId" BIGINT NOT NULL,
+    "startDate" DATE NOT NULL,
+    "value" DECIMAL(19,4) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "IndexValue_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "IndexValue_N49" ON "IndexValue" ("indexBaseId");
+
+CREATE TABLE "Invoice" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "buyerPartyId" BIGINT NOT NULL,
+    "collectionNumber" VARCHAR(16),
+    "currencyId" BIGINT,
+    "dueDate" DATE NOT NULL,
+    "invoiceDate" DATE,
+    "invoiceNumber" VARCHAR(16),
+    "lastItemSequence" NUMERIC(128),
+    "paymentMethod" VARCHAR(20) NOT NULL,
+    "sellerPartyId" BIGINT NOT NULL,
+    "sourceLeaseId" BIGINT,
+    "status" VARCHAR(20) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "Invoice_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "Invoice_N49" ON "Invoice" ("buyerPartyId");
+CREATE INDEX "Invoice_N50" ON "Invoice" ("sellerPartyId");
+CREATE INDEX "Invoice_N51" ON "Invoice" ("sourceLeaseId");
+CREATE INDEX "Invoice_N52" ON "Invoice" ("currencyId");
+
+CREATE TABLE "InvoiceItem" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "chargeId" BIGINT,
+    "description" VARCHAR(254),
+    "dueDate" DATE NOT NULL,
+    "endDate" DATE,
+    "grossAmount" DECIMAL(19,2),
+    "invoiceId" BIGINT,
+    "netAmount" DECIMAL(19,2),
+    "quantity" DECIMAL(19,2),
+    "sequence" NUMERIC(128) NOT NULL,
+    "startDate" DATE,
+    "taxId" BIGINT,
+    "vatAmount" DECIMAL(19,2),
+    "version" BIGINT NOT NULL,
+    "discriminator" VARCHAR(255) NOT NULL,
+    "leaseTermId" BIGINT,
+    CONSTRAINT "InvoiceItem_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "InvoiceItem_N49" ON "InvoiceItem" ("taxId");
+CREATE INDEX "InvoiceItem_N50" ON "InvoiceItem" ("chargeId");
+CREATE INDEX "InvoiceItem_N51" ON "InvoiceItem" ("leaseTermId");
+CREATE INDEX "InvoiceItem_N52" ON "InvoiceItem" ("invoiceId");
+
+CREATE TABLE "LandRegister" (
+    "id" BIGINT NOT NULL,
+    "categoria" VARCHAR(255),
+    "classe" VARCHAR(255),
+    "codiceComuneCatastale" VARCHAR(255),
+    "comuneAmministrativo" VARCHAR(255),
+    "comuneCatastale" VARCHAR(255),
+    "consistenza" VARCHAR(255),
+    "foglio" VARCHAR(255),
+    "particella" VARCHAR(255),
+    "rendita" VARCHAR(255),
+    "subalterno" VARCHAR(255),
+    CONSTRAINT "LandRegister_PK" PRIMARY KEY ("id")
+);
+
+CREATE TABLE "Lease" (
+    "id" BIGINT NOT NULL,
+    "leaseTypeId" BIGINT,
+    "paidByBankMandateId" BIGINT,
+    "status" VARCHAR(20) NOT NULL,
+    CONSTRAINT "Lease_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "Lease_N49" ON "Lease" ("leaseTypeId");
+CREATE INDEX "Lease_N50" ON "Lease" ("paidByBankMandateId");
+
+CREATE TABLE "LeaseAssignment" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "assignmentDate" DATE NOT NULL,
+    "nextLeaseId" BIGINT,
+    "previousLeaseId" BIGINT,
+    "type" VARCHAR(20) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "LeaseAssignment_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "LeaseAssignment_N49" ON "LeaseAssignment" ("nextLeaseId");
+CREATE INDEX "LeaseAssignment_N50" ON "LeaseAssignment" ("previousLeaseId");
+
+CREATE TABLE "LeaseItem" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "chargeId" BIGINT NOT NULL,
+    "endDate" DATE,
+    "invoicingFrequency" VARCHAR(30) NOT NULL,
+    "leaseId" BIGINT NOT NULL,
+    "paymentMethod" VARCHAR(20) NOT NULL,
+    "sequence" NUMERIC(128) NOT NULL,
+    "startDate" DATE,
+    "status" VARCHAR(20) NOT NULL,
+    "type" VARCHAR(20) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "LeaseItem_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "LeaseItem_N49" ON "LeaseItem" ("leaseId");
+CREATE INDEX "LeaseItem_N50" ON "LeaseItem" ("chargeId");
+CREATE INDEX "LeaseItem_lease_type_sequence_IDX" ON "LeaseItem" ("leaseId", "type", "sequence");
+CREATE INDEX "LeaseItem_lease_type_startDate_IDX" ON "LeaseItem" ("leaseId", "type", "startDate");
+
+CREATE TABLE "LeaseTerm" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "endDate" DATE,
+    "frequency" VARCHAR(20) NOT NULL,
+    "leaseItemId" BIGINT NOT NULL,
+    "nextLeaseTermId" BIGINT,
+    "sequence" NUMERIC(128),
+    "startDate" DATE,
+    "status" VARCHAR(20) NOT NULL,
+    "version" BIGINT NOT NULL,
+    "discriminator" VARCHAR(255) NOT NULL,
+    "baseIndexStartDate" DATE,
+    "baseIndexValue" DECIMAL(19,2),
+    "baseValue" DECIMAL(19,2),
+    "effectiveDate" DATE,
+    "indexId" BIGINT,
+    "indexationPercentage" DECIMAL(19,1),
+    "indexedValue" DECIMAL(19,2),
+    "levellingPercentage" DECIMAL(19,1),
+    "nextIndexStartDate" DATE,
+    "nextIndexValue" DECIMAL(19,2),
+    "rebaseFactor" DECIMAL(19),
+    "settledValue" DECIMAL(19,2),
+    "auditedValue" DECIMAL(19,2),
+    "budgetedValue" DECIMAL(19,2),
+    "auditedTurnover" DECIMAL(19,2),
+    "budgetedTurnover" DECIMAL(19,2),
+    "contractualRent" DECIMAL(19,2),
+    "turnoverRentRule" VARCHAR(254),
+    "turnoverRentValue" DECIMAL(19,2),
+    CONSTRAINT "LeaseTerm_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "LeaseTerm_N49" ON "LeaseTerm" ("leaseItemId");
+CREATE INDEX "LeaseTerm_N50" ON "LeaseTerm" ("indexId");
+CREATE INDEX "LeaseTerm_N51" ON "LeaseTerm" ("nextLeaseTermId");
+CREATE INDEX "LeaseTerm_leaseItem_startDate_IDX" ON "LeaseTerm" ("leaseItemId", "startDate");
+
+CREATE TABLE "LeaseType" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "name" VARCHAR(50) NOT NULL,
+    "reference" VARCHAR(24) NOT NULL,
+    CONSTRAINT "LeaseType_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "LeaseType_name_UNQ" UNIQUE ("name"),
+    CONSTRAINT "LeaseType_reference_UNQ" UNIQUE ("reference")
+);
+
+CREATE TABLE "Numerator" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "format" VARCHAR(30) NOT NULL,
+    "lastIncrement" NUMERIC(128) NOT NULL,
+    "name" VARCHAR(50) NOT NULL,
+    "objectIdentifier" VARCHAR(20),
+    "objectType" VARCHAR(254),
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "Numerator_PK" PRIMARY KEY ("id")
+);
+
+CREATE TABLE "Occupancy" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "activityId" BIGINT,
+    "brandId" BIGINT,
+    "endDate" DATE,
+    "leaseId" BIGINT NOT NULL,
+    "reportOCR" VARCHAR(20) NOT NULL,
+    "reportRent" VARCHAR(20) NOT NULL,
+    "reportTurnover" VARCHAR(20) NOT NULL,
+    "sectorId" BIGINT,
+    "startDate" DATE,
+    "unitId" BIGINT NOT NULL,
+    "unitSizeId" BIGINT,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "Occupancy_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "Occupancy_lease_unit_startDate_UNQ" UNIQUE ("leaseId", "unitId", "startDate")
+);
+CREATE INDEX "Occupancy_N49" ON "Occupancy" ("activityId");
+CREATE INDEX "Occupancy_N50" ON "Occupancy" ("leaseId");
+CREATE INDEX "Occupancy_N51" ON "Occupancy" ("sectorId");
+CREATE INDEX "Occupancy_N52" ON "Occupancy" ("unitSizeId");
+CREATE INDEX "Occupancy_N53" ON "Occupancy" ("brandId");
+CREATE INDEX "Occupancy_N54" ON "Occupancy" ("unitId");
+
+CREATE TABLE "Organisation" (
+    "id" BIGINT NOT NULL,
+    "fiscalCode" VARCHAR(30),
+    "vatCode" VARCHAR(30),
+    CONSTRAINT "Organisation_PK" PRIMARY KEY ("id")
+);
+
+CREATE TABLE "Party" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "name" VARCHAR(80) NOT NULL,
+    "reference" VARCHAR(24) NOT NULL,
+    "version" BIGINT NOT NULL,
+    "discriminator" VARCHAR(255) NOT NULL,
+    CONSTRAINT "Party_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "Party_reference_UNQ" UNIQUE ("reference")
+);
+CREATE INDEX "Party_reference_name_IDX" ON "Party" ("reference", "name");
+
+CREATE TABLE "PartyRegistration" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "endDate" DATE,
+    "partyId" BIGINT NOT NULL,
+    "startDate" DATE,
+    "type" VARCHAR(20) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "PartyRegistration_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "PartyRegistration_N49" ON "PartyRegistration" ("partyId");
+
+CREATE TABLE "Person" (
+    "id" BIGINT NOT NULL,
+    "firstName" VARCHAR(50),
+    "gender" VARCHAR(20) NOT NULL,
+    "initials" VARCHAR(3),
+    "lastName" VARCHAR(50) NOT NULL,
+    CONSTRAINT "Person_PK" PRIMARY KEY ("id")
+);
+
+CREATE TABLE "Property" (
+    "id" BIGINT NOT NULL,
+    "acquireDate" DATE,
+    "area" DECIMAL(19,2),
+    "city" VARCHAR(50),
+    "countryId" BIGINT,
+    "disposalDate" DATE,
+    "location" BLOB(1G),
+    "openingDate" DATE,
+    "type" VARCHAR(20) NOT NULL,
+    CONSTRAINT "Property_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "Property_N49" ON "Property" ("countryId");
+
+CREATE TABLE "Sector" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "name" VARCHAR(50) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "Sector_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "Sector_name_UNQ" UNIQUE ("name")
+);
+
+CREATE TABLE "State" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "countryId" BIGINT NOT NULL,
+    "name" VARCHAR(50) NOT NULL,
+    "reference" VARCHAR(6) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "State_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "Geography_reference_UNQ" UNIQUE ("reference"),
+    CONSTRAINT "Geography_name_UNQ" UNIQUE ("name")
+);
+CREATE INDEX "State_N49" ON "State" ("countryId");
+
+CREATE TABLE "Tag" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "name" VARCHAR(50) NOT NULL,
+    "objectType" VARCHAR(254) NOT NULL,
+    "taggable_Occupancy_id_EID" BIGINT,
+    "value" VARCHAR(255) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "Tag_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "Tag_taggable_name_UNQ" UNIQUE ("taggable_Occupancy_id_EID", "name")
+);
+CREATE INDEX "Tag_N49" ON "Tag" ("taggable_Occupancy_id_EID");
+
+CREATE TABLE "Tax" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "name" VARCHAR(50),
+    "reference" VARCHAR(24) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "Tax_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "Tax_reference_UNQ" UNIQUE ("reference")
+);
+
+CREATE TABLE "TaxRate" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "endDate" DATE,
+    "nextTaxRateId" BIGINT,
+    "percentage" DECIMAL(19,2),
+    "startDate" DATE,
+    "taxId" BIGINT NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "TaxRate_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "TaxRate_N49" ON "TaxRate" ("taxId");
+CREATE INDEX "TaxRate_N50" ON "TaxRate" ("nextTaxRateId");
+
+CREATE TABLE "Unit" (
+    "id" BIGINT NOT NULL,
+    "area" DECIMAL(19,2),
+    "dehorsArea" DECIMAL(19,2),
+    "endDate" DATE,
+    "mezzanineArea" DECIMAL(19,2),
+    "propertyId" BIGINT NOT NULL,
+    "salesArea" DECIMAL(19,2),
+    "startDate" DATE,
+    "storageArea" DECIMAL(19,2),
+    "type" VARCHAR(20) NOT NULL,
+    CONSTRAINT "Unit_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "Unit_N49" ON "Unit" ("propertyId");
+
+CREATE TABLE "UnitSize" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "name" VARCHAR(50) NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "UnitSize_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "UnitSize_name_UNQ" UNIQUE ("name")
+);
+
+ALTER TABLE "Activity" ADD CONSTRAINT "Activity_FK1"
+    FOREIGN KEY ("sectorId") REFERENCES "Sector" ("id");
+ALTER TABLE "Agreement" ADD CONSTRAINT "Agreement_FK1"
+    FOREIGN KEY ("nextAgreementId") REFERENCES "Agreement" ("id");
+ALTER TABLE "Agreement" ADD CONSTRAINT "Agreement_FK2"
+    FOREIGN KEY ("typeId") REFERENCES "AgreementType" ("id");
+ALTER TABLE "AgreementRole" ADD CONSTRAINT "AgreementRole_FK1"
+    FOREIGN KEY ("typeId") REFERENCES "AgreementRoleType" ("id");
+ALTER TABLE "AgreementRole" ADD CONSTRAINT "AgreementRole_FK2"
+    FOREIGN KEY ("partyId") REFERENCES "Party" ("id");
+ALTER TABLE "AgreementRole" ADD CONSTRAINT "AgreementRole_FK3"
+    FOREIGN KEY ("agreementId") REFERENCES "Agreement" ("id");
+ALTER TABLE "AgreementRoleCommunicationChannel" ADD CONSTRAINT "AgreementRoleCommunicationChannel_FK1"
+    FOREIGN KEY ("communicationChannelId") REFERENCES "CommunicationChannel" ("id");
+ALTER TABLE "AgreementRoleCommunicationChannel" ADD CONSTRAINT "AgreementRoleCommunicationChannel_FK2"
+    FOREIGN KEY ("agreementRoleId") REFERENCES "AgreementRole" ("id");
+ALTER TABLE "AgreementRoleCommunicationChannel" ADD CONSTRAINT "AgreementRoleCommunicationChannel_FK3"
+    FOREIGN KEY ("typeId") REFERENCES "AgreementRoleCommunicationChannelType" ("id");
+ALTER TABLE "AgreementRoleCommunicationChannelType" ADD CONSTRAINT "AgreementRoleCommunicationChannelType_FK1"
+    FOREIGN KEY ("appliesToAgreementTypeId") REFERENCES "AgreementType" ("id");
+ALTER TABLE "AgreementRoleType" ADD CONSTRAINT "AgreementRoleType_FK1"
+    FOREIGN KEY ("appliesToAgreementTypeId") REFERENCES "AgreementType" ("id");
+ALTER TABLE "BankAccount" ADD CONSTRAINT "BankAccount_FK1"
+    FOREIGN KEY ("id") REFERENCES "FinancialAccount" ("id");
+ALTER TABLE "BankAccount" ADD CONSTRAINT "BankAccount_FK2"
+    FOREIGN KEY ("countryId") REFERENCES "Country" ("id");
+ALTER TABLE "BankAccount" ADD CONSTRAINT "BankAccount_FK3"
+    FOREIGN KEY ("bankPartyId") REFERENCES "Party" ("id");
+ALTER TABLE "BankMandate" ADD CONSTRAINT "BankMandate_FK1"
+    FOREIGN KEY ("id") REFERENCES "Agreement" ("id");
+ALTER TABLE "BankMandate" ADD CONSTRAINT "BankMandate_FK2"
+    FOREIGN KEY ("bankAccountId") REFERENCES "FinancialAccount" ("id");
+ALTER TABLE "BreakOption" ADD CONSTRAINT "BreakOption_FK1"
+    FOREIGN KEY ("leaseId") REFERENCES "Lease" ("id");
+ALTER TABLE "Charge" ADD CONSTRAINT "Charge_FK1"
+    FOREIGN KEY ("taxId") REFERENCES "Tax" ("id");
+ALTER TABLE "Charge" ADD CONSTRAINT "Charge_FK2"
+    FOREIGN KEY ("groupId") REFERENCES "ChargeGroup" ("id");
+ALTER TABLE "CommunicationChannel" ADD CONSTRAINT "CommunicationChannel_FK1"
+    FOREIGN KEY ("ownerOrganisationId") REFERENCES "Organisation" ("id");
+ALTER TABLE "CommunicationChannel" ADD CONSTRAINT "CommunicationChannel_FK2"
+    FOREIGN KEY ("ownerPersonId") REFERENCES "Person" ("id");
+ALTER TABLE "CommunicationChannel" ADD CONSTRAINT "CommunicationChannel_FK3"
+    FOREIGN KEY ("ownerPropertyId") REFERENCES "Property" ("id");
+ALTER TABLE "CommunicationChannel" ADD CONSTRAINT "CommunicationChannel_FK4"
+    FOREIGN KEY ("ownerUnitId") REFERENCES "Unit" ("id");
+ALTER TABLE "CommunicationChannel" ADD CONSTRAINT "CommunicationChannel_FK5"
+    FOREIGN KEY ("countryId") REFERENCES "Country" ("id");
+ALTER TABLE "CommunicationChannel" ADD CONSTRAINT "CommunicationChannel_FK6"
+    FOREIGN KEY ("stateId") REFERENCES "State" ("id");
+ALTER TABLE "Event" ADD CONSTRAINT "Event_FK1"
+    FOREIGN KEY ("subjectBreakOptionId") REFERENCES "BreakOption" ("id");
+ALTER TABLE "FinancialAccount" ADD CONSTRAINT "FinancialAccount_FK1"
+    FOREIGN KEY ("ownerPartyId") REFERENCES "Party" ("id");
+ALTER TABLE "FixedAssetRegistration" ADD CONSTRAINT "FixedAssetRegistration_FK1"
+    FOREIGN KEY ("typeId") REFERENCES "FixedAssetRegistrationType" ("id");
+ALTER TABLE "FixedAssetRegistration" ADD CONSTRAINT "FixedAssetRegistration_FK2"
+    FOREIGN KEY ("subjectId") REFERENCES "FixedAsset" ("id");
+ALTER TABLE "FixedAssetRole" ADD CONSTRAINT "FixedAssetRole_FK1"
+    FOREIGN KEY ("assetId") REFERENCES "FixedAsset" ("id");
+ALTER TABLE "FixedAssetRole" ADD CONSTRAINT "FixedAssetRole_FK2"
+    FOREIGN KEY ("partyId") REFERENCES "Party" ("id");
+ALTER TABLE "IndexBase" ADD CONSTRAINT "IndexBase_FK1"
+    FOREIGN KEY ("nextIndexBaseId") REFERENCES "IndexBase" ("id");
+ALTER TABLE "IndexBase" ADD CONSTRAINT "IndexBase_FK2"
+    FOREIGN KEY ("indexId") REFERENCES "Index" ("id");
+ALTER TABLE "IndexValue" ADD CONSTRAINT "IndexValue_FK1"
+    FOREIGN KEY ("indexBaseId") REFERENCES "IndexBase" ("id");
+ALTER TABLE "Invoice" ADD CONSTRAINT "Invoice_FK1"
+    FOREIGN KEY ("sourceLeaseId") REFERENCES "Lease" ("id");
+ALTER TABLE "Invoice" ADD CONSTRAINT "Invoice_FK2"
+    FOREIGN KEY ("buyerPartyId") REFERENCES "Party" ("id");
+ALTER TABLE "Invoice" ADD CONSTRAINT "Invoice_FK3"
+    FOREIGN KEY ("currencyId") REFERENCES "Currency" ("id");
+ALTER TABLE "Invoice" ADD CONSTRAINT "Invoice_FK4"
+    FOREIGN KEY ("sellerPartyId") REFERENCES "Party" ("id");
+ALTER TABLE "InvoiceItem" ADD CONSTRAINT "InvoiceItem_FK1"
+    FOREIGN KEY ("chargeId") REFERENCES "Charge" ("id");
+ALTER TABLE "InvoiceItem" ADD CONSTRAINT "InvoiceItem_FK2"
+    FOREIGN KEY ("taxId") REFERENCES "Tax" ("id");
+ALTER TABLE "InvoiceItem" ADD CONSTRAINT "InvoiceItem_FK3"
+    FOREIGN KEY ("leaseTermId") REFERENCES "LeaseTerm" ("id");
+ALTER TABLE "InvoiceItem" ADD CONSTRAINT "InvoiceItem_FK4"
+    FOREIGN KEY ("invoiceId") REFERENCES "Invoice" ("id");
+ALTER TABLE "LandRegister" ADD CONSTRAINT "LandRegister_FK1"
+    FOREIGN KEY ("id") REFERENCES "FixedAssetRegistration" ("id");
+ALTER TABLE "Lease" ADD CONSTRAINT "Lease_FK1"
+    FOREIGN KEY ("id") REFERENCES "Agreement" ("id");
+ALTER TABLE "Lease" ADD CONSTRAINT "Lease_FK2"
+    FOREIGN KEY ("paidByBankMandateId") REFERENCES "BankMandate" ("id");
+ALTER TABLE "Lease" ADD CONSTRAINT "Lease_FK3"
+    FOREIGN KEY ("leaseTypeId") REFERENCES "LeaseType" ("id");
+ALTER TABLE "LeaseAssignment" ADD CONSTRAINT "LeaseAssignment_FK1"
+    FOREIGN KEY ("previousLeaseId") REFERENCES "Lease" ("id");
+ALTER TABLE "LeaseAssignment" ADD CONSTRAINT "LeaseAssignment_FK2"
+    FOREIGN KEY ("nextLeaseId") REFERENCES "Lease" ("id");
+ALTER TABLE "LeaseItem" ADD CONSTRAINT "LeaseItem_FK1"
+    FOREIGN KEY ("leaseId") REFERENCES "Lease" ("id");
+ALTER TABLE "LeaseItem" ADD CONSTRAINT "LeaseItem_FK2"
+    FOREIGN KEY ("chargeId") REFERENCES "Charge" ("id");
+ALTER TABLE "LeaseTerm" ADD CONSTRAINT "LeaseTerm_FK1"
+    FOREIGN KEY ("leaseItemId") REFERENCES "LeaseItem" ("id");
+ALTER TABLE "LeaseTerm" ADD CONSTRAINT "LeaseTerm_FK2"
+    FOREIGN KEY ("nextLeaseTermId") REFERENCES "LeaseTerm" ("id");
+ALTER TABLE "LeaseTerm" ADD CONSTRAINT "LeaseTerm_FK3"
+    FOREIGN KEY ("indexId") REFERENCES "Index" ("id");
+ALTER TABLE "Occupancy" ADD CONSTRAINT "Occupancy_FK1"
+    FOREIGN KEY ("activityId") REFERENCES "Activity" ("id");
+ALTER TABLE "Occupancy" ADD CONSTRAINT "Occupancy_FK2"
+    FOREIGN KEY ("leaseId") REFERENCES "Lease" ("id");
+ALTER TABLE "Occupancy" ADD CONSTRAINT "Occupancy_FK3"
+    FOREIGN KEY ("sectorId") REFERENCES "Sector" ("id");
+ALTER TABLE "Occupancy" ADD CONSTRAINT "Occupancy_FK4"
+    FOREIGN KEY ("unitId") REFERENCES "Unit" ("id");
+ALTER TABLE "Occupancy" ADD CONSTRAINT "Occupancy_FK5"
+    FOREIGN KEY ("brandId") REFERENCES "Brand" ("id");
+ALTER TABLE "Occupancy" ADD CONSTRAINT "Occupancy_FK6"
+    FOREIGN KEY ("unitSizeId") REFERENCES "UnitSize" ("id");
+ALTER TABLE "Organisation" ADD CONSTRAINT "Organisation_FK1"
+    FOREIGN KEY ("id") REFERENCES "Party" ("id");
+ALTER TABLE "PartyRegistration" ADD CONSTRAINT "PartyRegistration_FK1"
+    FOREIGN KEY ("partyId") REFERENCES "Party" ("id");
+ALTER TABLE "Person" ADD CONSTRAINT "Person_FK1"
+    FOREIGN KEY ("id") REFERENCES "Party" ("id");
+ALTER TABLE "Property" ADD CONSTRAINT "Property_FK1"
+    FOREIGN KEY ("id") REFERENCES "FixedAsset" ("id");
+ALTER TABLE "Property" ADD CONSTRAINT "Property_FK2"
+    FOREIGN KEY ("countryId") REFERENCES "Country" ("id");
+ALTER TABLE "State" ADD CONSTRAINT "State_FK1"
+    FOREIGN KEY ("countryId") REFERENCES "Country" ("id");
+ALTER TABLE "Tag" ADD CONSTRAINT "Tag_FK1"
+    FOREIGN KEY ("taggable_Occupancy_id_EID") REFERENCES "Occupancy" ("id");
+ALTER TABLE "TaxRate" ADD CONSTRAINT "TaxRate_FK1"
+    FOREIGN KEY ("taxId") REFERENCES "Tax" ("id");
+ALTER TABLE "TaxRate" ADD CONSTRAINT "TaxRate_FK2"
+    FOREIGN KEY ("nextTaxRateId") REFERENCES "TaxRate" ("id");
+ALTER TABLE "Unit" ADD CONSTRAINT "Unit_FK1"
+    FOREIGN KEY ("id") REFERENCES "FixedAsset" ("id");
+ALTER TABLE "Unit" ADD CONSTRAINT "Unit_FK2"
+    FOREIGN KEY ("propertyId") REFERENCES "Property" ("id");
+
+CREATE VIEW "InvoiceSummaryForPropertyDueDate" (
+    "reference",
+    "dueDate",
+    "total",
+    "netAmount",
+    "vatAmount",
+    "grossAmount"
+) AS
+SELECT
+    "FixedAsset"."reference",
+    "Invoice"."dueDate",
+    COUNT("Invoice"."id") AS "total",
+    SUM("InvoiceItem"."netAmount") AS "netAmount",
+    SUM("InvoiceItem"."vatAmount") AS "vatAmount",
+    SUM("InvoiceItem"."grossAmount") AS "grossAmount"
+FROM "Invoice"
+    INNER JOIN "Lease" ON "Invoice"."sourceLeaseId" = "Lease"."id"
+    INNER JOIN "Occupancy" ON "Lease"."id" = "Occupancy"."leaseId"
+    INNER JOIN "Unit" ON "Unit"."id" = "Occupancy"."unitId"
+    INNER JOIN "Property" ON "Property"."id" = "Unit"."propertyId"
+    INNER JOIN "FixedAsset" ON "FixedAsset"."id" = "Property"."id"
+    INNER JOIN "InvoiceItem" ON "InvoiceItem"."invoiceId" = "Invoice"."id"
+GROUP BY
+    "FixedAsset"."reference",
+    "Invoice"."dueDate";
+
+CREATE VIEW "InvoiceSummaryForPropertyDueDateStatus" (
+    "reference",
+    "dueDate",
+    "status",
+    "total",
+    "netAmount",
+    "vatAmount",
+    "grossAmount"
+) AS
+SELECT
+    "FixedAsset"."reference",
+    "Invoice"."dueDate",
+    "Invoice"."status",
+    COUNT("Invoice"."id") AS "total",
+    SUM("InvoiceItem"."netAmount") AS "netAmount",
+    SUM("InvoiceItem"."vatAmount") AS "vatAmount",
+    SUM("InvoiceItem"."grossAmount") AS "grossAmount"
+FROM "Invoice"
+    INNER JOIN "Lease" ON "Invoice"."sourceLeaseId" = "Lease"."id"
+    INNER JOIN "Occupancy" ON "Lease"."id" = "Occupancy"."leaseId"
+    INNER JOIN "Unit" ON "Unit"."id" = "Occupancy"."unitId"
+    INNER JOIN "Property" ON "Property"."id" = "Unit"."propertyId"
+    INNER JOIN "FixedAsset" ON "FixedAsset"."id" = "Property"."id"
+    INNER JOIN "InvoiceItem" ON "InvoiceItem"."invoiceId" = "Invoice"."id"
+GROUP BY
+    "FixedAsset"."reference",
+    "Invoice"."dueDate",
+    "Invoice"."status";
+
+CREATE TABLE "SchemaVersion" (
+    "version" INTEGER NOT NULL,
+    "appliedOn" TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    PRIMARY KEY ("version")
+);
+
+INSERT INTO "SchemaVersion" ("version") VALUES (1);
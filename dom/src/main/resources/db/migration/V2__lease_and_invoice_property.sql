@@ -0,0 +1,98 @@
+--
+--  Copyright 2012-2013 Eurocommercial Properties NV
+--
+--  Licensed under the Apache License, Version 2.0 (the "License");
+--  you may not use this file except in compliance with the License.
+--  You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+--  Unless required by applicable law or agreed to in writing,
+--  software distributed under the License is distributed on an
+--  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+--  either express or implied. See the License for the specific
+--  language governing permissions and limitations under the License.
+--
+
+--
+-- The property of leases and invoices, stored rather than derived from the
+-- occupancies of the lease (see Lease#getProperty(), Invoice#getProperty()).
+--
+
+ALTER TABLE "Lease" ADD COLUMN "propertyId" BIGINT;
+ALTER TABLE "Lease" ADD CONSTRAINT "Lease_property_FK"
+    FOREIGN KEY ("propertyId") REFERENCES "Property" ("id");
+CREATE INDEX "Lease_property_IDX" ON "Lease" ("propertyId");
+
+ALTER TABLE "Invoice" ADD COLUMN "propertyId" BIGINT;
+ALTER TABLE "Invoice" ADD CONSTRAINT "Invoice_property_FK"
+    FOREIGN KEY ("propertyId") REFERENCES "Property" ("id");
+CREATE INDEX "Invoice_property_dueDate_status_IDX" ON "Invoice" ("propertyId", "dueDate", "status");
+CREATE INDEX "Invoice_property_status_IDX" ON "Invoice" ("propertyId", "status");
+
+-- the property of the unit of (any) occupancy of the lease; all occupancies
+-- of a lease are of the same property
+UPDATE "Lease" SET "propertyId" = (
+    SELECT MIN("Unit"."propertyId") FROM "Occupancy"
+    INNER JOIN "Unit" ON "Unit"."id" = "Occupancy"."unitId"
+    WHERE "Occupancy"."leaseId" = "Lease"."id")
+WHERE "propertyId" IS NULL;
+
+-- the property of the lease the invoice is for
+UPDATE "Invoice" SET "propertyId" = (
+    SELECT "Lease"."propertyId" FROM "Lease"
+    WHERE "Lease"."id" = "Invoice"."sourceLeaseId")
+WHERE "propertyId" IS NULL;
+
+-- the invoice summaries now group by the stored property of the invoice
+DROP VIEW "InvoiceSummaryForPropertyDueDate";
+DROP VIEW "InvoiceSummaryForPropertyDueDateStatus";
+
+CREATE VIEW "InvoiceSummaryForPropertyDueDate" (
+    "reference",
+    "dueDate",
+    "total",
+    "netAmount",
+    "vatAmount",
+    "grossAmount"
+) AS
+SELECT
+    "FixedAsset"."reference",
+    "Invoice"."dueDate",
+    COUNT("Invoice"."id") AS "total",
+    SUM("InvoiceItem"."netAmount") AS "netAmount",
+    SUM("InvoiceItem"."vatAmount") AS "vatAmount",
+    SUM("InvoiceItem"."grossAmount") AS "grossAmount"
+FROM "Invoice"
+    INNER JOIN "FixedAsset" ON "FixedAsset"."id" = "Invoice"."propertyId"
+    INNER JOIN "InvoiceItem" ON "InvoiceItem"."invoiceId" = "Invoice"."id"
+GROUP BY
+    "FixedAsset"."reference",
+    "Invoice"."dueDate";
+
+CREATE VIEW "InvoiceSummaryForPropertyDueDateStatus" (
+    "reference",
+    "dueDate",
+    "status",
+    "total",
+    "netAmount",
+    "vatAmount",
+    "grossAmount"
+) AS
+SELECT
+    "FixedAsset"."reference",
+    "Invoice"."dueDate",
+    "Invoice"."status",
+    COUNT("Invoice"."id") AS "total",
+    SUM("InvoiceItem"."netAmount") AS "netAmount",
+    SUM("InvoiceItem"."vatAmount") AS "vatAmount",
+    SUM("InvoiceItem"."grossAmount") AS "grossAmount"
+FROM "Invoice"
+    INNER JOIN "FixedAsset" ON "FixedAsset"."id" = "Invoice"."propertyId"
+    INNER JOIN "InvoiceItem" ON "InvoiceItem"."invoiceId" = "Invoice"."id"
+GROUP BY
+    "FixedAsset"."reference",
+    "Invoice"."dueDate",
+    "Invoice"."status";
+
+INSERT INTO "SchemaVersion" ("version") VALUES (2);
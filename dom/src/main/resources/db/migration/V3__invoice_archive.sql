@@ -0,0 +1,103 @@
+--
+--  Copyright 2012-2013 Eurocommercial Properties NV
+--
+--  Licensed under the Apache License, Version 2.0 (the "License");
+--  you may not use this file except in compliance with the License.
+--  You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+--  Unless required by applicable law or agreed to in writing,
+--  software distributed under the License is distributed on an
+--  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+--  either express or implied. See the License for the specific
+--  language governing permissions and limitations under the License.
+--
+
+--
+-- The archive of invoiced invoices (see InvoiceArchiveService) and the
+-- invoiced values of the lease terms of their items (InvoicedValueSummary),
+-- still counted by the InvoiceCalculationService once the items are archived.
+-- Both start empty; they are filled as invoices are archived.
+--
+
+CREATE TABLE "ArchivedInvoice" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "archiveDate" DATE NOT NULL,
+    "buyerPartyId" BIGINT NOT NULL,
+    "collectionNumber" VARCHAR(16),
+    "currencyId" BIGINT,
+    "dueDate" DATE NOT NULL,
+    "grossAmount" DECIMAL(19,2) NOT NULL,
+    "invoiceDate" DATE,
+    "invoiceNumber" VARCHAR(16),
+    "netAmount" DECIMAL(19,2) NOT NULL,
+    "originalId" BIGINT NOT NULL,
+    "paymentMethod" VARCHAR(20) NOT NULL,
+    "propertyId" BIGINT,
+    "sellerPartyId" BIGINT NOT NULL,
+    "sourceReference" VARCHAR(24),
+    "vatAmount" DECIMAL(19,2) NOT NULL,
+    CONSTRAINT "ArchivedInvoice_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "ArchivedInvoice_originalId_UNQ" UNIQUE ("originalId")
+);
+CREATE INDEX "ArchivedInvoice_N49" ON "ArchivedInvoice" ("sellerPartyId");
+CREATE INDEX "ArchivedInvoice_N50" ON "ArchivedInvoice" ("buyerPartyId");
+CREATE INDEX "ArchivedInvoice_N51" ON "ArchivedInvoice" ("propertyId");
+CREATE INDEX "ArchivedInvoice_N52" ON "ArchivedInvoice" ("currencyId");
+CREATE INDEX "ArchivedInvoice_invoiceNumber_IDX" ON "ArchivedInvoice" ("invoiceNumber");
+CREATE INDEX "ArchivedInvoice_property_dueDate_IDX" ON "ArchivedInvoice" ("propertyId", "dueDate");
+
+CREATE TABLE "ArchivedInvoiceItem" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "chargeId" BIGINT,
+    "description" VARCHAR(254),
+    "dueDate" DATE NOT NULL,
+    "endDate" DATE,
+    "grossAmount" DECIMAL(19,2),
+    "archivedInvoiceId" BIGINT NOT NULL,
+    "leaseTermId" BIGINT,
+    "netAmount" DECIMAL(19,2),
+    "quantity" DECIMAL(19,2),
+    "sequence" NUMERIC(128),
+    "startDate" DATE,
+    "taxId" BIGINT,
+    "vatAmount" DECIMAL(19,2),
+    CONSTRAINT "ArchivedInvoiceItem_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "ArchivedInvoiceItem_N49" ON "ArchivedInvoiceItem" ("taxId");
+CREATE INDEX "ArchivedInvoiceItem_N50" ON "ArchivedInvoiceItem" ("chargeId");
+CREATE INDEX "ArchivedInvoiceItem_N51" ON "ArchivedInvoiceItem" ("archivedInvoiceId");
+CREATE INDEX "ArchivedInvoiceItem_N52" ON "ArchivedInvoiceItem" ("leaseTermId");
+
+CREATE TABLE "InvoicedValueSummary" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "invoicedValue" DECIMAL(19,2) NOT NULL,
+    "leaseTermId" BIGINT NOT NULL,
+    "startDate" DATE NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "InvoicedValueSummary_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "InvoicedValueSummary_leaseTerm_startDate_UNQ" UNIQUE ("leaseTermId", "startDate")
+);
+CREATE INDEX "InvoicedValueSummary_N49" ON "InvoicedValueSummary" ("leaseTermId");
+
+ALTER TABLE "ArchivedInvoice" ADD CONSTRAINT "ArchivedInvoice_FK1"
+    FOREIGN KEY ("propertyId") REFERENCES "Property" ("id");
+ALTER TABLE "ArchivedInvoice" ADD CONSTRAINT "ArchivedInvoice_FK2"
+    FOREIGN KEY ("buyerPartyId") REFERENCES "Party" ("id");
+ALTER TABLE "ArchivedInvoice" ADD CONSTRAINT "ArchivedInvoice_FK3"
+    FOREIGN KEY ("sellerPartyId") REFERENCES "Party" ("id");
+ALTER TABLE "ArchivedInvoice" ADD CONSTRAINT "ArchivedInvoice_FK4"
+    FOREIGN KEY ("currencyId") REFERENCES "Currency" ("id");
+ALTER TABLE "ArchivedInvoiceItem" ADD CONSTRAINT "ArchivedInvoiceItem_FK1"
+    FOREIGN KEY ("leaseTermId") REFERENCES "LeaseTerm" ("id");
+ALTER TABLE "ArchivedInvoiceItem" ADD CONSTRAINT "ArchivedInvoiceItem_FK2"
+    FOREIGN KEY ("taxId") REFERENCES "Tax" ("id");
+ALTER TABLE "ArchivedInvoiceItem" ADD CONSTRAINT "ArchivedInvoiceItem_FK3"
+    FOREIGN KEY ("chargeId") REFERENCES "Charge" ("id");
+ALTER TABLE "ArchivedInvoiceItem" ADD CONSTRAINT "ArchivedInvoiceItem_FK4"
+    FOREIGN KEY ("archivedInvoiceId") REFERENCES "ArchivedInvoice" ("id");
+ALTER TABLE "InvoicedValueSummary" ADD CONSTRAINT "InvoicedValueSummary_FK1"
+    FOREIGN KEY ("leaseTermId") REFERENCES "LeaseTerm" ("id");
+
+INSERT INTO "SchemaVersion" ("version") VALUES (3);
@@ -0,0 +1,40 @@
+--
+--  Copyright 2012-2013 Eurocommercial Properties NV
+--
+--  Licensed under the Apache License, Version 2.0 (the "License");
+--  you may not use this file except in compliance with the License.
+--  You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+--  Unless required by applicable law or agreed to in writing,
+--  software distributed under the License is distributed on an
+--  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+--  either express or implied. See the License for the specific
+--  language governing permissions and limitations under the License.
+--
+
+--
+-- The index of the critical dates of leases (see CriticalDates). It starts
+-- empty: once after upgrading, run Rebuild Critical Dates (Administration
+-- menu, prototype mode) to index the dates of the existing leases.
+--
+
+CREATE TABLE "CriticalDate" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "date" DATE NOT NULL,
+    "leaseId" BIGINT NOT NULL,
+    "sourceKey" VARCHAR(50) NOT NULL,
+    "title" VARCHAR(254) NOT NULL,
+    "type" VARCHAR(20) NOT NULL,
+    CONSTRAINT "CriticalDate_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "CriticalDate_lease_type_sourceKey_UNQ" UNIQUE ("leaseId", "type", "sourceKey")
+);
+CREATE INDEX "CriticalDate_N49" ON "CriticalDate" ("leaseId");
+CREATE INDEX "CriticalDate_date_type_IDX" ON "CriticalDate" ("date", "type");
+CREATE INDEX "CriticalDate_type_date_IDX" ON "CriticalDate" ("type", "date");
+
+ALTER TABLE "CriticalDate" ADD CONSTRAINT "CriticalDate_FK1"
+    FOREIGN KEY ("leaseId") REFERENCES "Lease" ("id");
+
+INSERT INTO "SchemaVersion" ("version") VALUES (4);
@@ -0,0 +1,32 @@
+--
+--  Copyright 2012-2013 Eurocommercial Properties NV
+--
+--  Licensed under the Apache License, Version 2.0 (the "License");
+--  you may not use this file except in compliance with the License.
+--  You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+--  Unless required by applicable law or agreed to in writing,
+--  software distributed under the License is distributed on an
+--  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+--  either express or implied. See the License for the specific
+--  language governing permissions and limitations under the License.
+--
+
+--
+-- The calculation run that last created or changed an invoice item, and the
+-- invoice it created, with what the item was before the run so that the run
+-- can be rolled back (see InvoiceItemsForLease#rollbackRun). Items and
+-- invoices of earlier calculations have no run.
+--
+
+ALTER TABLE "Invoice" ADD COLUMN "runId" VARCHAR(50);
+CREATE INDEX "Invoice_runId_IDX" ON "Invoice" ("runId");
+
+ALTER TABLE "InvoiceItem" ADD COLUMN "runId" VARCHAR(50);
+ALTER TABLE "InvoiceItem" ADD COLUMN "previousRunId" VARCHAR(50);
+ALTER TABLE "InvoiceItem" ADD COLUMN "previousNetAmount" DECIMAL(19,2);
+CREATE INDEX "InvoiceItemForLease_runId_IDX" ON "InvoiceItem" ("runId");
+
+INSERT INTO "SchemaVersion" ("version") VALUES (5);
@@ -0,0 +1,32 @@
+--
+--  Copyright 2012-2013 Eurocommercial Properties NV
+--
+--  Licensed under the Apache License, Version 2.0 (the "License");
+--  you may not use this file except in compliance with the License.
+--  You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+--  Unless required by applicable law or agreed to in writing,
+--  software distributed under the License is distributed on an
+--  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+--  either express or implied. See the License for the specific
+--  language governing permissions and limitations under the License.
+--
+
+--
+-- The invalidations of the second-level cache recorded by each node of a
+-- clustered deployment for the others (see ClusterCacheNode).
+--
+
+CREATE TABLE "CacheInvalidation" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "identifier" VARCHAR(254),
+    "node" VARCHAR(50) NOT NULL,
+    "objectType" VARCHAR(254) NOT NULL,
+    "timestampEpoch" BIGINT NOT NULL,
+    CONSTRAINT "CacheInvalidation_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "CacheInvalidation_timestampEpoch_IDX" ON "CacheInvalidation" ("timestampEpoch");
+
+INSERT INTO "SchemaVersion" ("version") VALUES (6);
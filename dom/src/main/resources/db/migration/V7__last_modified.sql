@@ -0,0 +1,32 @@
+--
+--  Copyright 2012-2013 Eurocommercial Properties NV
+--
+--  Licensed under the Apache License, Version 2.0 (the "License");
+--  you may not use this file except in compliance with the License.
+--  You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+--  Unless required by applicable law or agreed to in writing,
+--  software distributed under the License is distributed on an
+--  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+--  either express or implied. See the License for the specific
+--  language governing permissions and limitations under the License.
+--
+
+--
+-- When leases and invoices were last modified (see LastModifiedListener),
+-- for the modified-since finders of Leases and Invoices. Existing rows are
+-- stamped with the time of the upgrade so that clients that synchronise by
+-- modification time pick them up once.
+--
+
+ALTER TABLE "Lease" ADD COLUMN "lastModified" TIMESTAMP;
+UPDATE "Lease" SET "lastModified" = CURRENT_TIMESTAMP WHERE "lastModified" IS NULL;
+CREATE INDEX "Lease_lastModified_IDX" ON "Lease" ("lastModified");
+
+ALTER TABLE "Invoice" ADD COLUMN "lastModified" TIMESTAMP;
+UPDATE "Invoice" SET "lastModified" = CURRENT_TIMESTAMP WHERE "lastModified" IS NULL;
+CREATE INDEX "Invoice_lastModified_IDX" ON "Invoice" ("lastModified");
+
+INSERT INTO "SchemaVersion" ("version") VALUES (7);
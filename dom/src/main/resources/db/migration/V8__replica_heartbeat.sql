@@ -0,0 +1,30 @@
+--
+--  Copyright 2012-2013 Eurocommercial Properties NV
+--
+--  Licensed under the Apache License, Version 2.0 (the "License");
+--  you may not use this file except in compliance with the License.
+--  You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+--  Unless required by applicable law or agreed to in writing,
+--  software distributed under the License is distributed on an
+--  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+--  either express or implied. See the License for the specific
+--  language governing permissions and limitations under the License.
+--
+
+--
+-- The replica heartbeats, by which the lag of a read replica behind the
+-- primary is measured (see ReplicaRouter).
+--
+
+CREATE TABLE "ReplicaHeartbeat" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "node" VARCHAR(50) NOT NULL,
+    "timestampEpoch" BIGINT NOT NULL,
+    CONSTRAINT "ReplicaHeartbeat_PK" PRIMARY KEY ("id"),
+    CONSTRAINT "ReplicaHeartbeat_node_UNQ" UNIQUE ("node")
+);
+
+INSERT INTO "SchemaVersion" ("version") VALUES (8);
@@ -0,0 +1,39 @@
+--
+--  Copyright 2012-2013 Eurocommercial Properties NV
+--
+--  Licensed under the Apache License, Version 2.0 (the "License");
+--  you may not use this file except in compliance with the License.
+--  You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+--  Unless required by applicable law or agreed to in writing,
+--  software distributed under the License is distributed on an
+--  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+--  either express or implied. See the License for the specific
+--  language governing permissions and limitations under the License.
+--
+
+--
+-- The transactional outbox of events to deliver to other systems (see
+-- OutboxDispatcher).
+--
+
+CREATE TABLE "OutboxEvent" (
+    "id" BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 0) NOT NULL,
+    "attempts" INTEGER NOT NULL,
+    "deliveredEpoch" BIGINT,
+    "eventType" VARCHAR(50) NOT NULL,
+    "identifier" VARCHAR(254) NOT NULL,
+    "lastError" VARCHAR(254),
+    "nextAttemptEpoch" BIGINT NOT NULL,
+    "objectType" VARCHAR(254) NOT NULL,
+    "status" VARCHAR(20) NOT NULL,
+    "timestampEpoch" BIGINT NOT NULL,
+    "version" BIGINT NOT NULL,
+    CONSTRAINT "OutboxEvent_PK" PRIMARY KEY ("id")
+);
+CREATE INDEX "OutboxEvent_objectType_identifier_IDX" ON "OutboxEvent" ("objectType", "identifier");
+CREATE INDEX "OutboxEvent_status_nextAttemptEpoch_IDX" ON "OutboxEvent" ("status", "nextAttemptEpoch");
+
+INSERT INTO "SchemaVersion" ("version") VALUES (9);
@@ -0,0 +1,105 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.app;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+import org.estatio.dom.invoice.InvoiceStatus;
+
+public class ViewModelMementoTest {
+
+    @Test
+    public void roundTrip() {
+        final String memento = ViewModelMemento.writer()
+                .writeString("OXF-\u00dcnit/1")
+                .writeLocalDate(new LocalDate(2013, 4, 1))
+                .writeBigDecimal(new BigDecimal("-12345678901234567890.75"))
+                .writeEnum(InvoiceStatus.APPROVED)
+                .writeInt(Integer.MIN_VALUE)
+                .writeInt(123)
+                .toString();
+
+        final ViewModelMemento.Reader reader = ViewModelMemento.reader(memento);
+        assertThat(reader.readString(), is("OXF-\u00dcnit/1"));
+        assertThat(reader.readLocalDate(), is(new LocalDate(2013, 4, 1)));
+        assertThat(reader.readBigDecimal(), is(new BigDecimal("-12345678901234567890.75")));
+        assertThat(reader.readEnum(InvoiceStatus.class), is(InvoiceStatus.APPROVED));
+        assertThat(reader.readInt(), is(Integer.MIN_VALUE));
+        assertThat(reader.readInt(), is(123));
+    }
+
+    @Test
+    public void roundTripNulls() {
+        final String memento = ViewModelMemento.writer()
+                .writeString(null)
+                .writeLocalDate(null)
+                .writeBigDecimal(null)
+                .writeEnum(null)
+                .toString();
+
+        final ViewModelMemento.Reader reader = ViewModelMemento.reader(memento);
+        assertThat(reader.readString(), is(nullValue()));
+        assertThat(reader.readLocalDate(), is(nullValue()));
+        assertThat(reader.readBigDecimal(), is(nullValue()));
+        assertThat(reader.readEnum(InvoiceStatus.class), is(nullValue()));
+    }
+
+    @Test
+    public void isUrlSafe() {
+        final String memento = ViewModelMemento.writer()
+                .writeString("???>>>~~~")
+                .writeBigDecimal(new BigDecimal("11.75"))
+                .toString();
+        assertThat(memento.matches("[A-Za-z0-9_-]+"), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void typeMismatch() {
+        final String memento = ViewModelMemento.writer().writeString("OXF").toString();
+        ViewModelMemento.reader(memento).readLocalDate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncated() {
+        final String memento = ViewModelMemento.writer().writeString("OXF").toString();
+        final ViewModelMemento.Reader reader = ViewModelMemento.reader(memento);
+        reader.readString();
+        reader.readString();
+    }
+
+    @Test
+    public void legacyXml() {
+        final String legacy = "PG1lbWVudG8-PHJlZmVyZW5jZT5PWEY8L3JlZmVyZW5jZT48L21lbWVudG8-";
+        assertThat(ViewModelMemento.legacyXmlOf(legacy), is("<memento><reference>OXF</reference></memento>"));
+        assertThat(ViewModelMemento.legacyXmlOf(ViewModelMemento.writer().toString()), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void legacyXmlIsNotReadable() {
+        ViewModelMemento.reader("PG1lbWVudG8-PHJlZmVyZW5jZT5PWEY8L3JlZmVyZW5jZT48L21lbWVudG8-");
+    }
+
+}
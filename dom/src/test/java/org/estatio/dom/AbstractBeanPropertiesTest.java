@@ -38,6 +38,7 @@ public abstract class AbstractBeanPropertiesTest {
     protected PojoTester newPojoTester() {
         final PojoTester pojoTester = PojoTester.relaxed()
 			.withFixture(FixtureDatumFactoriesForJoda.dates())
+			.withFixture(FixtureDatumFactoriesForJoda.dateTimes())
             .withFixture(DomainObjectContainer.class, mockContainer)
             ;
         return pojoTester;
@@ -18,6 +18,7 @@
  */
 package org.estatio.dom;
 
+import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 
 import org.estatio.dom.PojoTester.FixtureDatumFactory;
@@ -28,5 +29,9 @@ public class FixtureDatumFactoriesForJoda {
 		return new FixtureDatumFactory<LocalDate>(LocalDate.class, new LocalDate(2012, 7, 19), new LocalDate(2012, 7, 20), new LocalDate(2012, 8, 19), new LocalDate(2013, 7, 19));
 	}
 
+	public static FixtureDatumFactory<DateTime> dateTimes() {
+		return new FixtureDatumFactory<DateTime>(DateTime.class, new DateTime(2012, 7, 19, 11, 30), new DateTime(2012, 7, 19, 11, 31), new DateTime(2012, 8, 19, 9, 0), new DateTime(2013, 7, 19, 17, 45));
+	}
+
 
 }
@@ -0,0 +1,43 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.financial.utils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class CreditorIdentifierTest {
+
+    @Test
+    public void of() {
+        assertThat(CreditorIdentifier.of("DE", "09999999999"), is("DE98ZZZ09999999999"));
+        assertThat(CreditorIdentifier.of("nl", "0999-9999-999"), is("NL84ZZZ09999999999"));
+    }
+
+    @Test
+    public void valid() {
+        assertThat(CreditorIdentifier.valid("DE98ZZZ09999999999"), is(true));
+        assertThat(CreditorIdentifier.valid("DE98ABC09999999999"), is(true));
+        assertThat(CreditorIdentifier.valid("DE97ZZZ09999999999"), is(false));
+        assertThat(CreditorIdentifier.valid("DE98"), is(false));
+        assertThat(CreditorIdentifier.valid(null), is(false));
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.index;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class IndexValueIngestionServiceTest_rebaseFactorOf {
+
+    @Test
+    public void averageOfBaseYearDividedByHundred() {
+        // ISTAT FOI 2010, as in the fixture's base 2011 (factor 1.373)
+        assertThat(
+                IndexValueIngestionService.rebaseFactorOf(valuesOf(
+                        136, 136.2, 136.5, 137, 137.1, 137.1, 137.6, 137.9, 137.5, 137.8, 137.9, 138.4)),
+                is(new BigDecimal("1.373")));
+    }
+
+    @Test
+    public void averageIsRoundedToOneDecimal() {
+        // ISTAT FOI 1992 averages 118.891..., as in the fixture's base 1993
+        assertThat(
+                IndexValueIngestionService.rebaseFactorOf(valuesOf(
+                        116.7, 116.9, 117.4, 117.9, 118.5, 118.9, 119.1, 119.2, 119.6, 120.3, 121, 121.2)),
+                is(new BigDecimal("1.189")));
+    }
+
+    @Test
+    public void whenIncomplete() {
+        assertThat(
+                IndexValueIngestionService.rebaseFactorOf(valuesOf(106.7, 106.7, 106.9)),
+                is(nullValue()));
+    }
+
+    private static List<BigDecimal> valuesOf(final double... values) {
+        final BigDecimal[] decimals = new BigDecimal[values.length];
+        for (int i = 0; i < values.length; i++) {
+            decimals[i] = BigDecimal.valueOf(values[i]);
+        }
+        return Arrays.asList(decimals);
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.index;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+public class IndexValueRowTest {
+
+    @Test
+    public void parse() {
+        final IndexValueRow row = IndexValueRow.parse("ISTAT-FOI,2010,2013-08,107.3", 2);
+        assertThat(row.getIndexReference(), is("ISTAT-FOI"));
+        assertThat(row.getBaseYear(), is(2010));
+        assertThat(row.getBaseStartDate(), is(new LocalDate(2011, 1, 1)));
+        assertThat(row.getStartDate(), is(new LocalDate(2013, 8, 1)));
+        assertThat(row.getValue(), is(new BigDecimal("107.3")));
+        assertThat(row.getFactor(), is(nullValue()));
+        assertThat(row.getLineNumber(), is(2));
+    }
+
+    @Test
+    public void parseWithFactorAndSemicolons() {
+        final IndexValueRow row = IndexValueRow.parse(" INSEE-ICC ; 2013 ; 2014-01-01 ; 100.2 ; 1.073 ", 3);
+        assertThat(row.getIndexReference(), is("INSEE-ICC"));
+        assertThat(row.getStartDate(), is(new LocalDate(2014, 1, 1)));
+        assertThat(row.getFactor(), is(new BigDecimal("1.073")));
+    }
+
+    @Test
+    public void parseSdmxMonth() {
+        final IndexValueRow row = IndexValueRow.parse("CPI,2005,2013-M11,121.4", 1);
+        assertThat(row.getStartDate(), is(new LocalDate(2013, 11, 1)));
+    }
+
+    @Test
+    public void parseSkipsHeaderCommentsAndBlankLines() {
+        assertThat(IndexValueRow.parse("index,base year,month,value", 1), is(nullValue()));
+        assertThat(IndexValueRow.parse("# ISTAT FOI", 2), is(nullValue()));
+        assertThat(IndexValueRow.parse("   ", 3), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWhenHeaderNotOnFirstLine() {
+        IndexValueRow.parse("index,base year,month,value", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWhenInvalidMonth() {
+        IndexValueRow.parse("ISTAT-FOI,2010,2013-13,107.3", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWhenInvalidValue() {
+        IndexValueRow.parse("ISTAT-FOI,2010,2013-08,n/a", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWhenFieldsMissing() {
+        IndexValueRow.parse("ISTAT-FOI,2010,2013-08", 2);
+    }
+
+}
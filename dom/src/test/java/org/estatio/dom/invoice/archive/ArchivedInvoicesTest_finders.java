@@ -0,0 +1,114 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.invoice.archive;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.isis.applib.query.Query;
+import org.apache.isis.core.commons.matchers.IsisMatchers;
+
+import org.estatio.dom.FinderInteraction;
+import org.estatio.dom.FinderInteraction.FinderMethod;
+import org.estatio.dom.asset.Property;
+
+public class ArchivedInvoicesTest_finders {
+
+    private FinderInteraction finderInteraction;
+
+    private ArchivedInvoices archivedInvoices;
+
+    private Property property;
+
+    @Before
+    public void setup() {
+
+        property = new Property();
+
+        archivedInvoices = new ArchivedInvoices() {
+
+            @Override
+            protected <T> T firstMatch(Query<T> query) {
+                finderInteraction = new FinderInteraction(query, FinderMethod.FIRST_MATCH);
+                return null;
+            }
+
+            @Override
+            protected <T> List<T> allMatches(Query<T> query) {
+                finderInteraction = new FinderInteraction(query, FinderMethod.ALL_MATCHES);
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void findArchivedInvoices_withoutDueDate() {
+
+        archivedInvoices.findArchivedInvoices(property, null);
+
+        assertThat(finderInteraction.getFinderMethod(), is(FinderMethod.ALL_MATCHES));
+        assertThat(finderInteraction.getResultType(), IsisMatchers.classEqualTo(ArchivedInvoice.class));
+        assertThat(finderInteraction.getQueryName(), is("findByProperty"));
+        assertThat(finderInteraction.getArgumentsByParameterName().get("property"), is((Object) property));
+        assertThat(finderInteraction.getArgumentsByParameterName().size(), is(1));
+    }
+
+    @Test
+    public void findArchivedInvoices_withDueDate() {
+
+        final LocalDate dueDate = new LocalDate(2013, 4, 1);
+        archivedInvoices.findArchivedInvoices(property, dueDate);
+
+        assertThat(finderInteraction.getFinderMethod(), is(FinderMethod.ALL_MATCHES));
+        assertThat(finderInteraction.getResultType(), IsisMatchers.classEqualTo(ArchivedInvoice.class));
+        assertThat(finderInteraction.getQueryName(), is("findByPropertyAndDueDate"));
+        assertThat(finderInteraction.getArgumentsByParameterName().get("property"), is((Object) property));
+        assertThat(finderInteraction.getArgumentsByParameterName().get("dueDate"), is((Object) dueDate));
+        assertThat(finderInteraction.getArgumentsByParameterName().size(), is(2));
+    }
+
+    @Test
+    public void findArchivedInvoicesByNumber() {
+
+        archivedInvoices.findArchivedInvoicesByNumber("*123");
+
+        assertThat(finderInteraction.getFinderMethod(), is(FinderMethod.ALL_MATCHES));
+        assertThat(finderInteraction.getResultType(), IsisMatchers.classEqualTo(ArchivedInvoice.class));
+        assertThat(finderInteraction.getQueryName(), is("findByInvoiceNumber"));
+        assertThat(finderInteraction.getArgumentsByParameterName().get("invoiceNumber"), is((Object) ".*123"));
+    }
+
+    @Test
+    public void findByOriginalId() {
+
+        archivedInvoices.findByOriginalId(Long.valueOf(42));
+
+        assertThat(finderInteraction.getFinderMethod(), is(FinderMethod.FIRST_MATCH));
+        assertThat(finderInteraction.getResultType(), IsisMatchers.classEqualTo(ArchivedInvoice.class));
+        assertThat(finderInteraction.getQueryName(), is("findByOriginalId"));
+        assertThat(finderInteraction.getArgumentsByParameterName().get("originalId"), is((Object) Long.valueOf(42)));
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.invoice.sepa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class Pain008WriterTest {
+
+    private static final LocalDate JAN = new LocalDate(2013, 1, 1);
+    private static final LocalDate APR = new LocalDate(2013, 4, 1);
+
+    private final Pain008Writer.Creditor acme = new Pain008Writer.Creditor("ACME", "NL31ABNA0580744433", "NL84ZZZ09999999999");
+    private final Pain008Writer.Creditor helloWorld = new Pain008Writer.Creditor("Hello World", "NL31ABNA0580744434", "NL84ZZZ09999999998");
+
+    private Pain008Writer writer;
+
+    @Before
+    public void setUp() throws Exception {
+        writer = new Pain008Writer("MSG-1", new DateTime(2013, 3, 15, 12, 0, 0));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        writer.close();
+    }
+
+    @Test
+    public void groupsPerCreditorAndCollectionDate() throws Exception {
+        writer.add(acme, JAN, directDebit("000000001", "100.00"));
+        writer.add(helloWorld, JAN, directDebit("000000002", "50.5"));
+        writer.add(acme, APR, directDebit("000000003", "25.00"));
+        writer.add(acme, JAN, directDebit("000000004", "0.125"));
+
+        assertThat(writer.getNumberOfTransactions(), is(4));
+        assertThat(writer.getNumberOfPaymentInformations(), is(3));
+
+        final Element document = finish();
+        assertThat(text(document, "GrpHdr", "NbOfTxs"), is("4"));
+        assertThat(text(document, "GrpHdr", "CtrlSum"), is("175.63"));
+
+        // ordered by creditor identifier and collection date
+        final NodeList paymentInformations = document.getElementsByTagNameNS(Pain008Writer.NAMESPACE, "PmtInf");
+        assertThat(paymentInformations.getLength(), is(3));
+
+        final Element acmeJan = (Element) paymentInformations.item(1);
+        assertThat(text(acmeJan, "ReqdColltnDt"), is("2013-01-01"));
+        assertThat(text(acmeJan, "NbOfTxs"), is("2"));
+        assertThat(text(acmeJan, "CtrlSum"), is("100.13"));
+        assertThat(endToEndIds(acmeJan), is("000000001,000000004"));
+
+        final Element acmeApr = (Element) paymentInformations.item(2);
+        assertThat(text(acmeApr, "ReqdColltnDt"), is("2013-04-01"));
+        assertThat(endToEndIds(acmeApr), is("000000003"));
+
+        final Element helloWorldJan = (Element) paymentInformations.item(0);
+        assertThat(text(helloWorldJan, "Cdtr", "Nm"), is("Hello World"));
+        assertThat(text(helloWorldJan, "CdtrSchmeId", "Othr", "Id"), is("NL84ZZZ09999999998"));
+        assertThat(text(helloWorldJan, "InstdAmt"), is("50.50"));
+        assertThat(endToEndIds(helloWorldJan), is("000000002"));
+    }
+
+    @Test
+    public void truncatesAndEscapesText() throws Exception {
+        final StringBuilder longName = new StringBuilder("Smith & Sons <Retail>");
+        while (longName.length() < 100) {
+            longName.append(" Retail");
+        }
+        writer.add(acme, JAN, new Pain008Writer.DirectDebit(
+                "000000001", new BigDecimal("10"), "EUR", "MANDATE-1", JAN, longName.toString(), "NL31ABNA0580744435", "Invoice 1"));
+
+        final Element document = finish();
+        assertThat(text(document, "Dbtr", "Nm"), is(longName.substring(0, 70)));
+        assertThat(text(document, "MndtRltdInf", "DtOfSgntr"), is("2013-01-01"));
+    }
+
+    private static Pain008Writer.DirectDebit directDebit(final String collectionNumber, final String amount) {
+        return new Pain008Writer.DirectDebit(
+                collectionNumber, new BigDecimal(amount), "EUR", "MANDATE-" + collectionNumber, JAN, "Tenant", "NL31ABNA0580744435", "Invoice " + collectionNumber);
+    }
+
+    private Element finish() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.finish(out);
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(out.toByteArray()));
+        return document.getDocumentElement();
+    }
+
+    private static String text(final Element element, final String... path) {
+        Element current = element;
+        for (String name : path) {
+            current = (Element) current.getElementsByTagNameNS(Pain008Writer.NAMESPACE, name).item(0);
+        }
+        return current.getTextContent();
+    }
+
+    private static String endToEndIds(final Element paymentInformation) {
+        final NodeList ids = paymentInformation.getElementsByTagNameNS(Pain008Writer.NAMESPACE, "EndToEndId");
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < ids.getLength(); i++) {
+            buf.append(i > 0 ? "," : "").append(ids.item(i).getTextContent());
+        }
+        return buf.toString();
+    }
+
+}
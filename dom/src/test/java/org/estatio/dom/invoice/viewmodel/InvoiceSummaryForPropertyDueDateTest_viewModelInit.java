@@ -56,5 +56,22 @@ public class InvoiceSummaryForPropertyDueDateTest_viewModelInit {
         assertThat(viewModel.getTotal(), is(123));
     }
 
+    @Test
+    public void roundTrip() {
+        InvoiceSummaryForPropertyDueDate viewModel = new InvoiceSummaryForPropertyDueDate();
+        viewModel.viewModelInit(base64UrlEncodedXml);
+
+        InvoiceSummaryForPropertyDueDate copy = new InvoiceSummaryForPropertyDueDate();
+        copy.viewModelInit(viewModel.viewModelMemento());
+
+        assertThat(copy.getReference(), is("OXF"));
+        assertThat(copy.getDueDate(), is(new LocalDate(2013,4,1)));
+        assertThat(copy.getNetAmount(), is(new BigDecimal("10.00")));
+        assertThat(copy.getVatAmount(), is(new BigDecimal("1.75")));
+        assertThat(copy.getGrossAmount(), is(new BigDecimal("11.75")));
+        assertThat(copy.getTotal(), is(123));
+        assertThat(copy.viewModelMemento(), is(viewModel.viewModelMemento()));
+    }
+
 
 }
@@ -22,6 +22,7 @@ import org.junit.Test;
 
 import org.estatio.dom.AbstractBeanPropertiesTest;
 import org.estatio.dom.PojoTester.FixtureDatumFactory;
+import org.estatio.dom.asset.Property;
 import org.estatio.dom.currency.Currency;
 import org.estatio.dom.invoice.Invoice;
 import org.estatio.dom.invoice.InvoiceSource;
@@ -37,6 +38,7 @@ public class InvoiceTest_beanProperties extends AbstractBeanPropertiesTest {
             .withFixture(statii())
 	        .withFixture(pojos(Party.class, PartyForTesting.class))
 	        .withFixture(pojos(Currency.class))
+	        .withFixture(pojos(Property.class))
 	        // it's necessary to use an actual valid concrete class, because having 
 	        // a test class (eg public class InvoiceSourceForTesting implements InvoiceSource {}) trips up DN.
 	        // the reason is that the DN enhancer doesn't seem to enhance it
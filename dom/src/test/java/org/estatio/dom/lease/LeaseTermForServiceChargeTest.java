@@ -106,4 +106,12 @@ public class LeaseTermForServiceChargeTest {
         assertThat(term.valueForDate(new LocalDate(2012, 7, 31)), is(BigDecimal.valueOf(6600)));
     }
 
+    @Test
+    public void valueForDueDate_withoutEndDate() throws Exception {
+        term.setFrequency(LeaseTermFrequency.YEARLY);
+        term.setAuditedValue(BigDecimal.valueOf(6600));
+        assertThat(term.valueForDate(new LocalDate(2011, 12, 31)), is(BigDecimal.valueOf(6000).setScale(4)));
+        assertThat(term.valueForDate(new LocalDate(2012, 1, 1)), is(BigDecimal.valueOf(6600)));
+    }
+
 }
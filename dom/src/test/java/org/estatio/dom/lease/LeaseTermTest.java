@@ -41,6 +41,8 @@ import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2.Mode;
 import org.estatio.dom.invoice.Invoice;
 import org.estatio.dom.invoice.InvoiceStatus;
 import org.estatio.dom.lease.invoicing.InvoiceItemForLease;
+import org.estatio.dom.lease.invoicing.InvoicedValueSummaries;
+import org.estatio.dom.lease.invoicing.InvoicedValueSummary;
 import org.estatio.dom.valuetypes.LocalDateInterval;
 import org.estatio.services.clock.ClockService;
 
@@ -59,6 +61,9 @@ public class LeaseTermTest {
     @Mock
     private static ClockService mockClockService;
 
+    @Mock
+    InvoicedValueSummaries mockInvoicedValueSummaries;
+
     private final LocalDate now = LocalDate.now();
 
     @Before
@@ -139,9 +144,46 @@ public class LeaseTermTest {
         item2.modifyLeaseTerm(term);
         item2.setStartDate(date);
 
+        term.injectInvoicedValueSummaries(mockInvoicedValueSummaries);
+        context.checking(new Expectations() {
+            {
+                allowing(mockInvoicedValueSummaries).findByLeaseTermAndStartDate(with(any(LeaseTerm.class)), with(any(LocalDate.class)));
+                will(returnValue(null));
+            }
+        });
+
         Assert.assertThat(term.invoicedValueFor(date), Is.is(new BigDecimal("2468.90")));
     }
 
+    @Test
+    public void invoicedValueFor_includesArchived() throws Exception {
+        final LocalDate date = new LocalDate(2012, 1, 1);
+        final LeaseTermForTesting term = new LeaseTermForTesting();
+        final Invoice invoice = new Invoice();
+        invoice.setStatus(InvoiceStatus.APPROVED);
+        final InvoiceItemForLease item = new InvoiceItemForLease();
+        invoice.getItems().add(item);
+        item.setInvoice(invoice);
+        item.modifyLeaseTerm(term);
+        item.setStartDate(date);
+        item.setNetAmount(BigDecimal.valueOf(1234.45));
+
+        final InvoicedValueSummary archived = new InvoicedValueSummary();
+        archived.setLeaseTerm(term);
+        archived.setStartDate(date);
+        archived.setInvoicedValue(BigDecimal.valueOf(1000));
+
+        term.injectInvoicedValueSummaries(mockInvoicedValueSummaries);
+        context.checking(new Expectations() {
+            {
+                allowing(mockInvoicedValueSummaries).findByLeaseTermAndStartDate(term, date);
+                will(returnValue(archived));
+            }
+        });
+
+        Assert.assertThat(term.invoicedValueFor(date), Is.is(new BigDecimal("2234.45")));
+    }
+
     @Test
     public void testEffectiveInterval() throws Exception {
         term.update();
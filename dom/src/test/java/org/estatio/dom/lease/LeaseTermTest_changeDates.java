@@ -25,11 +25,13 @@ import static org.junit.Assert.assertThat;
 
 import java.math.BigDecimal;
 
+import org.jmock.Expectations;
 import org.junit.Before;
 import org.junit.Test;
 
 import org.estatio.dom.WithIntervalMutable;
 import org.estatio.dom.contracttests.AbstractWithIntervalMutableContractTest_changeDates;
+import org.estatio.dom.lease.criticaldates.CriticalDates;
 
 public class LeaseTermTest_changeDates extends AbstractWithIntervalMutableContractTest_changeDates<LeaseTerm> {
 
@@ -38,6 +40,19 @@ public class LeaseTermTest_changeDates extends AbstractWithIntervalMutableContra
     @Before
     public void setUp() throws Exception {
         leaseTerm = withIntervalMutable;
+
+        final Lease lease = new Lease();
+        final LeaseItem leaseItem = new LeaseItem();
+        leaseItem.setLease(lease);
+        leaseTerm.setLeaseItem(leaseItem);
+
+        final CriticalDates mockCriticalDates = context.mock(CriticalDates.class);
+        leaseTerm.injectCriticalDates(mockCriticalDates);
+        context.checking(new Expectations() {
+            {
+                allowing(mockCriticalDates).updateFor(lease);
+            }
+        });
     }
     
     protected LeaseTerm doCreateWithIntervalMutable(final WithIntervalMutable.Helper<LeaseTerm> mockChangeDates) {
@@ -0,0 +1,60 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.estatio.dom.valuetypes.LocalDateInterval;
+
+public class LeaseTermTest_getPeriodInterval {
+
+    private LeaseTermForTesting term;
+
+    @Before
+    public void setUp() throws Exception {
+        term = new LeaseTermForTesting();
+        term.setStartDate(new LocalDate(2013, 1, 1));
+    }
+
+    @Test
+    public void whenOpenEndedThenUpToNextStartDate() {
+        term.setFrequency(LeaseTermFrequency.YEARLY);
+        assertThat(term.getPeriodInterval(),
+                is(LocalDateInterval.including(new LocalDate(2013, 1, 1), new LocalDate(2013, 12, 31))));
+    }
+
+    @Test
+    public void whenEndDateThenInterval() {
+        term.setFrequency(LeaseTermFrequency.YEARLY);
+        term.setEndDate(new LocalDate(2013, 6, 30));
+        assertThat(term.getPeriodInterval(), is(term.getInterval()));
+    }
+
+    @Test
+    public void whenNoFrequencyThenInterval() {
+        term.setFrequency(LeaseTermFrequency.NO_FREQUENCY);
+        assertThat(term.getPeriodInterval(), is(term.getInterval()));
+    }
+
+}
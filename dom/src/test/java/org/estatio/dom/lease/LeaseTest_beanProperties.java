@@ -25,6 +25,7 @@ import org.estatio.dom.PojoTester.FixtureDatumFactory;
 import org.estatio.dom.agreement.Agreement;
 import org.estatio.dom.agreement.AgreementForTesting;
 import org.estatio.dom.agreement.AgreementType;
+import org.estatio.dom.asset.Property;
 import org.estatio.dom.financial.BankMandate;
 import org.estatio.dom.party.Party;
 import org.estatio.dom.party.PartyForTesting;
@@ -39,6 +40,7 @@ public class LeaseTest_beanProperties extends AbstractBeanPropertiesTest {
 	        .withFixture(pojos(AgreementType.class))
 	        .withFixture(pojos(LeaseType.class))
 	        .withFixture(pojos(BankMandate.class))
+	        .withFixture(pojos(Property.class))
             .withFixture(statii())
 	        .exercise(new Lease());
 	}
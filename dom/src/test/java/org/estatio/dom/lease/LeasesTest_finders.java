@@ -101,6 +101,18 @@ public class LeasesTest_finders {
         assertThat(finderInteraction.getArgumentsByParameterName().size(), is(1));
     }
 
+    @Test
+    public void findLeasesByReferenceOrName() {
+
+        leases.findLeasesByReferenceOrName("*REF?1*");
+
+        assertThat(finderInteraction.getFinderMethod(), is(FinderMethod.ALL_MATCHES));
+        assertThat(finderInteraction.getResultType(), IsisMatchers.classEqualTo(Lease.class));
+        assertThat(finderInteraction.getQueryName(), is("findByReferenceOrName"));
+        assertThat(finderInteraction.getArgumentsByParameterName().get("referenceOrName"), is((Object) ".*REF.1.*"));
+        assertThat(finderInteraction.getArgumentsByParameterName().size(), is(1));
+    }
+
     @Test
     public void findLeasesByProperty() {
 
@@ -87,5 +87,19 @@ public class Occupancies_finders {
         assertThat(finderInteraction.getArgumentsByParameterName().size(), is(3));
     }
 
+    @Test
+    public void findByUnit() {
+
+        occupancies.findByUnit(unit);
+
+        assertThat(finderInteraction.getFinderMethod(), is(FinderMethod.ALL_MATCHES));
+
+        assertThat(finderInteraction.getResultType(), IsisMatchers.classEqualTo(Occupancy.class));
+        assertThat(finderInteraction.getQueryName(), is("findByUnit"));
+        assertThat(finderInteraction.getArgumentsByParameterName().get("unit"), is((Object)unit));
+
+        assertThat(finderInteraction.getArgumentsByParameterName().size(), is(1));
+    }
+
     
 }
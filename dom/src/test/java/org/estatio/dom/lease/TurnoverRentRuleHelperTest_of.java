@@ -0,0 +1,54 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+public class TurnoverRentRuleHelperTest_of {
+
+    @Test
+    public void sameRuleIsParsedOnce() {
+        final TurnoverRentRuleHelper helper = TurnoverRentRuleHelper.of("50000;1.5;3.5");
+        assertThat(TurnoverRentRuleHelper.of("50000;1.5;3.5"), is(sameInstance(helper)));
+        assertThat(TurnoverRentRuleHelper.of("50000;1.5;4"), is(not(sameInstance(helper))));
+    }
+
+    @Test
+    public void calculatesAsNewHelper() {
+        final BigDecimal turnover = new BigDecimal("123456.78");
+        assertThat(
+                TurnoverRentRuleHelper.of("50000;1.5;100000;2.5;3.5").calculateRent(turnover),
+                is(new TurnoverRentRuleHelper("50000;1.5;100000;2.5;3.5").calculateRent(turnover)));
+    }
+
+    @Test
+    public void whenInvalidOrNull() {
+        assertThat(TurnoverRentRuleHelper.of("50000;5").isValid(), is(false));
+        assertThat(TurnoverRentRuleHelper.of(null).isValid(), is(false));
+        assertThat(TurnoverRentRuleHelper.of(null).calculateRent(BigDecimal.TEN), is(new BigDecimal("0.00")));
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.criticaldates;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseItem;
+import org.estatio.dom.lease.LeaseItemType;
+import org.estatio.dom.lease.LeaseTermForIndexableRent;
+import org.estatio.dom.lease.breaks.BreakType;
+import org.estatio.dom.lease.breaks.FixedBreakOption;
+
+public class CriticalDatesTest_candidatesFor {
+
+    private Lease lease;
+
+    @Before
+    public void setUp() throws Exception {
+        lease = new Lease();
+        lease.setReference("OXF-TOPMODEL-001");
+        lease.setEndDate(new LocalDate(2022, 6, 30));
+    }
+
+    @Test
+    public void expiry() {
+        final List<CriticalDate> candidates = CriticalDates.candidatesFor(lease);
+
+        assertThat(candidates.size(), is(1));
+        assertCandidate(candidates.get(0), CriticalDateType.LEASE_EXPIRY, new LocalDate(2022, 6, 30), "OXF-TOPMODEL-001 expiry");
+    }
+
+    @Test
+    public void terminationReplacesExpiry() {
+        lease.setTerminationDate(new LocalDate(2015, 3, 31));
+
+        final List<CriticalDate> candidates = CriticalDates.candidatesFor(lease);
+
+        assertThat(candidates.size(), is(1));
+        assertCandidate(candidates.get(0), CriticalDateType.LEASE_EXPIRY, new LocalDate(2015, 3, 31), "OXF-TOPMODEL-001 termination");
+    }
+
+    @Test
+    public void breakOption() {
+        final FixedBreakOption breakOption = new FixedBreakOption();
+        breakOption.setLease(lease);
+        breakOption.setType(BreakType.FIXED);
+        breakOption.setBreakDate(new LocalDate(2017, 7, 1));
+        breakOption.setExerciseDate(new LocalDate(2017, 1, 1));
+        lease.getBreakOptions().add(breakOption);
+
+        final List<CriticalDate> candidates = CriticalDates.candidatesFor(lease);
+
+        assertThat(candidates.size(), is(2));
+        assertCandidate(candidates.get(1), CriticalDateType.BREAK_NOTIFICATION, new LocalDate(2017, 1, 1), "OXF-TOPMODEL-001 Fixed break on 2017-07-01");
+        assertThat(candidates.get(1).getSourceKey(), is("FIXED/2017-07-01"));
+    }
+
+    @Test
+    public void termEndAndIndexReview() {
+        final LeaseItem item = new LeaseItem();
+        item.setLease(lease);
+        item.setType(LeaseItemType.RENT);
+        item.setSequence(BigInteger.ONE);
+        lease.getItems().add(item);
+
+        final LeaseTermForIndexableRent term = new LeaseTermForIndexableRent();
+        term.setLeaseItem(item);
+        term.setSequence(BigInteger.valueOf(2));
+        term.setStartDate(new LocalDate(2013, 1, 1));
+        term.setEndDate(new LocalDate(2013, 12, 31));
+        term.setNextIndexStartDate(new LocalDate(2014, 1, 1));
+        item.getTerms().add(term);
+
+        final List<CriticalDate> candidates = CriticalDates.candidatesFor(lease);
+
+        assertThat(candidates.size(), is(3));
+        assertCandidate(candidates.get(1), CriticalDateType.TERM_END, new LocalDate(2013, 12, 31), "OXF-TOPMODEL-001 Rent term 2 end");
+        assertCandidate(candidates.get(2), CriticalDateType.INDEX_REVIEW, new LocalDate(2014, 1, 1), "OXF-TOPMODEL-001 Rent term 2 index review");
+        assertThat(candidates.get(2).getSourceKey(), is("RENT/1/2"));
+    }
+
+    @Test
+    public void withoutDates() {
+        lease.setEndDate(null);
+
+        assertThat(CriticalDates.candidatesFor(lease).isEmpty(), is(true));
+    }
+
+    private static void assertCandidate(
+            final CriticalDate candidate,
+            final CriticalDateType type,
+            final LocalDate date,
+            final String title) {
+        assertThat(candidate.getType(), is(type));
+        assertThat(candidate.getDate(), is(date));
+        assertThat(candidate.getTitle(), is(title));
+    }
+
+}
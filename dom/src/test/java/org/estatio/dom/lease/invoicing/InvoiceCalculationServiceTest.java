@@ -24,6 +24,7 @@ import static org.junit.Assert.assertThat;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Collections;
 import java.util.List;
 
 import org.jmock.Expectations;
@@ -96,6 +97,9 @@ public class InvoiceCalculationServiceTest {
     @Mock
     private EstatioSettingsService mockSettings;
 
+    @Mock
+    private InvoicedValueSummaries mockInvoicedValueSummaries;
+
     @Rule
     public JUnitRuleMockery2 context = JUnitRuleMockery2.createFor(Mode.INTERFACES_AND_CLASSES);
 
@@ -117,6 +121,8 @@ public class InvoiceCalculationServiceTest {
                 will(returnValue(artLandlord));
                 allowing(mockAgreementRoleTypes).findByTitle("Tenant");
                 will(returnValue(artTenant));
+                allowing(mockInvoicedValueSummaries).findByLeaseTerm(with(any(LeaseTerm.class)));
+                will(returnValue(Collections.emptyList()));
             }
         });
 
@@ -158,6 +164,7 @@ public class InvoiceCalculationServiceTest {
         invoiceItemForLease.injectAgreementTypes(mockAgreementTypes);
 
         ic = new InvoiceCalculationService();
+        ic.injectInvoicedValueSummaries(mockInvoicedValueSummaries);
     }
 
     @Test
@@ -307,11 +314,66 @@ public class InvoiceCalculationServiceTest {
         });
 
         ic.setEstatioSettings(mockSettings);
-        ic.calculateAndInvoice(leaseTerm, new LocalDate(2012, 1, 1), null, new LocalDate(2012, 1, 1), leaseTerm.getLeaseItem().getInvoicingFrequency(), InvoiceRunType.NORMAL_RUN);
+        ic.calculateAndInvoice(leaseTerm, new LocalDate(2012, 1, 1), null, new LocalDate(2012, 1, 1), leaseTerm.getLeaseItem().getInvoicingFrequency(), InvoiceRunType.NORMAL_RUN, "calculate-1");
 
         InvoiceItemForLease invoiceItem = leaseTerm.getInvoiceItems().first();
 
         assertEquals(BigDecimal.valueOf(5000).setScale(2, RoundingMode.HALF_UP), invoiceItem.getNetAmount());
         assertEquals(new LocalDate(2012, 1, 1), invoiceItem.getStartDate());
+        assertEquals("calculate-1", invoiceItem.getRunId());
+    }
+
+    @Test
+    public void testCalculateAdjustments() {
+        leaseTerm.setStartDate(new LocalDate(2012, 1, 1));
+        leaseTerm.setValue(BigDecimal.valueOf(20000));
+
+        final Invoice invoice = new Invoice();
+        invoice.setStatus(InvoiceStatus.INVOICED);
+        final InvoiceItemForLease invoicedItem = new InvoiceItemForLease();
+        invoicedItem.setInvoice(invoice);
+        invoicedItem.setStartDate(new LocalDate(2012, 1, 1));
+        invoicedItem.setDueDate(new LocalDate(2012, 1, 1));
+        invoicedItem.setNetAmount(BigDecimal.valueOf(4000));
+        invoicedItem.modifyLeaseTerm(leaseTerm);
+
+        context.checking(new Expectations() {
+            {
+                allowing(mockSettings).fetchEpochDate();
+                will(returnValue(null));
+            }
+        });
+        ic.setEstatioSettings(mockSettings);
+
+        List<CalculationResult> results = ic.calculateWithFrequency(leaseTerm, new LocalDate(2012, 1, 1), new LocalDate(2012, 6, 30), new LocalDate(2012, 4, 1), InvoicingFrequency.QUARTERLY_IN_ADVANCE);
+        List<CalculationResult> adjustments = ic.calculateAdjustments(leaseTerm, results, InvoicingFrequency.QUARTERLY_IN_ADVANCE, InvoicedValueLedger.of(leaseTerm));
+
+        assertThat(adjustments.size(), is(2));
+        assertThat(adjustments.get(0).getFrequencyInterval().startDate(), is(new LocalDate(2012, 1, 1)));
+        assertThat(adjustments.get(0).getCalculatedValue(), is(BigDecimal.valueOf(1000).setScale(2)));
+        assertThat(adjustments.get(1).getFrequencyInterval().startDate(), is(new LocalDate(2012, 4, 1)));
+        assertThat(adjustments.get(1).getCalculatedValue(), is(BigDecimal.valueOf(5000).setScale(2)));
+    }
+
+    @Test
+    public void testCalculateAdjustmentsBeforeEpochDate() {
+        leaseTerm.setStartDate(new LocalDate(2012, 1, 1));
+        leaseTerm.setValue(BigDecimal.valueOf(20000));
+
+        context.checking(new Expectations() {
+            {
+                allowing(mockSettings).fetchEpochDate();
+                will(returnValue(new LocalDate(2012, 4, 1)));
+            }
+        });
+        ic.setEstatioSettings(mockSettings);
+
+        List<CalculationResult> results = ic.calculateWithFrequency(leaseTerm, new LocalDate(2012, 1, 1), new LocalDate(2012, 6, 30), new LocalDate(2012, 4, 1), InvoicingFrequency.QUARTERLY_IN_ADVANCE);
+        List<CalculationResult> adjustments = ic.calculateAdjustments(leaseTerm, results, InvoicingFrequency.QUARTERLY_IN_ADVANCE, InvoicedValueLedger.of(leaseTerm));
+
+        // the first quarter is assumed to be invoiced before the epoch date
+        assertThat(adjustments.size(), is(1));
+        assertThat(adjustments.get(0).getFrequencyInterval().startDate(), is(new LocalDate(2012, 4, 1)));
+        assertThat(adjustments.get(0).getCalculatedValue(), is(BigDecimal.valueOf(5000).setScale(2)));
     }
 }
@@ -0,0 +1,75 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.invoicing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InvoiceItemForLeaseTest_recalculatedBy {
+
+    private InvoiceItemForLease item;
+
+    @Before
+    public void setup() {
+        item = new InvoiceItemForLease();
+        item.setDueDate(new LocalDate(2012, 1, 1));
+        item.setRunId("calculate-1");
+        item.setNetAmount(BigDecimal.valueOf(100));
+    }
+
+    @Test
+    public void byOtherRunKeepsPreviousRun() {
+        item.recalculatedBy("calculate-2");
+        item.setNetAmount(BigDecimal.valueOf(150));
+
+        assertThat(item.getRunId(), is("calculate-2"));
+        assertThat(item.getPreviousRunId(), is("calculate-1"));
+        assertThat(item.getPreviousNetAmount(), is(BigDecimal.valueOf(100)));
+    }
+
+    @Test
+    public void bySameRun() {
+        item.recalculatedBy("calculate-1");
+
+        assertThat(item.getRunId(), is("calculate-1"));
+        assertThat(item.getPreviousNetAmount(), is(nullValue()));
+    }
+
+    @Test
+    public void restorePreviousRun() {
+        item.recalculatedBy("calculate-2");
+        item.setNetAmount(BigDecimal.valueOf(150));
+
+        item.restorePreviousRun();
+
+        assertThat(item.getRunId(), is("calculate-1"));
+        assertThat(item.getNetAmount(), is(BigDecimal.valueOf(100)));
+        assertThat(item.getGrossAmount(), is(BigDecimal.valueOf(100)));
+        assertThat(item.getPreviousRunId(), is(nullValue()));
+        assertThat(item.getPreviousNetAmount(), is(nullValue()));
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.invoicing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.InvoiceStatus;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.lease.LeaseTermForTesting;
+
+public class InvoicedValueLedgerTest {
+
+    private static final LocalDate Q1 = new LocalDate(2012, 1, 1);
+    private static final LocalDate Q2 = new LocalDate(2012, 4, 1);
+
+    private LeaseTermForTesting leaseTerm;
+
+    private Invoice approvedInvoice;
+    private Invoice invoicedInvoice;
+    private Invoice newInvoice;
+
+    @Before
+    public void setUp() throws Exception {
+        leaseTerm = new LeaseTermForTesting();
+
+        approvedInvoice = newInvoice("1", InvoiceStatus.APPROVED);
+        invoicedInvoice = newInvoice("2", InvoiceStatus.INVOICED);
+        newInvoice = newInvoice("3", InvoiceStatus.NEW);
+    }
+
+    @Test
+    public void invoicedValueSumsItemsOfInvoicesThatAreNotNew() {
+        newItem(approvedInvoice, Q1, Q1, 1, 1000);
+        newItem(invoicedInvoice, Q1, Q2, 2, 250);
+        newItem(newInvoice, Q1, Q2, 3, 999);
+        newItem(invoicedInvoice, Q2, Q2, 4, 500);
+
+        final InvoicedValueLedger ledger = InvoicedValueLedger.of(leaseTerm);
+
+        assertThat(ledger.invoicedValueFor(Q1), is(BigDecimal.valueOf(1250)));
+        assertThat(ledger.invoicedValueFor(Q2), is(BigDecimal.valueOf(500)));
+        assertThat(ledger.invoicedValueFor(new LocalDate(2012, 7, 1)), is(BigDecimal.ZERO));
+    }
+
+    @Test
+    public void invoicedValueIsSameAsLeaseTerm() {
+        newItem(approvedInvoice, Q1, Q1, 1, 1000);
+        newItem(invoicedInvoice, Q1, Q2, 2, 250);
+        newItem(null, Q2, Q2, 3, 999);
+        final InvoicedValueSummary archived = newSummary(Q1, 400);
+        leaseTerm.injectInvoicedValueSummaries(new InvoicedValueSummaries() {
+            @Override
+            public InvoicedValueSummary findByLeaseTermAndStartDate(final LeaseTerm term, final LocalDate startDate) {
+                return startDate.equals(archived.getStartDate()) ? archived : null;
+            }
+        });
+
+        final InvoicedValueLedger ledger = InvoicedValueLedger.of(leaseTerm, Arrays.asList(archived));
+
+        assertThat(ledger.invoicedValueFor(Q1).compareTo(leaseTerm.invoicedValueFor(Q1)), is(0));
+        assertThat(ledger.invoicedValueFor(Q2).compareTo(leaseTerm.invoicedValueFor(Q2)), is(0));
+    }
+
+    @Test
+    public void invoicedValueIncludesArchivedSummaries() {
+        newItem(invoicedInvoice, Q1, Q2, 1, 250);
+
+        final InvoicedValueLedger ledger = InvoicedValueLedger.of(
+                leaseTerm,
+                Arrays.asList(newSummary(Q1, 1000), newSummary(Q2, 500)));
+
+        assertThat(ledger.invoicedValueFor(Q1), is(BigDecimal.valueOf(1250)));
+        assertThat(ledger.invoicedValueFor(Q2), is(BigDecimal.valueOf(500)));
+    }
+
+    @Test
+    public void unapprovedItems() {
+        final InvoiceItemForLease unattached = newItem(null, Q2, Q2, 1, 100);
+        final InvoiceItemForLease onNewInvoice = newItem(newInvoice, Q1, Q2, 2, 200);
+        newItem(approvedInvoice, Q1, Q1, 3, 300);
+
+        final InvoicedValueLedger ledger = InvoicedValueLedger.of(leaseTerm);
+
+        assertThat(ledger.unapprovedInvoiceItemFor(Q2, Q2), is(unattached));
+        assertThat(ledger.unapprovedInvoiceItemFor(Q1, Q2), is(onNewInvoice));
+        assertThat(ledger.unapprovedInvoiceItemFor(Q1, Q1), is(nullValue()));
+        assertThat(
+                ledger.unapprovedInvoiceItemFor(Q1, Q2),
+                is(leaseTerm.findUnapprovedInvoiceItemFor(Q1, Q2)));
+    }
+
+    private static Invoice newInvoice(final String invoiceNumber, final InvoiceStatus status) {
+        final Invoice invoice = new Invoice();
+        invoice.setInvoiceNumber(invoiceNumber);
+        invoice.setStatus(status);
+        return invoice;
+    }
+
+    private InvoicedValueSummary newSummary(final LocalDate startDate, final int invoicedValue) {
+        final InvoicedValueSummary summary = new InvoicedValueSummary();
+        summary.setLeaseTerm(leaseTerm);
+        summary.setStartDate(startDate);
+        summary.setInvoicedValue(BigDecimal.valueOf(invoicedValue));
+        return summary;
+    }
+
+    private InvoiceItemForLease newItem(
+            final Invoice invoice,
+            final LocalDate startDate,
+            final LocalDate dueDate,
+            final int sequence,
+            final int netAmount) {
+        final InvoiceItemForLease item = new InvoiceItemForLease();
+        item.setInvoice(invoice);
+        item.setStartDate(startDate);
+        item.setDueDate(dueDate);
+        item.setSequence(BigInteger.valueOf(sequence));
+        item.setNetAmount(BigDecimal.valueOf(netAmount));
+        item.modifyLeaseTerm(leaseTerm);
+        return item;
+    }
+
+}
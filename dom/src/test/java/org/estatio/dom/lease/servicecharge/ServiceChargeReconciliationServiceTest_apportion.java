@@ -0,0 +1,104 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.servicecharge;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+
+public class ServiceChargeReconciliationServiceTest_apportion {
+
+    private static final BigDecimal TOTAL = new BigDecimal("1000.00");
+
+    @Test
+    public void byArea() {
+        final Map<String, BigDecimal> values = ServiceChargeReconciliationService.apportion(
+                TOTAL,
+                ImmutableMap.<String, BigDecimal> of(),
+                ImmutableMap.of("A", BigDecimal.valueOf(100), "B", BigDecimal.valueOf(300)),
+                BigDecimal.valueOf(400));
+        assertThat(values.get("A"), is(new BigDecimal("250.00")));
+        assertThat(values.get("B"), is(new BigDecimal("750.00")));
+    }
+
+    @Test
+    public void vacantAreaIsLeftToLandlord() {
+        final Map<String, BigDecimal> values = ServiceChargeReconciliationService.apportion(
+                TOTAL,
+                ImmutableMap.<String, BigDecimal> of(),
+                ImmutableMap.of("A", BigDecimal.valueOf(100)),
+                BigDecimal.valueOf(300));
+        assertThat(values.get("A"), is(new BigDecimal("333.33")));
+    }
+
+    @Test
+    public void fixedShareBeforeArea() {
+        final Map<String, BigDecimal> values = ServiceChargeReconciliationService.apportion(
+                TOTAL,
+                ImmutableMap.of("A", new BigDecimal("10")),
+                ImmutableMap.of("B", BigDecimal.valueOf(300), "C", BigDecimal.valueOf(600)),
+                BigDecimal.valueOf(1200));
+        assertThat(values.get("A"), is(new BigDecimal("100.00")));
+        assertThat(values.get("B"), is(new BigDecimal("225.00")));
+        assertThat(values.get("C"), is(new BigDecimal("450.00")));
+        assertThat(values.size(), is(3));
+    }
+
+    @Test
+    public void roundingRemainderIsAllocated() {
+        final Map<String, BigDecimal> values = ServiceChargeReconciliationService.apportion(
+                new BigDecimal("100.00"),
+                ImmutableMap.<String, BigDecimal> of(),
+                ImmutableMap.of("A", BigDecimal.ONE, "B", BigDecimal.ONE, "C", BigDecimal.ONE),
+                BigDecimal.valueOf(3));
+        assertThat(values.get("A"), is(new BigDecimal("33.34")));
+        assertThat(values.get("B"), is(new BigDecimal("33.33")));
+        assertThat(values.get("C"), is(new BigDecimal("33.33")));
+    }
+
+    @Test
+    public void roundingRemainderIsAllocatedWithVacantArea() {
+        final Map<String, BigDecimal> values = ServiceChargeReconciliationService.apportion(
+                new BigDecimal("100.00"),
+                ImmutableMap.<String, BigDecimal> of(),
+                ImmutableMap.of("A", BigDecimal.ONE, "B", BigDecimal.ONE),
+                BigDecimal.valueOf(3));
+        // 66.67 for the occupied area, the rest for the landlord
+        assertThat(values.get("A"), is(new BigDecimal("33.34")));
+        assertThat(values.get("B"), is(new BigDecimal("33.33")));
+    }
+
+    @Test
+    public void sharesDoNotExceedTotal() {
+        final Map<String, BigDecimal> values = ServiceChargeReconciliationService.apportion(
+                new BigDecimal("0.03"),
+                ImmutableMap.of("A", BigDecimal.valueOf(50), "B", BigDecimal.valueOf(50)),
+                ImmutableMap.<String, BigDecimal> of(),
+                BigDecimal.ONE);
+        assertThat(values.get("A"), is(new BigDecimal("0.02")));
+        assertThat(values.get("B"), is(new BigDecimal("0.01")));
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.servicecharge;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+public class ServiceChargeRowTest {
+
+    @Test
+    public void parseTotal() {
+        final ServiceChargeRow row = ServiceChargeRow.parse("SERVICE_CHARGE,,120000.00", 2);
+        assertThat(row.getChargeReference(), is("SERVICE_CHARGE"));
+        assertThat(row.getLeaseReference(), is(nullValue()));
+        assertThat(row.isShare(), is(false));
+        assertThat(row.getAmount(), is(new BigDecimal("120000.00")));
+        assertThat(row.getLineNumber(), is(2));
+        assertThat(row.toString(), is("line 2 (SERVICE_CHARGE)"));
+    }
+
+    @Test
+    public void parseShareWithSemicolons() {
+        final ServiceChargeRow row = ServiceChargeRow.parse(" SERVICE_CHARGE ; OXF-MEDIAX-002 ; 12.5% ", 3);
+        assertThat(row.getLeaseReference(), is("OXF-MEDIAX-002"));
+        assertThat(row.isShare(), is(true));
+        assertThat(row.getAmount(), is(new BigDecimal("12.5")));
+        assertThat(row.toString(), is("line 3 (SERVICE_CHARGE OXF-MEDIAX-002)"));
+    }
+
+    @Test
+    public void parseShareWithoutPercentSign() {
+        assertThat(ServiceChargeRow.parse("SERVICE_CHARGE,OXF-MEDIAX-002,20", 2).getAmount(), is(new BigDecimal("20")));
+    }
+
+    @Test
+    public void parseSkipsHeaderCommentsAndBlankLines() {
+        assertThat(ServiceChargeRow.parse("charge,lease,amount", 1), is(nullValue()));
+        assertThat(ServiceChargeRow.parse("# 2013", 2), is(nullValue()));
+        assertThat(ServiceChargeRow.parse("   ", 3), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWhenHeaderNotOnFirstLine() {
+        ServiceChargeRow.parse("charge,lease,amount", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWhenNoCharge() {
+        ServiceChargeRow.parse(",OXF-MEDIAX-002,10%", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWhenShareWithoutLease() {
+        ServiceChargeRow.parse("SERVICE_CHARGE,,10%", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWhenShareExceeds100() {
+        ServiceChargeRow.parse("SERVICE_CHARGE,OXF-MEDIAX-002,101", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWhenMissingField() {
+        ServiceChargeRow.parse("SERVICE_CHARGE,120000.00", 2);
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.turnover;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.estatio.dom.lease.Occupancy;
+import org.estatio.dom.valuetypes.LocalDateInterval;
+
+public class TurnoverIngestionServiceTest_auditedTurnoverOf {
+
+    private static final LocalDateInterval YEAR_2013 =
+            LocalDateInterval.including(new LocalDate(2013, 1, 1), new LocalDate(2013, 12, 31));
+
+    private Occupancy occupancy;
+    private Occupancy otherOccupancy;
+
+    @Before
+    public void setUp() throws Exception {
+        occupancy = new Occupancy();
+        otherOccupancy = new Occupancy();
+    }
+
+    @Test
+    public void sumsMonthsWithinPeriod() {
+        assertThat(
+                TurnoverIngestionService.auditedTurnoverOf(Arrays.asList(
+                        month(occupancy, 2012, 12, 999),
+                        month(occupancy, 2013, 1, 100),
+                        month(occupancy, 2013, 2, 200),
+                        month(otherOccupancy, 2013, 2, 50),
+                        month(occupancy, 2014, 1, 999)), YEAR_2013),
+                is(BigDecimal.valueOf(350)));
+    }
+
+    @Test
+    public void annualTakesPrecedenceOverMonthsOfSameOccupancy() {
+        assertThat(
+                TurnoverIngestionService.auditedTurnoverOf(Arrays.asList(
+                        month(occupancy, 2013, 1, 100),
+                        month(occupancy, 2013, 2, 200),
+                        year(occupancy, 2013, 2500),
+                        month(otherOccupancy, 2013, 2, 50)), YEAR_2013),
+                is(BigDecimal.valueOf(2550)));
+    }
+
+    private static Turnover month(final Occupancy occupancy, final int year, final int month, final int amount) {
+        final LocalDate startDate = new LocalDate(year, month, 1);
+        return newTurnover(occupancy, startDate, startDate.plusMonths(1).minusDays(1), amount);
+    }
+
+    private static Turnover year(final Occupancy occupancy, final int year, final int amount) {
+        final LocalDate startDate = new LocalDate(year, 1, 1);
+        return newTurnover(occupancy, startDate, startDate.plusYears(1).minusDays(1), amount);
+    }
+
+    private static Turnover newTurnover(
+            final Occupancy occupancy,
+            final LocalDate startDate,
+            final LocalDate endDate,
+            final int amount) {
+        final Turnover turnover = new Turnover();
+        turnover.setOccupancy(occupancy);
+        turnover.setStartDate(startDate);
+        turnover.setEndDate(endDate);
+        turnover.setAmount(BigDecimal.valueOf(amount));
+        return turnover;
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.turnover;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+public class TurnoverRowTest {
+
+    @Test
+    public void parseMonth() {
+        final TurnoverRow row = TurnoverRow.parse("OXF-TOPMODEL-001,,2013-08,31250.00", 2);
+        assertThat(row.getLeaseReference(), is("OXF-TOPMODEL-001"));
+        assertThat(row.getUnitReference(), is(nullValue()));
+        assertThat(row.getStartDate(), is(new LocalDate(2013, 8, 1)));
+        assertThat(row.getEndDate(), is(new LocalDate(2013, 8, 31)));
+        assertThat(row.getAmount(), is(new BigDecimal("31250.00")));
+        assertThat(row.getLineNumber(), is(2));
+        assertThat(row.toString(), is("line 2 (OXF-TOPMODEL-001/ 2013-08)"));
+    }
+
+    @Test
+    public void parseYearOfUnitWithSemicolons() {
+        final TurnoverRow row = TurnoverRow.parse(" ; OXF-001 ; 2012 ; 402500 ", 3);
+        assertThat(row.getLeaseReference(), is(nullValue()));
+        assertThat(row.getUnitReference(), is("OXF-001"));
+        assertThat(row.getStartDate(), is(new LocalDate(2012, 1, 1)));
+        assertThat(row.getEndDate(), is(new LocalDate(2012, 12, 31)));
+        assertThat(row.toString(), is("line 3 (/OXF-001 2012)"));
+    }
+
+    @Test
+    public void parseSdmxMonthAndFirstDay() {
+        assertThat(TurnoverRow.parse("L,U,2013-M11,1", 1).getStartDate(), is(new LocalDate(2013, 11, 1)));
+        assertThat(TurnoverRow.parse("L,U,2014-02-01,1", 1).getEndDate(), is(new LocalDate(2014, 2, 28)));
+    }
+
+    @Test
+    public void parseSkipsHeaderCommentsAndBlankLines() {
+        assertThat(TurnoverRow.parse("lease,unit,period,turnover", 1), is(nullValue()));
+        assertThat(TurnoverRow.parse("# August", 2), is(nullValue()));
+        assertThat(TurnoverRow.parse("   ", 3), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWhenHeaderNotOnFirstLine() {
+        TurnoverRow.parse("lease,unit,period,turnover", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWhenNoReference() {
+        TurnoverRow.parse(",,2013-08,100", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWhenInvalidMonth() {
+        TurnoverRow.parse("L,,2013-13,100", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWhenInvalidPeriod() {
+        TurnoverRow.parse("L,,Q3-2013,100", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWhenInvalidTurnover() {
+        TurnoverRow.parse("L,,2013-08,n/a", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWhenFieldsMissing() {
+        TurnoverRow.parse("L,2013-08,100", 2);
+    }
+
+}
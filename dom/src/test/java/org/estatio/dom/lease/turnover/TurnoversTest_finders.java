@@ -0,0 +1,96 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.lease.turnover;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.isis.applib.query.Query;
+import org.apache.isis.core.commons.matchers.IsisMatchers;
+
+import org.estatio.dom.FinderInteraction;
+import org.estatio.dom.FinderInteraction.FinderMethod;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.Occupancy;
+
+public class TurnoversTest_finders {
+
+    private FinderInteraction finderInteraction;
+
+    private Turnovers turnovers;
+
+    private Lease lease;
+    private Occupancy occupancy;
+
+    @Before
+    public void setup() {
+
+        lease = new Lease();
+        occupancy = new Occupancy();
+
+        turnovers = new Turnovers() {
+
+            @Override
+            protected <T> T firstMatch(Query<T> query) {
+                finderInteraction = new FinderInteraction(query, FinderMethod.FIRST_MATCH);
+                return null;
+            }
+            @Override
+            protected List<Turnover> allInstances() {
+                finderInteraction = new FinderInteraction(null, FinderMethod.ALL_INSTANCES);
+                return null;
+            }
+            @Override
+            protected <T> List<T> allMatches(Query<T> query) {
+                finderInteraction = new FinderInteraction(query, FinderMethod.ALL_MATCHES);
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void findByOccupancy() {
+
+        turnovers.findByOccupancy(occupancy);
+
+        assertThat(finderInteraction.getFinderMethod(), is(FinderMethod.ALL_MATCHES));
+        assertThat(finderInteraction.getResultType(), IsisMatchers.classEqualTo(Turnover.class));
+        assertThat(finderInteraction.getQueryName(), is("findByOccupancy"));
+        assertThat(finderInteraction.getArgumentsByParameterName().get("occupancy"), is((Object)occupancy));
+        assertThat(finderInteraction.getArgumentsByParameterName().size(), is(1));
+    }
+
+    @Test
+    public void findByLease() {
+
+        turnovers.findByLease(lease);
+
+        assertThat(finderInteraction.getFinderMethod(), is(FinderMethod.ALL_MATCHES));
+        assertThat(finderInteraction.getResultType(), IsisMatchers.classEqualTo(Turnover.class));
+        assertThat(finderInteraction.getQueryName(), is("findByLease"));
+        assertThat(finderInteraction.getArgumentsByParameterName().get("lease"), is((Object)lease));
+        assertThat(finderInteraction.getArgumentsByParameterName().size(), is(1));
+    }
+
+}
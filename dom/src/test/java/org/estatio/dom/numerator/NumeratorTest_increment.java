@@ -21,6 +21,7 @@ package org.estatio.dom.numerator;
 import static org.junit.Assert.assertEquals;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -42,4 +43,12 @@ public class NumeratorTest_increment {
         assertEquals(BigInteger.ONE, numerator.getLastIncrement());
     }
 
+    @Test
+    public void batch() {
+        numerator.setLastIncrement(BigInteger.TEN);
+        assertEquals(Arrays.asList("XXX-00011", "XXX-00012", "XXX-00013"), numerator.increment(3));
+        assertEquals(BigInteger.valueOf(13), numerator.getLastIncrement());
+        assertEquals("XXX-00014", numerator.increment());
+    }
+
 }
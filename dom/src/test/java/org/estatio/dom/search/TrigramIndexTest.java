@@ -0,0 +1,97 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.dom.search;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TrigramIndexTest {
+
+    private TrigramIndex<String> index;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new TrigramIndex<String>();
+        index.put("1", "OXF", "Oxford Super Mall");
+        index.put("2", "OXF-001", "Unit 1 of Oxford");
+        index.put("3", "KAL", "Kalvertoren");
+        index.put("4", "MALL-4", "Somewhere else");
+    }
+
+    @Test
+    public void findsInfixIgnoringCase() {
+        assertThat(keysOf(index.search("vert", 10)), is(list("3")));
+        assertThat(keysOf(index.search("SUPER", 10)), is(list("1")));
+    }
+
+    @Test
+    public void ranksExactBeforePrefixBeforeWordBeforeInfix() {
+        assertThat(keysOf(index.search("oxf", 10)), is(list("1", "2")));
+        assertThat(keysOf(index.search("mall", 10)), is(list("4", "1")));
+        // both infix in the name, the shorter one first
+        assertThat(keysOf(index.search("ford", 10)), is(list("2", "1")));
+    }
+
+    @Test
+    public void trigramsPresentButNotAdjacent() {
+        // "alv" and "mal" are both indexed, but "malv" is not in any text
+        assertThat(keysOf(index.search("malv", 10)).isEmpty(), is(true));
+    }
+
+    @Test
+    public void limitsToMax() {
+        assertThat(index.search("oxf", 1).size(), is(1));
+    }
+
+    @Test
+    public void putReplacesAndRemoveDeletes() {
+        index.put("3", "KAL", "De Kalvertoren Amsterdam");
+        assertThat(keysOf(index.search("amster", 10)), is(list("3")));
+        assertThat(index.size(), is(4));
+
+        index.remove("3");
+        assertThat(keysOf(index.search("kal", 10)).isEmpty(), is(true));
+        assertThat(index.size(), is(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void phraseTooShort() {
+        index.search("ox", 10);
+    }
+
+    private static List<String> keysOf(final List<TrigramIndex.Hit<String>> hits) {
+        final List<String> keys = Lists.newArrayList();
+        for (TrigramIndex.Hit<String> hit : hits) {
+            keys.add(hit.getKey());
+        }
+        return keys;
+    }
+
+    private static List<String> list(final String... keys) {
+        return Lists.newArrayList(keys);
+    }
+
+}
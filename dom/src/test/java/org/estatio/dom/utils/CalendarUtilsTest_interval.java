@@ -76,6 +76,18 @@ public class CalendarUtilsTest_interval {
         assertThat(intervals.get(0).getStart().toLocalDate(), is(new LocalDate(2012, 1, 1)));
     }
 
+    @Test
+    public void intervalsInRangeAreConsecutiveTest() {
+        List<Interval> intervals = CalendarUtils.intervalsInRange(new LocalDate(2003, 2, 1), new LocalDate(2013, 1, 1), "RRULE:FREQ=MONTHLY;INTERVAL=3");
+        assertThat(intervals.size(), is(40));
+        assertThat(intervals.get(0).getStart().toLocalDate(), is(new LocalDate(2003, 1, 1)));
+        for (int i = 1; i < intervals.size(); i++) {
+            assertThat(intervals.get(i).getStart(), is(intervals.get(i - 1).getEnd()));
+            assertThat(intervals.get(i), is(CalendarUtils.intervalContaining(intervals.get(i).getStart().toLocalDate(), "RRULE:FREQ=MONTHLY;INTERVAL=3")));
+        }
+        assertThat(intervals.get(39).getEnd().toLocalDate(), is(new LocalDate(2013, 1, 1)));
+    }
+
     @Test
     public void nextDateTest() {
         assertThat(CalendarUtils.nextDate(new LocalDate(2012, 1, 1), "RRULE:FREQ=MONTHLY;INTERVAL=3"), is(new LocalDate(2012, 4, 1)));
@@ -176,6 +176,12 @@ public class LocalDateIntervalTest {
         assertTrue(new LocalDateInterval().equals(new LocalDateInterval()));
         assertTrue(new LocalDateInterval(null, null, IntervalEnding.EXCLUDING_END_DATE).equals(new LocalDateInterval(null, null, IntervalEnding.INCLUDING_END_DATE)));
     }
+
+    @Test
+    public void testHashCode(){
+        assertThat(parseLocalDateInterval("2012-1-1/2012-3-31").hashCode(), is(parseLocalDateInterval("2012-1-1/2012-3-31").hashCode()));
+        assertThat(new LocalDateInterval().hashCode(), is(new LocalDateInterval().hashCode()));
+    }
     
     private LocalDateInterval parseLocalDateInterval(String input){
         String[] values = input.split("/");
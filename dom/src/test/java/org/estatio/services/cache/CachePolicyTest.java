@@ -0,0 +1,54 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import org.estatio.dom.charge.Charge;
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseTermForIndexableRent;
+import org.estatio.dom.lease.invoicing.InvoiceItemForLease;
+import org.estatio.dom.numerator.Numerator;
+
+public class CachePolicyTest {
+
+    @Test
+    public void referenceDataIsPinned() throws Exception {
+        assertThat(CachePolicy.of(Charge.class), is(CachePolicy.PINNED));
+    }
+
+    @Test
+    public void notCacheable() throws Exception {
+        assertThat(CachePolicy.of(Invoice.class), is(CachePolicy.NONE));
+        assertThat(CachePolicy.of(InvoiceItemForLease.class), is(CachePolicy.NONE));
+        assertThat(CachePolicy.of(Numerator.class), is(CachePolicy.NONE));
+        assertThat(CachePolicy.of(CacheInvalidation.class), is(CachePolicy.NONE));
+    }
+
+    @Test
+    public void everythingElseIsSoft() throws Exception {
+        assertThat(CachePolicy.of(Lease.class), is(CachePolicy.SOFT));
+        assertThat(CachePolicy.of(LeaseTermForIndexableRent.class), is(CachePolicy.SOFT));
+    }
+
+}
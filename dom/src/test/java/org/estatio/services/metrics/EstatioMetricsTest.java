@@ -0,0 +1,100 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EstatioMetricsTest {
+
+    @Before
+    public void setUp() throws Exception {
+        EstatioMetrics.reset();
+        EstatioMetrics.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        EstatioMetrics.reset();
+        EstatioMetrics.setEnabled(true);
+    }
+
+    @Test
+    public void summaryAggregatesOverTags() {
+        record("CAR", "run-1");
+        record("KAL", "run-1");
+        record("KAL", "run-2");
+
+        assertThat(EstatioMetrics.summary("test."), is(Arrays.asList("test.counter: count=3")));
+        assertThat(EstatioMetrics.details("test.").size(), is(3));
+    }
+
+    @Test
+    public void tagsAreInherited() {
+        final MetricsTags outer = MetricsTags.enter("CAR", "run-1");
+        try {
+            final MetricsTags inner = MetricsTags.enter(null, null);
+            try {
+                assertThat(MetricsTags.current().getProperty(), is("CAR"));
+                assertThat(MetricsTags.current().getRunId(), is("run-1"));
+            } finally {
+                inner.exit();
+            }
+        } finally {
+            outer.exit();
+        }
+        assertThat(MetricsTags.current().getProperty(), is((String) null));
+    }
+
+    @Test
+    public void oldestRunsAreEvicted() {
+        for (int i = 0; i <= EstatioMetrics.MAX_RUNS; i++) {
+            record("CAR", "run-" + i);
+        }
+
+        assertThat(EstatioMetrics.details("test.").size(), is(EstatioMetrics.MAX_RUNS));
+        assertThat(EstatioMetrics.details("test.").contains("test.counter{property=CAR,run=run-0}: count=1"), is(false));
+    }
+
+    @Test
+    public void disabled() {
+        EstatioMetrics.setEnabled(false);
+
+        record("CAR", "run-1");
+        EstatioMetrics.time("test.timer").stop();
+
+        assertThat(EstatioMetrics.summary("test.").isEmpty(), is(true));
+    }
+
+    private static void record(final String property, final String runId) {
+        final MetricsTags tags = MetricsTags.enter(property, runId);
+        try {
+            EstatioMetrics.count("test.counter");
+        } finally {
+            tags.exit();
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HistogramTest {
+
+    private Histogram histogram;
+
+    @Before
+    public void setUp() throws Exception {
+        histogram = new Histogram();
+    }
+
+    @Test
+    public void empty() {
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getMean(), is(0L));
+        assertThat(histogram.getPercentile(95), is(0L));
+    }
+
+    @Test
+    public void countSumMeanAndMax() {
+        histogram.update(10);
+        histogram.update(20);
+        histogram.update(30);
+
+        assertThat(histogram.getCount(), is(3L));
+        assertThat(histogram.getSum(), is(60L));
+        assertThat(histogram.getMean(), is(20L));
+        assertThat(histogram.getMax(), is(30L));
+    }
+
+    @Test
+    public void percentileIsUpperBoundOfBucket() {
+        for (int i = 0; i < 95; i++) {
+            histogram.update(5);
+        }
+        for (int i = 0; i < 5; i++) {
+            histogram.update(1000);
+        }
+
+        assertThat(histogram.getPercentile(50), is(7L));
+        assertThat(histogram.getPercentile(95), is(7L));
+        assertThat(histogram.getPercentile(99), is(1000L));
+    }
+
+    @Test
+    public void bucketFor() {
+        assertThat(Histogram.bucketFor(0), is(0));
+        assertThat(Histogram.bucketFor(1), is(0));
+        assertThat(Histogram.bucketFor(2), is(1));
+        assertThat(Histogram.bucketFor(3), is(1));
+        assertThat(Histogram.bucketFor(4), is(2));
+        assertThat(Histogram.bucketFor(Long.MAX_VALUE), is(62));
+    }
+
+    @Test
+    public void addTo() {
+        histogram.update(10);
+        final Histogram other = new Histogram();
+        other.update(50);
+
+        histogram.addTo(other);
+
+        assertThat(other.getCount(), is(2L));
+        assertThat(other.getSum(), is(60L));
+        assertThat(other.getMax(), is(50L));
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.outbox;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.Arrays;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DirectorySinkTest {
+
+    private File directory;
+    private DirectorySink sink;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDir();
+        sink = new DirectorySink(new File(directory, "outbox"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (File file : new File(directory, "outbox").listFiles()) {
+            file.delete();
+        }
+        new File(directory, "outbox").delete();
+        directory.delete();
+    }
+
+    @Test
+    public void writesFilePerMessage() throws Exception {
+        sink.deliver(Arrays.asList(
+                new OutboxMessage("1", "submitToCoda", "Invoice", "1[OID]Invoice", 1000L, "<invoice/>"),
+                new OutboxMessage("2", "submitToCoda", "Invoice", "2[OID]Invoice", 1001L, "<invoice>2</invoice>")));
+
+        final String[] names = new File(directory, "outbox").list();
+        Arrays.sort(names);
+        assertThat(Arrays.asList(names), is(Arrays.asList("0000000001000-1.xml", "0000000001001-2.xml")));
+        assertThat(Files.toString(new File(directory, "outbox/0000000001001-2.xml"), Charsets.UTF_8), is("<invoice>2</invoice>"));
+    }
+
+    @Test
+    public void overwritesMessageDeliveredTwice() throws Exception {
+        final OutboxMessage message = new OutboxMessage("1", "submitToCoda", "Invoice", "1[OID]Invoice", 1000L, "<invoice/>");
+        sink.deliver(Arrays.asList(message));
+        sink.deliver(Arrays.asList(message));
+
+        assertThat(new File(directory, "outbox").list().length, is(1));
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.outbox;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class OutboxDispatcherTest_backoffMillis {
+
+    @Test
+    public void doublesWithEveryAttempt() {
+        assertThat(OutboxDispatcher.backoffMillis(10000L, 1), is(10000L));
+        assertThat(OutboxDispatcher.backoffMillis(10000L, 2), is(20000L));
+        assertThat(OutboxDispatcher.backoffMillis(10000L, 4), is(80000L));
+    }
+
+    @Test
+    public void isBounded() {
+        assertThat(OutboxDispatcher.backoffMillis(10000L, 10), is(OutboxDispatcher.BACKOFF_MILLIS_MAX));
+        assertThat(OutboxDispatcher.backoffMillis(10000L, 100), is(OutboxDispatcher.BACKOFF_MILLIS_MAX));
+    }
+
+}
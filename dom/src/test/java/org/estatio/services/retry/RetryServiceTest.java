@@ -0,0 +1,156 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.retry;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.jdo.JDODataStoreException;
+import javax.jdo.JDOOptimisticVerificationException;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RetryServiceTest {
+
+    private RetryService retryService;
+    private final List<String> events = Lists.newArrayList();
+
+    @Before
+    public void setUp() throws Exception {
+        retryService = new RetryService();
+        retryService.setRetryPolicy(new RetryPolicy(3, 0, 0));
+        retryService.setTransactionBoundary(new TransactionBoundary() {
+            @Override
+            public void commit() {
+                events.add("commit");
+            }
+
+            @Override
+            public void abort() {
+                events.add("abort");
+            }
+
+            @Override
+            public void begin() {
+                events.add("begin");
+            }
+
+            @Override
+            public void resume() {
+                events.add("resume");
+            }
+        });
+    }
+
+    @Test
+    public void eachUnitIsCommittedOnItsOwn() throws Exception {
+        final RetryReport report = retryService.execute("test", Arrays.asList(new Conflicting("a", 0), new Conflicting("b", 0)));
+
+        assertThat(report.getSucceeded(), is(2));
+        assertThat(report.hasFailures(), is(false));
+        assertThat(events, is((List<String>) Arrays.asList(
+                "commit",
+                "begin", "execute a", "commit",
+                "begin", "execute b", "commit",
+                "resume")));
+    }
+
+    @Test
+    public void conflictIsRetried() throws Exception {
+        final RetryReport report = retryService.execute("test", Arrays.asList(new Conflicting("a", 2)));
+
+        assertThat(report.getSucceeded(), is(1));
+        assertThat(report.getRetries(), is(2));
+        assertThat(report.hasFailures(), is(false));
+    }
+
+    @Test
+    public void keepsConflictingIsReported() throws Exception {
+        final Conflicting a = new Conflicting("a", 5);
+        final RetryReport report = retryService.execute("test", Arrays.asList(a, new Conflicting("b", 0)));
+
+        assertThat(a.attempts, is(3));
+        assertThat(report.getSucceeded(), is(1));
+        assertThat(report.getRetries(), is(2));
+        assertThat(report.getFailures().size(), is(1));
+        assertThat(report.getFailures().get(0).getDescription(), is("a"));
+    }
+
+    @Test
+    public void otherFailureIsNotRetried() throws Exception {
+        final RetryService.Unit unit = new RetryService.Unit("a") {
+            @Override
+            public void execute() {
+                throw new IllegalStateException("boom");
+            }
+        };
+        final RetryReport report = retryService.execute("test", Arrays.asList(unit));
+
+        assertThat(report.getRetries(), is(0));
+        assertThat(report.getFailures().get(0).getReason(), is("boom"));
+        assertThat(events.subList(2, events.size()), is((List<String>) Arrays.asList("abort", "resume")));
+    }
+
+    @Test
+    public void isConflict() throws Exception {
+        final JDOOptimisticVerificationException conflict = new JDOOptimisticVerificationException("conflict");
+        assertThat(RetryService.isConflict(conflict), is(true));
+        assertThat(RetryService.isConflict(new RuntimeException(conflict)), is(true));
+        assertThat(RetryService.isConflict(new JDODataStoreException("nested", new Throwable[] { conflict })), is(true));
+        assertThat(RetryService.isConflict(new JDODataStoreException("other")), is(false));
+    }
+
+    @Test
+    public void backoffIsBounded() throws Exception {
+        final RetryPolicy policy = new RetryPolicy(10, 50, 200);
+        final Random random = new Random(1);
+        for (int attempt = 2; attempt <= 10; attempt++) {
+            final long backoff = policy.backoffMillis(attempt, random);
+            assertThat(backoff >= 0 && backoff < Math.min(200, 50 << (attempt - 2)), is(true));
+        }
+    }
+
+    private class Conflicting extends RetryService.Unit {
+
+        private int conflicts;
+        private int attempts;
+
+        Conflicting(final String description, final int conflicts) {
+            super(description);
+            this.conflicts = conflicts;
+        }
+
+        @Override
+        public void execute() {
+            attempts++;
+            events.add("execute " + getDescription());
+            if (conflicts-- > 0) {
+                throw new JDOOptimisticVerificationException("conflict");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.services.startup;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class SchemaVersionServiceTest {
+
+    private final SchemaVersionService schemaVersionService = new SchemaVersionService();
+
+    @Test
+    public void expectedVersionIsReadFromResource() throws Exception {
+        assertThat(schemaVersionService.getExpectedVersion() > 0, is(true));
+    }
+
+    @Test
+    public void sameVersion() throws Exception {
+        SchemaVersionService.check(3, 3);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void olderVersion() throws Exception {
+        SchemaVersionService.check(3, 2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noVersion() throws Exception {
+        SchemaVersionService.check(3, null);
+    }
+
+    @Test
+    public void notCheckedUnlessConfigured() throws Exception {
+        schemaVersionService.init(Collections.<String, String> emptyMap());
+    }
+
+}
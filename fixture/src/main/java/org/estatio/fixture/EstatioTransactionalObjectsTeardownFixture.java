@@ -29,19 +29,23 @@ public class EstatioTransactionalObjectsTeardownFixture extends AbstractFixture
         
         deleteFrom("Numerator");
         
+        deleteFrom("ArchivedInvoiceItem");
+        deleteFrom("ArchivedInvoice");
+        deleteFrom("InvoicedValueSummary");
         deleteFrom("InvoiceItem");
         deleteFrom("Invoice");
         
         deleteFrom("Tag");
         
+        deleteFrom("CriticalDate");
         deleteFrom("Event");
         deleteFrom("BreakOption");
         deleteFrom("LeaseTerm");
         deleteFrom("LeaseItem");
         deleteFrom("Occupancy");
         
-        deleteFrom("BankMandate");
         deleteFrom("Lease");
+        deleteFrom("BankMandate");
         
         deleteFrom("AgreementRoleCommunicationChannel");
         deleteFrom("AgreementRole");
@@ -0,0 +1,761 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.fixture.generator;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.Random;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.fixtures.AbstractFixture;
+
+import org.estatio.dom.agreement.AgreementRoleType;
+import org.estatio.dom.agreement.AgreementRoleTypes;
+import org.estatio.dom.agreement.AgreementType;
+import org.estatio.dom.agreement.AgreementTypes;
+import org.estatio.dom.asset.FixedAssetRoleType;
+import org.estatio.dom.asset.Properties;
+import org.estatio.dom.asset.Property;
+import org.estatio.dom.asset.PropertyType;
+import org.estatio.dom.asset.Unit;
+import org.estatio.dom.asset.UnitType;
+import org.estatio.dom.charge.Charge;
+import org.estatio.dom.charge.Charges;
+import org.estatio.dom.currency.Currencies;
+import org.estatio.dom.currency.Currency;
+import org.estatio.dom.geography.Countries;
+import org.estatio.dom.geography.Country;
+import org.estatio.dom.index.Index;
+import org.estatio.dom.index.IndexBase;
+import org.estatio.dom.index.IndexBases;
+import org.estatio.dom.index.IndexValues;
+import org.estatio.dom.index.Indices;
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.InvoiceStatus;
+import org.estatio.dom.invoice.PaymentMethod;
+import org.estatio.dom.lease.InvoicingFrequency;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseConstants;
+import org.estatio.dom.lease.LeaseItem;
+import org.estatio.dom.lease.LeaseItemStatus;
+import org.estatio.dom.lease.LeaseItemType;
+import org.estatio.dom.lease.LeaseItems;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.lease.LeaseTermForIndexableRent;
+import org.estatio.dom.lease.LeaseTermForServiceCharge;
+import org.estatio.dom.lease.LeaseTermForTurnoverRent;
+import org.estatio.dom.lease.LeaseTermFrequency;
+import org.estatio.dom.lease.LeaseTermStatus;
+import org.estatio.dom.lease.Occupancies;
+import org.estatio.dom.lease.TurnoverRentRuleHelper;
+import org.estatio.dom.lease.UnitForLease;
+import org.estatio.dom.lease.invoicing.InvoiceItemForLease;
+import org.estatio.dom.party.Organisation;
+import org.estatio.dom.party.Organisations;
+
+/**
+ * Generates a synthetic portfolio of <i>N</i> properties with <i>M</i> units
+ * each, every unit let consecutively to <i>K</i> tenants over a window of ten
+ * years.
+ * 
+ * <p>
+ * Every lease gets an indexable rent, a service charge and a turnover rent
+ * item with yearly terms, and quarterly invoices (status
+ * {@link InvoiceStatus#INVOICED invoiced}) up to {@link #getInvoicedUntil()}.
+ * The rent is indexed against a generated index with monthly values. All
+ * values are drawn from {@link Random}s seeded from the given
+ * {@link #getSeed() seed} (one per property), so the same parameters always
+ * yield the same portfolio.
+ * 
+ * <p>
+ * All references start with the {@link #getReferencePrefix() reference
+ * prefix}, made up of {@link #REFERENCE_PREFIX} and a {@link #getRunPrefix()
+ * run prefix} (by default derived from the seed), so that portfolios of
+ * different runs do not collide. Properties that exist already (eg when
+ * installed again) are skipped, together with everything generated for them.
+ * 
+ * <p>
+ * Requires the {@link org.estatio.fixture.EstatioRefDataObjectsFixture
+ * reference data}. Objects are created directly rather than through the
+ * actions used by the hand-written fixtures (which look up reference data and
+ * flush for every term), and are flushed in batches of {@link #BATCH_SIZE}.
+ */
+public class LargePortfolioFixture extends AbstractFixture {
+
+    public static final long DEFAULT_SEED = 20131119L;
+    public static final int DEFAULT_NUMBER_OF_PROPERTIES = 10;
+    public static final int DEFAULT_UNITS_PER_PROPERTY = 50;
+    public static final int DEFAULT_LEASES_PER_UNIT = 2;
+
+    public static final String REFERENCE_PREFIX = "GEN";
+
+    static final int BATCH_SIZE = 500;
+
+    private static final String RUN_PREFIX_REGEX = "[A-Z0-9]{1,3}";
+    private static final int RUN_PREFIX_RADIX = 36;
+    private static final int RUN_PREFIX_LENGTH = 3;
+
+    private static final int YEARS = 10;
+    private static final BigDecimal QUARTERS_PER_YEAR = BigDecimal.valueOf(4);
+    private static final BigDecimal ONE_HUNDRED = BigDecimal.valueOf(100);
+
+    public LargePortfolioFixture() {
+        this(DEFAULT_SEED, DEFAULT_NUMBER_OF_PROPERTIES, DEFAULT_UNITS_PER_PROPERTY, DEFAULT_LEASES_PER_UNIT);
+    }
+
+    public LargePortfolioFixture(
+            final long seed,
+            final int numberOfProperties,
+            final int unitsPerProperty,
+            final int leasesPerUnit) {
+        this.seed = seed;
+        this.numberOfProperties = numberOfProperties;
+        this.unitsPerProperty = unitsPerProperty;
+        this.leasesPerUnit = leasesPerUnit;
+    }
+
+    // //////////////////////////////////////
+
+    private long seed;
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(final long seed) {
+        this.seed = seed;
+    }
+
+    private int numberOfProperties;
+
+    public int getNumberOfProperties() {
+        return numberOfProperties;
+    }
+
+    public void setNumberOfProperties(final int numberOfProperties) {
+        this.numberOfProperties = numberOfProperties;
+    }
+
+    private int unitsPerProperty;
+
+    public int getUnitsPerProperty() {
+        return unitsPerProperty;
+    }
+
+    public void setUnitsPerProperty(final int unitsPerProperty) {
+        this.unitsPerProperty = unitsPerProperty;
+    }
+
+    private int leasesPerUnit;
+
+    public int getLeasesPerUnit() {
+        return leasesPerUnit;
+    }
+
+    public void setLeasesPerUnit(final int leasesPerUnit) {
+        this.leasesPerUnit = leasesPerUnit;
+    }
+
+    private String runPrefix;
+
+    /**
+     * Up to three letters or digits that distinguish the references of this
+     * portfolio from those of other runs; if not set, derived from the
+     * {@link #getSeed() seed}.
+     */
+    public String getRunPrefix() {
+        return runPrefix;
+    }
+
+    public void setRunPrefix(final String runPrefix) {
+        this.runPrefix = runPrefix;
+    }
+
+    /**
+     * The prefix of all references generated, for example
+     * <tt>GENH9R</tt> for the {@link #DEFAULT_SEED default seed}.
+     */
+    public String getReferencePrefix() {
+        return REFERENCE_PREFIX + (runPrefix != null ? runPrefix : runPrefixFor(seed));
+    }
+
+    static String runPrefixFor(final long seed) {
+        final long max = (long) Math.pow(RUN_PREFIX_RADIX, RUN_PREFIX_LENGTH);
+        final String digits = Long.toString(((seed % max) + max) % max, RUN_PREFIX_RADIX).toUpperCase();
+        return Strings.padStart(digits, RUN_PREFIX_LENGTH, '0');
+    }
+
+    public static boolean isValidRunPrefix(final String runPrefix) {
+        return runPrefix == null || runPrefix.matches(RUN_PREFIX_REGEX);
+    }
+
+    private LocalDate startDate = new LocalDate(2004, 1, 1);
+
+    /**
+     * Start of the ten year window in which the leases run.
+     */
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(final LocalDate startDate) {
+        this.startDate = startDate;
+    }
+
+    private LocalDate invoicedUntil = new LocalDate(2013, 1, 1);
+
+    /**
+     * Quarters starting before this date are invoiced.
+     */
+    public LocalDate getInvoicedUntil() {
+        return invoicedUntil;
+    }
+
+    public void setInvoicedUntil(final LocalDate invoicedUntil) {
+        this.invoicedUntil = invoicedUntil;
+    }
+
+    // //////////////////////////////////////
+
+    private int numberOfLeases;
+
+    public int getNumberOfLeases() {
+        return numberOfLeases;
+    }
+
+    private int numberOfTerms;
+
+    public int getNumberOfTerms() {
+        return numberOfTerms;
+    }
+
+    private int numberOfInvoices;
+
+    public int getNumberOfInvoices() {
+        return numberOfInvoices;
+    }
+
+    private int numberOfSkippedProperties;
+
+    /**
+     * The number of properties not generated because they existed already.
+     */
+    public int getNumberOfSkippedProperties() {
+        return numberOfSkippedProperties;
+    }
+
+    // //////////////////////////////////////
+
+    private String referencePrefix;
+    private Random random;
+    private int pending;
+    private int invoicesOfProperty;
+
+    private Country country;
+    private Currency currency;
+    private AgreementType leaseAgreementType;
+    private AgreementRoleType tenantRoleType;
+    private AgreementRoleType landlordRoleType;
+    private Charge rentCharge;
+    private Charge serviceChargeCharge;
+    private Charge turnoverRentCharge;
+
+    private Index index;
+    private final Map<LocalDate, BigDecimal> indexValuesByStartDate = Maps.newHashMap();
+    private final Map<String, BigDecimal> vatPercentages = Maps.newHashMap();
+
+    @Override
+    public void install() {
+        if (!isValidRunPrefix(runPrefix)) {
+            throw new IllegalArgumentException("Run prefix must be up to three letters or digits: " + runPrefix);
+        }
+        referencePrefix = getReferencePrefix();
+        pending = 0;
+        numberOfLeases = 0;
+        numberOfTerms = 0;
+        numberOfInvoices = 0;
+        numberOfSkippedProperties = 0;
+
+        lookupReferenceData();
+        createIndex();
+        for (int p = 1; p <= numberOfProperties; p++) {
+            createProperty(p);
+        }
+        getContainer().flush();
+    }
+
+    private void lookupReferenceData() {
+        country = countries.findCountry("NLD");
+        currency = currencies.findCurrency("EUR");
+        leaseAgreementType = agreementTypes.find(LeaseConstants.AT_LEASE);
+        tenantRoleType = agreementRoleTypes.findByTitle(LeaseConstants.ART_TENANT);
+        landlordRoleType = agreementRoleTypes.findByTitle(LeaseConstants.ART_LANDLORD);
+        rentCharge = charges.findCharge("RENT");
+        serviceChargeCharge = charges.findCharge("SERVICE_CHARGE");
+        turnoverRentCharge = charges.findCharge("TURNOVER_RENT");
+        if (leaseAgreementType == null || rentCharge == null || currency == null) {
+            throw new IllegalStateException("Reference data must be installed first");
+        }
+    }
+
+    /**
+     * A single based index with monthly values, starting a year before the
+     * window so that the first indexations can be calculated. When the index
+     * was generated before, its values are reused; the values are drawn from
+     * their own {@link Random} so that the rest of the portfolio is the same
+     * either way.
+     */
+    private void createIndex() {
+        final LocalDate indexStartDate = startDate.minusYears(1).withDayOfMonth(1);
+        final LocalDate indexEndDate = startDate.plusYears(YEARS + 1);
+        final String indexReference = referencePrefix + "-INDEX";
+        index = indices.findIndex(indexReference);
+        if (index != null) {
+            for (LocalDate date = indexStartDate; date.isBefore(indexEndDate); date = date.plusMonths(1)) {
+                indexValuesByStartDate.put(date, index.getIndexValueForDate(date));
+            }
+            return;
+        }
+        index = indices.newIndex(indexReference, "Generated index " + indexReference);
+        final IndexBase indexBase = indexBases.newIndexBase(index, null, indexStartDate, BigDecimal.ONE);
+        final Random indexRandom = new Random(seed);
+        BigDecimal value = ONE_HUNDRED;
+        for (LocalDate date = indexStartDate; date.isBefore(indexEndDate); date = date.plusMonths(1)) {
+            indexValues.newIndexValue(indexBase, date, value);
+            indexValuesByStartDate.put(date, value);
+            // between -0.2% and +0.6% a month
+            value = value.multiply(percentage(indexRandom, -2, 6, 1000)).setScale(1, RoundingMode.HALF_EVEN);
+            created();
+        }
+    }
+
+    /**
+     * Creates the property, unless it exists already; its values are drawn
+     * from a {@link Random} of its own, so that they do not depend on which
+     * other properties are created.
+     */
+    private void createProperty(final int p) {
+        final String reference = String.format("%s%03d", referencePrefix, p);
+        if (properties.findPropertyByReference(reference) != null) {
+            numberOfSkippedProperties++;
+            return;
+        }
+        random = new Random(seed + p);
+        invoicesOfProperty = 0;
+        final Property property = newTransientInstance(Property.class);
+        property.setReference(reference);
+        property.setName("Generated property " + p);
+        property.setType(PropertyType.SHOPPING_CENTER);
+        property.setCountry(country);
+        property.setAcquireDate(startDate.minusYears(1));
+        property.setOpeningDate(startDate.minusYears(1));
+        persist(property);
+
+        final Organisation owner = organisations.newOrganisation(reference + "-OWNER", "Owner of " + property.getName());
+        property.addRoleIfDoesNotExist(owner, FixedAssetRoleType.PROPERTY_OWNER, null, null);
+        created();
+
+        for (int u = 1; u <= unitsPerProperty; u++) {
+            final UnitType unitType = UnitType.values()[random.nextInt(UnitType.values().length)];
+            final Unit unit = property.newUnit(String.format("%s-%03d", reference, u), "Unit " + u, unitType);
+            unit.setArea(BigDecimal.valueOf(50 + random.nextInt(950)));
+            created();
+            for (int l = 1; l <= leasesPerUnit; l++) {
+                createLease((UnitForLease) unit, owner, l);
+            }
+        }
+    }
+
+    private void createLease(final UnitForLease unit, final Organisation landlord, final int l) {
+        final int durationInMonths = YEARS * 12 / leasesPerUnit;
+        final LocalDate leaseStartDate = startDate.plusMonths((l - 1) * durationInMonths);
+        final LocalDate leaseEndDate = leaseStartDate.plusMonths(durationInMonths).minusDays(1);
+        final String reference = String.format("%s-%02d", unit.getReference(), l);
+
+        final Organisation tenant = organisations.newOrganisation(reference + "-T", "Tenant of " + reference);
+
+        final Lease lease = newTransientInstance(Lease.class);
+        lease.setType(leaseAgreementType);
+        lease.setReference(reference);
+        lease.setName("Lease " + reference);
+        lease.setStartDate(leaseStartDate);
+        lease.setEndDate(leaseEndDate);
+        persist(lease);
+        lease.createRole(landlordRoleType, landlord, null, null);
+        lease.createRole(tenantRoleType, tenant, null, null);
+        occupancies.newOccupancy(lease, unit, leaseStartDate);
+        numberOfLeases++;
+        created();
+
+        final LeaseItem rentItem = createItem(lease, LeaseItemType.RENT, rentCharge, InvoicingFrequency.QUARTERLY_IN_ADVANCE);
+        final LeaseItem serviceChargeItem = createItem(lease, LeaseItemType.SERVICE_CHARGE, serviceChargeCharge, InvoicingFrequency.QUARTERLY_IN_ADVANCE);
+        final LeaseItem turnoverRentItem = createItem(lease, LeaseItemType.TURNOVER_RENT, turnoverRentCharge, InvoicingFrequency.YEARLY_IN_ARREARS);
+
+        final BigDecimal baseRent = amount(10000, 200000);
+        final BigDecimal budgetedServiceCharge = amount(2000, 20000);
+        final String turnoverRentRule = random.nextBoolean() ? "7" : "50000;5;7";
+
+        LeaseTermForIndexableRent rentTerm = null;
+        LeaseTermForServiceCharge serviceChargeTerm = null;
+        LeaseTermForTurnoverRent turnoverRentTerm = null;
+        final Map<LocalDate, LeaseTerm[]> termsByYear = Maps.newLinkedHashMap();
+        int sequence = 1;
+        for (LocalDate termStartDate = leaseStartDate; termStartDate.isBefore(leaseEndDate); termStartDate = termStartDate.plusYears(1)) {
+            final LocalDate termEndDate = earliest(termStartDate.plusYears(1).minusDays(1), leaseEndDate);
+
+            rentTerm = createRentTerm(rentItem, rentTerm, sequence, termStartDate, termEndDate, baseRent);
+            serviceChargeTerm = createServiceChargeTerm(serviceChargeItem, serviceChargeTerm, sequence, termStartDate, termEndDate, budgetedServiceCharge);
+            turnoverRentTerm = createTurnoverRentTerm(turnoverRentItem, turnoverRentTerm, sequence, termStartDate, termEndDate, turnoverRentRule, rentTerm.getIndexedValue());
+
+            termsByYear.put(termStartDate, new LeaseTerm[] { rentTerm, serviceChargeTerm, turnoverRentTerm });
+            sequence++;
+        }
+
+        createInvoices(lease, landlord, tenant, termsByYear);
+    }
+
+    private LeaseItem createItem(
+            final Lease lease,
+            final LeaseItemType type,
+            final Charge charge,
+            final InvoicingFrequency invoicingFrequency) {
+        final LeaseItem leaseItem = leaseItems.newLeaseItem(lease, type, charge, invoicingFrequency, PaymentMethod.DIRECT_DEBIT);
+        leaseItem.setStartDate(lease.getStartDate());
+        leaseItem.setEndDate(lease.getEndDate());
+        leaseItem.setSequence(BigInteger.ONE);
+        leaseItem.setStatus(LeaseItemStatus.APPROVED);
+        created();
+        return leaseItem;
+    }
+
+    private LeaseTermForIndexableRent createRentTerm(
+            final LeaseItem leaseItem,
+            final LeaseTermForIndexableRent previous,
+            final int sequence,
+            final LocalDate termStartDate,
+            final LocalDate termEndDate,
+            final BigDecimal baseRent) {
+        final LeaseTermForIndexableRent term = newTerm(leaseItem, previous, sequence, termStartDate, termEndDate);
+        term.setIndex(index);
+        term.setLevellingPercentage(ONE_HUNDRED);
+        if (previous == null) {
+            term.setBaseValue(baseRent);
+            term.setIndexedValue(baseRent);
+        } else {
+            final LocalDate baseIndexStartDate = previous.getStartDate().minusMonths(6).withDayOfMonth(1);
+            final LocalDate nextIndexStartDate = baseIndexStartDate.plusYears(1);
+            final BigDecimal baseIndexValue = indexValuesByStartDate.get(baseIndexStartDate);
+            final BigDecimal nextIndexValue = indexValuesByStartDate.get(nextIndexStartDate);
+            term.setBaseValue(previous.getIndexedValue());
+            term.setBaseIndexStartDate(baseIndexStartDate);
+            term.setNextIndexStartDate(nextIndexStartDate);
+            term.setBaseIndexValue(baseIndexValue);
+            term.setNextIndexValue(nextIndexValue);
+            term.setRebaseFactor(BigDecimal.ONE);
+            term.setEffectiveDate(termStartDate);
+            term.setIndexedValue(
+                    previous.getIndexedValue()
+                            .multiply(nextIndexValue)
+                            .divide(baseIndexValue, MathContext.DECIMAL64)
+                            .setScale(2, RoundingMode.HALF_EVEN));
+        }
+        return term;
+    }
+
+    private LeaseTermForServiceCharge createServiceChargeTerm(
+            final LeaseItem leaseItem,
+            final LeaseTermForServiceCharge previous,
+            final int sequence,
+            final LocalDate termStartDate,
+            final LocalDate termEndDate,
+            final BigDecimal budgetedServiceCharge) {
+        final LeaseTermForServiceCharge term = newTerm(leaseItem, previous, sequence, termStartDate, termEndDate);
+        final BigDecimal budgetedValue = previous == null
+                ? budgetedServiceCharge
+                : previous.getBudgetedValue().multiply(percentage(random, 0, 5, 100)).setScale(2, RoundingMode.HALF_EVEN);
+        term.setBudgetedValue(budgetedValue);
+        if (termEndDate.isBefore(invoicedUntil)) {
+            term.setAuditedValue(budgetedValue.multiply(percentage(random, -10, 10, 100)).setScale(2, RoundingMode.HALF_EVEN));
+        }
+        return term;
+    }
+
+    private LeaseTermForTurnoverRent createTurnoverRentTerm(
+            final LeaseItem leaseItem,
+            final LeaseTermForTurnoverRent previous,
+            final int sequence,
+            final LocalDate termStartDate,
+            final LocalDate termEndDate,
+            final String turnoverRentRule,
+            final BigDecimal contractualRent) {
+        final LeaseTermForTurnoverRent term = newTerm(leaseItem, previous, sequence, termStartDate, termEndDate);
+        term.setTurnoverRentRule(turnoverRentRule);
+        term.setContractualRent(contractualRent);
+        final BigDecimal turnover = contractualRent.multiply(BigDecimal.valueOf(8 + random.nextInt(12)));
+        term.setBudgetedTurnover(turnover);
+        if (termEndDate.isBefore(invoicedUntil)) {
+            term.setAuditedTurnover(turnover.multiply(percentage(random, -20, 20, 100)).setScale(2, RoundingMode.HALF_EVEN));
+            final BigDecimal turnoverRent = new TurnoverRentRuleHelper(turnoverRentRule).calculateRent(term.getAuditedTurnover());
+            term.setTurnoverRentValue(turnoverRent.subtract(contractualRent).max(BigDecimal.ZERO));
+        }
+        return term;
+    }
+
+    /**
+     * Creates the term without going through
+     * {@link org.estatio.dom.lease.LeaseTerms#newLeaseTerm(LeaseItem, LeaseTerm, LocalDate)},
+     * which flushes and refreshes the item for every term.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends LeaseTerm> T newTerm(
+            final LeaseItem leaseItem,
+            final T previous,
+            final int sequence,
+            final LocalDate termStartDate,
+            final LocalDate termEndDate) {
+        final T term = (T) leaseItem.getType().create(getContainer());
+        term.setLeaseItem(leaseItem);
+        term.setSequence(BigInteger.valueOf(sequence));
+        term.setStartDate(termStartDate);
+        term.setEndDate(termEndDate);
+        term.setFrequency(LeaseTermFrequency.YEARLY);
+        term.setStatus(LeaseTermStatus.APPROVED);
+        persist(term);
+        term.modifyPrevious(previous);
+        numberOfTerms++;
+        created();
+        return term;
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Quarterly invoices for rent and service charge, with the turnover rent
+     * of the past year added to the first invoice of every lease year.
+     */
+    private void createInvoices(
+            final Lease lease,
+            final Organisation seller,
+            final Organisation buyer,
+            final Map<LocalDate, LeaseTerm[]> termsByYear) {
+        for (Map.Entry<LocalDate, LeaseTerm[]> entry : termsByYear.entrySet()) {
+            final LeaseTerm[] terms = entry.getValue();
+            final LeaseTermForIndexableRent rentTerm = (LeaseTermForIndexableRent) terms[0];
+            final LeaseTermForServiceCharge serviceChargeTerm = (LeaseTermForServiceCharge) terms[1];
+            final LeaseTermForTurnoverRent previousTurnoverRentTerm = (LeaseTermForTurnoverRent) terms[2].getPrevious();
+            for (LocalDate dueDate = entry.getKey(); !dueDate.isAfter(rentTerm.getEndDate()); dueDate = dueDate.plusMonths(3)) {
+                if (!dueDate.isBefore(invoicedUntil)) {
+                    return;
+                }
+                final LocalDate periodEndDate = earliest(dueDate.plusMonths(3).minusDays(1), rentTerm.getEndDate());
+                final Invoice invoice = newInvoice(lease, seller, buyer, dueDate);
+                newInvoiceItem(invoice, rentTerm, rentCharge, dueDate, dueDate, periodEndDate,
+                        rentTerm.getIndexedValue().divide(QUARTERS_PER_YEAR, 2, RoundingMode.HALF_UP));
+                newInvoiceItem(invoice, serviceChargeTerm, serviceChargeCharge, dueDate, dueDate, periodEndDate,
+                        serviceChargeTerm.getBudgetedValue().divide(QUARTERS_PER_YEAR, 2, RoundingMode.HALF_UP));
+                if (dueDate.equals(entry.getKey())
+                        && previousTurnoverRentTerm != null
+                        && previousTurnoverRentTerm.getTurnoverRentValue() != null
+                        && previousTurnoverRentTerm.getTurnoverRentValue().signum() > 0) {
+                    newInvoiceItem(invoice, previousTurnoverRentTerm, turnoverRentCharge, dueDate,
+                            previousTurnoverRentTerm.getStartDate(), previousTurnoverRentTerm.getEndDate(),
+                            previousTurnoverRentTerm.getTurnoverRentValue());
+                }
+            }
+        }
+    }
+
+    private Invoice newInvoice(
+            final Lease lease,
+            final Organisation seller,
+            final Organisation buyer,
+            final LocalDate dueDate) {
+        numberOfInvoices++;
+        invoicesOfProperty++;
+        final Invoice invoice = newTransientInstance(Invoice.class);
+        invoice.setInvoiceNumber(String.format("%s-%06d", lease.getProperty().getReference(), invoicesOfProperty));
+        invoice.setSeller(seller);
+        invoice.setBuyer(buyer);
+        invoice.setSource(lease);
+        invoice.setProperty(lease.getProperty());
+        invoice.setCurrency(currency);
+        invoice.setPaymentMethod(PaymentMethod.DIRECT_DEBIT);
+        invoice.setInvoiceDate(dueDate.minusMonths(1));
+        invoice.setDueDate(dueDate);
+        invoice.setStatus(InvoiceStatus.INVOICED);
+        persist(invoice);
+        created();
+        return invoice;
+    }
+
+    private void newInvoiceItem(
+            final Invoice invoice,
+            final LeaseTerm leaseTerm,
+            final Charge charge,
+            final LocalDate dueDate,
+            final LocalDate itemStartDate,
+            final LocalDate itemEndDate,
+            final BigDecimal netAmount) {
+        final InvoiceItemForLease item = newTransientInstance(InvoiceItemForLease.class);
+        item.setInvoice(invoice);
+        item.setSequence(invoice.nextItemSequence());
+        item.setCharge(charge);
+        item.setDescription(charge.getDescription());
+        item.setTax(charge.getTax());
+        item.setQuantity(BigDecimal.ONE);
+        item.setDueDate(dueDate);
+        item.setStartDate(itemStartDate);
+        item.setEndDate(itemEndDate);
+        final BigDecimal vatAmount = netAmount
+                .multiply(vatPercentageFor(charge, dueDate))
+                .divide(ONE_HUNDRED, 2, RoundingMode.HALF_UP);
+        item.setNetAmount(netAmount);
+        item.setVatAmount(vatAmount);
+        item.setGrossAmount(netAmount.add(vatAmount));
+        persist(item);
+        item.modifyLeaseTerm(leaseTerm);
+        created();
+    }
+
+    private BigDecimal vatPercentageFor(final Charge charge, final LocalDate date) {
+        final String key = charge.getReference() + "|" + date.getYear();
+        BigDecimal percentage = vatPercentages.get(key);
+        if (percentage == null) {
+            percentage = charge.getTax().percentageFor(date);
+            if (percentage == null) {
+                percentage = BigDecimal.ZERO;
+            }
+            vatPercentages.put(key, percentage);
+        }
+        return percentage;
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Flushes every {@link #BATCH_SIZE} created objects, so that the inserts
+     * are sent to the database in batches rather than all at once at the end
+     * of the transaction.
+     */
+    private void created() {
+        if (++pending >= BATCH_SIZE) {
+            getContainer().flush();
+            pending = 0;
+        }
+    }
+
+    private BigDecimal amount(final int min, final int max) {
+        return BigDecimal.valueOf(min + random.nextInt(max - min)).setScale(2);
+    }
+
+    /**
+     * A factor of <tt>1 + x / divisor</tt>, where <tt>x</tt> is drawn between
+     * <tt>min</tt> (inclusive) and <tt>max</tt> (exclusive).
+     */
+    private static BigDecimal percentage(final Random random, final int min, final int max, final int divisor) {
+        final int x = min + random.nextInt(max - min);
+        return BigDecimal.ONE.add(BigDecimal.valueOf(x).divide(BigDecimal.valueOf(divisor), MathContext.DECIMAL64));
+    }
+
+    private static LocalDate earliest(final LocalDate date1, final LocalDate date2) {
+        return date1.isBefore(date2) ? date1 : date2;
+    }
+
+    // //////////////////////////////////////
+
+    private Countries countries;
+
+    public void injectCountries(final Countries countries) {
+        this.countries = countries;
+    }
+
+    private Currencies currencies;
+
+    public void injectCurrencies(final Currencies currencies) {
+        this.currencies = currencies;
+    }
+
+    private AgreementTypes agreementTypes;
+
+    public void injectAgreementTypes(final AgreementTypes agreementTypes) {
+        this.agreementTypes = agreementTypes;
+    }
+
+    private AgreementRoleTypes agreementRoleTypes;
+
+    public void injectAgreementRoleTypes(final AgreementRoleTypes agreementRoleTypes) {
+        this.agreementRoleTypes = agreementRoleTypes;
+    }
+
+    private Charges charges;
+
+    public void injectCharges(final Charges charges) {
+        this.charges = charges;
+    }
+
+    private Indices indices;
+
+    public void injectIndices(final Indices indices) {
+        this.indices = indices;
+    }
+
+    private IndexBases indexBases;
+
+    public void injectIndexBases(final IndexBases indexBases) {
+        this.indexBases = indexBases;
+    }
+
+    private IndexValues indexValues;
+
+    public void injectIndexValues(final IndexValues indexValues) {
+        this.indexValues = indexValues;
+    }
+
+    private Properties properties;
+
+    public void injectProperties(final Properties properties) {
+        this.properties = properties;
+    }
+
+    private Organisations organisations;
+
+    public void injectOrganisations(final Organisations organisations) {
+        this.organisations = organisations;
+    }
+
+    private Occupancies occupancies;
+
+    public void injectOccupancies(final Occupancies occupancies) {
+        this.occupancies = occupancies;
+    }
+
+    private LeaseItems leaseItems;
+
+    public void injectLeaseItems(final LeaseItems leaseItems) {
+        this.leaseItems = leaseItems;
+    }
+
+}
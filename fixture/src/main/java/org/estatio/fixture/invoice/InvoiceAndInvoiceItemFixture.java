@@ -64,6 +64,7 @@ public class InvoiceAndInvoiceItemFixture extends AbstractFixture {
         invoice.setStatus(InvoiceStatus.NEW);
         invoice.setCurrency(currency);
         invoice.setSource(lease);
+        invoice.setProperty(lease.getProperty());
         invoice.setDueDate(START_DATE);
         invoice.setInvoiceDate(START_DATE);
         
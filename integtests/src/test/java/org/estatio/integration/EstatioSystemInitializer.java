@@ -29,6 +29,8 @@ import org.apache.isis.objectstore.jdo.datanucleus.service.support.IsisJdoSuppor
 import org.apache.isis.objectstore.jdo.service.RegisterEntities;
 
 import org.estatio.api.Api;
+import org.estatio.dom.LastModifiedListener;
+import org.estatio.dom.ReferenceDataRegistry;
 import org.estatio.dom.agreement.AgreementRoleCommunicationChannelTypes;
 import org.estatio.dom.agreement.AgreementRoleCommunicationChannels;
 import org.estatio.dom.agreement.AgreementRoleTypes;
@@ -55,11 +57,17 @@ import org.estatio.dom.geography.Countries;
 import org.estatio.dom.geography.StateContributions;
 import org.estatio.dom.geography.States;
 import org.estatio.dom.index.IndexBases;
+import org.estatio.dom.index.IndexValueIngestionService;
 import org.estatio.dom.index.IndexValues;
 import org.estatio.dom.index.IndexationService;
 import org.estatio.dom.index.Indices;
+import org.estatio.dom.invoice.Invoice;
 import org.estatio.dom.invoice.InvoiceNumeratorContributions;
 import org.estatio.dom.invoice.Invoices;
+import org.estatio.dom.invoice.archive.ArchivedInvoices;
+import org.estatio.dom.invoice.archive.InvoiceArchiveService;
+import org.estatio.dom.invoice.publishing.InvoiceOutboxRenderer;
+import org.estatio.dom.invoice.sepa.CollectionFileService;
 import org.estatio.dom.invoice.viewmodel.InvoiceSummariesForPropertyDueDate;
 import org.estatio.dom.lease.LeaseItems;
 import org.estatio.dom.lease.LeaseTerms;
@@ -67,31 +75,56 @@ import org.estatio.dom.lease.LeaseTypes;
 import org.estatio.dom.lease.Leases;
 import org.estatio.dom.lease.Occupancies;
 import org.estatio.dom.lease.UnitsForLease;
+import org.estatio.dom.lease.criticaldates.CriticalDates;
+import org.estatio.dom.lease.invoicing.BulkTransitionService;
 import org.estatio.dom.lease.invoicing.InvoiceCalculationService;
 import org.estatio.dom.lease.invoicing.InvoiceItemsForLease;
+import org.estatio.dom.lease.invoicing.InvoicedValueSummaries;
+import org.estatio.dom.lease.servicecharge.ServiceChargeReconciliationService;
 import org.estatio.dom.lease.tags.Activities;
 import org.estatio.dom.lease.tags.Brands;
 import org.estatio.dom.lease.tags.Sectors;
 import org.estatio.dom.lease.tags.UnitSizes;
+import org.estatio.dom.lease.turnover.TurnoverIngestionService;
+import org.estatio.dom.lease.turnover.Turnovers;
 import org.estatio.dom.numerator.Numerators;
 import org.estatio.dom.party.Organisations;
 import org.estatio.dom.party.Parties;
 import org.estatio.dom.party.Persons;
+import org.estatio.dom.search.SearchIndexListener;
+import org.estatio.dom.search.SearchIndexService;
 import org.estatio.dom.tax.TaxRates;
 import org.estatio.dom.tax.Taxes;
 import org.estatio.fixture.EstatioRefDataObjectsFixture;
+import org.estatio.fixture.generator.LargePortfolioFixture;
 import org.estatio.services.bookmarks.BookmarkServiceForEstatio;
+import org.estatio.services.cache.CacheInvalidationListener;
+import org.estatio.services.cache.ClusterCacheService;
 import org.estatio.services.clock.ClockService;
+import org.estatio.services.etag.EntityTagService;
+import org.estatio.services.outbox.OutboxService;
+import org.estatio.services.replica.ReplicaRoutingService;
+import org.estatio.services.retry.RetryService;
 import org.estatio.services.settings.ApplicationSettingsServiceForEstatio;
 import org.estatio.services.settings.EstatioSettingsService;
+import org.estatio.services.startup.SchemaVersionService;
 
 /**
  * Holds an instance of an {@link IsisSystemForTest} as a {@link ThreadLocal} on
  * the current thread, initialized with Estatio's domain services and with
  * {@link EstatioRefDataObjectsFixture reference data fixture}.
+ * 
+ * <p>
+ * A {@link LargePortfolioFixture large portfolio} can be generated on top of
+ * the reference data with
+ * <tt>-Destatio.largePortfolio=properties,units,leases[,seed]</tt>, eg
+ * <tt>10,50,2</tt>, to run tests against realistic volumes. Test classes that
+ * install the transactional fixtures tear it down again.
  */
 public class EstatioSystemInitializer {
 
+    static final String LARGE_PORTFOLIO_KEY = "estatio.largePortfolio";
+
     private EstatioSystemInitializer() {
     }
 
@@ -108,6 +141,10 @@ public class EstatioSystemInitializer {
 
         private EstatioIntegTestBuilder() {
             withFixtures(new EstatioRefDataObjectsFixture());
+            final LargePortfolioFixture largePortfolioFixture = largePortfolioFixture(System.getProperty(LARGE_PORTFOLIO_KEY));
+            if (largePortfolioFixture != null) {
+                withFixtures(largePortfolioFixture);
+            }
             withLoggingAt(Level.INFO);
             with(testConfiguration());
             with(new DataNucleusPersistenceMechanismInstaller());
@@ -122,6 +159,7 @@ public class EstatioSystemInitializer {
                     new Indices(),
                     new IndexBases(),
                     new IndexValues(),
+                    new IndexValueIngestionService(),
                     new FixedAssets(),
                     new Properties(),
                     new FixedAssetRoles(),
@@ -141,6 +179,9 @@ public class EstatioSystemInitializer {
                     new LeaseItems(),
                     new LeaseTypes(),
                     new Occupancies(),
+                    new Turnovers(),
+                    new TurnoverIngestionService(),
+                    new ServiceChargeReconciliationService(),
                     new Invoices(),
                     new InvoiceNumeratorContributions(),
                     new InvoiceItemsForLease(),
@@ -165,9 +206,23 @@ public class EstatioSystemInitializer {
                     new FinancialAccounts(),
                     new Numerators(),
                     new ClockService(),
+                    new RetryService(),
+                    new ReferenceDataRegistry(),
+                    new ClusterCacheService(),
+                    new SchemaVersionService(),
+                    new SearchIndexService(),
+                    new EntityTagService(),
+                    new ReplicaRoutingService(),
+                    new OutboxService(),
                     new Api(),
                     new IsisJdoSupportImpl(),
                     new InvoiceCalculationService(),
+                    new InvoicedValueSummaries(),
+                    new ArchivedInvoices(),
+                    new InvoiceArchiveService(),
+                    new BulkTransitionService(),
+                    new CollectionFileService(),
+                    new CriticalDates(),
                     new ApplicationSettingsServiceForEstatio(),
                     new EstatioSettingsService(),
                     new FinancialAccountContributions(),
@@ -175,6 +230,25 @@ public class EstatioSystemInitializer {
                     new EventBusServiceJdo());
         }
 
+        /**
+         * The fixture for the given <tt>properties,units,leases[,seed]</tt>;
+         * <tt>null</tt> if none given.
+         */
+        private static LargePortfolioFixture largePortfolioFixture(final String parameters) {
+            if (parameters == null || parameters.trim().length() == 0) {
+                return null;
+            }
+            final String[] values = parameters.split(",");
+            if (values.length < 3 || values.length > 4) {
+                throw new IllegalArgumentException(LARGE_PORTFOLIO_KEY + " must be properties,units,leases[,seed]: " + parameters);
+            }
+            return new LargePortfolioFixture(
+                    values.length == 4 ? Long.parseLong(values[3].trim()) : LargePortfolioFixture.DEFAULT_SEED,
+                    Integer.parseInt(values[0].trim()),
+                    Integer.parseInt(values[1].trim()),
+                    Integer.parseInt(values[2].trim()));
+        }
+
         private IsisConfiguration testConfiguration() {
             final IsisConfigurationDefault testConfiguration = new IsisConfigurationDefault();
 
@@ -207,6 +281,21 @@ public class EstatioSystemInitializer {
 
             testConfiguration.add("isis.persistor.datanucleus.impl.datanucleus.identifier.case", "PreserveCase");
 
+            testConfiguration.add("isis.persistor.datanucleus.impl.datanucleus.rdbms.statementBatchLimit", "50");
+            // to count the datastore writes per calculated invoice item
+            testConfiguration.add("isis.persistor.datanucleus.impl.datanucleus.enableStatistics", "true");
+            // publish changes for other nodes, see ClusterCacheTest_staleReads
+            testConfiguration.add(
+                    "isis.persistor.datanucleus.impl.javax.jdo.listener.InstanceLifecycleListener." + CacheInvalidationListener.class.getName(), "");
+            testConfiguration.add(
+                    "isis.persistor.datanucleus.impl.javax.jdo.listener.InstanceLifecycleListener." + SearchIndexListener.class.getName(), "");
+            testConfiguration.add(
+                    "isis.persistor.datanucleus.impl.javax.jdo.listener.InstanceLifecycleListener." + LastModifiedListener.class.getName(), "");
+
+            // the sink is set by OutboxServiceTest_dispatch; retried at once
+            testConfiguration.add("estatio.outbox.renderer." + Invoice.class.getName(), InvoiceOutboxRenderer.class.getName());
+            testConfiguration.add("estatio.outbox.backoffMillis", "1");
+
             // adding this is meant to be all that is required for
             // across-the-board multi-tenancy support
             // however, it causes DN to throw a NullPointerException...
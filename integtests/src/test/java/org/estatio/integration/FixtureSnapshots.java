@@ -0,0 +1,202 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.apache.log4j.Logger;
+
+import org.apache.isis.core.integtestsupport.scenarios.ScenarioExecution;
+import org.apache.isis.core.commons.authentication.AuthenticationSession;
+import org.apache.isis.core.runtime.system.context.IsisContext;
+
+import org.estatio.dom.search.SearchIndexService;
+
+/**
+ * Installs sets of fixtures through the domain API the first time only,
+ * restoring the in-memory database to the state they left it in every time
+ * after.
+ * 
+ * <p>
+ * Once a set of fixtures (identified by a hash of their classes, in order)
+ * has been installed, all tables are copied into a schema of their own. To
+ * restore, every table is emptied and refilled from that copy, with
+ * referential integrity checks off. Identity columns are not reset, so that
+ * objects created afterwards never get the id of one created before the
+ * restore. The restored objects do get the ids of the ones they replace
+ * though, so the session is reopened to discard the objects (and adapters)
+ * it still holds from before.
+ * 
+ * <p>
+ * Can be turned off with <tt>-Destatio.fixtureSnapshots=false</tt>.
+ */
+public final class FixtureSnapshots {
+
+    private static final Logger LOG = Logger.getLogger(FixtureSnapshots.class);
+
+    static final String ENABLED_KEY = "estatio.fixtureSnapshots";
+
+    private static final String SCHEMA = "PUBLIC";
+    private static final String CONNECTION_URL_KEY = "isis.persistor.datanucleus.impl.javax.jdo.option.ConnectionURL";
+    private static final String DEFAULT_CONNECTION_URL = "jdbc:hsqldb:mem:test";
+
+    /**
+     * The tables copied, by snapshot schema.
+     */
+    private static final Map<String, List<String>> SNAPSHOTS = Maps.newHashMap();
+
+    private FixtureSnapshots() {
+    }
+
+    public static void install(final ScenarioExecution scenarioExecution, final Object... fixtures) {
+        if ("false".equals(System.getProperty(ENABLED_KEY))) {
+            scenarioExecution.install(fixtures);
+            return;
+        }
+        final String snapshot = snapshotSchemaFor(fixtures);
+        try {
+            if (SNAPSHOTS.containsKey(snapshot)) {
+                final long start = System.currentTimeMillis();
+                restore(snapshot);
+                reopenSession();
+                // restored rows bypass the SearchIndexListener
+                scenarioExecution.service(SearchIndexService.class).rebuild();
+                LOG.info("Restored " + snapshot + " in " + (System.currentTimeMillis() - start) + " ms");
+                return;
+            }
+            scenarioExecution.install(fixtures);
+            SNAPSHOTS.put(snapshot, capture(snapshot));
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Could not snapshot or restore " + snapshot, ex);
+        }
+    }
+
+    static String snapshotSchemaFor(final Object... fixtures) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (Object fixture : fixtures) {
+                digest.update(fixture.getClass().getName().getBytes());
+                digest.update((byte) 0);
+            }
+            final StringBuilder buf = new StringBuilder("SNAPSHOT_");
+            final byte[] hash = digest.digest();
+            for (int i = 0; i < 8; i++) {
+                buf.append(String.format("%02X", hash[i]));
+            }
+            return buf.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // //////////////////////////////////////
+
+    private static List<String> capture(final String snapshot) throws SQLException {
+        final Connection connection = openConnection();
+        try {
+            final List<String> tables = tablesOf(connection);
+            final Statement statement = connection.createStatement();
+            statement.execute("CREATE SCHEMA " + quoted(snapshot));
+            for (String table : tables) {
+                statement.execute(
+                        "CREATE TABLE " + quoted(snapshot, table)
+                                + " AS (SELECT * FROM " + quoted(SCHEMA, table) + ") WITH DATA");
+            }
+            connection.commit();
+            return tables;
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static void restore(final String snapshot) throws SQLException {
+        final List<String> copied = SNAPSHOTS.get(snapshot);
+        final Connection connection = openConnection();
+        try {
+            final Statement statement = connection.createStatement();
+            statement.execute("SET DATABASE REFERENTIAL INTEGRITY FALSE");
+            try {
+                for (String table : tablesOf(connection)) {
+                    // TRUNCATE checks foreign keys regardless of the referential integrity setting
+                    statement.execute("DELETE FROM " + quoted(SCHEMA, table));
+                    if (copied.contains(table)) {
+                        statement.execute(
+                                "INSERT INTO " + quoted(SCHEMA, table)
+                                        + " SELECT * FROM " + quoted(snapshot, table));
+                    }
+                }
+                connection.commit();
+            } finally {
+                statement.execute("SET DATABASE REFERENTIAL INTEGRITY TRUE");
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static void reopenSession() {
+        final AuthenticationSession authenticationSession = IsisContext.getAuthenticationSession();
+        IsisContext.closeSession();
+        IsisContext.openSession(authenticationSession);
+    }
+
+    private static List<String> tablesOf(final Connection connection) throws SQLException {
+        final ResultSet resultSet = connection.createStatement().executeQuery(
+                "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES "
+                        + "WHERE TABLE_SCHEMA = '" + SCHEMA + "' AND TABLE_TYPE = 'BASE TABLE'");
+        final List<String> tables = Lists.newArrayList();
+        while (resultSet.next()) {
+            tables.add(resultSet.getString(1));
+        }
+        return tables;
+    }
+
+    private static Connection openConnection() throws SQLException {
+        String url = IsisContext.getConfiguration().getString(CONNECTION_URL_KEY);
+        if (url == null) {
+            url = DEFAULT_CONNECTION_URL;
+        }
+        final Connection connection = DriverManager.getConnection(url, "sa", "");
+        connection.setAutoCommit(false);
+        return connection;
+    }
+
+    private static String quoted(final String... names) {
+        final StringBuilder buf = new StringBuilder();
+        for (String name : names) {
+            if (buf.length() > 0) {
+                buf.append('.');
+            }
+            buf.append('"').append(name).append('"');
+        }
+        return buf.toString();
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import org.estatio.fixture.EstatioTransactionalObjectsFixture;
+import org.estatio.fixture.EstatioTransactionalObjectsTeardownFixture;
+
+public class FixtureSnapshotsTest {
+
+    @Test
+    public void sameFixturesSameSnapshot() throws Exception {
+        assertThat(
+                FixtureSnapshots.snapshotSchemaFor(new EstatioTransactionalObjectsFixture()),
+                is(FixtureSnapshots.snapshotSchemaFor(new EstatioTransactionalObjectsFixture())));
+    }
+
+    @Test
+    public void otherFixturesOtherSnapshot() throws Exception {
+        assertThat(
+                FixtureSnapshots.snapshotSchemaFor(new EstatioTransactionalObjectsFixture()),
+                is(not(FixtureSnapshots.snapshotSchemaFor(new EstatioTransactionalObjectsTeardownFixture()))));
+    }
+
+    @Test
+    public void orderMatters() throws Exception {
+        final Object install = new EstatioTransactionalObjectsFixture();
+        final Object teardown = new EstatioTransactionalObjectsTeardownFixture();
+        assertThat(
+                FixtureSnapshots.snapshotSchemaFor(install, teardown),
+                is(not(FixtureSnapshots.snapshotSchemaFor(teardown, install))));
+    }
+
+    @Test
+    public void isValidSchemaName() throws Exception {
+        assertThat(
+                FixtureSnapshots.snapshotSchemaFor(new EstatioTransactionalObjectsFixture()).matches("SNAPSHOT_[0-9A-F]{16}"),
+                is(true));
+    }
+
+}
@@ -25,6 +25,7 @@ import org.apache.isis.core.integtestsupport.IntegrationTestAbstract;
 import org.apache.isis.core.integtestsupport.scenarios.ScenarioExecutionForIntegration;
 
 import org.estatio.integration.EstatioSystemInitializer;
+import org.estatio.integration.FixtureSnapshots;
 
 /**
  * Base class for integration tests.
@@ -40,5 +41,14 @@ public abstract class EstatioIntegrationTest extends IntegrationTestAbstract {
         new ScenarioExecutionForIntegration();
     }
 
+    /**
+     * Installs the fixtures, or (if they have been installed before)
+     * restores the database to the state they left it in; see
+     * {@link FixtureSnapshots}.
+     */
+    protected static void installFixtures(final Object... fixtures) {
+        FixtureSnapshots.install(scenarioExecution(), fixtures);
+    }
+
 }
 
@@ -94,7 +94,7 @@ public class ApiIntegrationTest extends EstatioIntegrationTest {
 
     @BeforeClass
     public static void setupTransactionalData() {
-        scenarioExecution().install(new EstatioTransactionalObjectsFixture());
+        installFixtures(new EstatioTransactionalObjectsFixture());
     }
 
     @Before
@@ -40,7 +40,7 @@ public class InvoiceSummariesTest_finders extends EstatioIntegrationTest {
 
     @BeforeClass
     public static void setupTransactionalData() {
-        scenarioExecution().install(new EstatioTransactionalObjectsFixture());
+        installFixtures(new EstatioTransactionalObjectsFixture());
     }
 
     @Before
@@ -34,7 +34,7 @@ public class FixedAssetsTest_finders extends EstatioIntegrationTest {
 
     @BeforeClass
     public static void setupTransactionalData() {
-        scenarioExecution().install(new EstatioTransactionalObjectsFixture());
+        installFixtures(new EstatioTransactionalObjectsFixture());
     }
     
     @Before
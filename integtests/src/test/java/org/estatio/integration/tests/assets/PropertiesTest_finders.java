@@ -49,7 +49,7 @@ public class PropertiesTest_finders extends EstatioIntegrationTest {
 
     @BeforeClass
     public static void setupTransactionalData() {
-        scenarioExecution().install(new EstatioTransactionalObjectsFixture());
+        installFixtures(new EstatioTransactionalObjectsFixture());
     }
 
     @Before
@@ -32,7 +32,7 @@ public class UnitsTest_finders extends EstatioIntegrationTest {
     private Units<?> units;
     @BeforeClass
     public static void setupTransactionalData() {
-        scenarioExecution().install(new EstatioTransactionalObjectsFixture());
+        installFixtures(new EstatioTransactionalObjectsFixture());
     }
 
     @Before
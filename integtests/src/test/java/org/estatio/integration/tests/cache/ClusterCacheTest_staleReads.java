@@ -0,0 +1,282 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+
+import com.google.common.collect.Maps;
+
+import org.joda.time.LocalDate;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+import org.estatio.dom.charge.Charge;
+import org.estatio.dom.charge.Charges;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.Leases;
+import org.estatio.dom.lease.Leases.InvoiceRunType;
+import org.estatio.dom.lease.invoicing.InvoiceItemsForLease;
+import org.estatio.fixture.EstatioTransactionalObjectsFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+import org.estatio.services.cache.ClusterCacheNode;
+import org.estatio.services.retry.RetryReport;
+import org.estatio.services.retry.RetryService;
+
+/**
+ * The Isis system of the test is one node; the other is a second
+ * persistence manager factory with an L2 cache of its own, on the same
+ * (in-memory) database.
+ */
+public class ClusterCacheTest_staleReads extends EstatioIntegrationTest {
+
+    private static final String CHARGE_REFERENCE = "RENT";
+    private static final String LEASE_REFERENCE = "OXF-MIRACL-005";
+    private static final String RUN_ID = "clusterCacheTest";
+
+    private static PersistenceManagerFactory otherNode;
+
+    @BeforeClass
+    public static void setUpOtherNode() {
+        final Map<String, String> properties = Maps.newHashMap();
+        properties.put("javax.jdo.PersistenceManagerFactoryClass", "org.datanucleus.api.jdo.JDOPersistenceManagerFactory");
+        properties.put("javax.jdo.option.ConnectionDriverName", "org.hsqldb.jdbcDriver");
+        properties.put("javax.jdo.option.ConnectionURL", "jdbc:hsqldb:mem:test");
+        properties.put("javax.jdo.option.ConnectionUserName", "sa");
+        properties.put("javax.jdo.option.ConnectionPassword", "");
+        properties.put("datanucleus.autoCreateSchema", "true");
+        properties.put("datanucleus.defaultInheritanceStrategy", "TABLE_PER_CLASS");
+        properties.put("datanucleus.identifier.case", "PreserveCase");
+        properties.put("datanucleus.cache.level2.type", "soft");
+        otherNode = JDOHelper.getPersistenceManagerFactory(properties);
+    }
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsFixture());
+    }
+
+    @AfterClass
+    public static void tearDownOtherNode() {
+        otherNode.close();
+    }
+
+    private Charges charges;
+    private Leases leases;
+    private InvoiceItemsForLease invoiceItemsForLease;
+    private RetryService retryService;
+
+    private String originalDescription;
+
+    @Before
+    public void setUp() throws Exception {
+        charges = service(Charges.class);
+        leases = service(Leases.class);
+        invoiceItemsForLease = service(InvoiceItemsForLease.class);
+        retryService = service(RetryService.class);
+        originalDescription = charges.findCharge(CHARGE_REFERENCE).getDescription();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        changeDescription(originalDescription);
+    }
+
+    @Test
+    public void changeIsSeenByOtherNodeOncePolled() throws Exception {
+        final Object objectId = loadOnOtherNode();
+        assertThat(descriptionOnOtherNode(objectId), is(originalDescription));
+
+        changeDescription("Changed on this node");
+
+        // still cached on the other node...
+        assertThat(descriptionOnOtherNode(objectId), is(originalDescription));
+
+        ClusterCacheNode.of(otherNode).poll();
+
+        // ... until it has polled
+        assertThat(descriptionOnOtherNode(objectId), is("Changed on this node"));
+    }
+
+    @Test
+    public void changeIsEvictedOnlyOnce() throws Exception {
+        final Object objectId = loadOnOtherNode();
+        changeDescription("Changed once");
+
+        assertThat(ClusterCacheNode.of(otherNode).poll() > 0, is(true));
+        assertThat(ClusterCacheNode.of(otherNode).poll(), is(0));
+        assertThat(descriptionOnOtherNode(objectId), is("Changed once"));
+    }
+
+    @Test
+    public void changeRolledBackIsNotPublished() throws Exception {
+        ClusterCacheNode.of(otherNode).poll();
+
+        final PersistenceManager persistenceManager =
+                service(IsisJdoSupport.class).getJdoPersistenceManager().getPersistenceManagerFactory().getPersistenceManager();
+        try {
+            persistenceManager.currentTransaction().begin();
+            final Query query = persistenceManager.newQuery(Charge.class, "reference == :reference");
+            @SuppressWarnings("unchecked")
+            final List<Charge> results = (List<Charge>) query.execute(CHARGE_REFERENCE);
+            results.get(0).setDescription("Rolled back");
+            persistenceManager.flush();
+            persistenceManager.currentTransaction().rollback();
+        } finally {
+            persistenceManager.close();
+        }
+
+        assertThat(ClusterCacheNode.of(otherNode).poll(), is(0));
+    }
+
+    @Test
+    public void rollbackRunIsSeenByOtherNodeOncePolled() throws Exception {
+        execute(new RetryService.Unit(LEASE_REFERENCE) {
+            @Override
+            public void execute() {
+                final Lease lease = leases.findLeaseByReference(LEASE_REFERENCE);
+                lease.verifyUntil(new LocalDate(2015, 1, 1));
+                lease.calculate(new LocalDate(2013, 11, 13), new LocalDate(2015, 3, 31), new LocalDate(2013, 11, 7), InvoiceRunType.NORMAL_RUN, RUN_ID);
+            }
+        });
+        ClusterCacheNode.of(otherNode).poll();
+        final Object leaseId = JDOHelper.getObjectId(leases.findLeaseByReference(LEASE_REFERENCE));
+        loadOnOtherNode(leaseId);
+        final Object version = versionOnOtherNode(leaseId);
+
+        // the statements of the rollback bypass DataNucleus...
+        execute(new RetryService.Unit(RUN_ID) {
+            @Override
+            public void execute() {
+                invoiceItemsForLease.rollbackRun(RUN_ID);
+            }
+        });
+
+        // ... so still cached on the other node...
+        assertThat(versionOnOtherNode(leaseId), is(version));
+
+        ClusterCacheNode.of(otherNode).poll();
+
+        // ... until it has polled, after which it can change the lease
+        assertThat(versionOnOtherNode(leaseId), is(not(version)));
+        renameOnOtherNode(leaseId, "Renamed on the other node");
+    }
+
+    // //////////////////////////////////////
+
+    private void execute(final RetryService.Unit unit) {
+        final RetryReport report = retryService.execute(unit.getDescription(), Arrays.asList(unit));
+        assertThat(report.getFailures().isEmpty(), is(true));
+    }
+
+    private void changeDescription(final String description) {
+        retryService.execute("changeDescription", Arrays.asList(new RetryService.Unit(CHARGE_REFERENCE) {
+            @Override
+            public void execute() {
+                charges.findCharge(CHARGE_REFERENCE).setDescription(description);
+            }
+        }));
+    }
+
+    /**
+     * Loads the charge on the other node, so that it is in its L2 cache.
+     */
+    private static Object loadOnOtherNode() {
+        final PersistenceManager persistenceManager = otherNode.getPersistenceManager();
+        try {
+            persistenceManager.currentTransaction().begin();
+            final Query query = persistenceManager.newQuery(Charge.class, "reference == :reference");
+            @SuppressWarnings("unchecked")
+            final List<Charge> results = (List<Charge>) query.execute(CHARGE_REFERENCE);
+            final Charge charge = results.get(0);
+            charge.getDescription();
+            final Object objectId = persistenceManager.getObjectId(charge);
+            persistenceManager.currentTransaction().commit();
+            return objectId;
+        } finally {
+            persistenceManager.close();
+        }
+    }
+
+    private static String descriptionOnOtherNode(final Object objectId) {
+        final PersistenceManager persistenceManager = otherNode.getPersistenceManager();
+        try {
+            final Charge charge = (Charge) persistenceManager.getObjectById(objectId, false);
+            return charge.getDescription();
+        } finally {
+            persistenceManager.close();
+        }
+    }
+
+    /**
+     * Loads the lease on the other node (by id, as querying would fetch its
+     * collections too), so that it is in its L2 cache.
+     */
+    private static void loadOnOtherNode(final Object objectId) {
+        final PersistenceManager persistenceManager = otherNode.getPersistenceManager();
+        try {
+            persistenceManager.getObjectById(objectId, true);
+        } finally {
+            persistenceManager.close();
+        }
+    }
+
+    private static Object versionOnOtherNode(final Object objectId) {
+        final PersistenceManager persistenceManager = otherNode.getPersistenceManager();
+        try {
+            return JDOHelper.getVersion(persistenceManager.getObjectById(objectId, false));
+        } finally {
+            persistenceManager.close();
+        }
+    }
+
+    /**
+     * Fails (with an optimistic locking exception) if the other node still
+     * has the version from before the rollback.
+     */
+    private static void renameOnOtherNode(final Object objectId, final String name) {
+        final PersistenceManager persistenceManager = otherNode.getPersistenceManager();
+        try {
+            persistenceManager.currentTransaction().begin();
+            ((Lease) persistenceManager.getObjectById(objectId, false)).setName(name);
+            persistenceManager.currentTransaction().commit();
+        } finally {
+            if (persistenceManager.currentTransaction().isActive()) {
+                persistenceManager.currentTransaction().rollback();
+            }
+            persistenceManager.close();
+        }
+    }
+
+}
@@ -43,7 +43,7 @@ public class BankMandatesTest_finder extends EstatioIntegrationTest {
     
     @BeforeClass
     public static void setupTransactionalData() {
-        scenarioExecution().install(new EstatioTransactionalObjectsFixture());
+        installFixtures(new EstatioTransactionalObjectsFixture());
     }
 
     @Before
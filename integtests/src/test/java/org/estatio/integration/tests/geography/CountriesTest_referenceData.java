@@ -0,0 +1,71 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.geography;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.estatio.dom.ReferenceDataRegistry;
+import org.estatio.dom.geography.Countries;
+import org.estatio.dom.geography.Country;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+
+public class CountriesTest_referenceData extends EstatioIntegrationTest {
+
+    private Countries countries;
+    private ReferenceDataRegistry referenceDataRegistry;
+
+    @Before
+    public void setUp() throws Exception {
+        countries = service(Countries.class);
+        referenceDataRegistry = service(ReferenceDataRegistry.class);
+        referenceDataRegistry.invalidateAll();
+    }
+
+    @Test
+    public void registeredCountryIsSameAsQueried() throws Exception {
+        final Country registered = referenceDataRegistry.find(Country.class, "NLD");
+        assertThat(registered.getReference(), is("NLD"));
+        assertThat(countries.findCountry("NLD"), is(sameInstance(registered)));
+        assertThat(countries.findCountry("N?D"), is(sameInstance(registered)));
+    }
+
+    @Test
+    public void unknownCountry() throws Exception {
+        assertThat(referenceDataRegistry.find(Country.class, "XXX"), is(nullValue()));
+        assertThat(countries.findCountry("XXX"), is(nullValue()));
+    }
+
+    @Test
+    public void createdCountryIsFound() throws Exception {
+        assertThat(referenceDataRegistry.find(Country.class, "NLD"), is(
+                countries.findCountry("NLD")));
+
+        final Country created = countries.createCountry("ZZZ", "ZZ", "Zedland");
+
+        assertThat(referenceDataRegistry.find(Country.class, "ZZZ"), is(sameInstance(created)));
+        assertThat(countries.findCountry("ZZZ"), is(sameInstance(created)));
+    }
+
+}
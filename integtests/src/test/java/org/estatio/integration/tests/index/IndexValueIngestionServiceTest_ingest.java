@@ -0,0 +1,133 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.index;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.SortedSet;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.estatio.dom.index.Index;
+import org.estatio.dom.index.IndexBase;
+import org.estatio.dom.index.IndexValue;
+import org.estatio.dom.index.IndexValueIngestionReport;
+import org.estatio.dom.index.IndexValueIngestionService;
+import org.estatio.dom.index.IndexValues;
+import org.estatio.dom.index.Indices;
+import org.estatio.fixture.EstatioTransactionalObjectsFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+
+public class IndexValueIngestionServiceTest_ingest extends EstatioIntegrationTest {
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsFixture());
+    }
+
+    private IndexValueIngestionService ingestionService;
+    private Indices indices;
+    private IndexValues indexValues;
+
+    @Before
+    public void setup() {
+        ingestionService = service(IndexValueIngestionService.class);
+        indices = service(Indices.class);
+        indexValues = service(IndexValues.class);
+    }
+
+    @Test
+    public void upsertsValuesAndRebases() throws Exception {
+        final String file = ""
+                + "index,base year,month,value\n"
+                // unchanged and corrected
+                + "ISTAT-FOI,2010,2013-07,107.2\n"
+                + "ISTAT-FOI,2010,2013-06,107.0\n"
+                // rebased, in the middle of the file
+                + "ISTAT-FOI,2013,2014-02,100.5\n"
+                + "ISTAT-FOI,2013,2014-01,100.3\n"
+                // completes 2013, from which the factor of the new base is derived
+                + "ISTAT-FOI,2010,2013-08,107.3\n"
+                + "ISTAT-FOI,2010,2013-09,107.4\n"
+                + "ISTAT-FOI,2010,2013-10,107.5\n"
+                + "ISTAT-FOI,2010,2013-11,107.6\n"
+                + "ISTAT-FOI,2010,2013-12,107.7\n";
+
+        final IndexValueIngestionReport report = ingestionService.ingest(new StringReader(file));
+
+        assertThat(report.getErrors().toString(), report.getErrors().isEmpty(), is(true));
+        assertThat(report.getCreated(), is(7));
+        assertThat(report.getUpdated(), is(1));
+        assertThat(report.getUnchanged(), is(1));
+
+        assertThat(report.getCreatedBases().size(), is(1));
+        final IndexBase rebased = report.getCreatedBases().get(0);
+        assertThat(rebased.getStartDate(), is(new LocalDate(2014, 1, 1)));
+        assertThat(rebased.getPrevious().getStartDate(), is(new LocalDate(2011, 1, 1)));
+        // 2013 averages 107.15
+        assertThat(rebased.getFactor().compareTo(new BigDecimal("1.072")), is(0));
+
+        final SortedSet<LocalDate> affectedDates = report.getAffectedDates().get("ISTAT-FOI");
+        assertThat(affectedDates.size(), is(8));
+        assertThat(affectedDates.first(), is(new LocalDate(2013, 6, 1)));
+        assertThat(affectedDates.last(), is(new LocalDate(2014, 2, 1)));
+
+        final Index index = indices.findIndex("ISTAT-FOI");
+        for (IndexValue indexValue : indexValues.findIndexValuesByIndex(index)) {
+            if (indexValue.getStartDate().equals(new LocalDate(2013, 6, 1))) {
+                assertThat(indexValue.getValue().compareTo(new BigDecimal("107.0")), is(0));
+            }
+            if (indexValue.getStartDate().equals(new LocalDate(2014, 2, 1))) {
+                assertThat(indexValue.getIndexBase(), is(rebased));
+                assertThat(indexValue.getValue().compareTo(new BigDecimal("100.5")), is(0));
+            }
+        }
+
+        // ingesting again changes nothing
+        final IndexValueIngestionReport again = ingestionService.ingest(new StringReader(file));
+        assertThat(again.getCreated() + again.getUpdated(), is(0));
+        assertThat(again.getUnchanged(), is(9));
+        assertThat(again.getCreatedBases().isEmpty(), is(true));
+        assertThat(again.getAffectedDates().isEmpty(), is(true));
+    }
+
+    @Test
+    public void reportsRowsThatCannotBeIngested() throws Exception {
+        final String file = ""
+                + "NO-SUCH-INDEX,2010,2013-08,107.3\n"
+                // base year 2020 not known
+                + "ISTAT-FOI,2020,2021-01,100.1\n"
+                // not of the base given
+                + "ISTAT-FOI,2010,2010-12,99.9\n"
+                + "ISTAT-FOI,2010,2013-08\n";
+
+        final IndexValueIngestionReport report = ingestionService.ingest(new StringReader(file));
+
+        assertThat(report.getErrors().size(), is(4));
+        assertThat(report.getCreated() + report.getUpdated(), is(0));
+        assertThat(report.getCreatedBases().isEmpty(), is(true));
+    }
+
+}
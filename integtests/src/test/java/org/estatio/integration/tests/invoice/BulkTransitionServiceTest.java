@@ -0,0 +1,187 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.invoice;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+import org.estatio.dom.currency.Currencies;
+import org.estatio.dom.currency.Currency;
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.InvoiceStatus;
+import org.estatio.dom.invoice.Invoices;
+import org.estatio.dom.invoice.PaymentMethod;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.Leases;
+import org.estatio.dom.lease.invoicing.BulkTransitionResult;
+import org.estatio.dom.lease.invoicing.BulkTransitionService;
+import org.estatio.dom.numerator.Numerator;
+import org.estatio.dom.party.Parties;
+import org.estatio.dom.party.Party;
+import org.estatio.fixture.EstatioTransactionalObjectsFixture;
+import org.estatio.fixture.invoice.InvoiceAndInvoiceItemFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+
+public class BulkTransitionServiceTest extends EstatioIntegrationTest {
+
+    private BulkTransitionService bulkTransitionService;
+    private Invoices invoices;
+    private Parties parties;
+    private Party seller;
+    private Party buyer;
+    private Lease lease;
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsFixture());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        bulkTransitionService = service(BulkTransitionService.class);
+        invoices = service(Invoices.class);
+
+        parties = service(Parties.class);
+        seller = parties.findPartyByReference(InvoiceAndInvoiceItemFixture.SELLER_PARTY);
+        buyer = parties.findPartyByReference(InvoiceAndInvoiceItemFixture.BUYER_PARTY);
+        lease = service(Leases.class).findLeaseByReference(InvoiceAndInvoiceItemFixture.LEASE);
+    }
+
+    @Test
+    public void approveInvoices() throws Exception {
+        final Invoice invoice = invoices.findInvoiceByVarious(seller, buyer, PaymentMethod.DIRECT_DEBIT, lease, InvoiceStatus.NEW, InvoiceAndInvoiceItemFixture.START_DATE);
+
+        final BulkTransitionResult result = bulkTransitionService.approveInvoices(lease.getProperty(), InvoiceAndInvoiceItemFixture.START_DATE);
+
+        assertThat(result.getCount() > 0, is(true));
+        assertThat(invoice.getStatus(), is(InvoiceStatus.APPROVED));
+
+        // nothing left to approve
+        assertThat(bulkTransitionService.approveInvoices(lease.getProperty(), InvoiceAndInvoiceItemFixture.START_DATE).getCount(), is(0));
+    }
+
+    @Test
+    public void collectInvoices() throws Exception {
+        final LocalDate dueDate = new LocalDate(2012, 2, 1);
+        Numerator numerator = invoices.findCollectionNumberNumerator();
+        if (numerator == null) {
+            numerator = invoices.createCollectionNumberNumerator("%09d", BigInteger.ZERO);
+        }
+        final BigInteger lastIncrement = numerator.getLastIncrement();
+        // created out of order, numbered by buyer
+        final Invoice topmodel = newInvoice("TOPMODEL", InvoiceStatus.APPROVED, PaymentMethod.DIRECT_DEBIT, dueDate);
+        final Invoice mediax = newInvoice("MEDIAX", InvoiceStatus.APPROVED, PaymentMethod.DIRECT_DEBIT, dueDate);
+        final Invoice poison = newInvoice("POISON", InvoiceStatus.APPROVED, PaymentMethod.DIRECT_DEBIT, dueDate);
+        final Invoice alreadyCollected = newInvoice("PRET", InvoiceStatus.APPROVED, PaymentMethod.DIRECT_DEBIT, dueDate);
+        alreadyCollected.setCollectionNumber("C-0001");
+        final Invoice bankTransfer = newInvoice("MIRACLE", InvoiceStatus.APPROVED, PaymentMethod.BANK_TRANSFER, dueDate);
+
+        service(IsisJdoSupport.class).getJdoPersistenceManager().flush();
+
+        final BulkTransitionResult result = bulkTransitionService.collectInvoices(lease.getProperty(), dueDate);
+
+        assertThat(result.getCount(), is(3));
+        assertThat(mediax.getCollectionNumber(), is(String.format("%09d", lastIncrement.add(BigInteger.valueOf(1)))));
+        assertThat(poison.getCollectionNumber(), is(String.format("%09d", lastIncrement.add(BigInteger.valueOf(2)))));
+        assertThat(topmodel.getCollectionNumber(), is(String.format("%09d", lastIncrement.add(BigInteger.valueOf(3)))));
+        assertThat(numerator.getLastIncrement(), is(lastIncrement.add(BigInteger.valueOf(3))));
+        for (Invoice invoice : Arrays.asList(mediax, poison, topmodel)) {
+            assertThat(invoice.getStatus(), is(InvoiceStatus.COLLECTED));
+        }
+
+        assertThat(result.getRejectedIds(), is(Arrays.asList(alreadyCollected.getId())));
+        assertThat(alreadyCollected.getStatus(), is(InvoiceStatus.APPROVED));
+        assertThat(alreadyCollected.getCollectionNumber(), is("C-0001"));
+        assertThat(bankTransfer.getStatus(), is(InvoiceStatus.APPROVED));
+        assertThat(bankTransfer.getCollectionNumber(), is(nullValue()));
+    }
+
+    @Test
+    public void invoiceInvoices() throws Exception {
+        final LocalDate dueDate = new LocalDate(2012, 3, 1);
+        final LocalDate invoiceDate = new LocalDate(2012, 2, 15);
+        Numerator numerator = invoices.findInvoiceNumberNumerator(lease.getProperty());
+        if (numerator == null) {
+            numerator = invoices.createInvoiceNumberNumerator(lease.getProperty(), "OXF-%05d", BigInteger.ZERO);
+        }
+        final BigInteger lastIncrement = numerator.getLastIncrement();
+        final Invoice topmodel = newInvoice("TOPMODEL", InvoiceStatus.COLLECTED, PaymentMethod.DIRECT_DEBIT, dueDate);
+        final Invoice mediax = newInvoice("MEDIAX", InvoiceStatus.APPROVED, PaymentMethod.BANK_TRANSFER, dueDate);
+        final Invoice poison = newInvoice("POISON", InvoiceStatus.APPROVED, PaymentMethod.DIRECT_DEBIT, dueDate);
+        final Invoice alreadyInvoiced = newInvoice("PRET", InvoiceStatus.APPROVED, PaymentMethod.DIRECT_DEBIT, dueDate);
+        alreadyInvoiced.setInvoiceNumber("OXF-99999");
+        final Invoice notApproved = newInvoice("MIRACLE", InvoiceStatus.NEW, PaymentMethod.DIRECT_DEBIT, dueDate);
+
+        service(IsisJdoSupport.class).getJdoPersistenceManager().flush();
+
+        final BulkTransitionResult result = bulkTransitionService.invoiceInvoices(lease.getProperty(), dueDate, invoiceDate);
+
+        assertThat(result.getCount(), is(3));
+        assertThat(mediax.getInvoiceNumber(), is(String.format(numerator.getFormat(), lastIncrement.add(BigInteger.valueOf(1)))));
+        assertThat(poison.getInvoiceNumber(), is(String.format(numerator.getFormat(), lastIncrement.add(BigInteger.valueOf(2)))));
+        assertThat(topmodel.getInvoiceNumber(), is(String.format(numerator.getFormat(), lastIncrement.add(BigInteger.valueOf(3)))));
+        assertThat(numerator.getLastIncrement(), is(lastIncrement.add(BigInteger.valueOf(3))));
+        for (Invoice invoice : Arrays.asList(mediax, poison, topmodel)) {
+            assertThat(invoice.getStatus(), is(InvoiceStatus.INVOICED));
+            assertThat(invoice.getInvoiceDate(), is(invoiceDate));
+        }
+
+        assertThat(result.getRejectedIds(), is(Arrays.asList(alreadyInvoiced.getId())));
+        assertThat(alreadyInvoiced.getStatus(), is(InvoiceStatus.APPROVED));
+        assertThat(alreadyInvoiced.getInvoiceNumber(), is("OXF-99999"));
+        assertThat(alreadyInvoiced.getInvoiceDate(), is(dueDate));
+        assertThat(notApproved.getStatus(), is(InvoiceStatus.NEW));
+        assertThat(notApproved.getInvoiceNumber(), is(nullValue()));
+    }
+
+    // //////////////////////////////////////
+
+    private Invoice newInvoice(
+            final String buyerReference,
+            final InvoiceStatus status,
+            final PaymentMethod paymentMethod,
+            final LocalDate dueDate) {
+        // looked up first, as queries flush the invoice
+        final Party buyer = parties.findPartyByReference(buyerReference);
+        final Currency currency = service(Currencies.class).findCurrency("EUR");
+        final Invoice invoice = invoices.newInvoice();
+        invoice.setSeller(seller);
+        invoice.setBuyer(buyer);
+        invoice.setPaymentMethod(paymentMethod);
+        invoice.setStatus(status);
+        invoice.setCurrency(currency);
+        invoice.setSource(lease);
+        invoice.setProperty(lease.getProperty());
+        invoice.setDueDate(dueDate);
+        invoice.setInvoiceDate(dueDate);
+        return invoice;
+    }
+
+}
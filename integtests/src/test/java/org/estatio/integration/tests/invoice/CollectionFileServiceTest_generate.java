@@ -0,0 +1,201 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.invoice;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import com.google.common.base.Charsets;
+
+import org.joda.time.LocalDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import org.estatio.dom.currency.Currencies;
+import org.estatio.dom.financial.BankAccount;
+import org.estatio.dom.financial.BankMandates;
+import org.estatio.dom.financial.FinancialAccounts;
+import org.estatio.dom.financial.utils.IBANValidator;
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.InvoiceStatus;
+import org.estatio.dom.invoice.Invoices;
+import org.estatio.dom.invoice.PaymentMethod;
+import org.estatio.dom.invoice.sepa.CollectionFileReport;
+import org.estatio.dom.invoice.sepa.CollectionFileService;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseItemType;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.lease.Leases;
+import org.estatio.dom.lease.invoicing.InvoiceItemForLease;
+import org.estatio.dom.lease.invoicing.InvoiceItemsForLease;
+import org.estatio.dom.party.Organisation;
+import org.estatio.dom.party.Parties;
+import org.estatio.dom.party.Party;
+import org.estatio.fixture.EstatioTransactionalObjectsFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+
+/**
+ * Collects direct debit invoices of two creditors and generates their
+ * collection file in pages smaller than the number of invoices; the
+ * invoices are set up (and committed) in the first step, as the service
+ * reads them through a persistence manager of its own.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CollectionFileServiceTest_generate extends EstatioIntegrationTest {
+
+    private static final LocalDate DUE_DATE = new LocalDate(2014, 3, 1);
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsFixture());
+    }
+
+    private CollectionFileService collectionFileService;
+    private Invoices invoices;
+    private InvoiceItemsForLease invoiceItemsForLease;
+    private FinancialAccounts financialAccounts;
+    private BankMandates bankMandates;
+    private Parties parties;
+    private Leases leases;
+
+    @Before
+    public void setUp() throws Exception {
+        collectionFileService = service(CollectionFileService.class);
+        invoices = service(Invoices.class);
+        invoiceItemsForLease = service(InvoiceItemsForLease.class);
+        financialAccounts = service(FinancialAccounts.class);
+        bankMandates = service(BankMandates.class);
+        parties = service(Parties.class);
+        leases = service(Leases.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        collectionFileService.usePageSize(CollectionFileService.PAGE_SIZE);
+    }
+
+    @Test
+    public void step1_collectInvoices() throws Exception {
+        // creditors: ACME gets a valid bank account, HELLOWORLD has one
+        final Organisation acme = (Organisation) parties.findPartyByReference("ACME");
+        acme.setFiscalCode("12345678901");
+        financialAccounts.newBankAccount(acme, IBANValidator.fixChecksum("NL00ABNA0580744433"));
+        final Organisation helloWorld = (Organisation) parties.findPartyByReference("HELLOWORLD");
+        helloWorld.setFiscalCode("98765432109");
+
+        // debtors: POISON pays by a mandate on a valid account, TOPMODEL on
+        // an invalid one (of the fixture) and MEDIAX has no mandate
+        final Lease poisonLease = leases.findLeaseByReference("OXF-POISON-003");
+        final Party poison = parties.findPartyByReference("POISON");
+        final BankAccount poisonAccount = financialAccounts.newBankAccount(poison, IBANValidator.fixChecksum("NL00ABNA0580744437"));
+        poisonLease.setPaidBy(bankMandates.newBankMandate(
+                "POISON-CF", "POISON", poisonLease.getStartDate(), poisonLease.getEndDate(),
+                poison, poisonLease.getPrimaryParty(), poisonAccount));
+        final Lease topmodelLease = leases.findLeaseByReference("OXF-TOPMODEL-001");
+        final BankAccount topmodelAccount = (BankAccount) financialAccounts.findAccountByReference("NL31ABNA0580744435");
+        topmodelLease.setPaidBy(bankMandates.findBankMandatesFor(topmodelAccount).get(0));
+        final Lease mediaxLease = leases.findLeaseByReference("OXF-MEDIAX-002");
+
+        // the first page (of five)...
+        newCollectedInvoice("CF-0001", acme, poisonLease, "60.00", "40.00");
+        newCollectedInvoice("CF-0002", helloWorld, poisonLease, "200.00");
+        newCollectedInvoice("CF-0003", acme, poisonLease, "300.00");
+        newCollectedInvoice("CF-0004", acme, topmodelLease, "50.00");
+        newCollectedInvoice("CF-0005", acme, mediaxLease, "60.00");
+        // ... and the second
+        newCollectedInvoice("CF-0006", acme, poisonLease, "20.00", "-30.00");
+        newCollectedInvoice("CF-0007", parties.findPartyByReference("MEDIAX"), poisonLease, "70.00");
+        newCollectedInvoice("CF-0008", helloWorld, poisonLease, "400.00", "0.50");
+    }
+
+    @Test
+    public void step2_generate() throws Exception {
+        collectionFileService.usePageSize(5);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        final CollectionFileReport report = collectionFileService.generate(DUE_DATE, null, null, out);
+
+        // the gross amounts summed per invoice, on either page
+        assertThat(report.getNumberOfTransactions(), is(4));
+        assertThat(report.getControlSum(), is(new BigDecimal("1000.50")));
+        assertThat(report.getRejected(), is(Arrays.asList(
+                "CF-0004: Invalid IBAN NL31ABNA0580744435 of mandate TOPMODEL1",
+                "CF-0005: No bank mandate",
+                "CF-0006: No positive amount to collect",
+                "CF-0007: No fiscal code for creditor MEDIAX")));
+
+        // one payment information per creditor
+        assertThat(report.getNumberOfPaymentInformations(), is(2));
+        final String xml = new String(out.toByteArray(), Charsets.UTF_8);
+        assertThat(xml, containsString("<NbOfTxs>4</NbOfTxs><CtrlSum>1000.50</CtrlSum>"));
+        assertThat(xml, containsString("<NbOfTxs>2</NbOfTxs><CtrlSum>400.00</CtrlSum>"));
+        assertThat(xml, containsString("<NbOfTxs>2</NbOfTxs><CtrlSum>600.50</CtrlSum>"));
+        assertThat(xml, containsString("<EndToEndId>CF-0001</EndToEndId></PmtId><InstdAmt Ccy=\"EUR\">100.00</InstdAmt>"));
+        assertThat(xml, containsString("<EndToEndId>CF-0008</EndToEndId></PmtId><InstdAmt Ccy=\"EUR\">400.50</InstdAmt>"));
+    }
+
+    @Test
+    public void step3_generateForRangeOfCollectionNumbers() throws Exception {
+        collectionFileService.usePageSize(2);
+
+        final CollectionFileReport report = collectionFileService.generate(null, "CF-0002", "CF-0005", new ByteArrayOutputStream());
+
+        assertThat(report.getNumberOfTransactions(), is(2));
+        assertThat(report.getControlSum(), is(new BigDecimal("500.00")));
+        assertThat(report.getRejected().size(), is(2));
+    }
+
+    // //////////////////////////////////////
+
+    private void newCollectedInvoice(
+            final String collectionNumber,
+            final Party seller,
+            final Lease lease,
+            final String... grossAmounts) {
+        final Invoice invoice = invoices.newInvoice();
+        invoice.setSeller(seller);
+        invoice.setBuyer(lease.getSecondaryParty());
+        invoice.setPaymentMethod(PaymentMethod.DIRECT_DEBIT);
+        invoice.setStatus(InvoiceStatus.COLLECTED);
+        invoice.setCollectionNumber(collectionNumber);
+        invoice.setCurrency(service(Currencies.class).findCurrency("EUR"));
+        invoice.setSource(lease);
+        invoice.setProperty(lease.getProperty());
+        invoice.setDueDate(DUE_DATE);
+        invoice.setInvoiceDate(DUE_DATE);
+
+        final LeaseTerm term = lease.findFirstItemOfType(LeaseItemType.RENT).getTerms().first();
+        for (String grossAmount : grossAmounts) {
+            final InvoiceItemForLease item = invoiceItemsForLease.newInvoiceItem(term, DUE_DATE, DUE_DATE);
+            item.setInvoice(invoice);
+            item.setSequence(invoice.nextItemSequence());
+            item.setGrossAmount(new BigDecimal(grossAmount));
+        }
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.invoice;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import org.estatio.dom.index.Index;
+import org.estatio.dom.index.IndexValues;
+import org.estatio.dom.index.Indices;
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.InvoiceStatus;
+import org.estatio.dom.invoice.Invoices;
+import org.estatio.dom.invoice.archive.ArchivedInvoices;
+import org.estatio.dom.invoice.archive.InvoiceArchiveService;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseItem;
+import org.estatio.dom.lease.LeaseItemType;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.lease.Leases;
+import org.estatio.dom.lease.Leases.InvoiceRunType;
+import org.estatio.dom.lease.invoicing.InvoiceItemForLease;
+import org.estatio.fixture.EstatioTransactionalObjectsFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+
+/**
+ * Invoices a lease, archives its invoices and then runs a retro calculation:
+ * the adjustments must be the same as without archiving (see
+ * <tt>LeaseLifeCycleTest</tt>), which requires the invoiced values of the
+ * archived invoices to be taken into account.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class InvoiceArchiveServiceTest_archive extends EstatioIntegrationTest {
+
+    private static final LocalDate START_DATE = new LocalDate(2013, 11, 7);
+
+    /**
+     * The invoiced values of the terms of the rent item, by term and start
+     * date, before archiving.
+     */
+    private static final Map<String, BigDecimal> invoicedValuesBefore = Maps.newHashMap();
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsFixture());
+    }
+
+    private Invoices invoices;
+    private InvoiceArchiveService invoiceArchiveService;
+    private Lease lease;
+    private LeaseItem rItem;
+
+    @Before
+    public void setup() {
+        invoices = service(Invoices.class);
+        invoiceArchiveService = service(InvoiceArchiveService.class);
+        lease = service(Leases.class).findLeaseByReference("OXF-MIRACL-005");
+        rItem = lease.findFirstItemOfType(LeaseItemType.RENT);
+    }
+
+    @Test
+    public void step1_calculateAndInvoice() throws Exception {
+        lease.verifyUntil(new LocalDate(2015, 1, 1));
+        lease.calculate(new LocalDate(2013, 11, 13), new LocalDate(2015, 3, 31), START_DATE, InvoiceRunType.NORMAL_RUN);
+        assertThat(totalOf(rItem), is(new BigDecimal("209918.48")));
+
+        invoices.createInvoiceNumberNumerator(lease.getProperty(), "OXF-%06d", BigInteger.ZERO);
+        for (Invoice invoice : invoicesOf(lease)) {
+            invoice.approve();
+            invoice.invoiceOn(START_DATE);
+            assertThat(invoice.getStatus(), is(InvoiceStatus.INVOICED));
+        }
+        for (LeaseTerm term : rItem.getTerms()) {
+            for (InvoiceItemForLease item : term.getInvoiceItems()) {
+                invoicedValuesBefore.put(keyOf(term, item.getStartDate()), term.invoicedValueFor(item.getStartDate()));
+            }
+        }
+        assertThat(invoicedValuesBefore.isEmpty(), is(false));
+    }
+
+    @Test
+    public void step2_archive() throws Exception {
+        final List<Invoice> invoicesOfLease = Lists.newArrayList(invoicesOf(lease));
+
+        invoiceArchiveService.archive(invoicesOfLease);
+
+        assertThat(
+                service(ArchivedInvoices.class).findArchivedInvoices(lease.getProperty(), null).size(),
+                is(invoicesOfLease.size()));
+        assertThat(invoicesOf(lease).isEmpty(), is(true));
+        assertThat(totalOf(rItem), is(BigDecimal.ZERO));
+        // the invoiced values are still known, through the summaries
+        for (LeaseTerm term : rItem.getTerms()) {
+            for (Map.Entry<String, BigDecimal> entry : invoicedValuesBefore.entrySet()) {
+                if (entry.getKey().startsWith(term.getStartDate() + "|")) {
+                    final LocalDate startDate = LocalDate.parse(entry.getKey().substring(entry.getKey().indexOf('|') + 1));
+                    assertThat(term.invoicedValueFor(startDate).compareTo(entry.getValue()), is(0));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void step3_retroRunAfterIndexation() throws Exception {
+        final Index index = service(Indices.class).findIndex("ISTAT-FOI");
+        final IndexValues indexValues = service(IndexValues.class);
+        indexValues.newIndexValue(index, new LocalDate(2013, 11, 1), new BigDecimal(110));
+        indexValues.newIndexValue(index, new LocalDate(2014, 12, 1), new BigDecimal(115));
+        lease.verifyUntil(new LocalDate(2015, 3, 31));
+
+        lease.calculate(new LocalDate(2015, 4, 1), null, new LocalDate(2015, 4, 1), InvoiceRunType.NORMAL_RUN);
+        final BigDecimal afterNormalRun = totalOf(rItem);
+        assertThat(afterNormalRun, is(new BigDecimal("39187.50")));
+
+        lease.calculate(new LocalDate(2015, 4, 1), null, new LocalDate(2015, 4, 1), InvoiceRunType.RETRO_RUN);
+
+        // the same adjustment as for the invoices not archived: (156750 -
+        // 150000) / 4 for the first quarter of 2015, and none for the
+        // periods of the first term
+        assertThat(totalOf(rItem), is(afterNormalRun.add(new BigDecimal("1687.50"))));
+    }
+
+    // //////////////////////////////////////
+
+    private static String keyOf(final LeaseTerm term, final LocalDate startDate) {
+        return term.getStartDate() + "|" + startDate;
+    }
+
+    private static Set<Invoice> invoicesOf(final Lease lease) {
+        final Set<Invoice> invoicesOfLease = Sets.newLinkedHashSet();
+        for (LeaseItem item : lease.getItems()) {
+            for (LeaseTerm term : item.getTerms()) {
+                for (InvoiceItemForLease invoiceItem : term.getInvoiceItems()) {
+                    if (invoiceItem.getInvoice() != null) {
+                        invoicesOfLease.add(invoiceItem.getInvoice());
+                    }
+                }
+            }
+        }
+        return invoicesOfLease;
+    }
+
+    private static BigDecimal totalOf(final LeaseItem item) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (LeaseTerm term : item.getTerms()) {
+            for (InvoiceItemForLease invoiceItem : term.getInvoiceItems()) {
+                total = total.add(invoiceItem.getNetAmount());
+            }
+        }
+        return total;
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.invoice;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+
+import javax.jdo.JDOHelper;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.InvoiceItem;
+import org.estatio.dom.invoice.InvoiceStatus;
+import org.estatio.dom.invoice.Invoices;
+import org.estatio.dom.invoice.PaymentMethod;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.Leases;
+import org.estatio.dom.party.Parties;
+import org.estatio.fixture.EstatioTransactionalObjectsFixture;
+import org.estatio.fixture.invoice.InvoiceAndInvoiceItemFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+import org.estatio.services.retry.RetryReport;
+import org.estatio.services.retry.RetryService;
+
+public class InvoiceItemTest_remove extends EstatioIntegrationTest {
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsFixture());
+    }
+
+    private IsisJdoSupport isisJdoSupport;
+    private RetryService retryService;
+
+    private Invoice invoice;
+
+    @Before
+    public void setUp() throws Exception {
+        final Parties parties = service(Parties.class);
+        final Lease lease = service(Leases.class).findLeaseByReference(InvoiceAndInvoiceItemFixture.LEASE);
+        isisJdoSupport = service(IsisJdoSupport.class);
+        retryService = service(RetryService.class);
+
+        invoice = service(Invoices.class).findInvoicesByVarious(
+                parties.findPartyByReference(InvoiceAndInvoiceItemFixture.SELLER_PARTY),
+                parties.findPartyByReference(InvoiceAndInvoiceItemFixture.BUYER_PARTY),
+                PaymentMethod.DIRECT_DEBIT, lease, InvoiceStatus.NEW, InvoiceAndInvoiceItemFixture.START_DATE).get(0);
+    }
+
+    @Test
+    public void touchesInvoice() throws Exception {
+        // given
+        final DateTime lastModified = invoice.getLastModified();
+        final Object version = JDOHelper.getVersion(invoice);
+        final int numberOfItems = invoice.getItems().size();
+        Thread.sleep(10);
+
+        // when
+        final InvoiceItem item = invoice.getItems().first();
+        final RetryReport report = retryService.execute("remove item", Arrays.asList(new RetryService.Unit("remove item") {
+            @Override
+            public void execute() {
+                item.remove();
+            }
+        }));
+
+        // then
+        assertThat(report.getFailures().isEmpty(), is(true));
+        assertThat(invoice.getItems().size(), is(numberOfItems - 1));
+        // updated directly in the database
+        isisJdoSupport.refresh(invoice);
+        assertThat(invoice.getLastModified().isAfter(lastModified), is(true));
+        assertThat(JDOHelper.getVersion(invoice), is(version));
+    }
+
+}
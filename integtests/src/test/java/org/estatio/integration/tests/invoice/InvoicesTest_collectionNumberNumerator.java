@@ -41,7 +41,7 @@ public class InvoicesTest_collectionNumberNumerator extends EstatioIntegrationTe
 
     @BeforeClass
     public static void setupTransactionalData() {
-        scenarioExecution().install(new EstatioTransactionalObjectsTeardownFixture());
+        installFixtures(new EstatioTransactionalObjectsTeardownFixture());
     }
 
     @Before
@@ -57,7 +57,7 @@ public class InvoicesTest_invoiceNumberNumerator extends EstatioIntegrationTest
 
     @BeforeClass
     public static void setupTransactionalData() {
-        scenarioExecution().install(new EstatioTransactionalObjectsFixture());
+        installFixtures(new EstatioTransactionalObjectsFixture());
     }
 
     @Before
@@ -0,0 +1,166 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.lease;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.estatio.dom.asset.Properties;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseItem;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.lease.LeaseTermForIndexableRent;
+import org.estatio.dom.lease.LeaseTermForServiceCharge;
+import org.estatio.dom.lease.LeaseTermForTurnoverRent;
+import org.estatio.dom.lease.Leases;
+import org.estatio.dom.lease.Occupancy;
+import org.estatio.dom.lease.invoicing.InvoiceItemForLease;
+import org.estatio.fixture.EstatioTransactionalObjectsTeardownFixture;
+import org.estatio.fixture.generator.LargePortfolioFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+
+public class LargePortfolioFixtureTest extends EstatioIntegrationTest {
+
+    private static LargePortfolioFixture fixture;
+    private static LargePortfolioFixture fixtureAgain;
+    private static LargePortfolioFixture fixtureOfOtherRun;
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsTeardownFixture());
+        fixture = new LargePortfolioFixture(LargePortfolioFixture.DEFAULT_SEED, 2, 3, 2);
+        scenarioExecution().install(fixture);
+        fixtureAgain = new LargePortfolioFixture(LargePortfolioFixture.DEFAULT_SEED, 2, 3, 2);
+        scenarioExecution().install(fixtureAgain);
+        fixtureOfOtherRun = new LargePortfolioFixture(LargePortfolioFixture.DEFAULT_SEED, 2, 3, 2);
+        fixtureOfOtherRun.setRunPrefix("B");
+        scenarioExecution().install(fixtureOfOtherRun);
+    }
+
+    private Leases leases;
+
+    private Properties properties;
+
+    @Before
+    public void setup() {
+        leases = service(Leases.class);
+        properties = service(Properties.class);
+    }
+
+    @Test
+    public void counts() throws Exception {
+        assertThat(fixture.getNumberOfLeases(), is(12));
+        // three items with five yearly terms per lease
+        assertThat(fixture.getNumberOfTerms(), is(180));
+        // per unit twenty quarters for the first lease, sixteen for the second
+        assertThat(fixture.getNumberOfInvoices(), is(216));
+        assertThat(fixture.getNumberOfSkippedProperties(), is(0));
+    }
+
+    @Test
+    public void findLeases() throws Exception {
+        final List<Lease> matchingLeases = leases.findLeases(fixture.getReferencePrefix() + "*");
+        assertThat(matchingLeases.size(), is(12));
+    }
+
+    @Test
+    public void findLeasesByProperty() throws Exception {
+        final List<Lease> matchingLeases = leases.findLeasesByProperty(properties.findPropertyByReference(fixture.getReferencePrefix() + "001"));
+        assertThat(matchingLeases.size(), is(6));
+    }
+
+    @Test
+    public void referencesDerivedFromSeed() throws Exception {
+        assertThat(fixture.getReferencePrefix(), is("GENH9R"));
+        assertThat(fixtureOfOtherRun.getReferencePrefix(), is("GENB"));
+    }
+
+    @Test
+    public void installingAgainSkipsExistingProperties() throws Exception {
+        assertThat(fixtureAgain.getNumberOfSkippedProperties(), is(2));
+        assertThat(fixtureAgain.getNumberOfLeases(), is(0));
+        assertThat(fixtureAgain.getNumberOfInvoices(), is(0));
+        assertThat(leases.findLeases(fixture.getReferencePrefix() + "*").size(), is(12));
+    }
+
+    @Test
+    public void sameSeedGivesSameData() throws Exception {
+        assertThat(fixtureOfOtherRun.getNumberOfLeases(), is(12));
+        final List<String> portfolio = describe(fixture.getReferencePrefix());
+        final List<String> portfolioOfOtherRun = describe(fixtureOfOtherRun.getReferencePrefix());
+        assertThat(portfolio.size() > 12 * 3 * 5, is(true));
+        assertThat(portfolioOfOtherRun, is(portfolio));
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * The leases generated with the reference prefix, with their units,
+     * terms and invoice items, in order and without the prefix.
+     */
+    private List<String> describe(final String referencePrefix) {
+        final List<Lease> generatedLeases = Lists.newArrayList(leases.findLeases(referencePrefix + "*"));
+        Collections.sort(generatedLeases, new Comparator<Lease>() {
+            @Override
+            public int compare(final Lease o1, final Lease o2) {
+                return o1.getReference().compareTo(o2.getReference());
+            }
+        });
+        final List<String> lines = Lists.newArrayList();
+        for (Lease lease : generatedLeases) {
+            lines.add(lease.getReference().substring(referencePrefix.length()) + " " + lease.getStartDate() + " " + lease.getEndDate());
+            for (Occupancy occupancy : lease.getOccupancies()) {
+                lines.add("  unit " + occupancy.getUnit().getReference().substring(referencePrefix.length()) + " " + occupancy.getUnit().getArea());
+            }
+            for (LeaseItem leaseItem : lease.getItems()) {
+                for (LeaseTerm term : leaseItem.getTerms()) {
+                    lines.add("  " + leaseItem.getType() + " " + term.getStartDate() + " " + term.getEndDate() + " " + valuesOf(term));
+                    for (InvoiceItemForLease invoiceItem : term.getInvoiceItems()) {
+                        lines.add("    " + invoiceItem.getDueDate() + " " + invoiceItem.getNetAmount() + " " + invoiceItem.getVatAmount());
+                    }
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static String valuesOf(final LeaseTerm term) {
+        if (term instanceof LeaseTermForIndexableRent) {
+            final LeaseTermForIndexableRent rentTerm = (LeaseTermForIndexableRent) term;
+            return rentTerm.getBaseValue() + " " + rentTerm.getIndexedValue() + " " + rentTerm.getNextIndexValue();
+        }
+        if (term instanceof LeaseTermForServiceCharge) {
+            final LeaseTermForServiceCharge serviceChargeTerm = (LeaseTermForServiceCharge) term;
+            return serviceChargeTerm.getBudgetedValue() + " " + serviceChargeTerm.getAuditedValue();
+        }
+        final LeaseTermForTurnoverRent turnoverRentTerm = (LeaseTermForTurnoverRent) term;
+        return turnoverRentTerm.getTurnoverRentRule() + " " + turnoverRentTerm.getAuditedTurnover() + " " + turnoverRentTerm.getTurnoverRentValue();
+    }
+
+}
@@ -19,6 +19,8 @@
 package org.estatio.integration.tests.lease;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 import java.math.BigDecimal;
@@ -26,6 +28,8 @@ import java.math.BigInteger;
 import java.math.RoundingMode;
 import java.util.List;
 
+import com.google.common.collect.Lists;
+
 import org.joda.time.LocalDate;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -47,6 +51,8 @@ import org.estatio.dom.lease.LeaseTerm;
 import org.estatio.dom.lease.LeaseTermForIndexableRent;
 import org.estatio.dom.lease.Leases;
 import org.estatio.dom.lease.Leases.InvoiceRunType;
+import org.estatio.dom.lease.invoicing.InvoiceItemForLease;
+import org.estatio.dom.lease.invoicing.InvoiceItemsForLease;
 import org.estatio.fixture.EstatioTransactionalObjectsFixture;
 import org.estatio.integration.tests.EstatioIntegrationTest;
 
@@ -55,9 +61,14 @@ public class LeaseLifeCycleTest extends EstatioIntegrationTest {
 
     private static final LocalDate START_DATE = new LocalDate(2013, 11, 7);
 
+    private static String normalRun;
+    private static String retroRun;
+    private static String recalculatingRun;
+    private static int itemsOfNormalRun;
+
     @BeforeClass
     public static void setupTransactionalData() {
-        scenarioExecution().install(new EstatioTransactionalObjectsFixture());
+        installFixtures(new EstatioTransactionalObjectsFixture());
     }
 
     private Leases leases;
@@ -148,6 +159,98 @@ public class LeaseLifeCycleTest extends EstatioIntegrationTest {
         assertThat(totalInvoicedForItem(rItem), is(new BigDecimal("249105.98").add(new BigDecimal("1687.50"))));
     }
 
+    @Test
+    public void step7_recalculate() throws Exception {
+        final List<String> runIds = service(InvoiceItemsForLease.class).findRunIds();
+        retroRun = runIds.get(0);
+        normalRun = runIds.get(1);
+        itemsOfNormalRun = itemsOfRun(normalRun).size();
+
+        // calculating again for the same due date recalculates the (still
+        // unapproved) items of the normal run, rather than adding new ones
+        lease.calculate(new LocalDate(2015, 4, 1), null, new LocalDate(2015, 4, 1), InvoiceRunType.NORMAL_RUN);
+        final List<InvoiceItemForLease> recalculated = Lists.newArrayList();
+        for (InvoiceItemForLease item : invoiceItemsOf(lease)) {
+            if (normalRun.equals(item.getPreviousRunId())) {
+                recalculated.add(item);
+            }
+        }
+        assertThat(recalculated.size(), is(itemsOfNormalRun));
+        recalculatingRun = recalculated.get(0).getRunId();
+        assertThat(itemsOfRun(recalculatingRun).size(), is(itemsOfNormalRun));
+        assertThat(totalInvoicedForItem(rItem), is(new BigDecimal("249105.98").add(new BigDecimal("1687.50"))));
+    }
+
+    // rolling back a run removes items directly in the database, so in
+    // transactions of their own, rather than the one that changed them
+
+    @Test
+    public void step8_rollbackRecalculatingRun() throws Exception {
+        final InvoiceItemsForLease invoiceItemsForLease = service(InvoiceItemsForLease.class);
+
+        // cannot roll back the normal run before the run that recalculated it
+        assertThat(invoiceItemsForLease.validateRollbackRun(normalRun), is(notNullValue()));
+
+        invoiceItemsForLease.rollbackRun(recalculatingRun);
+
+        // the items it recalculated are restored to the normal run
+        assertThat(itemsOfRun(recalculatingRun).size(), is(0));
+        assertThat(itemsOfRun(normalRun).size(), is(itemsOfNormalRun));
+        for (InvoiceItemForLease item : itemsOfRun(normalRun)) {
+            assertThat(item.getPreviousRunId(), is(nullValue()));
+            assertThat(item.getPreviousNetAmount(), is(nullValue()));
+        }
+        assertThat(invoiceItemsForLease.findRunIds().contains(recalculatingRun), is(false));
+    }
+
+    @Test
+    public void step9_rollbackRuns() throws Exception {
+        final InvoiceItemsForLease invoiceItemsForLease = service(InvoiceItemsForLease.class);
+
+        // the retro run only added items, which are removed
+        assertThat(invoiceItemsForLease.validateRollbackRun(retroRun), is(nullValue()));
+        invoiceItemsForLease.rollbackRun(retroRun);
+        assertThat(itemsOfRun(retroRun).size(), is(0));
+        assertThat(totalInvoicedForItem(rItem), is(new BigDecimal("249105.98")));
+        // the invoices are kept, they hold the items of the normal run
+        for (Invoice invoice : invoices.allInvoices()) {
+            assertThat(retroRun.equals(invoice.getRunId()), is(false));
+        }
+        assertThat(invoiceItemsForLease.findRunIds().contains(retroRun), is(false));
+        assertThat(invoiceItemsForLease.findRunIds().get(0), is(normalRun));
+
+        // now the normal run can be rolled back, removing its items and the
+        // new invoices that held them
+        assertThat(invoiceItemsForLease.validateRollbackRun(normalRun), is(nullValue()));
+        invoiceItemsForLease.rollbackRun(normalRun);
+        assertThat(itemsOfRun(normalRun).size(), is(0));
+        for (Invoice invoice : invoices.allInvoices()) {
+            assertThat(normalRun.equals(invoice.getRunId()), is(false));
+        }
+        // back to the first calculation
+        assertThat(totalInvoicedForItem(rItem), is(new BigDecimal("209918.48")));
+    }
+
+    private List<InvoiceItemForLease> itemsOfRun(final String runId) {
+        final List<InvoiceItemForLease> items = Lists.newArrayList();
+        for (InvoiceItemForLease item : invoiceItemsOf(lease)) {
+            if (runId.equals(item.getRunId())) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    private static List<InvoiceItemForLease> invoiceItemsOf(final Lease lease) {
+        final List<InvoiceItemForLease> items = Lists.newArrayList();
+        for (LeaseItem item : lease.getItems()) {
+            for (LeaseTerm term : item.getTerms()) {
+                items.addAll(term.getInvoiceItems());
+            }
+        }
+        return items;
+    }
+
     // //////////////////////////////////////
 
     private BigDecimal totalInvoicedForLease(Lease lease) {
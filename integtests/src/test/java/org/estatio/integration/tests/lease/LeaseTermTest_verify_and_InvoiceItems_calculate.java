@@ -57,7 +57,7 @@ public class LeaseTermTest_verify_and_InvoiceItems_calculate extends EstatioInte
 
     @BeforeClass
     public static void setupTransactionalData() {
-        scenarioExecution().install(new EstatioTransactionalObjectsFixture());
+        installFixtures(new EstatioTransactionalObjectsFixture());
     }
 
     private Leases leases;
@@ -0,0 +1,99 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.lease;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.datanucleus.api.jdo.JDOPersistenceManager;
+import org.datanucleus.management.ManagerStatistics;
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+import org.estatio.dom.invoice.Invoices;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseItem;
+import org.estatio.dom.lease.Leases;
+import org.estatio.dom.lease.Leases.InvoiceRunType;
+import org.estatio.dom.lease.invoicing.InvoiceItemsForLease;
+import org.estatio.fixture.EstatioTransactionalObjectsFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+
+/**
+ * Counts the datastore writes (as reported by the DataNucleus statistics)
+ * of a calculation: each created invoice item should be written with a
+ * single <tt>INSERT</tt>, rather than an <tt>INSERT</tt> followed by an
+ * <tt>UPDATE</tt> for every property set afterwards.
+ */
+public class LeaseTest_calculateWrites extends EstatioIntegrationTest {
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsFixture());
+    }
+
+    private Lease lease;
+    private Invoices invoices;
+    private InvoiceItemsForLease invoiceItemsForLease;
+    private IsisJdoSupport isisJdoSupport;
+
+    @Before
+    public void setup() {
+        lease = service(Leases.class).findLeaseByReference("OXF-MIRACL-005");
+        invoices = service(Invoices.class);
+        invoiceItemsForLease = service(InvoiceItemsForLease.class);
+        isisJdoSupport = service(IsisJdoSupport.class);
+    }
+
+    @Test
+    public void oneWritePerCreatedItem() throws Exception {
+        lease.verifyUntil(new LocalDate(2015, 1, 1));
+        isisJdoSupport.getJdoPersistenceManager().flush();
+
+        final int itemsBefore = invoiceItemsForLease.allInvoiceItems().size();
+        final int invoicesBefore = invoices.allInvoices().size();
+        final ManagerStatistics statistics = statistics();
+        final int writesBefore = statistics.getNumberOfDatastoreWrites();
+
+        lease.calculate(new LocalDate(2013, 11, 13), new LocalDate(2015, 3, 31), new LocalDate(2013, 11, 7), InvoiceRunType.NORMAL_RUN);
+
+        final int writes = statistics.getNumberOfDatastoreWrites() - writesBefore;
+        final int items = invoiceItemsForLease.allInvoiceItems().size() - itemsBefore;
+        final int newInvoices = invoices.allInvoices().size() - invoicesBefore;
+        int terms = 0;
+        for (LeaseItem leaseItem : lease.getItems()) {
+            terms += leaseItem.getTerms().size();
+        }
+
+        assertThat(items > 0, is(true));
+        // an INSERT per item and invoice, at most a version UPDATE per term
+        assertThat(
+                String.format("%d writes for %d items, %d invoices and %d terms", writes, items, newInvoices, terms),
+                writes <= items + newInvoices + terms, is(true));
+    }
+
+    private ManagerStatistics statistics() {
+        return ((JDOPersistenceManager) isisJdoSupport.getJdoPersistenceManager()).getExecutionContext().getStatistics();
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.lease;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseItem;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.lease.Leases;
+import org.estatio.dom.lease.breaks.BreakOption;
+import org.estatio.dom.lease.criticaldates.CriticalDate;
+import org.estatio.dom.lease.criticaldates.CriticalDateType;
+import org.estatio.dom.lease.criticaldates.CriticalDates;
+import org.estatio.fixture.EstatioTransactionalObjectsFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+
+public class LeaseTest_criticalDates extends EstatioIntegrationTest {
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsFixture());
+    }
+
+    private CriticalDates criticalDates;
+    private IsisJdoSupport isisJdoSupport;
+
+    private Lease lease;
+
+    @Before
+    public void setup() {
+        criticalDates = service(CriticalDates.class);
+        isisJdoSupport = service(IsisJdoSupport.class);
+        lease = service(Leases.class).findLeaseByReference("OXF-TOPMODEL-001");
+    }
+
+    @Test
+    public void whenTermEndDateChanged() throws Exception {
+        // given
+        final LeaseItem item = lease.getItems().first();
+        final LeaseTerm term = item.getTerms().first();
+        final LocalDate endDate = term.getStartDate().plusMonths(18).minusDays(1);
+        final String sourceKey = item.getType() + "/" + item.getSequence() + "/" + term.getSequence();
+
+        // when
+        term.changeDates(term.getStartDate(), endDate);
+        isisJdoSupport.getJdoPersistenceManager().flush();
+
+        // then
+        final CriticalDate criticalDate = find(CriticalDateType.TERM_END, sourceKey);
+        assertThat(criticalDate, is(notNullValue()));
+        assertThat(criticalDate.getDate(), is(endDate));
+    }
+
+    @Test
+    public void whenBreakOptionExerciseDateChanged() throws Exception {
+        // given
+        final BreakOption breakOption = lease.getBreakOptions().first();
+        final LocalDate exerciseDate = breakOption.getExerciseDate().minusMonths(1);
+        final String sourceKey = breakOption.getType() + "/" + breakOption.getBreakDate();
+
+        // when
+        breakOption.changeExerciseDate(exerciseDate);
+        isisJdoSupport.getJdoPersistenceManager().flush();
+
+        // then
+        final CriticalDate criticalDate = find(CriticalDateType.BREAK_NOTIFICATION, sourceKey);
+        assertThat(criticalDate, is(notNullValue()));
+        assertThat(criticalDate.getDate(), is(exerciseDate));
+    }
+
+    @Test
+    public void whenLeaseEndDateChanged() throws Exception {
+        // given
+        assertThat(lease.getTerminationDate(), is(nullValue()));
+        final LocalDate endDate = lease.getEndDate().plusYears(1);
+
+        // when
+        lease.changeDates(lease.getStartDate(), endDate);
+        isisJdoSupport.getJdoPersistenceManager().flush();
+
+        // then
+        final CriticalDate criticalDate = find(CriticalDateType.LEASE_EXPIRY, "");
+        assertThat(criticalDate, is(notNullValue()));
+        assertThat(criticalDate.getDate(), is(endDate));
+    }
+
+    private CriticalDate find(final CriticalDateType type, final String sourceKey) {
+        for (CriticalDate criticalDate : criticalDates.findByLease(lease)) {
+            if (criticalDate.getType() == type && sourceKey.equals(criticalDate.getSourceKey())) {
+                return criticalDate;
+            }
+        }
+        return null;
+    }
+
+}
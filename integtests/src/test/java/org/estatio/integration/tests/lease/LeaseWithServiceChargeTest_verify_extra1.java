@@ -42,7 +42,7 @@ public class LeaseWithServiceChargeTest_verify_extra1 extends EstatioIntegration
 
     @BeforeClass
     public static void setupTransactionalData() {
-        scenarioExecution().install(new EstatioTransactionalObjectsFixture());
+        installFixtures(new EstatioTransactionalObjectsFixture());
     }
 
     private Leases leases;
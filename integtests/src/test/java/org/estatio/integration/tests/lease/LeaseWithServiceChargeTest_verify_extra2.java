@@ -43,7 +43,7 @@ public class LeaseWithServiceChargeTest_verify_extra2 extends EstatioIntegration
 
     @BeforeClass
     public static void setupTransactionalData() {
-        scenarioExecution().install(new EstatioTransactionalObjectsFixture());
+        installFixtures(new EstatioTransactionalObjectsFixture());
     }
 
     private Leases leases;
@@ -0,0 +1,168 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.lease;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.isis.applib.services.bookmark.Bookmark;
+import org.apache.isis.applib.services.bookmark.BookmarkService;
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseItem;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.lease.Leases;
+import org.estatio.fixture.EstatioTransactionalObjectsFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+import org.estatio.services.etag.EntityTagService;
+import org.estatio.services.retry.RetryReport;
+import org.estatio.services.retry.RetryService;
+
+public class LeasesTest_findLeasesModifiedSince extends EstatioIntegrationTest {
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsFixture());
+    }
+
+    private Leases leases;
+    private EntityTagService entityTagService;
+    private BookmarkService bookmarkService;
+    private IsisJdoSupport isisJdoSupport;
+    private RetryService retryService;
+
+    private Lease lease;
+
+    @Before
+    public void setup() {
+        leases = service(Leases.class);
+        entityTagService = service(EntityTagService.class);
+        bookmarkService = service(BookmarkService.class);
+        isisJdoSupport = service(IsisJdoSupport.class);
+        retryService = service(RetryService.class);
+
+        lease = leases.findLeaseByReference("OXF-TOPMODEL-001");
+    }
+
+    @Test
+    public void whenModifiedAfter() throws Exception {
+        final DateTime lastModified = lease.getLastModified();
+        assertThat(lastModified, is(notNullValue()));
+
+        final List<Lease> modifiedLeases = leases.findLeasesModifiedSince(lastModified.minusMillis(1));
+        assertThat(modifiedLeases.contains(lease), is(true));
+    }
+
+    @Test
+    public void whenNotModifiedAfter() throws Exception {
+        final List<Lease> modifiedLeases = leases.findLeasesModifiedSince(DateTime.now().plusDays(1));
+        assertThat(modifiedLeases.isEmpty(), is(true));
+    }
+
+    @Test
+    public void whenTermModified_thenLeaseAndEntityTagAreUpdated() throws Exception {
+        final DateTime lastModified = lease.getLastModified();
+        final Object version = JDOHelper.getVersion(lease);
+        final String entityTag = entityTagFor(lease);
+        Thread.sleep(10);
+
+        final LeaseTerm term = lease.getItems().first().getTerms().first();
+        execute(new RetryService.Unit(term.getLeaseItem().getLease().getReference()) {
+            @Override
+            public void execute() {
+                term.setEndDate(term.getStartDate().plusYears(1));
+            }
+        });
+
+        assertThat(lease.getLastModified().isAfter(lastModified), is(true));
+        assertThat(JDOHelper.getVersion(lease), is(version));
+        assertThat(entityTagFor(lease), is(not(entityTag)));
+        assertThat(leases.findLeasesModifiedSince(lastModified).contains(lease), is(true));
+    }
+
+    @Test
+    public void whenDifferentTermsModifiedConcurrently_thenBothCommit() throws Exception {
+        final LeaseTerm term = lease.getItems().first().getTerms().first();
+        final LeaseTerm otherTerm = lease.getItems().last().getTerms().first();
+        assertThat(otherTerm, is(not(term)));
+        final Object otherTermId = JDOHelper.getObjectId(otherTerm);
+
+        final PersistenceManager otherUser =
+                isisJdoSupport.getJdoPersistenceManager().getPersistenceManagerFactory().getPersistenceManager();
+        try {
+            // another user reads the lease and one of its terms...
+            otherUser.currentTransaction().setOptimistic(true);
+            otherUser.currentTransaction().begin();
+            final LeaseTerm otherUsersTerm = (LeaseTerm) otherUser.getObjectById(otherTermId);
+            otherUsersTerm.getLeaseItem().getLease().getReference();
+
+            // ... while this user changes another term of the same lease
+            final RetryReport report = execute(new RetryService.Unit(lease.getReference()) {
+                @Override
+                public void execute() {
+                    term.setEndDate(term.getStartDate().plusYears(2));
+                }
+            });
+            assertThat(report.getRetries(), is(0));
+
+            // ... after which the other user's change commits as well
+            otherUsersTerm.setEndDate(otherUsersTerm.getStartDate().plusYears(2));
+            otherUser.currentTransaction().commit();
+        } finally {
+            if (otherUser.currentTransaction().isActive()) {
+                otherUser.currentTransaction().rollback();
+            }
+            otherUser.close();
+        }
+    }
+
+    @Test
+    public void whenNotWithLastModified_thenNoEntityTag() throws Exception {
+        final LeaseItem item = lease.getItems().first();
+        assertThat(JDOHelper.getVersion(item), is(notNullValue()));
+        assertThat(entityTagFor(item), is(nullValue()));
+    }
+
+    private RetryReport execute(final RetryService.Unit unit) {
+        final RetryReport report = retryService.execute(unit.getDescription(), Arrays.asList(unit));
+        assertThat(report.getFailures().isEmpty(), is(true));
+        return report;
+    }
+
+    private String entityTagFor(final Object object) {
+        final Bookmark bookmark = bookmarkService.bookmarkFor(object);
+        return entityTagService.entityTagFor(bookmark.getObjectType(), bookmark.getIdentifier(), "");
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.lease;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.List;
+
+import javax.jdo.Query;
+
+import org.datanucleus.api.jdo.JDOPersistenceManager;
+import org.datanucleus.management.ManagerStatistics;
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+import org.estatio.dom.asset.Properties;
+import org.estatio.dom.asset.Property;
+import org.estatio.dom.invoice.Invoices;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseItem;
+import org.estatio.dom.lease.LeaseItemType;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.lease.LeaseTermForServiceCharge;
+import org.estatio.dom.lease.Leases;
+import org.estatio.dom.lease.invoicing.InvoiceItemForLease;
+import org.estatio.dom.lease.invoicing.InvoiceItemsForLease;
+import org.estatio.dom.lease.servicecharge.ServiceChargeReconciliationReport;
+import org.estatio.dom.lease.servicecharge.ServiceChargeReconciliationService;
+import org.estatio.fixture.EstatioTransactionalObjectsFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+import org.estatio.services.settings.EstatioSettingsService;
+
+/**
+ * Reconciles the service charges of 2011 of the fixture property, where only
+ * the term of the Poison lease falls within the year: it occupies 300 of the
+ * 32500 m2 of the property.
+ */
+public class ServiceChargeReconciliationServiceTest_reconcile extends EstatioIntegrationTest {
+
+    private static final int YEAR = 2011;
+    private static final LocalDate DUE_DATE = new LocalDate(2012, 4, 1);
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsFixture());
+    }
+
+    private ServiceChargeReconciliationService serviceChargeReconciliationService;
+    private IsisJdoSupport isisJdoSupport;
+    private Property property;
+    private Lease poisonLease;
+    private LeaseTermForServiceCharge poisonTerm;
+
+    @Before
+    public void setUp() throws Exception {
+        serviceChargeReconciliationService = service(ServiceChargeReconciliationService.class);
+        isisJdoSupport = service(IsisJdoSupport.class);
+        service(EstatioSettingsService.class).updateEpochDate(null);
+        property = service(Properties.class).findPropertyByReference("OXF");
+        poisonLease = service(Leases.class).findLeaseByReference("OXF-POISON-003");
+        poisonTerm = (LeaseTermForServiceCharge) poisonLease.findFirstItemOfType(LeaseItemType.SERVICE_CHARGE).getTerms().first();
+    }
+
+    @Test
+    public void apportionsByAreaAndInvoicesUnderOneRun() throws Exception {
+        isisJdoSupport.getJdoPersistenceManager().flush();
+        final int invoicesBefore = service(Invoices.class).allInvoices().size();
+        final ManagerStatistics statistics = statistics();
+        final int writesBefore = statistics.getNumberOfDatastoreWrites();
+
+        final ServiceChargeReconciliationReport report = serviceChargeReconciliationService.reconcile(
+                property, YEAR, DUE_DATE, new StringReader("charge,lease,amount\nSERVICE_CHARGE,,65000.00\n"));
+
+        final int writes = statistics.getNumberOfDatastoreWrites() - writesBefore;
+
+        // term collection
+        assertThat(report.getTermReconciliations().size(), is(1));
+        assertThat(report.getTermReconciliations().get(0).getLeaseReference(), is("OXF-POISON-003"));
+        assertThat(report.getErrors().size(), is(1));
+        assertThat(report.getErrors().get(0), containsString("OXF-TOPMODEL-001"));
+        assertThat(report.getErrors().get(0), containsString("Term does not fall within the year"));
+        assertThat(report.getChargeSummaries().get(0).getApportioned(), is(new BigDecimal("600.00")));
+        assertThat(report.getChargeSummaries().get(0).getLandlordShare(), is(new BigDecimal("64400.00")));
+
+        assertThat(poisonTerm.getAuditedValue(), is(new BigDecimal("600.00")));
+
+        // the reconciliation items, all of the run
+        final String runId = report.getRunId();
+        assertThat(runId, notNullValue());
+        assertThat(runId.startsWith("reconcileServiceCharges-"), is(true));
+        final List<InvoiceItemForLease> items = itemsOfRun(runId);
+        assertThat(items.size(), is(report.getInvoiceItems()));
+        assertThat(items.isEmpty(), is(false));
+        BigDecimal netAmount = BigDecimal.ZERO;
+        for (InvoiceItemForLease item : items) {
+            assertThat(item.getLeaseTerm(), is((LeaseTerm) poisonTerm));
+            assertThat(item.getDueDate(), is(DUE_DATE));
+            netAmount = netAmount.add(item.getNetAmount());
+        }
+        assertThat(netAmount, is(report.getInvoicedAmount()));
+        assertThat(service(InvoiceItemsForLease.class).findRunIds().contains(runId), is(true));
+
+        // written by the unit of work in one go: an INSERT per item and
+        // invoice, at most an UPDATE per term and item of the lease and one
+        // of the lease itself
+        final int newInvoices = service(Invoices.class).allInvoices().size() - invoicesBefore;
+        int termsAndItems = 0;
+        for (LeaseItem leaseItem : poisonLease.getItems()) {
+            termsAndItems += 1 + leaseItem.getTerms().size();
+        }
+        assertThat(
+                String.format("%d writes for %d items, %d invoices and %d lease items and terms", writes, items.size(), newInvoices, termsAndItems),
+                writes <= items.size() + newInvoices + termsAndItems + 1, is(true));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<InvoiceItemForLease> itemsOfRun(final String runId) {
+        final Query query = isisJdoSupport.getJdoPersistenceManager().newQuery(InvoiceItemForLease.class, "runId == :runId");
+        return (List<InvoiceItemForLease>) query.execute(runId);
+    }
+
+    private ManagerStatistics statistics() {
+        return ((JDOPersistenceManager) isisJdoSupport.getJdoPersistenceManager()).getExecutionContext().getStatistics();
+    }
+
+}
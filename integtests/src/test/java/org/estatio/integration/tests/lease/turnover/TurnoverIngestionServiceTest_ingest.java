@@ -0,0 +1,114 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.lease.turnover;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseItemType;
+import org.estatio.dom.lease.LeaseTermForTurnoverRent;
+import org.estatio.dom.lease.Leases;
+import org.estatio.dom.lease.Occupancy;
+import org.estatio.dom.lease.Occupancy.OccupancyReportingType;
+import org.estatio.dom.lease.turnover.TurnoverIngestionReport;
+import org.estatio.dom.lease.turnover.TurnoverIngestionService;
+import org.estatio.dom.lease.turnover.Turnovers;
+import org.estatio.fixture.EstatioTransactionalObjectsFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+
+public class TurnoverIngestionServiceTest_ingest extends EstatioIntegrationTest {
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsFixture());
+    }
+
+    private TurnoverIngestionService ingestionService;
+    private Turnovers turnovers;
+    private Lease lease;
+    private Occupancy occupancy;
+
+    @Before
+    public void setup() {
+        ingestionService = service(TurnoverIngestionService.class);
+        turnovers = service(Turnovers.class);
+        lease = service(Leases.class).findLeaseByReference("OXF-POISON-003");
+        occupancy = lease.getOccupancies().first();
+        occupancy.setReportTurnover(OccupancyReportingType.YES);
+    }
+
+    @Test
+    public void upsertsTurnoversAndRecalculatesTurnoverRent() throws Exception {
+        final String file = ""
+                + "lease,unit,period,turnover\n"
+                + "OXF-POISON-003,,2011-01,100000\n"
+                + ",OXF-003,2011-02,150000\n"
+                // the audited year takes precedence over its months
+                + "OXF-POISON-003,OXF-003,2011,2000000\n";
+
+        final TurnoverIngestionReport report = ingestionService.ingest(new StringReader(file));
+
+        assertThat(report.getErrors().toString(), report.getErrors().isEmpty(), is(true));
+        assertThat(report.getCreated(), is(3));
+        assertThat(turnovers.findByOccupancy(occupancy).size(), is(3));
+
+        final LeaseTermForTurnoverRent term = (LeaseTermForTurnoverRent) lease
+                .findFirstItemOfType(LeaseItemType.TURNOVER_RENT)
+                .findTerm(new LocalDate(2011, 1, 1));
+        assertThat(term.getAuditedTurnover().compareTo(new BigDecimal("2000000")), is(0));
+        assertThat(report.getRecalculated(), is(1));
+        assertThat(report.getRentChanges().size(), is(1));
+        assertThat(report.getRentChanges().get(0).getLeaseReference(), is("OXF-POISON-003"));
+        assertThat(report.getRentChanges().get(0).getValue(), is(term.getTrialValue()));
+
+        // ingesting again changes nothing
+        final TurnoverIngestionReport again = ingestionService.ingest(new StringReader(file));
+        assertThat(again.getCreated() + again.getUpdated(), is(0));
+        assertThat(again.getUnchanged(), is(3));
+        assertThat(again.getRecalculated(), is(0));
+    }
+
+    @Test
+    public void reportsRowsThatCannotBeIngested() throws Exception {
+        final String file = ""
+                + "NO-SUCH-LEASE,,2013-08,1000\n"
+                + ",NO-SUCH-UNIT,2013-08,1000\n"
+                // before the lease started
+                + "OXF-POISON-003,,2009-08,1000\n"
+                // does not report turnover
+                + "OXF-TOPMODEL-001,,2013-08,1000\n"
+                + "OXF-POISON-003,,2013-08\n";
+
+        final TurnoverIngestionReport report = ingestionService.ingest(new StringReader(file));
+
+        assertThat(report.getErrors().size(), is(5));
+        assertThat(report.getCreated() + report.getUpdated(), is(0));
+        assertThat(report.getRecalculated(), is(0));
+    }
+
+}
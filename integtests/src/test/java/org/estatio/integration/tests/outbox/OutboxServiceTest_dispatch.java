@@ -0,0 +1,210 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.outbox;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.jdo.JDOHelper;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+import org.estatio.dom.invoice.Invoice;
+import org.estatio.dom.invoice.InvoiceStatus;
+import org.estatio.dom.invoice.Invoices;
+import org.estatio.dom.invoice.PaymentMethod;
+import org.estatio.dom.lease.Leases;
+import org.estatio.dom.party.Parties;
+import org.estatio.fixture.EstatioTransactionalObjectsFixture;
+import org.estatio.fixture.invoice.InvoiceAndInvoiceItemFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+import org.estatio.services.outbox.DirectorySink;
+import org.estatio.services.outbox.OutboxMessage;
+import org.estatio.services.outbox.OutboxService;
+import org.estatio.services.outbox.OutboxSink;
+import org.estatio.services.outbox.OutboxStatus;
+import org.estatio.services.retry.RetryService;
+
+public class OutboxServiceTest_dispatch extends EstatioIntegrationTest {
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsFixture());
+    }
+
+    /**
+     * As configured for the integration tests, so that the events that could
+     * not be delivered are due again straight away.
+     */
+    private static final long BACKOFF_MILLIS = 1L;
+
+    private OutboxService outboxService;
+    private RetryService retryService;
+    private Invoices invoices;
+    private Parties parties;
+    private Leases leases;
+    private IsisJdoSupport isisJdoSupport;
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        outboxService = service(OutboxService.class);
+        retryService = service(RetryService.class);
+        invoices = service(Invoices.class);
+        parties = service(Parties.class);
+        leases = service(Leases.class);
+        isisJdoSupport = service(IsisJdoSupport.class);
+        directory = Files.createTempDir();
+        outboxService.useSink(new DirectorySink(directory));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        outboxService.useBatchSize(OutboxService.DEFAULT_BATCH_SIZE);
+        outboxService.useBackoffMillis(BACKOFF_MILLIS);
+        outboxService.useSink(null);
+        // the events left over are committed by the units that recorded them
+        isisJdoSupport.executeUpdate("DELETE FROM \"OutboxEvent\"");
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void deliversSubmittedInvoiceOnceCommitted() throws Exception {
+        submitInvoice();
+
+        assertThat(outboxService.dispatch(), is(1));
+
+        final File[] files = directory.listFiles();
+        assertThat(files.length, is(1));
+        final String payload = Files.toString(files[0], Charsets.UTF_8);
+        assertThat(payload, containsString("<invoice event=\"submitToCoda\">"));
+        assertThat(payload, containsString("<seller>" + InvoiceAndInvoiceItemFixture.SELLER_PARTY + "</seller>"));
+        assertThat(payload, containsString("<item>"));
+
+        // nothing left to deliver
+        assertThat(outboxService.dispatch(), is(0));
+    }
+
+    @Test
+    public void deliversEventsOfAnInvoiceInOrderOnceSinkRecovers() throws Exception {
+        outboxService.useSink(new OutboxSink() {
+            @Override
+            public void init(final Map<String, String> properties) {
+            }
+
+            @Override
+            public void deliver(final List<OutboxMessage> messages) throws IOException {
+                throw new IOException("Coda unavailable");
+            }
+        });
+        submitInvoice();
+        assertThat(outboxService.dispatch(), is(0));
+        final Long pending = outboxService.countByStatus().get(OutboxStatus.PENDING);
+        assertThat(pending, is(1L));
+
+        submitInvoice();
+        outboxService.useSink(new DirectorySink(directory));
+        Thread.sleep(10);
+
+        assertThat(outboxService.dispatch(), is(2));
+        final String[] names = directory.list();
+        Arrays.sort(names);
+        assertThat(names.length, is(2));
+        // named after the time recorded, so in the order submitted
+        assertThat(names[0].compareTo(names[1]) < 0, is(true));
+    }
+
+    @Test
+    public void deliversEventsOfOtherObjectsWhenMoreThanABatchIsHeldBack() throws Exception {
+        outboxService.useSink(new OutboxSink() {
+            @Override
+            public void init(final Map<String, String> properties) {
+            }
+
+            @Override
+            public void deliver(final List<OutboxMessage> messages) throws IOException {
+                throw new IOException("Coda unavailable");
+            }
+        });
+        outboxService.useBackoffMillis(60 * 1000L);
+        record("changed", "OXF-TOPMODEL-001");
+        assertThat(outboxService.dispatch(), is(0));
+
+        // held back until the first event is delivered, which is not due yet
+        for (int i = 0; i < 3; i++) {
+            record("changed", "OXF-TOPMODEL-001");
+        }
+        record("changed", "OXF-MEDIAX-002");
+        outboxService.useBatchSize(2);
+        outboxService.useSink(new DirectorySink(directory));
+
+        assertThat(outboxService.dispatch(), is(1));
+        final String[] names = directory.list();
+        assertThat(names.length, is(1));
+        final String payload = Files.toString(new File(directory, names[0]), Charsets.UTF_8);
+        final Object objectId = JDOHelper.getObjectId(leases.findLeaseByReference("OXF-MEDIAX-002"));
+        assertThat(payload, containsString("identifier=\"" + objectId + "\""));
+    }
+
+    // //////////////////////////////////////
+
+    private void record(final String eventType, final String leaseReference) {
+        retryService.execute(eventType, Arrays.asList(new RetryService.Unit(leaseReference) {
+            @Override
+            public void execute() {
+                outboxService.record(eventType, leases.findLeaseByReference(leaseReference));
+            }
+        }));
+    }
+
+    private void submitInvoice() {
+        retryService.execute("submitToCoda", Arrays.asList(new RetryService.Unit(InvoiceAndInvoiceItemFixture.LEASE) {
+            @Override
+            public void execute() {
+                final Invoice invoice = invoices.findInvoiceByVarious(
+                        parties.findPartyByReference(InvoiceAndInvoiceItemFixture.SELLER_PARTY),
+                        parties.findPartyByReference(InvoiceAndInvoiceItemFixture.BUYER_PARTY),
+                        PaymentMethod.DIRECT_DEBIT,
+                        leases.findLeaseByReference(InvoiceAndInvoiceItemFixture.LEASE),
+                        InvoiceStatus.NEW,
+                        InvoiceAndInvoiceItemFixture.START_DATE);
+                invoice.submitToCoda();
+            }
+        }));
+    }
+
+}
@@ -39,7 +39,7 @@ public class CommunicationChannelContributionsTest_communicationChannels extends
 
     @BeforeClass
     public static void setupTransactionalData() {
-        scenarioExecution().install(new EstatioTransactionalObjectsFixture());
+        installFixtures(new EstatioTransactionalObjectsFixture());
     }
 
     @Before
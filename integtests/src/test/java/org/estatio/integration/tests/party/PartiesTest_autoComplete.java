@@ -0,0 +1,89 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.party;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Sets;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.estatio.dom.party.Organisation;
+import org.estatio.dom.party.Organisations;
+import org.estatio.dom.party.Parties;
+import org.estatio.dom.party.Party;
+import org.estatio.fixture.EstatioTransactionalObjectsFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+
+public class PartiesTest_autoComplete extends EstatioIntegrationTest {
+
+    private Parties parties;
+    private Organisations organisations;
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsFixture());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        parties = service(Parties.class);
+        organisations = service(Organisations.class);
+    }
+
+    @Test
+    public void partialReferenceOrName() throws Exception {
+        assertThat(references(parties.autoComplete("LLOWOR")), is(references(parties.findParties("*LLOWOR*"))));
+        assertThat(references(parties.autoComplete("ello Wor")), is(references(parties.findParties("*ello Wor*"))));
+        assertThat(parties.autoComplete("ello Wor").size(), is(1));
+    }
+
+    @Test
+    public void caseInsensitive() throws Exception {
+        assertThat(references(parties.autoComplete("OE, jO")), is(references(parties.findParties("*OE, jO*"))));
+        assertThat(parties.autoComplete("OE, jO").size(), is(1));
+    }
+
+    @Test
+    public void createdPartyIsFound() throws Exception {
+        assertThat(parties.autoComplete("zedtop").isEmpty(), is(true));
+
+        // not flushed yet
+        final Organisation created = organisations.newOrganisation("ZEDTOP", "Zed Top Holdings");
+
+        final List<Party> matches = parties.autoComplete("zedtop");
+        assertThat(matches.size(), is(1));
+        assertThat(matches.get(0), is((Party) created));
+    }
+
+    private static Set<String> references(final List<Party> parties) {
+        final Set<String> references = Sets.newTreeSet();
+        for (Party party : parties) {
+            references.add(party.getReference());
+        }
+        return references;
+    }
+
+}
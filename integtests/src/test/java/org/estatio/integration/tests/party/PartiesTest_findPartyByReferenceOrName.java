@@ -36,7 +36,7 @@ public class PartiesTest_findPartyByReferenceOrName extends EstatioIntegrationTe
 
     @BeforeClass
     public static void setupTransactionalData() {
-        scenarioExecution().install(new EstatioTransactionalObjectsFixture());
+        installFixtures(new EstatioTransactionalObjectsFixture());
     }
 
     @Before
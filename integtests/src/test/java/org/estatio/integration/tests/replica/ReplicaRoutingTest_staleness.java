@@ -0,0 +1,227 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.replica;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManagerFactory;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+import org.estatio.dom.invoice.viewmodel.InvoiceSummariesForPropertyDueDate;
+import org.estatio.dom.lease.Lease;
+import org.estatio.dom.lease.LeaseTerm;
+import org.estatio.dom.lease.Leases;
+import org.estatio.fixture.EstatioTransactionalObjectsFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+import org.estatio.services.replica.ReplicaRouter;
+import org.estatio.services.replica.ReplicaRoutingService;
+import org.estatio.services.retry.RetryService;
+
+/**
+ * The (in-memory) database of the Isis system of the test is the primary;
+ * the replica is a second HSQLDB database, opened from a script of the
+ * primary, so that it is as far behind as the last time it was
+ * {@link #replicate() replicated}.
+ */
+public class ReplicaRoutingTest_staleness extends EstatioIntegrationTest {
+
+    private static final String LEASE_REFERENCE = "OXF-TOPMODEL-001";
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsFixture());
+    }
+
+    private Leases leases;
+    private InvoiceSummariesForPropertyDueDate invoiceSummaries;
+    private ReplicaRoutingService replicaRoutingService;
+    private RetryService retryService;
+
+    private PersistenceManagerFactory replica;
+
+    @Before
+    public void setUp() throws Exception {
+        leases = service(Leases.class);
+        invoiceSummaries = service(InvoiceSummariesForPropertyDueDate.class);
+        replicaRoutingService = service(ReplicaRoutingService.class);
+        retryService = service(RetryService.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        replicaRoutingService.disconnect();
+        if (replica != null) {
+            replica.close();
+        }
+    }
+
+    @Test
+    public void readsFromReplicaWhileFresh() throws Exception {
+        beat();
+        connect(replicate(), 60000L);
+
+        renameLease("Renamed while fresh");
+
+        // not replicated yet...
+        assertThat(leases.findLeases("Renamed while fresh").isEmpty(), is(true));
+
+        replicaRoutingService.disconnect();
+
+        // ... but committed on the primary
+        final List<Lease> renamedLeases = leases.findLeases("Renamed while fresh");
+        assertThat(renamedLeases.size(), is(1));
+        assertThat(renamedLeases.get(0).getReference(), is(LEASE_REFERENCE));
+    }
+
+    @Test
+    public void readsFromPrimaryOnceReplicaIsTooStale() throws Exception {
+        beat();
+        connect(replicate(), 100L);
+        Thread.sleep(200);
+
+        renameLease("Renamed while stale");
+
+        final List<Lease> renamedLeases = leases.findLeases("Renamed while stale");
+        assertThat(renamedLeases.size(), is(1));
+        assertThat(renamedLeases.get(0).getReference(), is(LEASE_REFERENCE));
+    }
+
+    @Test
+    public void modifiedSinceReadsFromPrimaryWhileReplicaIsFresh() throws Exception {
+        beat();
+        connect(replicate(), 60000L);
+        final DateTime replicatedAt = DateTime.now();
+        Thread.sleep(10);
+
+        changeTerm();
+
+        // a client advancing its cursor must not miss what is not
+        // replicated yet
+        final List<Lease> modifiedLeases = leases.findLeasesModifiedSince(replicatedAt);
+        assertThat(modifiedLeases.size(), is(1));
+        assertThat(modifiedLeases.get(0).getReference(), is(LEASE_REFERENCE));
+    }
+
+    @Test
+    public void calculateLeasesFindsLeasesOfPrimary() throws Exception {
+        beat();
+        connect(replicate(), 60000L);
+
+        renameLease("Renamed before calculation");
+
+        assertThat(leases.findLeasesByReferenceOrName("Renamed before calculation").size(), is(1));
+    }
+
+    @Test
+    public void resolvesEntitiesAndViewModelsOfPrimary() throws Exception {
+        final List<Lease> onPrimary = leases.findLeases("OXF*");
+        final int summariesOnPrimary = invoiceSummaries.invoicesForPropertyDueDate().size();
+
+        beat();
+        connect(replicate(), 60000L);
+
+        assertThat(leases.findLeases("OXF*"), is(onPrimary));
+        assertThat(invoiceSummaries.invoicesForPropertyDueDate().size(), is(summariesOnPrimary));
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Writes a heartbeat to the primary, as the service does only once it
+     * is connected to a replica.
+     */
+    private void beat() {
+        final PersistenceManagerFactory primary =
+                service(IsisJdoSupport.class).getJdoPersistenceManager().getPersistenceManagerFactory();
+        new ReplicaRouter(primary, null, 0L).beat();
+    }
+
+    private void connect(final String connectionUrl, final long maxStalenessMillis) {
+        final Map<String, String> properties = Maps.newHashMap();
+        properties.put("javax.jdo.PersistenceManagerFactoryClass", "org.datanucleus.api.jdo.JDOPersistenceManagerFactory");
+        properties.put("javax.jdo.option.ConnectionDriverName", "org.hsqldb.jdbcDriver");
+        properties.put("javax.jdo.option.ConnectionURL", connectionUrl);
+        properties.put("javax.jdo.option.ConnectionUserName", "sa");
+        properties.put("javax.jdo.option.ConnectionPassword", "");
+        properties.put("datanucleus.readOnlyDatastore", "true");
+        properties.put("datanucleus.defaultInheritanceStrategy", "TABLE_PER_CLASS");
+        properties.put("datanucleus.identifier.case", "PreserveCase");
+        properties.put("datanucleus.cache.level2.type", "none");
+        replica = JDOHelper.getPersistenceManagerFactory(properties);
+        replicaRoutingService.connect(replica, maxStalenessMillis);
+    }
+
+    /**
+     * Copies the primary into a new replica.
+     * 
+     * @return the connection URL of the replica
+     */
+    private static String replicate() throws SQLException {
+        final File directory = Files.createTempDir();
+        directory.deleteOnExit();
+        final String database = new File(directory, "replica").getAbsolutePath();
+        final Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:test", "sa", "");
+        try {
+            connection.createStatement().execute("SCRIPT '" + database + ".script'");
+        } finally {
+            connection.close();
+        }
+        return "jdbc:hsqldb:file:" + database;
+    }
+
+    private void renameLease(final String name) {
+        retryService.execute("renameLease", Arrays.asList(new RetryService.Unit(LEASE_REFERENCE) {
+            @Override
+            public void execute() {
+                leases.findLeaseByReference(LEASE_REFERENCE).setName(name);
+            }
+        }));
+    }
+
+    private void changeTerm() {
+        retryService.execute("changeTerm", Arrays.asList(new RetryService.Unit(LEASE_REFERENCE) {
+            @Override
+            public void execute() {
+                final LeaseTerm term = leases.findLeaseByReference(LEASE_REFERENCE).getItems().first().getTerms().first();
+                term.setEndDate(term.getStartDate().plusYears(1));
+            }
+        }));
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.integration.tests.retry;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.isis.core.runtime.system.context.IsisContext;
+import org.apache.isis.core.runtime.system.transaction.IsisTransactionManager;
+import org.apache.isis.objectstore.jdo.applib.service.support.IsisJdoSupport;
+
+import org.estatio.dom.numerator.Numerator;
+import org.estatio.dom.numerator.Numerators;
+import org.estatio.fixture.EstatioTransactionalObjectsTeardownFixture;
+import org.estatio.integration.tests.EstatioIntegrationTest;
+import org.estatio.services.retry.RetryPolicy;
+import org.estatio.services.retry.RetryReport;
+import org.estatio.services.retry.RetryService;
+
+/**
+ * The concurrent user is simulated by bumping the version of the numerator
+ * in the database, after it has been loaded but before it is changed, so
+ * that the commit of the unit fails its optimistic locking check.
+ */
+public class RetryServiceTest_conflicts extends EstatioIntegrationTest {
+
+    private static final String NUMERATOR_NAME = "RETRY-TEST";
+
+    @BeforeClass
+    public static void setupTransactionalData() {
+        installFixtures(new EstatioTransactionalObjectsTeardownFixture());
+    }
+
+    private RetryService retryService;
+    private Numerators numerators;
+    private IsisJdoSupport isisJdoSupport;
+
+    @Before
+    public void setUp() throws Exception {
+        retryService = service(RetryService.class);
+        retryService.setRetryPolicy(new RetryPolicy(3, 0, 0));
+        numerators = service(Numerators.class);
+        isisJdoSupport = service(IsisJdoSupport.class);
+        if (numerators.findGlobalNumerator(NUMERATOR_NAME) == null) {
+            numerators.createGlobalNumerator(NUMERATOR_NAME, "%05d", BigInteger.ZERO);
+        }
+    }
+
+    @Test
+    public void conflictingUnitIsRetried() throws Exception {
+        final BigInteger before = numerators.findGlobalNumerator(NUMERATOR_NAME).getLastIncrement();
+
+        final RetryReport report = retryService.execute("test", Arrays.asList(new IncrementingUnit(1)));
+
+        assertThat(report.getSucceeded(), is(1));
+        assertThat(report.getRetries(), is(1));
+        assertThat(report.hasFailures(), is(false));
+        assertThat(numerators.findGlobalNumerator(NUMERATOR_NAME).getLastIncrement(), is(before.add(BigInteger.ONE)));
+    }
+
+    @Test
+    public void unitThatKeepsConflictingIsReported() throws Exception {
+        final RetryReport report = retryService.execute("test", Arrays.asList(new IncrementingUnit(Integer.MAX_VALUE)));
+
+        assertThat(report.getSucceeded(), is(0));
+        assertThat(report.getRetries(), is(2));
+        assertThat(report.getFailures().size(), is(1));
+    }
+
+    @Test
+    public void actionIsCommittedAfterUnitIsAborted() throws Exception {
+        final BigInteger before = numerators.findGlobalNumerator(NUMERATOR_NAME).getLastIncrement();
+        retryService.execute("test", Arrays.asList(new IncrementingUnit(Integer.MAX_VALUE)));
+
+        // the rest of the action, committed by the framework
+        numerators.findGlobalNumerator(NUMERATOR_NAME).increment();
+        getTransactionManager().endTransaction();
+        getTransactionManager().startTransaction();
+
+        assertThat(numerators.findGlobalNumerator(NUMERATOR_NAME).getLastIncrement(), is(before.add(BigInteger.ONE)));
+    }
+
+    @Test
+    public void actionIsAbortedAfterUnitIsAborted() throws Exception {
+        final BigInteger before = numerators.findGlobalNumerator(NUMERATOR_NAME).getLastIncrement();
+        retryService.execute("test", Arrays.asList(new IncrementingUnit(Integer.MAX_VALUE)));
+
+        // the rest of the action, aborted by the framework
+        numerators.findGlobalNumerator(NUMERATOR_NAME).increment();
+        getTransactionManager().abortTransaction();
+        getTransactionManager().startTransaction();
+
+        assertThat(numerators.findGlobalNumerator(NUMERATOR_NAME).getLastIncrement(), is(before));
+    }
+
+    private static IsisTransactionManager getTransactionManager() {
+        return IsisContext.getTransactionManager();
+    }
+
+    private class IncrementingUnit extends RetryService.Unit {
+
+        private int conflicts;
+
+        IncrementingUnit(final int conflicts) {
+            super(NUMERATOR_NAME);
+            this.conflicts = conflicts;
+        }
+
+        @Override
+        public void execute() {
+            final Numerator numerator = numerators.findGlobalNumerator(NUMERATOR_NAME);
+            if (conflicts-- > 0) {
+                isisJdoSupport.executeUpdate(
+                        "UPDATE \"Numerator\" SET \"version\" = \"version\" + 1 "
+                                + "WHERE \"name\" = '" + NUMERATOR_NAME + "'");
+            }
+            numerator.increment();
+        }
+    }
+
+}
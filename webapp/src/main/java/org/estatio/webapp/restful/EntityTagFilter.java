@@ -0,0 +1,130 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.webapp.restful;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.isis.core.metamodel.adapter.ObjectAdapter;
+import org.apache.isis.core.runtime.system.context.IsisContext;
+
+import org.estatio.services.etag.EntityTagService;
+import org.estatio.services.metrics.EstatioMetrics;
+
+/**
+ * Adds an <tt>ETag</tt> header to the representations of domain objects
+ * served by the Restful Objects viewer, and answers a <tt>GET</tt> whose
+ * <tt>If-None-Match</tt> header matches with <tt>304 Not Modified</tt>,
+ * without rendering the representation (and so without loading its
+ * collections); see {@link EntityTagService}.
+ * 
+ * <p>
+ * Must be mapped after the <tt>IsisSessionFilterForRestfulObjects</tt> and
+ * <tt>IsisTransactionFilterForRestfulObjects</tt> filters.
+ */
+public class EntityTagFilter implements Filter {
+
+    /**
+     * <tt>/objects/{domainType}/{instanceId}</tt>, optionally followed by a
+     * property; collections and actions are never tagged, the tag of an
+     * object only covering the collections of its parts (eg. the items of an
+     * invoice, not the roles of a lease).
+     */
+    private static final Pattern OBJECT_PATH = Pattern.compile(
+            "^/objects/([^/]+)/([^/]+)(/properties/[^/]+)?/?$");
+
+    private EntityTagService entityTagService;
+
+    @Override
+    public void init(final FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(
+            final ServletRequest request,
+            final ServletResponse response,
+            final FilterChain chain) throws IOException, ServletException {
+        final HttpServletRequest httpRequest = (HttpServletRequest) request;
+        final HttpServletResponse httpResponse = (HttpServletResponse) response;
+        final String entityTag = entityTagFor(httpRequest);
+        if (entityTag == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        httpResponse.setHeader("ETag", entityTag);
+        if (entityTagService.matches(httpRequest.getHeader("If-None-Match"), entityTag)) {
+            EstatioMetrics.count("etag.notModified");
+            httpResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private String entityTagFor(final HttpServletRequest request) throws UnsupportedEncodingException {
+        if (!"GET".equals(request.getMethod()) || request.getPathInfo() == null) {
+            return null;
+        }
+        final Matcher matcher = OBJECT_PATH.matcher(request.getPathInfo());
+        if (!matcher.matches()) {
+            return null;
+        }
+        final EntityTagService service = lookupEntityTagService();
+        if (service == null) {
+            return null;
+        }
+        final String variant = matcher.group(3)
+                + "|" + request.getQueryString()
+                + "|" + request.getHeader("Accept")
+                + "|" + IsisContext.getAuthenticationSession().getUserName();
+        return service.entityTagFor(
+                URLDecoder.decode(matcher.group(1), "UTF-8"),
+                URLDecoder.decode(matcher.group(2), "UTF-8"),
+                variant);
+    }
+
+    private EntityTagService lookupEntityTagService() {
+        if (entityTagService == null) {
+            for (ObjectAdapter serviceAdapter : IsisContext.getPersistenceSession().getServices()) {
+                final Object service = serviceAdapter.getObject();
+                if (service instanceof EntityTagService) {
+                    entityTagService = (EntityTagService) service;
+                    break;
+                }
+            }
+        }
+        return entityTagService;
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+}
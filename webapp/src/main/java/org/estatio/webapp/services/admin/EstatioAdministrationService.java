@@ -21,7 +21,18 @@ package org.estatio.webapp.services.admin;
 import java.math.BigInteger;
 import java.util.List;
 
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.UnavailableSecurityManagerException;
+import org.apache.shiro.mgt.RealmSecurityManager;
+import org.apache.shiro.mgt.SecurityManager;
+import org.apache.shiro.realm.Realm;
+
+import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
+import org.joda.time.Period;
 
 import org.apache.isis.applib.DomainObjectContainer;
 import org.apache.isis.applib.annotation.MemberOrder;
@@ -31,14 +42,20 @@ import org.apache.isis.applib.annotation.Prototype;
 import org.apache.isis.applib.services.settings.ApplicationSetting;
 import org.apache.isis.core.runtime.fixtures.FixturesInstallerDelegate;
 
+import org.estatio.dom.ReferenceDataRegistry;
 import org.estatio.dom.asset.Properties;
 import org.estatio.dom.index.Indices;
 import org.estatio.dom.invoice.Invoices;
+import org.estatio.dom.utils.JodaPeriodUtils;
 import org.estatio.fixture.EstatioFixture;
 import org.estatio.fixture.agreement.AgreementTypesAndRoleTypesAndCommunicationChannelTypesFixture;
+import org.estatio.fixture.generator.LargePortfolioFixture;
 import org.estatio.fixture.index.IndexAndIndexBaseAndIndexValueFixture;
 import org.estatio.fixturescripts.FixtureScript;
+import org.estatio.services.outbox.OutboxService;
+import org.estatio.services.metrics.EstatioMetrics;
 import org.estatio.services.settings.EstatioSettingsService;
+import org.estatio.webapp.shiro.EstatioLdapRealm;
 
 @Named("Administration")
 public class EstatioAdministrationService {
@@ -59,7 +76,78 @@ public class EstatioAdministrationService {
         return settingsService.listAll();
     }
 
-    
+    // //////////////////////////////////////
+
+    @MemberOrder(sequence = "aaa.3")
+    public String listMetrics(
+            final @Named("Name") @Optional String name,
+            final @Named("Per property and run") @Optional Boolean detailed) {
+        final List<String> lines = Boolean.TRUE.equals(detailed)
+                ? EstatioMetrics.details(name)
+                : EstatioMetrics.summary(name);
+        return lines.isEmpty() ? "No metrics recorded" : Joiner.on('\n').join(lines);
+    }
+
+    @MemberOrder(sequence = "aaa.4")
+    public String resetMetrics() {
+        EstatioMetrics.reset();
+        return "Metrics reset";
+    }
+
+    @MemberOrder(sequence = "aaa.5")
+    public String refreshReferenceData() {
+        referenceDataRegistry.invalidateAll();
+        return "Reference data will be reloaded on next use";
+    }
+
+    @MemberOrder(sequence = "aaa.6")
+    public String evictAuthorizationCache(
+            final @Named("User") @Optional String username) {
+        final List<EstatioLdapRealm> ldapRealms = ldapRealms();
+        if (ldapRealms.isEmpty()) {
+            return "No LDAP realm configured";
+        }
+        for (EstatioLdapRealm ldapRealm : ldapRealms) {
+            if (username != null) {
+                ldapRealm.evictAuthorizationInfo(username);
+            } else {
+                ldapRealm.evictAllAuthorizationInfo();
+            }
+        }
+        return username != null
+                ? "Roles of " + username + " will be looked up on next use"
+                : "Roles of all users will be looked up on next use";
+    }
+
+    @MemberOrder(sequence = "aaa.7")
+    public String dispatchOutbox() {
+        final int delivered = outboxService.dispatch();
+        return "Delivered " + delivered + " events; events by status: " + outboxService.countByStatus();
+    }
+
+    @MemberOrder(sequence = "aaa.8")
+    public String retryFailedOutboxEvents() {
+        return "Retrying " + outboxService.retryFailed() + " events";
+    }
+
+    private static List<EstatioLdapRealm> ldapRealms() {
+        final List<EstatioLdapRealm> ldapRealms = Lists.newArrayList();
+        final SecurityManager securityManager;
+        try {
+            securityManager = SecurityUtils.getSecurityManager();
+        } catch (UnavailableSecurityManagerException ex) {
+            return ldapRealms;
+        }
+        if (securityManager instanceof RealmSecurityManager) {
+            for (Realm realm : ((RealmSecurityManager) securityManager).getRealms()) {
+                if (realm instanceof EstatioLdapRealm) {
+                    ldapRealms.add((EstatioLdapRealm) realm);
+                }
+            }
+        }
+        return ldapRealms;
+    }
+
     // //////////////////////////////////////
 
     @Prototype
@@ -101,6 +189,75 @@ public class EstatioAdministrationService {
 
     // //////////////////////////////////////
 
+    @Prototype
+    @MemberOrder(sequence = "6")
+    public String installLargePortfolioFixture(
+            final @Named("Properties") Integer numberOfProperties,
+            final @Named("Units per property") Integer unitsPerProperty,
+            final @Named("Leases per unit") Integer leasesPerUnit,
+            final @Named("Seed") Long seed,
+            final @Named("Run prefix") @Optional String runPrefix) {
+        final LargePortfolioFixture fixture = container.newTransientInstance(LargePortfolioFixture.class);
+        fixture.setNumberOfProperties(numberOfProperties);
+        fixture.setUnitsPerProperty(unitsPerProperty);
+        fixture.setLeasesPerUnit(leasesPerUnit);
+        fixture.setSeed(seed);
+        fixture.setRunPrefix(runPrefix);
+        final DateTime start = DateTime.now();
+        installFixtures(fixture);
+        return String.format(
+                "Generated %d leases, %d lease terms and %d invoices (references %s*, %d existing properties skipped) in %s",
+                fixture.getNumberOfLeases(),
+                fixture.getNumberOfTerms(),
+                fixture.getNumberOfInvoices(),
+                fixture.getReferencePrefix(),
+                fixture.getNumberOfSkippedProperties(),
+                JodaPeriodUtils.asString(new Period(start, DateTime.now())));
+    }
+
+    public Integer default0InstallLargePortfolioFixture() {
+        return LargePortfolioFixture.DEFAULT_NUMBER_OF_PROPERTIES;
+    }
+
+    public Integer default1InstallLargePortfolioFixture() {
+        return LargePortfolioFixture.DEFAULT_UNITS_PER_PROPERTY;
+    }
+
+    public Integer default2InstallLargePortfolioFixture() {
+        return LargePortfolioFixture.DEFAULT_LEASES_PER_UNIT;
+    }
+
+    public Long default3InstallLargePortfolioFixture() {
+        return LargePortfolioFixture.DEFAULT_SEED;
+    }
+
+    public String validateInstallLargePortfolioFixture(
+            final Integer numberOfProperties,
+            final Integer unitsPerProperty,
+            final Integer leasesPerUnit,
+            final Long seed,
+            final String runPrefix) {
+        if (numberOfProperties < 1 || unitsPerProperty < 1 || leasesPerUnit < 1) {
+            return "Numbers of properties, units and leases must be at least 1";
+        }
+        if (leasesPerUnit > 10) {
+            return "At most 10 leases per unit, one per year";
+        }
+        if (numberOfProperties > 999) {
+            return "At most 999 properties";
+        }
+        if (!LargePortfolioFixture.isValidRunPrefix(runPrefix)) {
+            return "Run prefix must be up to three capital letters or digits";
+        }
+        return null;
+    }
+
+    public String disableInstallLargePortfolioFixture() {
+        return indices.findIndex("ISTAT-FOI") == null ? "Reference data not installed" : null;
+    }
+
+    // //////////////////////////////////////
+
 
     @MemberOrder(sequence = "9")
     @Prototype
@@ -153,4 +310,16 @@ public class EstatioAdministrationService {
         this.invoices = invoices;
     }
 
+    private ReferenceDataRegistry referenceDataRegistry;
+
+    public final void injectReferenceDataRegistry(ReferenceDataRegistry referenceDataRegistry) {
+        this.referenceDataRegistry = referenceDataRegistry;
+    }
+
+    private OutboxService outboxService;
+
+    public final void injectOutboxService(OutboxService outboxService) {
+        this.outboxService = outboxService;
+    }
+
 }
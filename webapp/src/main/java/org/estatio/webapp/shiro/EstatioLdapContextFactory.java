@@ -22,8 +22,63 @@ package org.estatio.webapp.shiro;
 import org.apache.shiro.realm.ldap.JndiLdapContextFactory;
 
 /**
- * Introduced in case there is a need to fine-tune at some later date.
+ * Pools the connections of the system account (as used by
+ * {@link EstatioLdapRealm} to look up the groups of each user) and bounds the
+ * time spent waiting for the directory.
+ * 
+ * <p>
+ * The size and idle timeout of the pool are JVM-wide settings of the JNDI
+ * LDAP provider, read when it is first used; so they are only set here if not
+ * already given on the command line (<tt>-Dcom.sun.jndi.ldap.connect.pool.maxsize=...</tt>).
+ * 
+ * <pre>
+ * contextFactory = org.estatio.webapp.shiro.EstatioLdapContextFactory
+ * contextFactory.poolMaxSize = 20
+ * contextFactory.poolIdleTimeoutMillis = 300000
+ * contextFactory.connectTimeoutMillis = 5000
+ * contextFactory.readTimeoutMillis = 10000
+ * </pre>
  */
 public class EstatioLdapContextFactory extends JndiLdapContextFactory {
 
+    static final String POOL_MAX_SIZE = "com.sun.jndi.ldap.connect.pool.maxsize";
+    static final String POOL_PREF_SIZE = "com.sun.jndi.ldap.connect.pool.prefsize";
+    static final String POOL_IDLE_TIMEOUT = "com.sun.jndi.ldap.connect.pool.timeout";
+    static final String CONNECT_TIMEOUT = "com.sun.jndi.ldap.connect.timeout";
+    static final String READ_TIMEOUT = "com.sun.jndi.ldap.read.timeout";
+
+    public EstatioLdapContextFactory() {
+        setPoolingEnabled(true);
+    }
+
+    public void setPoolMaxSize(final int poolMaxSize) {
+        setPoolProperty(POOL_MAX_SIZE, poolMaxSize);
+    }
+
+    public void setPoolPrefSize(final int poolPrefSize) {
+        setPoolProperty(POOL_PREF_SIZE, poolPrefSize);
+    }
+
+    /**
+     * How long an idle connection is kept in the pool; by default forever,
+     * whereas Active Directory drops connections idle for 15 minutes.
+     */
+    public void setPoolIdleTimeoutMillis(final int poolIdleTimeoutMillis) {
+        setPoolProperty(POOL_IDLE_TIMEOUT, poolIdleTimeoutMillis);
+    }
+
+    public void setConnectTimeoutMillis(final int connectTimeoutMillis) {
+        getEnvironment().put(CONNECT_TIMEOUT, String.valueOf(connectTimeoutMillis));
+    }
+
+    public void setReadTimeoutMillis(final int readTimeoutMillis) {
+        getEnvironment().put(READ_TIMEOUT, String.valueOf(readTimeoutMillis));
+    }
+
+    private static void setPoolProperty(final String name, final int value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, String.valueOf(value));
+        }
+    }
+
 }
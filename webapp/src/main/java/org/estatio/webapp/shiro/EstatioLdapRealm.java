@@ -23,8 +23,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
 
 import javax.naming.AuthenticationException;
 import javax.naming.NamingEnumeration;
@@ -34,6 +33,9 @@ import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
 import javax.naming.ldap.LdapContext;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -54,18 +56,27 @@ import org.apache.isis.security.shiro.permrolemapper.PermissionToRoleMapperFromS
  * returns each user's groups.
  * 
  * <p>
+ * The roles and permissions of each user are cached for
+ * {@link #setAuthorizationCacheTtlSeconds(int) a few minutes}, so that
+ * Active Directory is queried once per user rather than for every session;
+ * see also {@link EstatioLdapContextFactory}, which pools the connections
+ * used for these queries.
+ * 
+ * <p>
  * Sample config for <tt>shiro.ini</tt>:
  * 
  * <pre>
- * contextFactory = org.estatio.security.shiro.EstatioLdapContextFactory
+ * contextFactory = org.estatio.webapp.shiro.EstatioLdapContextFactory
  * contextFactory.url = ldap://localhost:10389
  * contextFactory.authenticationMechanism = simple
  * 
  * contextFactory.systemUsername = ### some trusted account with read-only access ###
  * contextFactory.systemPassword = ### some trusted account with read-only access ###
  * 
- * ldapRealm = org.estatio.security.shiro.EstatioLdapRealm
+ * ldapRealm = org.estatio.webapp.shiro.EstatioLdapRealm
  * ldapRealm.contextFactory = $contextFactory
+ * ldapRealm.authorizationCacheMaxSize = 1000
+ * ldapRealm.authorizationCacheTtlSeconds = 300
  * 
  * ldapRealm.searchBase = DC=ECP,DC=LOC
  * 
@@ -94,84 +105,195 @@ public class EstatioLdapRealm extends JndiLdapRealm {
     private final static SearchControls SUBTREE_SCOPE = new SearchControls();
     static {
         SUBTREE_SCOPE.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        SUBTREE_SCOPE.setReturningAttributes(new String[] { "memberOf" });
     }
-    private static final Pattern MEMBER_OF_PATTERN = Pattern.compile("CN=([^,]+),.*");
+
+    static final int DEFAULT_AUTHORIZATION_CACHE_MAX_SIZE = 1000;
+    static final int DEFAULT_AUTHORIZATION_CACHE_TTL_SECONDS = 300;
 
     private String searchBase;
     
     private Map<String,String> rolesByGroup = Maps.newLinkedHashMap();
     private PermissionToRoleMapper permissionToRoleMapper;
+
+    private int authorizationCacheMaxSize = DEFAULT_AUTHORIZATION_CACHE_MAX_SIZE;
+    private int authorizationCacheTtlSeconds = DEFAULT_AUTHORIZATION_CACHE_TTL_SECONDS;
+
+    /**
+     * Built on first use, once all properties have been set.
+     */
+    private volatile Cache<String, AuthorizationInfo> authorizationInfoByUser;
+    private volatile Map<String, Grant> grantsByGroup;
     
     public EstatioLdapRealm() {
     }
     
     @Override
     protected AuthorizationInfo queryForAuthorizationInfo(final PrincipalCollection principals, final LdapContextFactory ldapContextFactory) throws NamingException {
-        final Set<String> roleNames = getRoles(principals, ldapContextFactory);
-        SimpleAuthorizationInfo simpleAuthorizationInfo = new SimpleAuthorizationInfo(roleNames);
-        Set<String> stringPermissions = permsFor(roleNames);
-        simpleAuthorizationInfo.setStringPermissions(stringPermissions);
-        return simpleAuthorizationInfo;
-    }
-
-    private Set<String> getRoles(final PrincipalCollection principals, final LdapContextFactory ldapContextFactory) throws NamingException {
         final String username = (String) getAvailablePrincipal(principals);
+        final Cache<String, AuthorizationInfo> cache = getAuthorizationInfoByUser();
+        final AuthorizationInfo cached = cache.getIfPresent(username);
+        if (cached != null) {
+            return cached;
+        }
+        final Set<String> groupNames = getGroupNames(username, ldapContextFactory);
+        if (groupNames == null) {
+            // not cached, so retried with the next request
+            return new SimpleAuthorizationInfo(Collections.<String> emptySet());
+        }
+        final AuthorizationInfo authorizationInfo = authorizationInfoFor(groupNames);
+        cache.put(username, authorizationInfo);
+        return authorizationInfo;
+    }
 
+    /**
+     * The groups the user is a member of, <tt>null</tt> if the directory
+     * could not be queried.
+     */
+    private Set<String> getGroupNames(final String username, final LdapContextFactory ldapContextFactory) throws NamingException {
         LdapContext systemLdapCtx = null;
         try {
             systemLdapCtx = ldapContextFactory.getSystemLdapContext();
-            return rolesFor(username, systemLdapCtx);
+            return groupNamesFor(username, systemLdapCtx);
         } catch (AuthenticationException ex) {
             // principal was not authenticated on LDAP
-            return Collections.emptySet();
+            return null;
         } finally {
             LdapUtils.closeContext(systemLdapCtx);
         }
     }
 
-    private Set<String> rolesFor(final String userName, final LdapContext ldapCtx) throws NamingException {
-        final Set<String> roleNames = Sets.newLinkedHashSet();
+    private Set<String> groupNamesFor(final String userName, final LdapContext ldapCtx) throws NamingException {
+        final Set<String> groupNames = Sets.newLinkedHashSet();
         String userNamePart = userName.substring(0, userName.indexOf("@"));
         final NamingEnumeration<SearchResult> searchResultEnum = ldapCtx.search(searchBase, "(&(objectCategory=Person)(sAMAccountName="+userNamePart+"))", SUBTREE_SCOPE);
-        if (searchResultEnum.hasMore()) {
-            final SearchResult userEntry = searchResultEnum.next();
-            addRolesForEachGroupMemberOf(userEntry, roleNames);
+        try {
+            if (searchResultEnum.hasMore()) {
+                final Attribute memberOf = searchResultEnum.next().getAttributes().get("memberOf");
+                if (memberOf != null) {
+                    final NamingEnumeration<?> e = memberOf.getAll();
+                    while (e.hasMore()) {
+                        final String groupName = groupNameOf(e.next().toString());
+                        if (groupName != null) {
+                            groupNames.add(groupName);
+                        }
+                    }
+                }
+            }
+        } finally {
+            searchResultEnum.close();
         }
-        return roleNames;
+        return groupNames;
     }
 
-    private void addRolesForEachGroupMemberOf(final SearchResult userEntry, final Set<String> roleNames) throws NamingException {
-        final NamingEnumeration<? extends Attribute> attributeEnum = userEntry.getAttributes().getAll();
-        while (attributeEnum.hasMore()) {
-            final Attribute attr = attributeEnum.next();
-            if (!"memberOf".equalsIgnoreCase(attr.getID())) {
-                continue;
-            }
-            final NamingEnumeration<?> e = attr.getAll();
-            while (e.hasMore()) {
-                String attrValue = e.next().toString();
-                Matcher matcher = MEMBER_OF_PATTERN.matcher(attrValue);
-                if(matcher.matches()) {
-                    String groupName = matcher.group(1);
-                    String roleName = rolesByGroup.get(groupName);
-                    if(roleName != null) {
-                        roleNames.add(roleName);
-                    }
-                }
+    /**
+     * The common name of a group, eg <tt>Estatio Users</tt> for
+     * <tt>CN=Estatio Users,OU=Groups,DC=ECP,DC=LOC</tt>.
+     */
+    static String groupNameOf(final String distinguishedName) {
+        final int comma = distinguishedName.indexOf(',');
+        return distinguishedName.startsWith("CN=") && comma > 3
+                ? distinguishedName.substring(3, comma)
+                : null;
+    }
+
+    private AuthorizationInfo authorizationInfoFor(final Set<String> groupNames) {
+        final Set<String> roleNames = Sets.newLinkedHashSet();
+        final Set<String> perms = Sets.newLinkedHashSet(); // preserve order
+        final Map<String, Grant> grants = getGrantsByGroup();
+        for (String groupName : groupNames) {
+            final Grant grant = grants.get(groupName);
+            if (grant != null) {
+                roleNames.add(grant.roleName);
+                perms.addAll(grant.perms);
             }
         }
+        final SimpleAuthorizationInfo simpleAuthorizationInfo = new SimpleAuthorizationInfo(roleNames);
+        simpleAuthorizationInfo.setStringPermissions(perms);
+        return simpleAuthorizationInfo;
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * The role of a group and the permissions of that role, resolved once
+     * rather than for every user.
+     */
+    private static class Grant {
+        private final String roleName;
+        private final List<String> perms;
+
+        private Grant(final String roleName, final List<String> perms) {
+            this.roleName = roleName;
+            this.perms = perms;
+        }
     }
 
+    private Map<String, Grant> getGrantsByGroup() {
+        Map<String, Grant> grants = grantsByGroup;
+        if (grants == null) {
+            grants = Maps.newHashMap();
+            for (Map.Entry<String, String> entry : rolesByGroup.entrySet()) {
+                final List<String> permsForRole = getPermissionsByRole().get(entry.getValue());
+                grants.put(entry.getKey(), new Grant(
+                        entry.getValue(),
+                        permsForRole != null ? ImmutableList.copyOf(permsForRole) : ImmutableList.<String> of()));
+            }
+            grantsByGroup = grants;
+        }
+        return grants;
+    }
 
-    private Set<String> permsFor(Set<String> roleNames) {
-        Set<String> perms = Sets.newLinkedHashSet(); // preserve order
-        for(String role: roleNames) {
-            List<String> permsForRole = getPermissionsByRole().get(role);
-            if(permsForRole != null) {
-                perms.addAll(permsForRole);
+    private Cache<String, AuthorizationInfo> getAuthorizationInfoByUser() {
+        Cache<String, AuthorizationInfo> cache = authorizationInfoByUser;
+        if (cache == null) {
+            synchronized (this) {
+                cache = authorizationInfoByUser;
+                if (cache == null) {
+                    cache = CacheBuilder.newBuilder()
+                            .maximumSize(authorizationCacheMaxSize)
+                            .expireAfterWrite(authorizationCacheTtlSeconds, TimeUnit.SECONDS)
+                            .build();
+                    authorizationInfoByUser = cache;
+                }
             }
         }
-        return perms;
+        return cache;
+    }
+
+    /**
+     * Discards the cached roles and permissions of the user, to be looked up
+     * again on next use; eg after changing the user's groups.
+     */
+    public void evictAuthorizationInfo(final String username) {
+        getAuthorizationInfoByUser().invalidate(username);
+    }
+
+    public void evictAllAuthorizationInfo() {
+        getAuthorizationInfoByUser().invalidateAll();
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * The number of users whose roles and permissions are cached, least
+     * recently looked up evicted first; defaults to
+     * {@value #DEFAULT_AUTHORIZATION_CACHE_MAX_SIZE}.
+     */
+    public void setAuthorizationCacheMaxSize(final int authorizationCacheMaxSize) {
+        this.authorizationCacheMaxSize = authorizationCacheMaxSize;
+        this.authorizationInfoByUser = null;
+    }
+
+    /**
+     * How long the roles and permissions of a user are cached, and so how
+     * long a change in the user's groups takes to have effect (unless
+     * {@link #evictAuthorizationInfo(String) evicted}); defaults to
+     * {@value #DEFAULT_AUTHORIZATION_CACHE_TTL_SECONDS}.
+     */
+    public void setAuthorizationCacheTtlSeconds(final int authorizationCacheTtlSeconds) {
+        this.authorizationCacheTtlSeconds = authorizationCacheTtlSeconds;
+        this.authorizationInfoByUser = null;
     }
 
     public void setSearchBase(String searchBase) {
@@ -180,6 +302,7 @@ public class EstatioLdapRealm extends JndiLdapRealm {
 
     public void setRolesByGroup(Map<String, String> rolesByGroup) {
         this.rolesByGroup.putAll(rolesByGroup);
+        this.grantsByGroup = null;
     }
     
     /**
@@ -221,6 +344,7 @@ public class EstatioLdapRealm extends JndiLdapRealm {
         } 
         final Ini ini = Ini.fromResourcePath(resourcePath);
         this.permissionToRoleMapper = new PermissionToRoleMapperFromIni(ini);
+        this.grantsByGroup = null;
     }
 
     /**
@@ -242,6 +366,7 @@ public class EstatioLdapRealm extends JndiLdapRealm {
             throw new IllegalStateException("Permissions already set, " + permissionToRoleMapper.getClass().getName());
         } 
         this.permissionToRoleMapper = new PermissionToRoleMapperFromString(permissionsByRoleStr);
+        this.grantsByGroup = null;
     }
     
 }
@@ -0,0 +1,131 @@
+/*
+ *
+ *  Copyright 2012-2013 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.webapp.shiro;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableMap;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+
+import org.apache.shiro.authz.AuthorizationException;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EstatioLdapRealmTest {
+
+    private static final String BASE_DN = "DC=ECP,DC=LOC";
+
+    private InMemoryDirectoryServer server;
+    private EstatioLdapRealm realm;
+
+    @Before
+    public void setUp() throws Exception {
+        final InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig(BASE_DN);
+        config.addAdditionalBindCredentials("CN=system", "secret");
+        // objectCategory, sAMAccountName and memberOf are Active Directory specific
+        config.setSchema(null);
+        server = new InMemoryDirectoryServer(config);
+        server.add(
+                "dn: " + BASE_DN,
+                "objectClass: domain",
+                "dc: ECP");
+        server.add(
+                "dn: CN=John Doe," + BASE_DN,
+                "objectClass: person",
+                "objectCategory: Person",
+                "cn: John Doe",
+                "sn: Doe",
+                "sAMAccountName: jdoe",
+                "memberOf: CN=Estatio Users,OU=Groups," + BASE_DN,
+                "memberOf: CN=Canteen,OU=Groups," + BASE_DN);
+        server.startListening();
+
+        final EstatioLdapContextFactory contextFactory = new EstatioLdapContextFactory();
+        contextFactory.setUrl("ldap://localhost:" + server.getListenPort());
+        contextFactory.setSystemUsername("CN=system");
+        contextFactory.setSystemPassword("secret");
+        contextFactory.setConnectTimeoutMillis(1000);
+
+        realm = new EstatioLdapRealm();
+        realm.setContextFactory(contextFactory);
+        realm.setSearchBase(BASE_DN);
+        realm.setRolesByGroup(ImmutableMap.of(
+                "Estatio Users", "user_role",
+                "Estatio Administrators", "admin_role"));
+        realm.setResourcePath("classpath:org/estatio/webapp/shiro/EstatioLdapRealmTest.ini");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutDown(true);
+    }
+
+    @Test
+    public void rolesAndPermissionsOfGroups() throws Exception {
+        final PrincipalCollection principals = principalsOf("jdoe@ECP.LOC");
+
+        assertThat(realm.hasRole(principals, "user_role"), is(true));
+        assertThat(realm.hasRole(principals, "admin_role"), is(false));
+        assertThat(realm.isPermitted(principals, "estatio:leases:find"), is(true));
+        assertThat(realm.isPermitted(principals, "estatio:invoices:find"), is(false));
+    }
+
+    @Test
+    public void unknownUser() throws Exception {
+        final PrincipalCollection principals = principalsOf("nobody@ECP.LOC");
+
+        assertThat(realm.hasRole(principals, "user_role"), is(false));
+        assertThat(realm.isPermitted(principals, "estatio:leases:find"), is(false));
+    }
+
+    @Test
+    public void cachedUntilEvicted() throws Exception {
+        final PrincipalCollection principals = principalsOf("jdoe@ECP.LOC");
+        assertThat(realm.hasRole(principals, "user_role"), is(true));
+
+        server.shutDown(true);
+        assertThat(realm.hasRole(principals, "user_role"), is(true));
+
+        realm.evictAuthorizationInfo("jdoe@ECP.LOC");
+        try {
+            realm.hasRole(principals, "user_role");
+            fail("directory is down");
+        } catch (AuthorizationException expected) {
+        }
+    }
+
+    @Test
+    public void groupNameOf() throws Exception {
+        assertThat(EstatioLdapRealm.groupNameOf("CN=Estatio Users,OU=Groups,DC=ECP,DC=LOC"), is("Estatio Users"));
+        assertThat(EstatioLdapRealm.groupNameOf("CN=Estatio Users"), is(nullValue()));
+        assertThat(EstatioLdapRealm.groupNameOf("OU=Groups,DC=ECP,DC=LOC"), is(nullValue()));
+    }
+
+    private PrincipalCollection principalsOf(final String username) {
+        return new SimplePrincipalCollection(username, realm.getName());
+    }
+
+}